@@ -0,0 +1,384 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.exception.DAOException;
+import com.bruno.bookmanager.exception.LibroAlreadyExistsException;
+import com.bruno.bookmanager.exception.LibroNotFoundException;
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Implementazione di {@link LibroDAO} su un file binario compatto.
+ * <p>
+ * Il file inizia con un'intestazione (magic, versione, tabelle dei nomi di {@link Genere} e
+ * {@link StatoLettura}, numero di libri) seguita da un record per libro, preceduto dalla sua lunghezza:
+ * <pre>
+ * varint  lunghezza del record
+ * byte    valutazione (4 bit bassi) e indicatori (ISBN-13 compresso, titolo, autore e ISBN assenti)
+ * byte    genere, indice nella tabella dei generi (0xFF se assente)
+ * byte    stato, indice nella tabella degli stati (0xFF se assente)
+ * long    ISBN-13 numerico, oppure stringa per gli altri ISBN
+ * string  titolo e autore, se presenti
+ * </pre>
+ * Le stringhe sono codificate in UTF-8 e precedute dalla lunghezza in byte (varint). Generi e stati sono
+ * memorizzati come indici nelle tabelle dell'intestazione, non come ordinali, così che il file resti
+ * leggibile anche se l'ordine delle costanti cambia. La scrittura avviene su un file temporaneo sostituito
+ * atomicamente.
+ * <p>
+ * La lettura copia l'intero file in un buffer sullo heap invece di mapparlo in memoria: su Windows un file
+ * mappato non può essere sostituito finché la mappatura non viene rilasciata dal garbage collector, e la
+ * sostituzione atomica di {@link #saveAll(List)} fallirebbe.
+ */
+public class BinaryLibroDAO implements LibroDAO {
+
+    private static final Logger logger = LoggerFactory.getLogger(BinaryLibroDAO.class);
+
+    private static final int MAGIC = 0x424D4C42; // "BMLB"
+    private static final byte VERSION = 1;
+    private static final int ABSENT = 0xFF;
+
+    private static final int VALUTAZIONE_MASK = 0x0F;
+    private static final int PACKED_ISBN = 0x10;
+    private static final int NO_TITOLO = 0x20;
+    private static final int NO_AUTORE = 0x40;
+    private static final int NO_ISBN = 0x80;
+
+    private final Path path;
+
+    /**
+     * Crea un BinaryLibroDAO.
+     *
+     * @param filePath percorso del file binario usato per salvare/caricare i libri
+     */
+    public BinaryLibroDAO(String filePath) {
+        this.path = Path.of(filePath);
+    }
+
+    @Override
+    public List<Libro> getAll() throws DAOException {
+        if (!Files.exists(path)) {
+            logger.debug("File {} non esistente, ritorno lista vuota", path);
+            return new ArrayList<>();
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File troppo grande per essere letto: " + size + " byte");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("File troncato durante la lettura");
+                }
+            }
+            List<Libro> libri = decode(buffer.flip());
+            logger.debug("Caricati {} libri da {}", libri.size(), path);
+            return libri;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            logger.error("Errore durante la lettura del file {}", path, e);
+            throw new DAOException("Impossibile leggere i dati dal file " + path, e);
+        }
+    }
+
+    @Override
+    public void saveAll(List<Libro> libri) throws DAOException {
+        Path temp = Path.of(path + ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024)) {
+                encode(libri, out);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.debug("Salvati {} libri in {}", libri.size(), path);
+        } catch (IOException | IllegalArgumentException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // Il file temporaneo verrà sovrascritto dal prossimo salvataggio
+            }
+            logger.error("Errore durante il salvataggio nel file {}", path, e);
+            throw new DAOException("Impossibile salvare i dati nel file " + path, e);
+        }
+    }
+
+    @Override
+    public Optional<Libro> getByIsbn(String isbn) throws DAOException {
+        Optional<Libro> result = getAll().stream().filter(l -> isbn.equals(l.getIsbn())).findFirst();
+        logger.debug("Ricerca libro con ISBN {}: {}", isbn, result.isPresent() ? "trovato" : "non trovato");
+        return result;
+    }
+
+    @Override
+    public void add(Libro libro) throws LibroAlreadyExistsException, DAOException {
+        List<Libro> libri = getAll();
+
+        if (libri.contains(libro)) {
+            logger.warn("Tentativo di aggiunta libro già esistente con ISBN {}", libro.getIsbn());
+            throw new LibroAlreadyExistsException(libro.getIsbn());
+        }
+
+        libri.add(libro);
+        saveAll(libri);
+        logger.info("Aggiunto libro: {} (ISBN: {})", libro.getTitolo(), libro.getIsbn());
+    }
+
+    @Override
+    public void removeByIsbn(String isbn) throws LibroNotFoundException, DAOException {
+        List<Libro> libri = getAll();
+
+        boolean rimosso = libri.removeIf(libro -> isbn.equals(libro.getIsbn()));
+        if (!rimosso) {
+            logger.warn("Tentativo di rimozione libro non esistente con ISBN {}", isbn);
+            throw new LibroNotFoundException(isbn);
+        }
+        saveAll(libri);
+        logger.info("Rimosso libro con ISBN {}", isbn);
+    }
+
+    @Override
+    public void update(Libro libro) throws LibroNotFoundException, DAOException {
+        List<Libro> libri = getAll();
+
+        for (int i = 0; i < libri.size(); i++) {
+            if (libri.get(i).equals(libro)) {
+                libri.set(i, libro);
+                saveAll(libri);
+                logger.info("Aggiornato libro: {} (ISBN: {})", libro.getTitolo(), libro.getIsbn());
+                return;
+            }
+        }
+        logger.warn("Tentativo di aggiornamento libro non esistente con ISBN {}", libro.getIsbn());
+        throw new LibroNotFoundException(libro.getIsbn());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Il file viene letto e riscritto una sola volta per l'intera collezione ricevuta.
+     */
+    @Override
+    public BulkResult addAll(Collection<Libro> libri) throws DAOException {
+        return merge(libri, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Il file viene letto e riscritto una sola volta per l'intera collezione ricevuta.
+     */
+    @Override
+    public BulkResult upsertAll(Collection<Libro> libri) throws DAOException {
+        return merge(libri, true);
+    }
+
+    private BulkResult merge(Collection<Libro> libri, boolean upsert) throws DAOException {
+        List<Libro> current = getAll();
+        BulkResult result = BulkMerge.apply(current, libri, upsert);
+        if (result.count(BulkResult.Outcome.ADDED) + result.count(BulkResult.Outcome.UPDATED) > 0) {
+            saveAll(current);
+        }
+        logger.info("Scrittura in blocco su {}: {} aggiunti, {} aggiornati, {} già presenti", path,
+                result.count(BulkResult.Outcome.ADDED), result.count(BulkResult.Outcome.UPDATED),
+                result.count(BulkResult.Outcome.ALREADY_EXISTS));
+        return result;
+    }
+
+    @Override
+    public boolean prefersBatchOperations() {
+        return true;
+    }
+
+    // ==================== CODIFICA ====================
+
+    private static void encode(List<Libro> libri, OutputStream target) throws IOException {
+        DataOutputStream out = new DataOutputStream(target);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writeNames(out, Genere.values());
+        writeNames(out, StatoLettura.values());
+        out.writeInt(libri.size());
+
+        // Ogni record viene prima codificato in un buffer riusato, per conoscerne la lunghezza
+        ByteArrayOutputStream record = new ByteArrayOutputStream(128);
+        DataOutputStream recordOut = new DataOutputStream(record);
+        for (Libro libro : libri) {
+            record.reset();
+            encodeRecord(libro, recordOut);
+            writeVarint(out, record.size());
+            record.writeTo(out);
+        }
+        out.flush();
+    }
+
+    private static void encodeRecord(Libro libro, DataOutputStream out) throws IOException {
+        int valutazione = libro.getValutazione();
+        if (valutazione < 0 || valutazione > VALUTAZIONE_MASK) {
+            throw new IllegalArgumentException("Valutazione non rappresentabile: " + valutazione);
+        }
+        String isbn = libro.getIsbn();
+        boolean packed = isPackableIsbn(isbn);
+        int header = valutazione
+                | (packed ? PACKED_ISBN : 0)
+                | (libro.getTitolo() == null ? NO_TITOLO : 0)
+                | (libro.getAutore() == null ? NO_AUTORE : 0)
+                | (isbn == null ? NO_ISBN : 0);
+
+        out.writeByte(header);
+        out.writeByte(libro.getGenere() == null ? ABSENT : libro.getGenere().ordinal());
+        out.writeByte(libro.getStatoLettura() == null ? ABSENT : libro.getStatoLettura().ordinal());
+        if (packed) {
+            out.writeLong(Long.parseLong(isbn));
+        } else if (isbn != null) {
+            writeString(out, isbn);
+        }
+        if (libro.getTitolo() != null) {
+            writeString(out, libro.getTitolo());
+        }
+        if (libro.getAutore() != null) {
+            writeString(out, libro.getAutore());
+        }
+    }
+
+    /**
+     * Un ISBN-13 di sole cifre occupa 8 byte come long invece di 14 come stringa; la lunghezza fissa
+     * permette di ricostruire gli zeri iniziali.
+     */
+    private static boolean isPackableIsbn(String isbn) {
+        if (isbn == null || isbn.length() != 13) {
+            return false;
+        }
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeNames(DataOutputStream out, Enum<?>[] values) throws IOException {
+        out.writeByte(values.length);
+        for (Enum<?> value : values) {
+            writeString(out, value.name());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    // ==================== DECODIFICA ====================
+
+    private static List<Libro> decode(ByteBuffer in) throws IOException {
+        if (in.remaining() < 5 || in.getInt() != MAGIC) {
+            throw new IOException("Il file non è un archivio di libri in formato binario");
+        }
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IOException("Versione del formato binario non supportata: " + version);
+        }
+        Genere[] generi = readNames(in, Genere.class);
+        StatoLettura[] stati = readNames(in, StatoLettura.class);
+        int count = in.getInt();
+
+        List<Libro> libri = new ArrayList<>(count);
+        byte[] scratch = new byte[256];
+        for (int i = 0; i < count; i++) {
+            int length = readVarint(in);
+            int end = in.position() + length;
+            int header = in.get() & 0xFF;
+            int genere = in.get() & 0xFF;
+            int stato = in.get() & 0xFF;
+
+            String isbn;
+            if ((header & PACKED_ISBN) != 0) {
+                isbn = unpackIsbn(in.getLong());
+            } else {
+                isbn = (header & NO_ISBN) != 0 ? null : readString(in, scratch);
+            }
+            String titolo = (header & NO_TITOLO) != 0 ? null : readString(in, scratch);
+            String autore = (header & NO_AUTORE) != 0 ? null : readString(in, scratch);
+
+            libri.add(new Libro(titolo, autore, isbn, genere == ABSENT ? null : generi[genere],
+                    header & VALUTAZIONE_MASK, stato == ABSENT ? null : stati[stato]));
+            // Campi aggiunti da versioni successive del record vengono saltati
+            in.position(end);
+        }
+        return libri;
+    }
+
+    private static String unpackIsbn(long packed) {
+        String digits = Long.toString(packed);
+        return digits.length() == 13 ? digits : "0".repeat(13 - digits.length()) + digits;
+    }
+
+    /**
+     * Legge una tabella di nomi; i nomi sconosciuti a questa versione dell'applicazione diventano null.
+     */
+    private static <E extends Enum<E>> E[] readNames(ByteBuffer in, Class<E> type) {
+        int count = in.get() & 0xFF;
+        @SuppressWarnings("unchecked")
+        E[] values = (E[]) Array.newInstance(type, count);
+        byte[] scratch = new byte[64];
+        for (int i = 0; i < count; i++) {
+            String name = readString(in, scratch);
+            try {
+                values[i] = Enum.valueOf(type, name);
+            } catch (IllegalArgumentException e) {
+                values[i] = null;
+            }
+        }
+        return values;
+    }
+
+    private static String readString(ByteBuffer in, byte[] scratch) {
+        int length = readVarint(in);
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        in.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.get() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint non valido");
+    }
+}
@@ -0,0 +1,74 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.model.Libro;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applicazione in memoria di una scrittura in blocco a una lista di libri, condivisa dai DAO che
+ * persistono l'intera collezione con un'unica riscrittura.
+ */
+final class BulkMerge {
+
+    private BulkMerge() {
+    }
+
+    /**
+     * Inserisce, ed eventualmente sostituisce, i libri nella lista indicata, in un solo passaggio.
+     *
+     * @param target   lista da modificare
+     * @param incoming libri da scrivere, nell'ordine in cui applicarli
+     * @param upsert   true per sostituire i libri già presenti, false per lasciarli invariati
+     * @return esito per ogni libro ricevuto
+     */
+    static BulkResult apply(List<Libro> target, Collection<Libro> incoming, boolean upsert) {
+        Map<String, Integer> positions = new HashMap<>(target.size() + incoming.size());
+        for (int i = 0; i < target.size(); i++) {
+            positions.put(target.get(i).getIsbn(), i);
+        }
+
+        List<BulkResult.Entry> entries = new ArrayList<>(incoming.size());
+        for (Libro libro : incoming) {
+            Integer position = positions.get(libro.getIsbn());
+            if (position == null) {
+                positions.put(libro.getIsbn(), target.size());
+                target.add(libro);
+                entries.add(BulkResult.Entry.of(libro.getIsbn(), BulkResult.Outcome.ADDED));
+            } else if (upsert) {
+                target.set(position, libro);
+                entries.add(BulkResult.Entry.of(libro.getIsbn(), BulkResult.Outcome.UPDATED));
+            } else {
+                entries.add(BulkResult.Entry.of(libro.getIsbn(), BulkResult.Outcome.ALREADY_EXISTS));
+            }
+        }
+        return new BulkResult(entries);
+    }
+
+    /**
+     * Come {@link #apply(List, Collection, boolean)}, su libri già indicizzati per ISBN in una mappa che ne
+     * conserva l'ordine: i libri sostituiti restano nella loro posizione, quelli nuovi vengono aggiunti in coda.
+     *
+     * @param target   mappa ISBN → libro da modificare
+     * @param incoming libri da scrivere, nell'ordine in cui applicarli
+     * @param upsert   true per sostituire i libri già presenti, false per lasciarli invariati
+     * @return esito per ogni libro ricevuto
+     */
+    static BulkResult apply(Map<String, Libro> target, Collection<Libro> incoming, boolean upsert) {
+        List<BulkResult.Entry> entries = new ArrayList<>(incoming.size());
+        for (Libro libro : incoming) {
+            if (target.putIfAbsent(libro.getIsbn(), libro) == null) {
+                entries.add(BulkResult.Entry.of(libro.getIsbn(), BulkResult.Outcome.ADDED));
+            } else if (upsert) {
+                target.put(libro.getIsbn(), libro);
+                entries.add(BulkResult.Entry.of(libro.getIsbn(), BulkResult.Outcome.UPDATED));
+            } else {
+                entries.add(BulkResult.Entry.of(libro.getIsbn(), BulkResult.Outcome.ALREADY_EXISTS));
+            }
+        }
+        return new BulkResult(entries);
+    }
+}
@@ -0,0 +1,67 @@
+package com.bruno.bookmanager.dao;
+
+import java.util.List;
+
+/**
+ * Esito di un'operazione di scrittura in blocco ({@link LibroDAO#addAll}, {@link LibroDAO#upsertAll}),
+ * con una voce per ogni libro ricevuto, nello stesso ordine.
+ *
+ * @param entries esiti dei singoli libri
+ */
+public record BulkResult(List<Entry> entries) {
+
+    /**
+     * Esito della scrittura di un singolo libro.
+     */
+    public enum Outcome {
+        /**
+         * Libro inserito.
+         */
+        ADDED,
+        /**
+         * Libro già presente, sostituito (solo upsert).
+         */
+        UPDATED,
+        /**
+         * Libro già presente, o ripetuto nella stessa richiesta, e quindi non inserito (solo add).
+         */
+        ALREADY_EXISTS,
+        /**
+         * Libro scartato dalla validazione e non inviato alla persistenza.
+         */
+        INVALID
+    }
+
+    /**
+     * @param isbn    ISBN del libro
+     * @param outcome esito della scrittura
+     * @param message descrizione dell'errore, null per le scritture riuscite
+     */
+    public record Entry(String isbn, Outcome outcome, String message) {
+
+        static Entry of(String isbn, Outcome outcome) {
+            return new Entry(isbn, outcome, outcome == Outcome.ALREADY_EXISTS
+                    ? "Libro con ISBN " + isbn + " è già presente nella collezione" : null);
+        }
+    }
+
+    public BulkResult {
+        entries = List.copyOf(entries);
+    }
+
+    /**
+     * @param outcome esito da contare
+     * @return numero di libri con l'esito indicato
+     */
+    public long count(Outcome outcome) {
+        return entries.stream().filter(entry -> entry.outcome() == outcome).count();
+    }
+
+    /**
+     * @return true se tutti i libri sono stati inseriti o aggiornati
+     */
+    public boolean isComplete() {
+        return entries.stream().allMatch(entry -> entry.outcome() == Outcome.ADDED
+                || entry.outcome() == Outcome.UPDATED);
+    }
+}
@@ -3,61 +3,455 @@ package com.bruno.bookmanager.dao;
 import com.bruno.bookmanager.exception.DAOException;
 import com.bruno.bookmanager.exception.LibroAlreadyExistsException;
 import com.bruno.bookmanager.exception.LibroNotFoundException;
+import com.bruno.bookmanager.filters.Filter;
 import com.bruno.bookmanager.model.Libro;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Implementazione di {@link LibroDAO} che aggiunge una cache in memoria sopra un altro DAO.
  * <p>
  * Utilizza il pattern Decorator per migliorare le performance evitando accessi ripetuti al DAO sottostante.
  * La cache viene inizializzata al primo accesso e aggiornata ad ogni modifica.
+ * <p>
+ * I libri in cache sono indicizzati per ISBN in una mappa che conserva l'ordine di inserimento: ricerca e
+ * verifica di esistenza costano O(1), mentre {@link #getAll()} restituisce i libri nello stesso ordine del DAO
+ * sottostante. Un libro aggiornato mantiene la sua posizione.
+ * <p>
+ * La cache è un'istantanea immutabile pubblicata tramite un riferimento volatile. Le letture non acquisiscono
+ * lock e vedono sempre uno stato coerente, anche da thread diversi da quello dell'interfaccia; le scritture
+ * sono serializzate, modificano una copia della mappa e pubblicano la nuova istantanea solo dopo averla
+ * persistita.
+ * <p>
+ * Se il DAO sottostante implementa {@link VersionedStorage}, ogni lettura confronta la versione dei dati con
+ * quella dell'istantanea e ricarica la cache quando la persistenza è stata modificata da altri. Le scritture
+ * fatte tramite questa cache aggiornano la versione dell'istantanea; una modifica esterna avvenuta tra la
+ * verifica e la scrittura può restare invisibile fino alla modifica esterna successiva o a
+ * {@link #refreshCache()}.
+ * <p>
+ * Con un DAO sottostante che {@linkplain LibroDAO#prefersBatchOperations() preferisce le operazioni batch} la
+ * cache può funzionare in scrittura differita: le modifiche aggiornano subito la cache e la segnano come da
+ * salvare, e un unico {@link LibroDAO#saveAll(List)} le persiste tutte insieme allo scadere della finestra
+ * indicata nel costruttore, contata dalla prima modifica non salvata, oppure con {@link #flush()} o
+ * {@link #close()}. Finché ci sono modifiche non salvate la cache è la copia autorevole dei dati: non viene
+ * ricaricata né invalidata. Se il salvataggio in background fallisce l'errore viene notificato al listener
+ * impostato con {@link #setFlushFailureListener} e resta disponibile con {@link #getFlushFailure()}; la modifica
+ * successiva ritenta il salvataggio in modo sincrono, fallendo con la stessa {@link DAOException} se non
+ * riesce. Prima di chiudere o abbandonare il DAO va chiamato {@link #flush()}, che segnala l'errore lasciando
+ * intatte le modifiche in cache; chi ha bisogno di durabilità immediata usa una finestra di 0 millisecondi.
  */
-public class CachedLibroDAO implements LibroDAO {
+public class CachedLibroDAO implements LibroDAO, VersionedStorage {
 
     private static final Logger logger = LoggerFactory.getLogger(CachedLibroDAO.class);
 
+    // Numeri liberati dalle rimozioni oltre i quali gli indici vengono ricostruiti invece che aggiornati
+    private static final int MIN_FREE_SEQS = 1024;
+
+    /**
+     * Stato della cache in un dato istante: la mappa non viene modificata dopo la pubblicazione. La lista
+     * ordinata dei libri, la loro numerazione e gli indici secondari vengono costruiti alla prima lettura che
+     * li richiede; più thread possono costruirli insieme, ottenendo oggetti equivalenti e immutabili.
+     */
+    private static final class Snapshot {
+
+        private final Map<String, Libro> index;
+        private final long version;
+        private List<Libro> libri;
+        private LibroSequence sequence;
+        private LibroFieldIndex fields;
+        private TrigramIndex text;
+
+        /**
+         * @param index mappa appena costruita, che nessun altro modificherà
+         */
+        Snapshot(Map<String, Libro> index) {
+            this(Collections.unmodifiableMap(index), 0, null, null, null, null);
+        }
+
+        private Snapshot(Map<String, Libro> index, long version, List<Libro> libri, LibroSequence sequence,
+                         LibroFieldIndex fields, TrigramIndex text) {
+            this.index = index;
+            this.version = version;
+            this.libri = libri;
+            this.sequence = sequence;
+            this.fields = fields;
+            this.text = text;
+        }
+
+        /**
+         * @return la stessa istantanea, associata alla versione della persistenza che la contiene
+         */
+        Snapshot withVersion(long version) {
+            return new Snapshot(index, version, libri, sequence, fields, text);
+        }
+
+        /**
+         * Crea l'istantanea successiva alla modifica di un libro. La numerazione e gli indici, se già
+         * costruiti, vengono aggiornati per il solo libro modificato; altrimenti verranno costruiti alla prima
+         * ricerca sulla nuova istantanea che li usa, come quando i numeri liberati superano i libri presenti.
+         *
+         * @param index  mappa appena costruita con la modifica applicata, che nessun altro modificherà
+         * @param before libro presente prima della modifica, null per un'aggiunta
+         * @param after  libro presente dopo la modifica, null per una rimozione
+         * @return istantanea successiva
+         */
+        Snapshot after(Map<String, Libro> index, Libro before, Libro after) {
+            LibroSequence current = sequence;
+            if (current == null) {
+                return new Snapshot(index);
+            }
+            LibroSequence updated = current.replace(before, after);
+            if (updated.free() > Math.max(MIN_FREE_SEQS, updated.size())) {
+                return new Snapshot(index);
+            }
+            LibroFieldIndex currentFields = fields;
+            TrigramIndex currentText = text;
+            return new Snapshot(Collections.unmodifiableMap(index), 0, null, updated,
+                    currentFields != null ? currentFields.replace(updated, before, after) : null,
+                    currentText != null ? currentText.replace(updated, before, after) : null);
+        }
+
+        Map<String, Libro> index() {
+            return index;
+        }
+
+        List<Libro> libri() {
+            List<Libro> result = libri;
+            if (result == null) {
+                result = List.copyOf(index.values());
+                libri = result;
+            }
+            return result;
+        }
+
+        LibroSequence sequence() {
+            LibroSequence result = sequence;
+            if (result == null) {
+                result = LibroSequence.build(libri());
+                sequence = result;
+            }
+            return result;
+        }
+
+        LibroFieldIndex fields() {
+            LibroFieldIndex result = fields;
+            if (result == null) {
+                result = LibroFieldIndex.build(sequence());
+                fields = result;
+            }
+            return result;
+        }
+
+        TrigramIndex text() {
+            TrigramIndex result = text;
+            if (result == null) {
+                result = TrigramIndex.build(sequence());
+                text = result;
+            }
+            return result;
+        }
+    }
+
     private final LibroDAO delegate;
-    private List<Libro> cache;
+    private final VersionedStorage versioned;
+    private volatile Snapshot snapshot;
+
+    private final long writeBehindMillis;
+    private final ScheduledExecutorService flusher;
+    private ScheduledFuture<?> pendingFlush;
+    // True se l'istantanea pubblicata contiene modifiche non ancora salvate dal delegate
+    private volatile boolean dirty;
+    private DAOException flushFailure;
+    private volatile Consumer<DAOException> flushFailureListener;
+    private long flushes;
+    private boolean closed;
 
     /**
-     * Costruisce un CachedLibroDAO che decora un altro LibroDAO.
+     * Costruisce un CachedLibroDAO che decora un altro LibroDAO, salvando ogni modifica prima di restituire.
      *
      * @param delegate DAO sottostante che effettua la persistenza.
      */
     public CachedLibroDAO(LibroDAO delegate) {
+        this(delegate, 0);
+    }
+
+    /**
+     * Costruisce un CachedLibroDAO che decora un altro LibroDAO, con scrittura differita se il delegate
+     * preferisce le operazioni batch.
+     *
+     * @param delegate          DAO sottostante che effettua la persistenza.
+     * @param writeBehindMillis attesa massima tra la prima modifica non salvata e il salvataggio; con 0 ogni
+     *                          modifica viene salvata prima di restituire
+     * @throws IllegalArgumentException se l'attesa è negativa
+     */
+    public CachedLibroDAO(LibroDAO delegate, long writeBehindMillis) {
+        if (writeBehindMillis < 0) {
+            throw new IllegalArgumentException("L'attesa della scrittura differita non può essere negativa");
+        }
         this.delegate = delegate;
-        logger.debug("Creato CachedLibroDAO con delegate: {}", delegate.getClass().getSimpleName());
+        this.versioned = delegate instanceof VersionedStorage storage ? storage : null;
+        this.writeBehindMillis = delegate.prefersBatchOperations() ? writeBehindMillis : 0;
+        this.flusher = this.writeBehindMillis > 0 ? Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "cached-dao-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        logger.debug("Creato CachedLibroDAO con delegate: {}, scrittura differita: {} ms",
+                delegate.getClass().getSimpleName(), this.writeBehindMillis);
     }
 
-    private List<Libro> getCache() throws DAOException {
-        if (cache == null) {
-            cache = delegate.getAll();
+    private Snapshot getCache() throws DAOException {
+        Snapshot current = snapshot;
+        if (current != null && (dirty || versioned == null || current.version == versioned.dataVersion())) {
+            return current;
         }
-        return cache;
+        return loadCache();
+    }
+
+    /**
+     * Carica la cache se assente o se la persistenza è stata modificata da altri. La versione è letta prima
+     * dei dati: una modifica concorrente al caricamento causerà un nuovo caricamento alla lettura successiva.
+     */
+    private synchronized Snapshot loadCache() throws DAOException {
+        Snapshot current = snapshot;
+        if (current != null && dirty) {
+            return current;
+        }
+        long version = storageVersion();
+        if (current == null || current.version != version) {
+            if (current != null) {
+                logger.info("Persistenza modificata esternamente, ricaricamento della cache");
+            }
+            current = new Snapshot(index(delegate.getAll())).withVersion(version);
+            snapshot = current;
+        }
+        return current;
+    }
+
+    private long storageVersion() throws DAOException {
+        return versioned != null ? versioned.dataVersion() : 0;
+    }
+
+    /**
+     * Pubblica l'istantanea di una modifica appena persistita, con la versione che la include.
+     */
+    private void publish(Snapshot updated) throws DAOException {
+        snapshot = updated.withVersion(storageVersion());
+    }
+
+    /**
+     * Indicizza i libri per ISBN; a parità di ISBN vale il primo, come nella ricerca sequenziale.
+     */
+    private static Map<String, Libro> index(List<Libro> libri) {
+        Map<String, Libro> index = new LinkedHashMap<>(Math.max(16, (int) (libri.size() / 0.75f) + 1));
+        for (Libro libro : libri) {
+            index.putIfAbsent(libro.getIsbn(), libro);
+        }
+        return index;
+    }
+
+    /**
+     * @return copia modificabile dell'indice corrente, da pubblicare con una nuova {@link Snapshot}
+     */
+    private Map<String, Libro> editableCopy() throws DAOException {
+        return new LinkedHashMap<>(getCache().index());
     }
 
     private void invalidateCache() {
-        cache = null;
+        if (dirty) {
+            // Le modifiche non salvate esistono solo in cache: verranno persistite dal prossimo salvataggio
+            logger.debug("Cache con modifiche non salvate, invalidazione ignorata");
+            return;
+        }
+        snapshot = null;
         logger.debug("Cache invalidata");
     }
 
+    /**
+     * Persiste con un'unica riscrittura l'istantanea di una modifica, subito o alla scadenza della finestra
+     * di scrittura differita.
+     */
+    private void persistBatch(Snapshot updated) throws DAOException {
+        if (flusher == null) {
+            delegate.saveAll(updated.libri());
+            return;
+        }
+        dirty = true;
+        if (pendingFlush == null) {
+            pendingFlush = flusher.schedule(this::flushInBackground, writeBehindMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Se l'ultimo salvataggio differito è fallito lo ritenta prima di accettare altre modifiche, così
+     * l'errore raggiunge il chiamante invece di restare solo nel log.
+     */
+    private void retryFailedFlush() throws DAOException {
+        if (flushFailure != null) {
+            logger.info("Nuovo tentativo della scrittura differita fallita in precedenza");
+            flush();
+        }
+    }
+
+    private void flushInBackground() {
+        try {
+            flush();
+        } catch (DAOException e) {
+            logger.error("Scrittura differita fallita, verrà ritentata alla prossima modifica", e);
+            Consumer<DAOException> listener = flushFailureListener;
+            if (listener != null) {
+                listener.accept(e);
+            }
+        }
+    }
+
+    /**
+     * Imposta chi avvisare quando un salvataggio differito in background fallisce. Il listener viene chiamato
+     * dal thread della scrittura differita; le modifiche restano in cache finché un salvataggio non riesce.
+     *
+     * @param listener listener da chiamare con l'errore del salvataggio, null per nessuno
+     */
+    public void setFlushFailureListener(Consumer<DAOException> listener) {
+        this.flushFailureListener = listener;
+    }
+
+    /**
+     * @return errore dell'ultimo salvataggio differito se è fallito e non è ancora riuscito un salvataggio
+     * successivo, altrimenti null
+     */
+    public synchronized DAOException getFlushFailure() {
+        return flushFailure;
+    }
+
+    /**
+     * Salva subito le modifiche in attesa della scrittura differita. Non fa nulla se non ce ne sono.
+     *
+     * @throws DAOException se il salvataggio fallisce; le modifiche restano in cache e vengono ritentate
+     */
+    public synchronized void flush() throws DAOException {
+        if (pendingFlush != null) {
+            pendingFlush.cancel(false);
+            pendingFlush = null;
+        }
+        if (!dirty || closed) {
+            return;
+        }
+        Snapshot current = snapshot;
+        try {
+            delegate.saveAll(current.libri());
+        } catch (DAOException e) {
+            flushFailure = e;
+            throw e;
+        }
+        dirty = false;
+        flushFailure = null;
+        flushes++;
+        snapshot = current.withVersion(storageVersion());
+        logger.debug("Scrittura differita di {} libri completata", current.index().size());
+    }
+
+    /**
+     * @return true se la cache contiene modifiche non ancora salvate dal DAO sottostante
+     */
+    public boolean hasPendingWrites() {
+        return dirty;
+    }
+
+    /**
+     * @return numero di salvataggi eseguiti dalla scrittura differita
+     */
+    public synchronized long getFlushCount() {
+        return flushes;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * La lista restituita è una copia di proprietà del chiamante; per leggere senza copiare si usa
+     * {@link #getSnapshot()}.
+     */
     @Override
     public List<Libro> getAll() throws DAOException {
-        List<Libro> result = new ArrayList<>(getCache());
+        List<Libro> result = new ArrayList<>(getCache().libri());
         logger.debug("Restituiti {} libri dalla cache", result.size());
         return result;
     }
 
+    /**
+     * Restituisce i libri in cache senza copiarli.
+     *
+     * @return lista immutabile dei libri, che non riflette le modifiche successive
+     * @throws DAOException se il caricamento iniziale della cache fallisce
+     */
+    public List<Libro> getSnapshot() throws DAOException {
+        return getCache().libri();
+    }
+
+    /**
+     * Restituisce i libri candidati a soddisfare un filtro, usando gli indici secondari su genere, stato di
+     * lettura e valutazione e l'indice dei trigrammi di titolo e autore invece di scorrere tutta la cache.
+     * <p>
+     * Gli indici risolvono i filtri su genere, stato di lettura e valutazione, le ricerche su titolo e
+     * autore di almeno tre caratteri (vedi {@link TrigramIndex}) e le loro combinazioni con AND e OR; se
+     * entrambi restringono la ricerca si usano i candidati meno numerosi. I candidati sono un sovrainsieme del
+     * risultato: vanno sempre verificati con {@link Filter#test}. Ogni indice viene costruito, con un solo
+     * passaggio sui libri, alla prima ricerca che filtra su uno dei suoi campi, e poi aggiornato da add,
+     * update e removeByIsbn per il solo libro modificato; saveAll e le scritture in blocco lo fanno
+     * ricostruire.
+     *
+     * @param filter filtro da risolvere
+     * @return candidati nell'ordine della cache, vuoto se gli indici non restringono la ricerca
+     * @throws DAOException se il caricamento iniziale della cache fallisce
+     */
+    public Optional<List<Libro>> findCandidates(Filter<Libro> filter) throws DAOException {
+        Snapshot current = getCache();
+        // Un indice viene costruito, o consultato, solo se il filtro contiene un campo che sa risolvere
+        List<Libro> candidates = LibroFieldIndex.resolves(filter) ? current.fields().candidates(filter) : null;
+        List<Libro> textCandidates = TrigramIndex.resolves(filter) ? current.text().candidates(filter) : null;
+        if (textCandidates != null && (candidates == null || textCandidates.size() < candidates.size())) {
+            candidates = textCandidates;
+        }
+        if (candidates != null) {
+            logger.debug("Ricerca risolta con gli indici della cache: {} candidati", candidates.size());
+        }
+        return Optional.ofNullable(candidates);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Lo stream scorre l'istantanea corrente della cache, senza copiarla.
+     */
+    @Override
+    public Stream<Libro> streamAll() throws DAOException {
+        return getCache().libri().stream();
+    }
+
     @Override
-    public void saveAll(List<Libro> libri) throws DAOException {
+    public synchronized void saveAll(List<Libro> libri) throws DAOException {
         try {
             delegate.saveAll(libri);
-            cache = new ArrayList<>(libri);
+            if (pendingFlush != null) {
+                pendingFlush.cancel(false);
+                pendingFlush = null;
+            }
+            dirty = false;
+            flushFailure = null;
+            publish(new Snapshot(index(libri)));
             logger.info("Cache aggiornata con {} libri dopo saveAll", libri.size());
         } catch (DAOException e) {
             logger.error("Errore durante saveAll, invalidazione cache", e);
@@ -68,29 +462,32 @@ public class CachedLibroDAO implements LibroDAO {
 
     @Override
     public Optional<Libro> getByIsbn(String isbn) throws DAOException {
-        Optional<Libro> result = getCache().stream().filter(l -> l.getIsbn().equals(isbn)).findFirst();
+        Optional<Libro> result = Optional.ofNullable(getCache().index().get(isbn));
 
         logger.debug("Ricerca in cache per ISBN {}: {}", isbn, result.isPresent() ? "trovato" : "non trovato");
         return result;
     }
 
     @Override
-    public void add(Libro libro) throws LibroAlreadyExistsException, DAOException {
+    public synchronized void add(Libro libro) throws LibroAlreadyExistsException, DAOException {
+        retryFailedFlush();
         try {
-            if (getCache().contains(libro)) {
+            Snapshot current = getCache();
+            Map<String, Libro> index = new LinkedHashMap<>(current.index());
+            if (index.putIfAbsent(libro.getIsbn(), libro) != null) {
                 logger.warn("Tentativo di aggiunta libro già presente in cache con ISBN {}", libro.getIsbn());
                 throw new LibroAlreadyExistsException(libro.getIsbn());
             }
 
-            cache.add(libro);
-
+            Snapshot updated = current.after(index, null, libro);
             if (delegate.prefersBatchOperations()) {
-                delegate.saveAll(cache);
+                persistBatch(updated);
                 logger.debug("Usata strategia batch per delegate {}", delegate.getClass().getSimpleName());
             } else {
                 delegate.add(libro);
                 logger.debug("Usata strategia singola per delegate {}", delegate.getClass().getSimpleName());
             }
+            publish(updated);
 
             logger.info("Libro aggiunto a cache e persistenze: {} (ISBN: {})", libro.getTitolo(), libro.getIsbn());
 
@@ -102,17 +499,20 @@ public class CachedLibroDAO implements LibroDAO {
     }
 
     @Override
-    public void removeByIsbn(String isbn) throws LibroNotFoundException, DAOException {
+    public synchronized void removeByIsbn(String isbn) throws LibroNotFoundException, DAOException {
+        retryFailedFlush();
         try {
-            if (getCache().stream().noneMatch(l -> l.getIsbn().equals(isbn))) {
+            Snapshot current = getCache();
+            Map<String, Libro> index = new LinkedHashMap<>(current.index());
+            Libro removed = index.remove(isbn);
+            if (removed == null) {
                 logger.warn("Tentativo di rimozione libro non presente con ISBN {}", isbn);
                 throw new LibroNotFoundException(isbn);
             }
 
-            cache.removeIf(l -> l.getIsbn().equals(isbn));
-
+            Snapshot updated = current.after(index, removed, null);
             if (delegate.prefersBatchOperations()) {
-                delegate.saveAll(cache);
+                persistBatch(updated);
                 logger.debug("Usata strategia batch per rimozione con delegate {}",
                         delegate.getClass().getSimpleName());
             } else {
@@ -120,6 +520,7 @@ public class CachedLibroDAO implements LibroDAO {
                 logger.debug("Usata strategia singola per rimozione con delegate {}",
                         delegate.getClass().getSimpleName());
             }
+            publish(updated);
 
             logger.info("Libro rimosso dalla cache e persistenza: ISBN {}", isbn);
 
@@ -131,25 +532,21 @@ public class CachedLibroDAO implements LibroDAO {
     }
 
     @Override
-    public void update(Libro libro) throws LibroNotFoundException, DAOException {
+    public synchronized void update(Libro libro) throws LibroNotFoundException, DAOException {
+        retryFailedFlush();
         try {
-            List<Libro> cache = getCache();
-            boolean found = false;
-            for (int i = 0; i < cache.size(); i++) {
-                if (cache.get(i).getIsbn().equals(libro.getIsbn())) {
-                    cache.set(i, libro);
-                    found = true;
-                    break;
-                }
-            }
-
-            if (!found) {
+            Snapshot current = getCache();
+            Map<String, Libro> index = new LinkedHashMap<>(current.index());
+            // replace conserva la posizione del libro nell'ordine di inserimento
+            Libro previous = index.replace(libro.getIsbn(), libro);
+            if (previous == null) {
                 logger.warn("Tentativo di aggiornamento libro non presente con ISBN {}", libro.getIsbn());
                 throw new LibroNotFoundException(libro.getIsbn());
             }
 
+            Snapshot updated = current.after(index, previous, libro);
             if (delegate.prefersBatchOperations()) {
-                delegate.saveAll(cache);
+                persistBatch(updated);
                 logger.debug("Usata strategia batch per aggiornamento con delegate {}",
                         delegate.getClass().getSimpleName());
             } else {
@@ -157,6 +554,7 @@ public class CachedLibroDAO implements LibroDAO {
                 logger.debug("Usata strategia singola per aggiornamento con delegate {}",
                         delegate.getClass().getSimpleName());
             }
+            publish(updated);
 
             logger.info("Libro aggiornato in cache e persistenza: {} (ISBN: {})", libro.getTitolo(), libro.getIsbn());
 
@@ -167,23 +565,77 @@ public class CachedLibroDAO implements LibroDAO {
         }
     }
 
+    @Override
+    public BulkResult addAll(Collection<Libro> libri) throws DAOException {
+        return merge(libri, false);
+    }
+
+    @Override
+    public BulkResult upsertAll(Collection<Libro> libri) throws DAOException {
+        return merge(libri, true);
+    }
+
+    private synchronized BulkResult merge(Collection<Libro> libri, boolean upsert) throws DAOException {
+        retryFailedFlush();
+        try {
+            Map<String, Libro> index = editableCopy();
+            BulkResult result = BulkMerge.apply(index, libri, upsert);
+            Snapshot updated = new Snapshot(index);
+
+            if (delegate.prefersBatchOperations()) {
+                if (result.count(BulkResult.Outcome.ADDED) + result.count(BulkResult.Outcome.UPDATED) > 0) {
+                    persistBatch(updated);
+                }
+                publish(updated);
+            } else {
+                BulkResult persisted = upsert ? delegate.upsertAll(libri) : delegate.addAll(libri);
+                publish(updated);
+                if (!persisted.equals(result)) {
+                    // La persistenza è stata modificata da altri: il suo esito prevale sulla cache
+                    logger.warn("Esito della scrittura in blocco diverso dalla cache, invalidazione");
+                    invalidateCache();
+                    result = persisted;
+                }
+            }
+
+            logger.info("Scrittura in blocco in cache e persistenza: {} aggiunti, {} aggiornati",
+                    result.count(BulkResult.Outcome.ADDED), result.count(BulkResult.Outcome.UPDATED));
+            return result;
+
+        } catch (DAOException e) {
+            logger.error("Errore durante la scrittura in blocco, invalidazione cache", e);
+            invalidateCache();
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * È la versione del DAO sottostante, 0 se questo non la fornisce.
+     */
+    @Override
+    public long dataVersion() throws DAOException {
+        return storageVersion();
+    }
+
     /**
-     * Invalida e ricarica la cache dal delegate.
+     * Salva le eventuali modifiche in attesa, poi invalida e ricarica la cache dal delegate.
      *
-     * @throws DAOException se si verifica un errore durante il ricaricamento
+     * @throws DAOException se si verifica un errore durante il salvataggio o il ricaricamento
      */
-    public void refreshCache() throws DAOException {
+    public synchronized void refreshCache() throws DAOException {
         logger.debug("Refresh manuale della cache richiesto");
+        flush();
         invalidateCache();
-        getCache();
-        logger.info("Cache ricaricata manualmente con {} libri", cache.size());
+        logger.info("Cache ricaricata manualmente con {} libri", loadCache().index().size());
     }
 
     /**
      * @return true se la cache è inizializzata, false altrimenti
      */
     public boolean isCacheInitialized() {
-        return cache != null;
+        return snapshot != null;
     }
 
     /**
@@ -192,6 +644,28 @@ public class CachedLibroDAO implements LibroDAO {
      * @return numero di libri in cache, -1 se la cache non è inizializzata
      */
     public int getCacheSize() {
-        return cache != null ? cache.size() : -1;
+        Snapshot current = snapshot;
+        return current != null ? current.index().size() : -1;
+    }
+
+    /**
+     * Salva le modifiche in attesa della scrittura differita, svuota la cache e chiude il DAO sottostante.
+     * Il DAO sottostante viene chiuso anche se il salvataggio fallisce.
+     *
+     * @throws DAOException se il salvataggio delle modifiche in attesa o la chiusura del delegate falliscono
+     */
+    @Override
+    public synchronized void close() throws DAOException {
+        try {
+            flush();
+        } finally {
+            closed = true;
+            if (flusher != null) {
+                flusher.shutdown();
+            }
+            dirty = false;
+            invalidateCache();
+            delegate.close();
+        }
     }
 }
@@ -11,6 +11,13 @@ import org.slf4j.LoggerFactory;
 public class DAOFactory {
     private static final Logger logger = LoggerFactory.getLogger(DAOFactory.class);
 
+    /**
+     * Finestra di scrittura differita delle cache sopra DAO basati su file: le modifiche ravvicinate
+     * vengono salvate con un'unica riscrittura. I salvataggi falliti in background sono segnalati tramite
+     * {@link CachedLibroDAO#setFlushFailureListener}.
+     */
+    static final long FILE_WRITE_BEHIND_MILLIS = 500;
+
     /**
      * Crea un'istanza di LibroDAO del tipo specificato.
      *
@@ -21,14 +28,32 @@ public class DAOFactory {
      * @throws IllegalArgumentException se il tipo non è supportato
      */
     public static LibroDAO createDAO(DAOType type, String path) {
+        return createDAO(type, path, SqliteProfile.DEFAULT);
+    }
+
+    /**
+     * Crea un'istanza di LibroDAO del tipo specificato.
+     *
+     * @param type          tipo di DAO da creare
+     * @param path          percorso del file o database
+     * @param sqliteProfile profilo di configurazione delle connessioni, usato solo dai DAO SQLite
+     * @return istanza del DAO richiesto
+     * @throws IllegalArgumentException se il tipo non è supportato
+     */
+    public static LibroDAO createDAO(DAOType type, String path, SqliteProfile sqliteProfile) {
 
         if (path == null || path.trim().isEmpty()) {
             throw new IllegalArgumentException("Il percorso non può essere null o vuoto");
         }
         LibroDAO dao = switch (type) {
-            case SQLITE -> new SqliteLibroDAO("jdbc:sqlite:" + path);
+            case SQLITE -> new SqliteLibroDAO("jdbc:sqlite:" + path, SqliteConnectionPool.DEFAULT_POOL_SIZE,
+                    sqliteProfile);
             case JSON -> new JsonLibroDAO(path);
-            case CACHED_JSON -> new CachedLibroDAO(new JsonLibroDAO(path));
+            case CACHED_JSON -> new CachedLibroDAO(new JsonLibroDAO(path), FILE_WRITE_BEHIND_MILLIS);
+            case CACHED_SQLITE -> new CachedLibroDAO(new SqliteLibroDAO("jdbc:sqlite:" + path,
+                    SqliteConnectionPool.DEFAULT_POOL_SIZE, sqliteProfile));
+            case JOURNALED_JSON -> new JournaledJsonLibroDAO(path);
+            case BINARY -> new CachedLibroDAO(new BinaryLibroDAO(path), FILE_WRITE_BEHIND_MILLIS);
         };
         logger.debug("Creato DAO di tipo {} con successo", type);
         return dao;
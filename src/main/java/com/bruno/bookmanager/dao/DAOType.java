@@ -15,7 +15,24 @@ public enum DAOType {
     SQLITE,
 
     /**
-     * DAO con cache in memoria sopra un DAO JSON.
+     * DAO con cache in memoria sopra un DAO JSON, con scrittura differita delle modifiche ravvicinate.
      */
-    CACHED_JSON
+    CACHED_JSON,
+
+    /**
+     * DAO con cache in memoria sopra un DAO SQLite: le letture sono servite dalla cache, le scritture
+     * proseguono riga per riga sul database e le modifiche esterne sono rilevate con {@code PRAGMA data_version}.
+     */
+    CACHED_SQLITE,
+
+    /**
+     * DAO basato su file JSON con journal delle modifiche, compattato periodicamente.
+     */
+    JOURNALED_JSON,
+
+    /**
+     * DAO basato su file binario compatto, con cache in memoria e scrittura differita delle modifiche
+     * ravvicinate.
+     */
+    BINARY
 }
\ No newline at end of file
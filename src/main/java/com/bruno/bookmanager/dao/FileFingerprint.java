@@ -0,0 +1,102 @@
+package com.bruno.bookmanager.dao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Impronta di un file usata per capire se è cambiato senza rileggerlo: dimensione, data di modifica e
+ * identificativo del file nel file system (che cambia se il file viene sostituito con uno spostamento).
+ * <p>
+ * La data di modifica ha una risoluzione limitata: una scrittura avvenuta nello stesso istante della
+ * lettura dell'impronta, e che non cambia la dimensione, non sarebbe visibile. Per i file modificati da
+ * meno di {@link #RACY_WINDOW_MILLIS} l'impronta include quindi anche il CRC32 del contenuto, che viene
+ * ricalcolato a ogni confronto finché la modifica non diventa abbastanza vecchia.
+ *
+ * @param size         dimensione in byte
+ * @param lastModified data dell'ultima modifica
+ * @param fileKey      identificativo del file, null se il file system non lo fornisce
+ * @param checksum     CRC32 del contenuto, null se la data di modifica è sufficiente
+ */
+record FileFingerprint(long size, FileTime lastModified, Object fileKey, Long checksum) {
+
+    /**
+     * Intervallo, dopo una modifica, in cui data e dimensione non bastano a escludere altre modifiche.
+     */
+    static final long RACY_WINDOW_MILLIS = 2000;
+
+    /**
+     * Legge l'impronta dagli attributi del file, senza leggerne il contenuto.
+     *
+     * @param path file da esaminare
+     * @return impronta senza checksum
+     * @throws IOException se gli attributi non sono leggibili, anche perché il file non esiste
+     */
+    static FileFingerprint of(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return new FileFingerprint(attributes.size(), attributes.lastModifiedTime(), attributes.fileKey(), null);
+    }
+
+    /**
+     * @return CRC32 del contenuto del file
+     * @throws IOException se il file non è leggibile
+     */
+    static long checksum(Path path) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = new CheckedInputStream(Files.newInputStream(path), crc)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * @return true se il file è stato modificato troppo di recente perché data e dimensione siano affidabili
+     */
+    boolean isRacy() {
+        return System.currentTimeMillis() - lastModified.toMillis() < RACY_WINDOW_MILLIS;
+    }
+
+    /**
+     * Completa l'impronta con il checksum indicato se la modifica è recente.
+     *
+     * @param contentChecksum CRC32 del contenuto a cui si riferisce l'impronta
+     * @return impronta da conservare per i confronti successivi
+     */
+    FileFingerprint withChecksumIfRacy(long contentChecksum) {
+        return isRacy() ? new FileFingerprint(size, lastModified, fileKey, contentChecksum) : this;
+    }
+
+    /**
+     * Completa l'impronta con il checksum calcolato dal file se la modifica è recente.
+     *
+     * @param path file a cui si riferisce l'impronta
+     * @return impronta da conservare per i confronti successivi
+     * @throws IOException se il file non è leggibile
+     */
+    FileFingerprint withChecksumIfRacy(Path path) throws IOException {
+        return isRacy() ? new FileFingerprint(size, lastModified, fileKey, checksum(path)) : this;
+    }
+
+    /**
+     * Confronta questa impronta, conservata, con quella letta ora dal file.
+     *
+     * @param current impronta appena letta con {@link #of(Path)}
+     * @param path    file a cui si riferiscono le impronte, letto solo se serve verificare il checksum
+     * @return true se il file non è cambiato
+     * @throws IOException se il file non è leggibile
+     */
+    boolean matches(FileFingerprint current, Path path) throws IOException {
+        if (size != current.size || !lastModified.equals(current.lastModified)
+                || !Objects.equals(fileKey, current.fileKey)) {
+            return false;
+        }
+        return checksum == null || checksum == checksum(path);
+    }
+}
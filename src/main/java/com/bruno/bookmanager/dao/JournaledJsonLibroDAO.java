@@ -0,0 +1,543 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.exception.DAOException;
+import com.bruno.bookmanager.exception.LibroAlreadyExistsException;
+import com.bruno.bookmanager.exception.LibroNotFoundException;
+import com.bruno.bookmanager.model.Libro;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Implementazione di {@link LibroDAO} su file JSON con journal delle modifiche.
+ * <p>
+ * Il file indicato contiene un'istantanea della collezione, nello stesso formato di {@link JsonLibroDAO}.
+ * Le modifiche successive non la riscrivono: vengono accodate, una per riga, al file {@code <file>.journal}
+ * (JSON Lines), così che ogni scrittura costi quanto il singolo libro e non quanto l'intera collezione.
+ * All'apertura il journal viene riapplicato all'istantanea; la collezione resta poi in memoria.
+ * <p>
+ * Quando il journal supera una dimensione massima, o una frazione dell'istantanea, viene compattato in
+ * background in una nuova istantanea. Durante la compattazione il journal corrente viene rinominato in
+ * {@code <file>.journal.compacting} e le nuove modifiche proseguono su un journal vuoto; l'istantanea viene
+ * scritta su un file temporaneo e sostituita con uno spostamento atomico. Le righe del journal sono
+ * idempotenti, per cui un'interruzione in qualsiasi punto lascia i file in uno stato riapplicabile.
+ */
+public class JournaledJsonLibroDAO implements LibroDAO {
+
+    private static final Logger logger = LoggerFactory.getLogger(JournaledJsonLibroDAO.class);
+
+    /**
+     * Dimensione del journal oltre la quale viene sempre compattato.
+     */
+    public static final long DEFAULT_MAX_JOURNAL_BYTES = 4L * 1024 * 1024;
+
+    /**
+     * Rapporto tra journal e istantanea oltre il quale il journal viene compattato.
+     */
+    public static final double DEFAULT_MAX_JOURNAL_RATIO = 0.5;
+
+    /**
+     * Sotto questa dimensione il rapporto con l'istantanea non viene considerato: evita di compattare
+     * a ogni modifica una collezione quasi vuota.
+     */
+    private static final long MIN_RATIO_COMPACTION_BYTES = 64 * 1024;
+
+    /**
+     * Tipo di modifica registrata nel journal.
+     */
+    enum Operation {
+        ADD, UPDATE, REMOVE
+    }
+
+    /**
+     * Riga del journal: il libro per inserimenti e aggiornamenti, il solo ISBN per le rimozioni.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record JournalRecord(Operation op, Libro libro, String isbn) {
+
+        static JournalRecord add(Libro libro) {
+            return new JournalRecord(Operation.ADD, libro, null);
+        }
+
+        static JournalRecord update(Libro libro) {
+            return new JournalRecord(Operation.UPDATE, libro, null);
+        }
+
+        static JournalRecord remove(String isbn) {
+            return new JournalRecord(Operation.REMOVE, null, isbn);
+        }
+
+        /**
+         * Applica la modifica: inserimenti e aggiornamenti sostituiscono, le rimozioni di libri assenti non
+         * hanno effetto, così che riapplicare una riga già compresa nell'istantanea non cambi il risultato.
+         */
+        void applyTo(Map<String, Libro> libri) {
+            if (op == Operation.REMOVE) {
+                libri.remove(isbn);
+            } else {
+                libri.put(libro.getIsbn(), libro);
+            }
+        }
+    }
+
+    private final Path snapshotPath;
+    private final Path journalPath;
+    private final Path compactingPath;
+    private final JsonLibroDAO snapshot;
+    private final long maxJournalBytes;
+    private final double maxJournalRatio;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ObjectWriter recordWriter = mapper.writerFor(JournalRecord.class);
+    private final ObjectReader recordReader = mapper.readerFor(JournalRecord.class)
+            .with(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+
+    // Stato protetto dal monitor dell'istanza
+    private LinkedHashMap<String, Libro> libri;
+    private FileChannel journal;
+    private long journalBytes;
+    private long snapshotBytes;
+    private long generation;
+    private ExecutorService compactor;
+    private Future<?> pendingCompaction;
+
+    /**
+     * Crea un JournaledJsonLibroDAO con le soglie di compattazione predefinite.
+     *
+     * @param filePath percorso del file JSON con l'istantanea; il journal viene creato accanto
+     */
+    public JournaledJsonLibroDAO(String filePath) {
+        this(filePath, DEFAULT_MAX_JOURNAL_BYTES, DEFAULT_MAX_JOURNAL_RATIO);
+    }
+
+    /**
+     * Crea un JournaledJsonLibroDAO.
+     *
+     * @param filePath        percorso del file JSON con l'istantanea; il journal viene creato accanto
+     * @param maxJournalBytes dimensione del journal, in byte, oltre la quale viene compattato
+     * @param maxJournalRatio rapporto tra journal e istantanea oltre il quale viene compattato
+     * @throws IllegalArgumentException se una soglia non è positiva
+     */
+    public JournaledJsonLibroDAO(String filePath, long maxJournalBytes, double maxJournalRatio) {
+        if (maxJournalBytes <= 0 || maxJournalRatio <= 0) {
+            throw new IllegalArgumentException("Le soglie di compattazione devono essere positive");
+        }
+        this.snapshotPath = Path.of(filePath);
+        this.journalPath = Path.of(filePath + ".journal");
+        this.compactingPath = Path.of(filePath + ".journal.compacting");
+        this.snapshot = new JsonLibroDAO(filePath);
+        this.maxJournalBytes = maxJournalBytes;
+        this.maxJournalRatio = maxJournalRatio;
+    }
+
+    private Map<String, Libro> state() throws DAOException {
+        if (libri == null) {
+            load();
+        }
+        return libri;
+    }
+
+    private void load() throws DAOException {
+        LinkedHashMap<String, Libro> loaded = new LinkedHashMap<>();
+        for (Libro libro : snapshot.getAll()) {
+            loaded.put(libro.getIsbn(), libro);
+        }
+        int replayed = replay(compactingPath, loaded) + replay(journalPath, loaded);
+        libri = loaded;
+
+        try {
+            snapshotBytes = Files.exists(snapshotPath) ? Files.size(snapshotPath) : 0;
+            journalBytes = Files.exists(journalPath) ? Files.size(journalPath) : 0;
+        } catch (IOException e) {
+            libri = null;
+            throw new DAOException("Impossibile leggere il journal " + journalPath, e);
+        }
+        logger.debug("Caricati {} libri da {} riapplicando {} modifiche dal journal", loaded.size(), snapshotPath,
+                replayed);
+
+        if (Files.exists(compactingPath)) {
+            // Compattazione interrotta: il contenuto è già in memoria, si completa subito
+            logger.info("Completamento della compattazione interrotta di {}", journalPath);
+            compactNow();
+        }
+    }
+
+    /**
+     * Riapplica le righe di un journal. Una riga finale incompleta, lasciata da una scrittura interrotta,
+     * viene scartata e rimossa dal file; una riga illeggibile in mezzo al file è invece un errore. Se la
+     * scrittura si è interrotta subito prima del ritorno a capo la riga finale è completa: viene applicata e
+     * il ritorno a capo mancante aggiunto, così che la prossima modifica accodata non finisca sulla stessa riga.
+     *
+     * @return numero di righe applicate
+     */
+    private int replay(Path path, Map<String, Libro> target) throws DAOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try {
+            byte[] content = Files.readAllBytes(path);
+            int applied = 0;
+            int start = 0;
+            while (start < content.length) {
+                int end = start;
+                while (end < content.length && content[end] != '\n') {
+                    end++;
+                }
+                try {
+                    JournalRecord record = recordReader.readValue(content, start, end - start);
+                    record.applyTo(target);
+                    applied++;
+                    if (end == content.length) {
+                        logger.warn("Aggiunto il ritorno a capo mancante in coda al journal {}", path);
+                        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                                StandardOpenOption.APPEND)) {
+                            channel.write(ByteBuffer.wrap(new byte[]{'\n'}));
+                        }
+                    }
+                } catch (IOException e) {
+                    if (end < content.length) {
+                        throw e;
+                    }
+                    logger.warn("Scartata la riga incompleta in coda al journal {}", path);
+                    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                        channel.truncate(start);
+                    }
+                }
+                start = end + 1;
+            }
+            return applied;
+        } catch (IOException e) {
+            logger.error("Errore durante la lettura del journal {}", path, e);
+            throw new DAOException("Impossibile leggere il journal " + path, e);
+        }
+    }
+
+    /**
+     * Accoda le modifiche al journal con una sola scrittura e le applica allo stato in memoria prima di
+     * valutare la compattazione, che ne fotografa il contenuto. In caso di errore lo stato in memoria viene
+     * scartato e ricaricato dai file al prossimo accesso.
+     */
+    private void append(List<JournalRecord> records) throws DAOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256 * records.size());
+        try {
+            for (JournalRecord record : records) {
+                recordWriter.writeValue(buffer, record);
+                buffer.write('\n');
+            }
+            if (journal == null) {
+                journal = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+            while (bytes.hasRemaining()) {
+                journal.write(bytes);
+            }
+        } catch (IOException e) {
+            logger.error("Errore durante la scrittura del journal {}", journalPath, e);
+            closeJournal();
+            libri = null;
+            throw new DAOException("Impossibile salvare i dati nel journal " + journalPath, e);
+        }
+        journalBytes += buffer.size();
+        for (JournalRecord record : records) {
+            record.applyTo(libri);
+        }
+        scheduleCompactionIfNeeded();
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.warn("Errore durante la chiusura del journal {}", journalPath, e);
+            }
+            journal = null;
+        }
+    }
+
+    private boolean compactionRunning() {
+        return pendingCompaction != null && !pendingCompaction.isDone();
+    }
+
+    private void scheduleCompactionIfNeeded() {
+        boolean overThreshold = journalBytes >= maxJournalBytes
+                || (journalBytes >= MIN_RATIO_COMPACTION_BYTES && journalBytes >= snapshotBytes * maxJournalRatio);
+        if (!overThreshold || compactionRunning()) {
+            return;
+        }
+
+        try {
+            rotateJournal();
+        } catch (IOException e) {
+            logger.warn("Impossibile avviare la compattazione di {}, il journal viene mantenuto", journalPath, e);
+            return;
+        }
+        List<Libro> content = new ArrayList<>(libri.values());
+        long expectedGeneration = generation;
+        if (compactor == null) {
+            compactor = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "json-journal-compaction");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        pendingCompaction = compactor.submit(() -> compactInBackground(content, expectedGeneration));
+        logger.debug("Avviata la compattazione di {} ({} libri)", journalPath, content.size());
+    }
+
+    /**
+     * Sposta il journal corrente nel file in compattazione; se ne esiste già uno, lasciato da una
+     * compattazione fallita, il journal gli viene accodato per preservare l'ordine delle modifiche.
+     */
+    private void rotateJournal() throws IOException {
+        closeJournal();
+        if (Files.exists(compactingPath)) {
+            Files.write(compactingPath, Files.readAllBytes(journalPath), StandardOpenOption.APPEND);
+            Files.delete(journalPath);
+        } else {
+            Files.move(journalPath, compactingPath, StandardCopyOption.ATOMIC_MOVE);
+        }
+        journalBytes = 0;
+    }
+
+    private void compactInBackground(List<Libro> content, long expectedGeneration) {
+        Path temp = Path.of(snapshotPath + ".compact.tmp");
+        try {
+            new JsonLibroDAO(temp.toString()).saveAll(content);
+            synchronized (this) {
+                if (expectedGeneration != generation) {
+                    // Nel frattempo saveAll o compact hanno già scritto un'istantanea più recente
+                    Files.deleteIfExists(temp);
+                    return;
+                }
+                Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Files.deleteIfExists(compactingPath);
+                snapshotBytes = Files.size(snapshotPath);
+            }
+            logger.info("Journal di {} compattato in una nuova istantanea di {} libri", snapshotPath,
+                    content.size());
+        } catch (DAOException | IOException e) {
+            logger.warn("Compattazione di {} fallita, il journal viene mantenuto", journalPath, e);
+        }
+    }
+
+    /**
+     * Scrive l'istantanea su un file temporaneo e la sostituisce atomicamente a quella corrente.
+     */
+    private void writeSnapshot(List<Libro> content) throws DAOException {
+        Path temp = Path.of(snapshotPath + ".tmp");
+        new JsonLibroDAO(temp.toString()).saveAll(content);
+        try {
+            Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            snapshotBytes = Files.size(snapshotPath);
+        } catch (IOException e) {
+            logger.error("Errore durante la sostituzione dell'istantanea {}", snapshotPath, e);
+            throw new DAOException("Impossibile salvare i dati nel file " + snapshotPath, e);
+        }
+    }
+
+    /**
+     * Sostituisce istantanea e journal con il contenuto indicato. Una compattazione in background ancora
+     * in corso verrà scartata.
+     */
+    private void replaceAll(List<Libro> content) throws DAOException {
+        writeSnapshot(content);
+        generation++;
+        closeJournal();
+        try {
+            Files.deleteIfExists(journalPath);
+            Files.deleteIfExists(compactingPath);
+        } catch (IOException e) {
+            // Il journal rimasto verrebbe riapplicato alla nuova istantanea
+            libri = null;
+            logger.error("Errore durante l'eliminazione del journal {}", journalPath, e);
+            throw new DAOException("Impossibile eliminare il journal " + journalPath, e);
+        }
+        journalBytes = 0;
+    }
+
+    private void compactNow() throws DAOException {
+        replaceAll(new ArrayList<>(libri.values()));
+    }
+
+    /**
+     * Compatta subito il journal nell'istantanea, attendendo prima l'eventuale compattazione in background.
+     *
+     * @throws DAOException se la scrittura dell'istantanea fallisce
+     */
+    public void compact() throws DAOException {
+        awaitCompaction();
+        synchronized (this) {
+            state();
+            compactNow();
+            logger.info("Journal di {} compattato su richiesta", snapshotPath);
+        }
+    }
+
+    /**
+     * Attende la fine della compattazione in background, se ce n'è una. Va chiamato senza possedere il
+     * monitor dell'istanza, che la compattazione acquisisce per sostituire l'istantanea.
+     */
+    private void awaitCompaction() {
+        Future<?> pending;
+        synchronized (this) {
+            pending = pendingCompaction;
+        }
+        if (pending == null) {
+            return;
+        }
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.warn("Compattazione di {} terminata con errore", journalPath, e.getCause());
+        }
+    }
+
+    @Override
+    public synchronized List<Libro> getAll() throws DAOException {
+        return new ArrayList<>(state().values());
+    }
+
+    @Override
+    public synchronized void saveAll(List<Libro> libri) throws DAOException {
+        LinkedHashMap<String, Libro> content = new LinkedHashMap<>();
+        for (Libro libro : libri) {
+            content.put(libro.getIsbn(), libro);
+        }
+        replaceAll(new ArrayList<>(content.values()));
+        this.libri = content;
+        logger.debug("Salvati {} libri in {}", content.size(), snapshotPath);
+    }
+
+    @Override
+    public synchronized Optional<Libro> getByIsbn(String isbn) throws DAOException {
+        Optional<Libro> result = Optional.ofNullable(state().get(isbn));
+        logger.debug("Ricerca libro con ISBN {}: {}", isbn, result.isPresent() ? "trovato" : "non trovato");
+        return result;
+    }
+
+    @Override
+    public synchronized void add(Libro libro) throws LibroAlreadyExistsException, DAOException {
+        if (state().containsKey(libro.getIsbn())) {
+            logger.warn("Tentativo di aggiunta libro già esistente con ISBN {}", libro.getIsbn());
+            throw new LibroAlreadyExistsException(libro.getIsbn());
+        }
+        append(List.of(JournalRecord.add(libro)));
+        logger.info("Aggiunto libro: {} (ISBN: {})", libro.getTitolo(), libro.getIsbn());
+    }
+
+    @Override
+    public synchronized void removeByIsbn(String isbn) throws LibroNotFoundException, DAOException {
+        if (!state().containsKey(isbn)) {
+            logger.warn("Tentativo di rimozione libro non esistente con ISBN {}", isbn);
+            throw new LibroNotFoundException(isbn);
+        }
+        append(List.of(JournalRecord.remove(isbn)));
+        logger.info("Rimosso libro con ISBN {}", isbn);
+    }
+
+    @Override
+    public synchronized void update(Libro libro) throws LibroNotFoundException, DAOException {
+        if (!state().containsKey(libro.getIsbn())) {
+            logger.warn("Tentativo di aggiornamento libro non esistente con ISBN {}", libro.getIsbn());
+            throw new LibroNotFoundException(libro.getIsbn());
+        }
+        append(List.of(JournalRecord.update(libro)));
+        logger.info("Aggiornato libro: {} (ISBN: {})", libro.getTitolo(), libro.getIsbn());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * I libri inseriti vengono accodati al journal con una sola scrittura.
+     */
+    @Override
+    public synchronized BulkResult addAll(Collection<Libro> libri) throws DAOException {
+        return journalBulk(libri, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * I libri inseriti e aggiornati vengono accodati al journal con una sola scrittura.
+     */
+    @Override
+    public synchronized BulkResult upsertAll(Collection<Libro> libri) throws DAOException {
+        return journalBulk(libri, true);
+    }
+
+    private BulkResult journalBulk(Collection<Libro> incoming, boolean upsert) throws DAOException {
+        Map<String, Libro> current = state();
+        Set<String> written = new HashSet<>();
+        List<JournalRecord> records = new ArrayList<>(incoming.size());
+        List<BulkResult.Entry> entries = new ArrayList<>(incoming.size());
+
+        for (Libro libro : incoming) {
+            String isbn = libro.getIsbn();
+            if (!current.containsKey(isbn) && written.add(isbn)) {
+                records.add(JournalRecord.add(libro));
+                entries.add(BulkResult.Entry.of(isbn, BulkResult.Outcome.ADDED));
+            } else if (upsert) {
+                records.add(JournalRecord.update(libro));
+                entries.add(BulkResult.Entry.of(isbn, BulkResult.Outcome.UPDATED));
+            } else {
+                entries.add(BulkResult.Entry.of(isbn, BulkResult.Outcome.ALREADY_EXISTS));
+            }
+        }
+
+        if (!records.isEmpty()) {
+            append(records);
+        }
+        BulkResult result = new BulkResult(entries);
+        logger.info("Scrittura in blocco su {}: {} aggiunti, {} aggiornati, {} già presenti", journalPath,
+                result.count(BulkResult.Outcome.ADDED), result.count(BulkResult.Outcome.UPDATED),
+                result.count(BulkResult.Outcome.ALREADY_EXISTS));
+        return result;
+    }
+
+    /**
+     * Attende l'eventuale compattazione in corso e chiude il journal. Le modifiche sono già su disco:
+     * la chiusura non compatta il journal rimasto, che verrà riapplicato alla prossima apertura.
+     */
+    @Override
+    public void close() throws DAOException {
+        awaitCompaction();
+        synchronized (this) {
+            closeJournal();
+            if (compactor != null) {
+                compactor.shutdown();
+                compactor = null;
+            }
+            pendingCompaction = null;
+        }
+        logger.debug("JournaledJsonLibroDAO chiuso per {}", snapshotPath);
+    }
+}
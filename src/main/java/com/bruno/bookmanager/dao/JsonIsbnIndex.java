@@ -0,0 +1,218 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.model.Libro;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Indice ISBN → posizione del record in un file JSON di {@link JsonLibroDAO}.
+ * <p>
+ * Per ogni libro l'indice conserva offset e lunghezza in byte del suo oggetto JSON, così che una ricerca
+ * per ISBN legga e interpreti solo quel record con una lettura posizionale. L'indice viene salvato accanto
+ * al file JSON ({@code <file>.idx}) insieme a dimensione, data di modifica e CRC32 del file a cui si
+ * riferisce: se il file JSON non corrisponde più, l'indice è obsoleto e va ricostruito.
+ */
+final class JsonIsbnIndex {
+
+    private static final int MAGIC = 0x424D4958; // "BMIX"
+    private static final int VERSION = 1;
+
+    /**
+     * Posizione di un record nel file JSON. L'intervallo può iniziare con separatori e spazi che
+     * precedono l'oggetto.
+     */
+    record Position(long offset, int length) {
+    }
+
+    private final Map<String, Position> positions;
+    private final long jsonSize;
+    private final long jsonModifiedMillis;
+    private final long jsonChecksum;
+
+    private JsonIsbnIndex(Map<String, Position> positions, long jsonSize, long jsonModifiedMillis,
+                          long jsonChecksum) {
+        this.positions = positions;
+        this.jsonSize = jsonSize;
+        this.jsonModifiedMillis = jsonModifiedMillis;
+        this.jsonChecksum = jsonChecksum;
+    }
+
+    /**
+     * @param jsonPath percorso del file JSON
+     * @return percorso del file indice associato
+     */
+    static Path sidecarOf(String jsonPath) {
+        return Path.of(jsonPath + ".idx");
+    }
+
+    /**
+     * Costruisce l'indice leggendo una volta il file JSON con il parser in streaming.
+     *
+     * @param json   file JSON da indicizzare
+     * @param reader reader dei libri usato per interpretare i record
+     * @return indice del file
+     * @throws IOException se il file non è leggibile o non contiene un array di libri
+     */
+    static JsonIsbnIndex build(Path json, ObjectReader reader) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(json, BasicFileAttributes.class);
+        CRC32 crc = new CRC32();
+        Map<String, Position> positions = new HashMap<>();
+        try (InputStream in = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(json)), crc);
+             JsonParser parser = reader.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw MismatchedInputException.from(parser, List.class,
+                        "Il file deve contenere un array JSON di libri");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                long start = parser.currentTokenLocation().getByteOffset();
+                Libro libro = reader.readValue(parser);
+                long end = parser.currentLocation().getByteOffset();
+                // Come la ricerca sequenziale, a parità di ISBN vale il primo record
+                positions.putIfAbsent(libro.getIsbn(), new Position(start, Math.toIntExact(end - start)));
+            }
+            // Il checksum deve coprire anche quanto segue la chiusura dell'array
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return new JsonIsbnIndex(positions, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                crc.getValue());
+    }
+
+    /**
+     * Crea l'indice di un file appena scritto, dalle posizioni registrate durante la scrittura.
+     */
+    static JsonIsbnIndex of(Map<String, Position> positions, Path json, long jsonChecksum) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(json, BasicFileAttributes.class);
+        return new JsonIsbnIndex(positions, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                jsonChecksum);
+    }
+
+    /**
+     * Legge l'indice salvato.
+     *
+     * @param sidecar file indice
+     * @return indice, vuoto se il file non esiste o non è un indice valido
+     */
+    static Optional<JsonIsbnIndex> load(Path sidecar) {
+        if (!Files.exists(sidecar)) {
+            return Optional.empty();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return Optional.empty();
+            }
+            long size = in.readLong();
+            long modified = in.readLong();
+            long checksum = in.readLong();
+            int count = in.readInt();
+            Map<String, Position> positions = new HashMap<>(Math.max(16, count * 4 / 3 + 1));
+            for (int i = 0; i < count; i++) {
+                positions.put(in.readUTF(), new Position(in.readLong(), in.readInt()));
+            }
+            return Optional.of(new JsonIsbnIndex(positions, size, modified, checksum));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Salva l'indice su un file temporaneo e lo sostituisce atomicamente a quello esistente.
+     *
+     * @param sidecar file indice
+     * @throws IOException se la scrittura fallisce
+     */
+    void save(Path sidecar) throws IOException {
+        Path temp = Path.of(sidecar + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(jsonSize);
+            out.writeLong(jsonModifiedMillis);
+            out.writeLong(jsonChecksum);
+            out.writeInt(positions.size());
+            for (Map.Entry<String, Position> entry : positions.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().offset());
+                out.writeInt(entry.getValue().length());
+            }
+        }
+        Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Verifica che l'indice descriva il contenuto attuale del file JSON: dimensione e data di modifica
+     * devono coincidere e, per le modifiche troppo recenti perché la data sia affidabile, anche il CRC32.
+     *
+     * @param json file JSON indicizzato
+     * @return true se l'indice è aggiornato
+     * @throws IOException se il file non è leggibile
+     */
+    boolean isFreshFor(Path json) throws IOException {
+        FileFingerprint current = FileFingerprint.of(json);
+        if (current.size() != jsonSize || current.lastModified().toMillis() != jsonModifiedMillis) {
+            return false;
+        }
+        return !current.isRacy() || FileFingerprint.checksum(json) == jsonChecksum;
+    }
+
+    /**
+     * @param isbn ISBN cercato
+     * @return posizione del record, vuota se il libro non è nel file
+     */
+    Optional<Position> positionOf(String isbn) {
+        return Optional.ofNullable(positions.get(isbn));
+    }
+
+    int size() {
+        return positions.size();
+    }
+
+    /**
+     * Legge un solo record dal file JSON con una lettura posizionale.
+     *
+     * @param json     file JSON
+     * @param position posizione del record
+     * @param reader   reader dei libri
+     * @return libro letto
+     * @throws IOException se la lettura fallisce o il record non è un oggetto JSON valido
+     */
+    static Libro readAt(Path json, Position position, ObjectReader reader) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(position.length());
+        try (FileChannel channel = FileChannel.open(json, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position.offset() + buffer.position()) < 0) {
+                    throw new EOFException("Record oltre la fine del file " + json);
+                }
+            }
+        }
+        byte[] bytes = buffer.array();
+        int start = 0;
+        while (start < bytes.length && bytes[start] != '{') {
+            start++;
+        }
+        return reader.readValue(bytes, start, bytes.length - start);
+    }
+}
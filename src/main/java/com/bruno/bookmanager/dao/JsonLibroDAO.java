@@ -3,24 +3,59 @@ package com.bruno.bookmanager.dao;
 import com.bruno.bookmanager.exception.DAOException;
 import com.bruno.bookmanager.exception.LibroAlreadyExistsException;
 import com.bruno.bookmanager.exception.LibroNotFoundException;
+import com.bruno.bookmanager.exception.UncheckedDAOException;
 import com.bruno.bookmanager.model.Libro;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 
 
 /**
  * Implementazione dell'interfaccia {@link LibroDAO} che salva e carica i dati da un file JSON.
  * <p>
  * Utilizza la libreria Jackson per serializzare e deserializzare la lista di libri.
- * È una soluzione semplice e adatta a piccoli dataset persistenti su disco.
+ * Lettura e scrittura avvengono in streaming, un libro alla volta, senza costruire l'albero JSON
+ * dell'intero file; il file è compatto per impostazione predefinita, indentato su richiesta.
+ * <p>
+ * L'ultima lista letta o scritta viene conservata insieme all'impronta del file ({@link FileFingerprint}):
+ * finché il file non cambia su disco, letture e modifiche successive la riusano senza rileggere il file.
+ * I libri conservati appartengono al DAO: quelli ricevuti vengono copiati prima di essere conservati e
+ * quelli restituiti sono copie, così che modificarli non alteri la lista riusata dalle letture successive.
+ * <p>
+ * Con l'indice ISBN attivo ({@link Builder#isbnIndex(boolean)}) il DAO mantiene accanto al file un
+ * {@link JsonIsbnIndex}, aggiornato a ogni scrittura e ricostruito se obsoleto: {@link #getByIsbn} legge
+ * allora il solo record cercato invece dell'intero file.
  */
 public class JsonLibroDAO implements LibroDAO {
 
@@ -28,39 +63,215 @@ public class JsonLibroDAO implements LibroDAO {
 
     private final String filePath;
     private final ObjectMapper mapper = new ObjectMapper();
+    // Reader e writer sono immutabili e thread-safe: costruiti una volta, riusano i serializzatori risolti
+    private final ObjectReader reader = mapper.readerFor(Libro.class);
+    private final ObjectWriter writer;
+    private final boolean isbnIndex;
 
     /**
-     * Crea un JsonLibroDAO con percorso file personalizzato.
+     * Contenuto del file all'impronta indicata. La lista non è modificabile e i libri non vengono mai
+     * modificati: lista e libri vengono copiati prima di essere restituiti.
+     */
+    private record ParsedFile(List<Libro> libri, FileFingerprint fingerprint) {
+    }
+
+    private volatile ParsedFile parsed;
+    private volatile JsonIsbnIndex index;
+
+    /**
+     * Crea un JsonLibroDAO con percorso file personalizzato e output compatto.
      *
      * @param filePath percorso del file JSON usato per salvare/caricare i libri.
      */
     public JsonLibroDAO(String filePath) {
-        this.filePath = filePath;
+        this(new Builder(filePath));
+    }
+
+    /**
+     * Crea un JsonLibroDAO con percorso file personalizzato.
+     *
+     * @param filePath    percorso del file JSON usato per salvare/caricare i libri.
+     * @param prettyPrint true per scrivere il file indentato, più leggibile ma più grande e lento da generare
+     */
+    public JsonLibroDAO(String filePath, boolean prettyPrint) {
+        this(new Builder(filePath).prettyPrint(prettyPrint));
+    }
+
+    private JsonLibroDAO(Builder builder) {
+        this.filePath = builder.filePath;
+        // Senza flush dopo ogni libro: il buffer del generatore viene svuotato solo alla chiusura
+        ObjectWriter libroWriter = mapper.writerFor(Libro.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.writer = builder.prettyPrint ? libroWriter.withDefaultPrettyPrinter() : libroWriter;
+        this.isbnIndex = builder.isbnIndex;
     }
 
     @Override
     public List<Libro> getAll() throws DAOException {
+        return copy(currentLibri());
+    }
+
+    private static List<Libro> copy(Collection<Libro> libri) {
+        List<Libro> copies = new ArrayList<>(libri.size());
+        for (Libro libro : libri) {
+            copies.add(copy(libro));
+        }
+        return copies;
+    }
+
+    private static Libro copy(Libro libro) {
+        return new Libro(libro.getTitolo(), libro.getAutore(), libro.getIsbn(), libro.getGenere(),
+                libro.getValutazione(), libro.getStatoLettura());
+    }
+
+    /**
+     * Restituisce il contenuto del file, rileggendolo solo se l'impronta è cambiata dall'ultima lettura
+     * o scrittura.
+     *
+     * @return lista non modificabile dei libri
+     */
+    private List<Libro> currentLibri() throws DAOException {
+        Path path = Path.of(filePath);
+        if (!Files.exists(path)) {
+            logger.debug("File {} non esistente, ritorno lista vuota ", filePath);
+            parsed = null;
+            return List.of();
+        }
+
         try {
-            File file = new File(filePath);
-            if (!file.exists()) {
-                logger.debug("File {} non esistente, ritorno lista vuota ", filePath);
-                return new ArrayList<>();
+            FileFingerprint current = FileFingerprint.of(path);
+            ParsedFile last = parsed;
+            if (last != null && last.fingerprint().matches(current, path)) {
+                if (last.fingerprint().checksum() != null && !current.isRacy()) {
+                    // Confermato dal checksum ora che la data di modifica è affidabile: non serve più
+                    parsed = new ParsedFile(last.libri(), current);
+                }
+                logger.debug("File {} invariato, riuso dei {} libri già letti", filePath, last.libri().size());
+                return last.libri();
             }
-            List<Libro> libri = mapper.readValue(file, new TypeReference<List<Libro>>() {
-            });
-            logger.debug("Caricati {} libri da {}", libri.size(), filePath);
+
+            // L'impronta precede la lettura: una modifica concorrente verrà rilevata alla prossima chiamata
+            FileFingerprint fingerprint = current.withChecksumIfRacy(path);
+            List<Libro> libri = Collections.unmodifiableList(parse(path.toFile()));
+            parsed = new ParsedFile(libri, fingerprint);
             return libri;
         } catch (IOException e) {
+            parsed = null;
             logger.error("Errore durante la lettura del file {}", filePath, e);
             throw new DAOException("Impossibile leggere i dati dal file " + filePath, e);
         }
     }
 
+    private List<Libro> parse(File file) throws IOException {
+        try (JsonParser parser = reader.createParser(file)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw MismatchedInputException.from(parser, List.class,
+                        "Il file deve contenere un array JSON di libri");
+            }
+            // Consumato l'inizio dell'array, l'iteratore legge gli elementi fino alla chiusura riusando
+            // lo stesso contesto di deserializzazione per tutti
+            parser.clearCurrentToken();
+            List<Libro> libri = reader.<Libro>readValues(parser).readAll(new ArrayList<>());
+            logger.debug("Caricati {} libri da {}", libri.size(), filePath);
+            return libri;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Il file viene letto con il parser in streaming di Jackson, un libro alla volta: in memoria resta
+     * solo il libro corrente, non l'intera lista.
+     */
+    @Override
+    public Stream<Libro> streamAll() throws DAOException {
+        File file = new File(filePath);
+        if (!file.exists()) {
+            logger.debug("File {} non esistente, ritorno stream vuoto", filePath);
+            return Stream.empty();
+        }
+
+        MappingIterator<Libro> iterator;
+        try {
+            iterator = reader.readValues(file);
+        } catch (IOException e) {
+            logger.error("Errore durante l'apertura del file {}", filePath, e);
+            throw new DAOException("Impossibile leggere i dati dal file " + filePath, e);
+        }
+
+        Spliterator<Libro> libri = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Libro> action) {
+                try {
+                    if (!iterator.hasNextValue()) {
+                        return false;
+                    }
+                    action.accept(iterator.nextValue());
+                    return true;
+                } catch (IOException e) {
+                    logger.error("Errore durante la lettura del file {}", filePath, e);
+                    throw new UncheckedDAOException(
+                            new DAOException("Impossibile leggere i dati dal file " + filePath, e));
+                }
+            }
+        };
+        return StreamSupport.stream(libri, false).onClose(() -> {
+            try {
+                iterator.close();
+            } catch (IOException e) {
+                logger.warn("Errore durante la chiusura del file {}", filePath, e);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * I libri vengono scritti uno alla volta sul generatore in streaming, senza serializzare prima
+     * l'intera lista. Il checksum del contenuto viene calcolato durante la scrittura, così che la lista
+     * salvata possa essere riusata dalle letture successive senza rileggere il file. Con l'indice ISBN
+     * attivo vengono registrate anche le posizioni dei record, e l'indice viene salvato insieme al file.
+     */
     @Override
     public void saveAll(List<Libro> libri) throws DAOException {
+        write(copy(libri));
+    }
+
+    /**
+     * Scrive i libri nel file e li conserva come contenuto corrente.
+     *
+     * @param libri libri di proprietà del DAO, che non devono più essere modificati
+     */
+    private void write(List<Libro> libri) throws DAOException {
+        Path path = Path.of(filePath);
+        CRC32 crc = new CRC32();
+        Map<String, JsonIsbnIndex.Position> positions = isbnIndex ? new HashMap<>() : null;
+        parsed = null;
+        index = null;
         try {
-            File file = new File(filePath);
-            mapper.writerWithDefaultPrettyPrinter().writeValue(file, libri);
+            CountingOutputStream out =
+                    new CountingOutputStream(new CheckedOutputStream(Files.newOutputStream(path), crc));
+            try (JsonGenerator generator = writer.createGenerator(out, JsonEncoding.UTF8);
+                 SequenceWriter sequence = writer.writeValuesAsArray(generator)) {
+                for (Libro libro : libri) {
+                    if (positions == null) {
+                        sequence.write(libro);
+                        continue;
+                    }
+                    // Posizione nel file: byte già scritti più quelli ancora nel buffer del generatore
+                    long start = out.count + generator.getOutputBuffered();
+                    sequence.write(libro);
+                    long end = out.count + generator.getOutputBuffered();
+                    positions.putIfAbsent(libro.getIsbn(),
+                            new JsonIsbnIndex.Position(start, Math.toIntExact(end - start)));
+                }
+            }
+            parsed = new ParsedFile(Collections.unmodifiableList(libri),
+                    FileFingerprint.of(path).withChecksumIfRacy(crc.getValue()));
+            if (positions != null) {
+                saveIndex(JsonIsbnIndex.of(positions, path, crc.getValue()));
+            }
             logger.debug("Salvati {} libri in {}", libri.size(), filePath);
         } catch (IOException e) {
             logger.error("Errore durante il salvataggio nel file {}", filePath, e);
@@ -68,49 +279,57 @@ public class JsonLibroDAO implements LibroDAO {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Con l'indice ISBN attivo viene letto e interpretato solo il record del libro cercato.
+     */
     @Override
     public Optional<Libro> getByIsbn(String isbn) throws DAOException {
-        List<Libro> libri = getAll();
-        Optional<Libro> result = libri.stream().filter(l -> l.getIsbn().equals(isbn)).findFirst();
+        if (isbnIndex) {
+            return indexedLookup(isbn);
+        }
+        Optional<Libro> result = currentLibri().stream().filter(l -> l.getIsbn().equals(isbn)).findFirst()
+                .map(JsonLibroDAO::copy);
         logger.debug("Ricerca libro con ISBN {}: {}", isbn, result.isPresent() ? "trovato" : "non trovato");
         return result;
     }
 
     @Override
     public void add(Libro libro) throws LibroAlreadyExistsException, DAOException {
-        List<Libro> libri = getAll();
+        List<Libro> libri = new ArrayList<>(currentLibri());
 
         if (libri.contains(libro)) {
             logger.warn("Tentativo di aggiunta libro già esistente con ISBN {}", libro.getIsbn());
             throw new LibroAlreadyExistsException(libro.getIsbn());
         }
 
-        libri.add(libro);
-        saveAll(libri);
+        libri.add(copy(libro));
+        write(libri);
         logger.info("Aggiunto libro: {} (ISBN: {})", libro.getTitolo(), libro.getIsbn());
     }
 
     @Override
     public void removeByIsbn(String isbn) throws LibroNotFoundException, DAOException {
-        List<Libro> libri = getAll();
+        List<Libro> libri = new ArrayList<>(currentLibri());
 
         boolean rimosso = libri.removeIf(libro -> libro.getIsbn().equals(isbn));
         if (!rimosso) {
             logger.warn("Tentativo di rimozione libro non esistente con ISBN {}", isbn);
             throw new LibroNotFoundException(isbn);
         }
-        saveAll(libri);
+        write(libri);
         logger.info("Rimosso libro con ISBN {}", isbn);
     }
 
     @Override
     public void update(Libro libro) throws LibroNotFoundException, DAOException {
-        List<Libro> libri = getAll();
+        List<Libro> libri = new ArrayList<>(currentLibri());
 
         for (int i = 0; i < libri.size(); i++) {
             if (libri.get(i).equals(libro)) {
-                libri.set(i, libro);
-                saveAll(libri);
+                libri.set(i, copy(libro));
+                write(libri);
                 logger.info("Aggiornato libro: {} (ISBN: {})", libro.getTitolo(), libro.getIsbn());
                 return;
             }
@@ -119,8 +338,158 @@ public class JsonLibroDAO implements LibroDAO {
         throw new LibroNotFoundException(libro.getIsbn());
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Il file viene letto e riscritto una sola volta per l'intera collezione ricevuta.
+     */
+    @Override
+    public BulkResult addAll(Collection<Libro> libri) throws DAOException {
+        return merge(libri, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Il file viene letto e riscritto una sola volta per l'intera collezione ricevuta.
+     */
+    @Override
+    public BulkResult upsertAll(Collection<Libro> libri) throws DAOException {
+        return merge(libri, true);
+    }
+
+    private BulkResult merge(Collection<Libro> libri, boolean upsert) throws DAOException {
+        List<Libro> current = new ArrayList<>(currentLibri());
+        BulkResult result = BulkMerge.apply(current, copy(libri), upsert);
+        if (result.count(BulkResult.Outcome.ADDED) + result.count(BulkResult.Outcome.UPDATED) > 0) {
+            write(current);
+        }
+        logger.info("Scrittura in blocco su {}: {} aggiunti, {} aggiornati, {} già presenti", filePath,
+                result.count(BulkResult.Outcome.ADDED), result.count(BulkResult.Outcome.UPDATED),
+                result.count(BulkResult.Outcome.ALREADY_EXISTS));
+        return result;
+    }
+
     @Override
     public boolean prefersBatchOperations() {
         return true;
     }
+
+    private Optional<Libro> indexedLookup(String isbn) throws DAOException {
+        Path path = Path.of(filePath);
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        try {
+            Optional<JsonIsbnIndex.Position> position = freshIndex(path).positionOf(isbn);
+            if (position.isEmpty()) {
+                logger.debug("Ricerca libro con ISBN {} tramite indice: non trovato", isbn);
+                return Optional.empty();
+            }
+            Libro libro = JsonIsbnIndex.readAt(path, position.get(), reader);
+            if (isbn.equals(libro.getIsbn())) {
+                logger.debug("Ricerca libro con ISBN {} tramite indice: trovato", isbn);
+                return Optional.of(libro);
+            }
+            logger.warn("Indice di {} non allineato per ISBN {}, ricerca sull'intero file", filePath, isbn);
+        } catch (IOException e) {
+            // Il file può essere stato riscritto tra il controllo dell'indice e la lettura del record
+            logger.warn("Lettura tramite indice di {} fallita, ricerca sull'intero file", filePath, e);
+        }
+        index = null;
+        return currentLibri().stream().filter(l -> l.getIsbn().equals(isbn)).findFirst().map(JsonLibroDAO::copy);
+    }
+
+    /**
+     * Restituisce un indice aggiornato del file: quello in memoria, quello salvato accanto al file o,
+     * se entrambi sono obsoleti, uno ricostruito leggendo il file.
+     */
+    private JsonIsbnIndex freshIndex(Path path) throws IOException {
+        JsonIsbnIndex current = index;
+        if (current != null && current.isFreshFor(path)) {
+            return current;
+        }
+        Optional<JsonIsbnIndex> saved = JsonIsbnIndex.load(JsonIsbnIndex.sidecarOf(filePath));
+        if (saved.isPresent() && saved.get().isFreshFor(path)) {
+            index = saved.get();
+            return index;
+        }
+
+        JsonIsbnIndex rebuilt = JsonIsbnIndex.build(path, reader);
+        logger.info("Ricostruito l'indice ISBN di {} ({} libri)", filePath, rebuilt.size());
+        saveIndex(rebuilt);
+        return rebuilt;
+    }
+
+    /**
+     * Salva l'indice accanto al file. Un errore non è fatale: l'indice resta valido in memoria e verrà
+     * ricostruito alla prossima apertura.
+     */
+    private void saveIndex(JsonIsbnIndex built) {
+        index = built;
+        try {
+            built.save(JsonIsbnIndex.sidecarOf(filePath));
+        } catch (IOException e) {
+            logger.warn("Impossibile salvare l'indice ISBN di {}", filePath, e);
+        }
+    }
+
+    /**
+     * Flusso che conta i byte scritti, per ricavare la posizione dei record durante la scrittura.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * Builder per configurare un {@link JsonLibroDAO}.
+     */
+    public static class Builder {
+        private final String filePath;
+        private boolean prettyPrint;
+        private boolean isbnIndex;
+
+        /**
+         * @param filePath percorso del file JSON usato per salvare/caricare i libri
+         */
+        public Builder(String filePath) {
+            this.filePath = filePath;
+        }
+
+        /**
+         * @param prettyPrint true per scrivere il file indentato
+         */
+        public Builder prettyPrint(boolean prettyPrint) {
+            this.prettyPrint = prettyPrint;
+            return this;
+        }
+
+        /**
+         * @param isbnIndex true per mantenere l'indice ISBN accanto al file ({@code <file>.idx})
+         */
+        public Builder isbnIndex(boolean isbnIndex) {
+            this.isbnIndex = isbnIndex;
+            return this;
+        }
+
+        public JsonLibroDAO build() {
+            return new JsonLibroDAO(this);
+        }
+    }
 }
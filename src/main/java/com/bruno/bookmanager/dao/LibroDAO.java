@@ -3,17 +3,21 @@ package com.bruno.bookmanager.dao;
 import com.bruno.bookmanager.exception.DAOException;
 import com.bruno.bookmanager.exception.LibroAlreadyExistsException;
 import com.bruno.bookmanager.exception.LibroNotFoundException;
+import com.bruno.bookmanager.exception.UncheckedDAOException;
 import com.bruno.bookmanager.model.Libro;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Interfaccia per l'accesso e la gestione dei dati relativi ai libri.
  * Rappresenta un contratto che può essere implementato con varie tecnologie di persistenza
  * (es. file JSON, database SQLite, cache in memoria, ecc.).
  */
-public interface LibroDAO {
+public interface LibroDAO extends AutoCloseable {
 
     /**
      * Restituisce la lista completa dei libri memorizzati.
@@ -23,6 +27,20 @@ public interface LibroDAO {
      */
     List<Libro> getAll() throws DAOException;
 
+    /**
+     * Restituisce i libri memorizzati come stream, senza necessariamente caricarli tutti in memoria.
+     * <p>
+     * Lo stream può trattenere risorse (connessioni, file aperti) fino alla chiusura: va sempre usato in un
+     * try-with-resources. Gli errori di lettura che avvengono durante il consumo sono segnalati con una
+     * {@link UncheckedDAOException}. L'implementazione predefinita si appoggia a {@link #getAll()}.
+     *
+     * @return stream di tutti i libri, da chiudere dopo l'uso
+     * @throws DAOException se si verifica un errore nell'apertura della lettura
+     */
+    default Stream<Libro> streamAll() throws DAOException {
+        return getAll().stream();
+    }
+
     /**
      * Sovrascrive l'intera collezione di libri persistendo i dati forniti.
      *
@@ -67,6 +85,60 @@ public interface LibroDAO {
      */
     void update(Libro libro) throws LibroNotFoundException, DAOException;
 
+    /**
+     * Aggiunge più libri in un'unica operazione, lasciando invariati quelli già presenti.
+     * <p>
+     * A differenza di {@link #saveAll(List)} non rimuove i libri esistenti. Un libro già presente, o ripetuto
+     * nella collezione ricevuta, non interrompe l'operazione ma viene riportato come
+     * {@link BulkResult.Outcome#ALREADY_EXISTS}. L'implementazione predefinita richiama {@link #add(Libro)}
+     * per ogni libro; le implementazioni dovrebbero usare una sola transazione o riscrittura.
+     *
+     * @param libri libri da aggiungere
+     * @return esito per ogni libro, nell'ordine ricevuto
+     * @throws DAOException se si verifica un errore nell'accesso ai dati
+     */
+    default BulkResult addAll(Collection<Libro> libri) throws DAOException {
+        List<BulkResult.Entry> entries = new ArrayList<>(libri.size());
+        for (Libro libro : libri) {
+            try {
+                add(libro);
+                entries.add(BulkResult.Entry.of(libro.getIsbn(), BulkResult.Outcome.ADDED));
+            } catch (LibroAlreadyExistsException e) {
+                entries.add(BulkResult.Entry.of(libro.getIsbn(), BulkResult.Outcome.ALREADY_EXISTS));
+            }
+        }
+        return new BulkResult(entries);
+    }
+
+    /**
+     * Aggiunge più libri in un'unica operazione, sostituendo quelli già presenti con lo stesso ISBN.
+     * Se un ISBN è ripetuto nella collezione ricevuta prevale l'ultima occorrenza.
+     * L'implementazione predefinita richiama {@link #update(Libro)} o {@link #add(Libro)} per ogni libro.
+     *
+     * @param libri libri da inserire o aggiornare
+     * @return esito per ogni libro ({@link BulkResult.Outcome#ADDED} o {@link BulkResult.Outcome#UPDATED}),
+     * nell'ordine ricevuto
+     * @throws DAOException se si verifica un errore nell'accesso ai dati
+     */
+    default BulkResult upsertAll(Collection<Libro> libri) throws DAOException {
+        List<BulkResult.Entry> entries = new ArrayList<>(libri.size());
+        for (Libro libro : libri) {
+            try {
+                update(libro);
+                entries.add(BulkResult.Entry.of(libro.getIsbn(), BulkResult.Outcome.UPDATED));
+            } catch (LibroNotFoundException e) {
+                try {
+                    add(libro);
+                } catch (LibroAlreadyExistsException concurrent) {
+                    throw new DAOException("Libro con ISBN " + libro.getIsbn() + " modificato durante l'upsert",
+                            concurrent);
+                }
+                entries.add(BulkResult.Entry.of(libro.getIsbn(), BulkResult.Outcome.ADDED));
+            }
+        }
+        return new BulkResult(entries);
+    }
+
     /**
      * Indica se questa implementazione preferisce operazioni batch (saveAll)
      * rispetto a operazioni singole (add/update/remove).
@@ -79,4 +151,16 @@ public interface LibroDAO {
     default boolean prefersBatchOperations() {
         return false;
     }
+
+    /**
+     * Rilascia le risorse mantenute dal DAO (connessioni, file aperti, thread).
+     * <p>
+     * L'implementazione predefinita non fa nulla, adatta ai DAO che non trattengono risorse
+     * tra una chiamata e l'altra.
+     *
+     * @throws DAOException se si verifica un errore durante il rilascio delle risorse
+     */
+    @Override
+    default void close() throws DAOException {
+    }
 }
@@ -0,0 +1,241 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.filters.AndFilter;
+import com.bruno.bookmanager.filters.Filter;
+import com.bruno.bookmanager.filters.GenereFilter;
+import com.bruno.bookmanager.filters.GeneriFilter;
+import com.bruno.bookmanager.filters.OrFilter;
+import com.bruno.bookmanager.filters.StatiLetturaFilter;
+import com.bruno.bookmanager.filters.StatoLetturaFilter;
+import com.bruno.bookmanager.filters.ValutazioneFilter;
+import com.bruno.bookmanager.filters.ValutazioniFilter;
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Indici secondari su genere, stato di lettura e valutazione dei libri di un'istantanea della cache.
+ * <p>
+ * Per ogni valore dei tre campi l'indice conserva, come {@link BitSet}, i numeri nella {@link LibroSequence}
+ * dei libri che lo hanno. I filtri su questi campi, anche su più valori o combinati con {@link AndFilter} e
+ * {@link OrFilter}, vengono risolti con intersezioni e unioni di insiemi invece che scorrendo tutti i libri.
+ * I libri con genere o stato assente non compaiono in nessun insieme del campo.
+ * <p>
+ * L'indice è immutabile. I numeri dei libri non cambiano con le modifiche degli altri, quindi {@link #replace}
+ * copia solo gli insiemi dei valori che il libro modificato perde o acquista, al più sei, e condivide gli
+ * altri: una modifica costa O(n/64) parole copiate invece di una nuova scansione dei libri.
+ */
+final class LibroFieldIndex {
+
+    private final LibroSequence sequence;
+    private final Map<Genere, BitSet> byGenere;
+    private final Map<StatoLettura, BitSet> byStato;
+    private final List<BitSet> byValutazione;
+
+    // Campi final, valorizzati solo a costruzione completata e mai modificati in seguito: l'indice può essere
+    // condiviso tra thread anche se pubblicato senza sincronizzazione
+    private LibroFieldIndex(LibroSequence sequence, Map<Genere, BitSet> byGenere, Map<StatoLettura, BitSet> byStato,
+                            List<BitSet> byValutazione) {
+        this.sequence = sequence;
+        this.byGenere = byGenere;
+        this.byStato = byStato;
+        this.byValutazione = byValutazione;
+    }
+
+    /**
+     * Costruisce l'indice con un solo passaggio sui libri.
+     *
+     * @param sequence libri da indicizzare, con la loro numerazione
+     * @return indice dei libri
+     */
+    static LibroFieldIndex build(LibroSequence sequence) {
+        Map<Genere, BitSet> byGenere = new EnumMap<>(Genere.class);
+        Map<StatoLettura, BitSet> byStato = new EnumMap<>(StatoLettura.class);
+        List<BitSet> byValutazione = new ArrayList<>();
+        sequence.forEach((libro, seq) -> {
+            if (libro.getGenere() != null) {
+                byGenere.computeIfAbsent(libro.getGenere(), g -> new BitSet()).set(seq);
+            }
+            if (libro.getStatoLettura() != null) {
+                byStato.computeIfAbsent(libro.getStatoLettura(), s -> new BitSet()).set(seq);
+            }
+            int valutazione = libro.getValutazione();
+            if (valutazione >= 0) {
+                while (byValutazione.size() <= valutazione) {
+                    byValutazione.add(new BitSet());
+                }
+                byValutazione.get(valutazione).set(seq);
+            }
+        });
+        return new LibroFieldIndex(sequence, byGenere, byStato, byValutazione);
+    }
+
+    /**
+     * Restituisce l'indice dopo l'aggiunta, l'aggiornamento o la rimozione di un libro.
+     *
+     * @param updated numerazione dopo la modifica, ottenuta con {@link LibroSequence#replace} da quella
+     *                di questo indice
+     * @param before  libro presente prima della modifica, null per un'aggiunta
+     * @param after   libro presente dopo la modifica, null per una rimozione
+     * @return nuovo indice; questo resta invariato
+     */
+    LibroFieldIndex replace(LibroSequence updated, Libro before, Libro after) {
+        int seq = sequence.seqFor(before);
+        Map<Genere, BitSet> generi = patch(byGenere, before != null ? before.getGenere() : null,
+                after != null ? after.getGenere() : null, seq);
+        Map<StatoLettura, BitSet> stati = patch(byStato, before != null ? before.getStatoLettura() : null,
+                after != null ? after.getStatoLettura() : null, seq);
+
+        int valutazionePrima = before != null ? before.getValutazione() : -1;
+        int valutazioneDopo = after != null ? after.getValutazione() : -1;
+        List<BitSet> valutazioni = byValutazione;
+        if (valutazionePrima != valutazioneDopo) {
+            valutazioni = new ArrayList<>(byValutazione);
+            if (valutazionePrima >= 0) {
+                BitSet positions = copy(valutazioni.get(valutazionePrima));
+                positions.clear(seq);
+                valutazioni.set(valutazionePrima, positions);
+            }
+            if (valutazioneDopo >= 0) {
+                while (valutazioni.size() <= valutazioneDopo) {
+                    valutazioni.add(new BitSet());
+                }
+                BitSet positions = copy(valutazioni.get(valutazioneDopo));
+                positions.set(seq);
+                valutazioni.set(valutazioneDopo, positions);
+            }
+        }
+        return new LibroFieldIndex(updated, generi, stati, valutazioni);
+    }
+
+    /**
+     * @return mappa con il numero spostato dall'insieme del valore precedente a quello del nuovo valore; la
+     * mappa data se il valore non cambia
+     */
+    private static <K extends Enum<K>> Map<K, BitSet> patch(Map<K, BitSet> sets, K before, K after, int seq) {
+        if (before == after) {
+            return sets;
+        }
+        Map<K, BitSet> result = new EnumMap<>(sets);
+        if (before != null) {
+            BitSet positions = copy(result.get(before));
+            positions.clear(seq);
+            result.put(before, positions);
+        }
+        if (after != null) {
+            BitSet positions = copy(result.get(after));
+            positions.set(seq);
+            result.put(after, positions);
+        }
+        return result;
+    }
+
+    /**
+     * Indica se l'indice può restringere la ricerca per il filtro, senza bisogno di costruirlo.
+     *
+     * @param filter filtro da risolvere
+     * @return true se {@link #candidates} non restituirà null
+     */
+    static boolean resolves(Filter<Libro> filter) {
+        if (filter instanceof GenereFilter || filter instanceof StatoLetturaFilter
+                || filter instanceof ValutazioneFilter || filter instanceof GeneriFilter
+                || filter instanceof StatiLetturaFilter || filter instanceof ValutazioniFilter) {
+            return true;
+        }
+        if (filter instanceof AndFilter<Libro> and) {
+            return resolves(and.getLeft()) || resolves(and.getRight());
+        }
+        if (filter instanceof OrFilter<Libro> or) {
+            return resolves(or.getLeft()) && resolves(or.getRight());
+        }
+        return false;
+    }
+
+    /**
+     * Restituisce, nell'ordine della cache, i libri candidati a soddisfare il filtro.
+     * <p>
+     * Se il filtro usa solo genere, stato e valutazione i candidati sono esattamente i libri che lo
+     * soddisfano; se in una congiunzione compaiono altri filtri, i candidati ne sono un sovrainsieme da
+     * verificare con {@link Filter#test}.
+     *
+     * @param filter filtro da risolvere
+     * @return libri candidati, null se l'indice non restringe la ricerca
+     */
+    List<Libro> candidates(Filter<Libro> filter) {
+        BitSet positions = positions(filter);
+        return positions != null ? sequence.libri(positions) : null;
+    }
+
+    /**
+     * @return numeri dei libri che possono soddisfare il filtro, in un insieme che il chiamante può
+     * modificare; null se tutti i libri possono soddisfarlo
+     */
+    private BitSet positions(Filter<Libro> filter) {
+        if (filter instanceof GenereFilter genere) {
+            return copy(byGenere.get(genere.getGenere()));
+        }
+        if (filter instanceof StatoLetturaFilter stato) {
+            return copy(byStato.get(stato.getStatoLettura()));
+        }
+        if (filter instanceof ValutazioneFilter valutazione) {
+            int value = valutazione.getValutazione();
+            return copy(value >= 0 && value < byValutazione.size() ? byValutazione.get(value) : null);
+        }
+        if (filter instanceof GeneriFilter generi) {
+            return union(generi.getGeneri(), byGenere::get);
+        }
+        if (filter instanceof StatiLetturaFilter stati) {
+            return union(stati.getStati(), byStato::get);
+        }
+        if (filter instanceof ValutazioniFilter valutazioni) {
+            return union(valutazioni.getValutazioni(),
+                    value -> value >= 0 && value < byValutazione.size() ? byValutazione.get(value) : null);
+        }
+        if (filter instanceof AndFilter<Libro> and) {
+            BitSet left = positions(and.getLeft());
+            BitSet right = positions(and.getRight());
+            if (left == null || right == null) {
+                // L'altro ramo verrà verificato sui soli candidati
+                return left == null ? right : left;
+            }
+            left.and(right);
+            return left;
+        }
+        if (filter instanceof OrFilter<Libro> or) {
+            BitSet left = positions(or.getLeft());
+            if (left == null) {
+                return null;
+            }
+            BitSet right = positions(or.getRight());
+            if (right == null) {
+                return null;
+            }
+            left.or(right);
+            return left;
+        }
+        return null;
+    }
+
+    private static <K> BitSet union(Collection<K> keys, Function<K, BitSet> positions) {
+        BitSet result = new BitSet();
+        for (K key : keys) {
+            BitSet matching = positions.apply(key);
+            if (matching != null) {
+                result.or(matching);
+            }
+        }
+        return result;
+    }
+
+    private static BitSet copy(BitSet positions) {
+        return positions == null ? new BitSet() : (BitSet) positions.clone();
+    }
+}
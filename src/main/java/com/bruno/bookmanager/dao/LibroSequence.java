@@ -0,0 +1,195 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.model.Libro;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Numerazione stabile dei libri di un'istantanea della cache, usata dagli indici secondari.
+ * <p>
+ * Ogni libro riceve un numero progressivo che segue l'ordine della cache: un libro aggiornato conserva il
+ * suo numero, uno aggiunto riceve il successivo all'ultimo assegnato e il numero di un libro rimosso resta
+ * libero. Gli indici memorizzano questi numeri invece delle posizioni, che la rimozione di un libro
+ * sposterebbe, e possono così aggiornarsi modificando solo le voci del libro cambiato.
+ * <p>
+ * La numerazione è immutabile. Le tabelle costruite da {@link #build} sono condivise da tutte le versioni
+ * successive; {@link #replace} copia solo la piccola mappa delle variazioni accumulate da allora, che viene
+ * fusa in nuove tabelle quando supera la radice quadrata dei numeri assegnati. Una modifica costa quindi in
+ * media O(√n) invece di una copia delle tabelle.
+ */
+final class LibroSequence {
+
+    private static final int MIN_CHANGES = 64;
+
+    // Tabelle condivise, mai modificate: libri per numero (null se libero) e numeri per ISBN
+    private final Libro[] base;
+    private final Map<String, Integer> baseSeqs;
+    // Variazioni successive alle tabelle: un valore null indica un libro rimosso
+    private final Map<Integer, Libro> changedLibri;
+    private final Map<String, Integer> changedSeqs;
+    private final int next;
+    private final int size;
+
+    private LibroSequence(Libro[] base, Map<String, Integer> baseSeqs, Map<Integer, Libro> changedLibri,
+                          Map<String, Integer> changedSeqs, int next, int size) {
+        this.base = base;
+        this.baseSeqs = baseSeqs;
+        this.changedLibri = changedLibri;
+        this.changedSeqs = changedSeqs;
+        this.next = next;
+        this.size = size;
+    }
+
+    /**
+     * Numera i libri da 0, nell'ordine dato.
+     *
+     * @param libri libri nell'ordine della cache, con ISBN distinti
+     * @return numerazione dei libri
+     */
+    static LibroSequence build(Collection<Libro> libri) {
+        Libro[] base = libri.toArray(new Libro[0]);
+        Map<String, Integer> seqs = new HashMap<>(capacity(base.length));
+        for (int seq = 0; seq < base.length; seq++) {
+            seqs.put(base[seq].getIsbn(), seq);
+        }
+        return new LibroSequence(base, seqs, Collections.emptyMap(), Collections.emptyMap(), base.length,
+                base.length);
+    }
+
+    /**
+     * @return numero di libri
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return numero successivo all'ultimo assegnato: tutti i numeri sono minori
+     */
+    int next() {
+        return next;
+    }
+
+    /**
+     * @return numeri assegnati a libri poi rimossi
+     */
+    int free() {
+        return next - size;
+    }
+
+    /**
+     * @return libro con il numero dato, null se il numero è libero
+     */
+    Libro get(int seq) {
+        if (changedLibri.containsKey(seq)) {
+            return changedLibri.get(seq);
+        }
+        return seq < base.length ? base[seq] : null;
+    }
+
+    /**
+     * @return numero del libro con l'ISBN dato, -1 se non c'è
+     */
+    int seqOf(String isbn) {
+        Integer seq = changedSeqs.containsKey(isbn) ? changedSeqs.get(isbn) : baseSeqs.get(isbn);
+        return seq != null ? seq : -1;
+    }
+
+    /**
+     * @param before libro presente prima della modifica, null per un'aggiunta
+     * @return numero del libro interessato dalla modifica: quello di {@code before} o, per un'aggiunta, il
+     * prossimo da assegnare
+     */
+    int seqFor(Libro before) {
+        return before != null ? seqOf(before.getIsbn()) : next;
+    }
+
+    /**
+     * Restituisce la numerazione dopo l'aggiunta, l'aggiornamento o la rimozione di un libro. Un libro
+     * aggiornato conserva il suo numero, uno aggiunto riceve {@link #next()}.
+     *
+     * @param before libro presente prima della modifica, null per un'aggiunta
+     * @param after  libro presente dopo la modifica, con lo stesso ISBN di {@code before}; null per una
+     *               rimozione
+     * @return nuova numerazione; questa resta invariata
+     */
+    LibroSequence replace(Libro before, Libro after) {
+        int seq = seqFor(before);
+        Map<Integer, Libro> libri = new HashMap<>(changedLibri);
+        Map<String, Integer> seqs = new HashMap<>(changedSeqs);
+        libri.put(seq, after);
+        if (after != null) {
+            seqs.put(after.getIsbn(), seq);
+        } else {
+            seqs.put(before.getIsbn(), null);
+        }
+        int updatedNext = before == null ? next + 1 : next;
+        int updatedSize = size + (before == null ? 1 : 0) - (after == null ? 1 : 0);
+
+        if (libri.size() <= Math.max(MIN_CHANGES, (int) Math.sqrt(updatedNext))) {
+            return new LibroSequence(base, baseSeqs, libri, seqs, updatedNext, updatedSize);
+        }
+        Libro[] merged = Arrays.copyOf(base, updatedNext);
+        libri.forEach((changed, libro) -> merged[changed] = libro);
+        Map<String, Integer> mergedSeqs = new HashMap<>(baseSeqs);
+        seqs.forEach((isbn, changed) -> {
+            if (changed != null) {
+                mergedSeqs.put(isbn, changed);
+            } else {
+                mergedSeqs.remove(isbn);
+            }
+        });
+        return new LibroSequence(merged, mergedSeqs, Collections.emptyMap(), Collections.emptyMap(), updatedNext,
+                updatedSize);
+    }
+
+    /**
+     * Esegue l'azione per ogni libro, in ordine crescente di numero.
+     *
+     * @param action azione da eseguire con il libro e il suo numero
+     */
+    void forEach(ObjIntConsumer<Libro> action) {
+        for (int seq = 0; seq < next; seq++) {
+            Libro libro = get(seq);
+            if (libro != null) {
+                action.accept(libro, seq);
+            }
+        }
+    }
+
+    /**
+     * @param seqs numeri ordinati di libri presenti
+     * @return libri con quei numeri, nello stesso ordine
+     */
+    List<Libro> libri(int[] seqs) {
+        List<Libro> result = new ArrayList<>(seqs.length);
+        for (int seq : seqs) {
+            result.add(get(seq));
+        }
+        return result;
+    }
+
+    /**
+     * @param seqs numeri di libri presenti
+     * @return libri con quei numeri, in ordine crescente di numero
+     */
+    List<Libro> libri(BitSet seqs) {
+        List<Libro> result = new ArrayList<>(seqs.cardinality());
+        for (int seq = seqs.nextSetBit(0); seq >= 0; seq = seqs.nextSetBit(seq + 1)) {
+            result.add(get(seq));
+        }
+        return result;
+    }
+
+    private static int capacity(int size) {
+        return Math.max(16, (int) (size / 0.75f) + 1);
+    }
+}
@@ -1,10 +1,16 @@
 package com.bruno.bookmanager.dao;
 
 import com.bruno.bookmanager.exception.DAOException;
+import com.bruno.bookmanager.filters.Page;
 import com.bruno.bookmanager.filters.SearchCriteria;
+import com.bruno.bookmanager.model.Genere;
 import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
 
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.stream.Stream;
 
 /**
  * Interfaccia per DAO che supportano ricerche e ordinamenti ottimizzati.
@@ -20,4 +26,63 @@ public interface OptimizedSearch {
      * @throws DAOException se si verifica un errore durante la ricerca
      */
     List<Libro> search(SearchCriteria criteria) throws DAOException;
+
+    /**
+     * Cerca una pagina di libri. Se i criteri non sono paginati restituisce tutti i risultati in
+     * un'unica pagina senza cursore; altrimenti al più {@link SearchCriteria#getPageSize()} libri,
+     * successivi al cursore {@link SearchCriteria#getAfter()} se presente.
+     *
+     * @param criteria criteri di ricerca (null per tutti i libri)
+     * @return pagina di risultati con il cursore per la pagina successiva
+     * @throws DAOException se si verifica un errore durante la ricerca
+     */
+    Page<Libro> searchPage(SearchCriteria criteria) throws DAOException;
+
+    /**
+     * Cerca libri restituendoli come stream, letti dalla persistenza man mano che vengono consumati.
+     * Come per {@link LibroDAO#streamAll()} lo stream va chiuso dopo l'uso.
+     *
+     * @param criteria criteri di ricerca (null per tutti i libri)
+     * @return stream dei libri che soddisfano i criteri, nell'ordine richiesto
+     * @throws DAOException se si verifica un errore nell'esecuzione della ricerca
+     */
+    Stream<Libro> searchStream(SearchCriteria criteria) throws DAOException;
+
+    // Aggregazioni: considerano solo il filtro dei criteri, non ordinamento e paginazione.
+    // I risultati coincidono con quelli dei corrispondenti metodi di InMemorySearch.
+
+    /**
+     * @param criteria criteri di ricerca (null per tutti i libri)
+     * @return numero di libri che soddisfano il filtro
+     * @throws DAOException se si verifica un errore durante il conteggio
+     */
+    long count(SearchCriteria criteria) throws DAOException;
+
+    /**
+     * @param criteria criteri di ricerca (null per tutti i libri)
+     * @return conteggi per genere, in ordine di genere, con i libri senza genere sotto la chiave null
+     * @throws DAOException se si verifica un errore durante il conteggio
+     */
+    Map<Genere, Long> countByGenere(SearchCriteria criteria) throws DAOException;
+
+    /**
+     * @param criteria criteri di ricerca (null per tutti i libri)
+     * @return conteggi per stato di lettura, in ordine di stato
+     * @throws DAOException se si verifica un errore durante il conteggio
+     */
+    Map<StatoLettura, Long> countByStato(SearchCriteria criteria) throws DAOException;
+
+    /**
+     * @param criteria criteri di ricerca (null per tutti i libri)
+     * @return conteggi per valutazione, in ordine crescente
+     * @throws DAOException se si verifica un errore durante il conteggio
+     */
+    Map<Integer, Long> countByValutazione(SearchCriteria criteria) throws DAOException;
+
+    /**
+     * @param criteria criteri di ricerca (null per tutti i libri)
+     * @return media delle valutazioni dei libri valutati (valutazione maggiore di 0), vuota se non ce ne sono
+     * @throws DAOException se si verifica un errore durante il calcolo
+     */
+    OptionalDouble averageValutazione(SearchCriteria criteria) throws DAOException;
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+package com.bruno.bookmanager.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Connessione ottenuta da un {@link SqliteConnectionPool}.
+ * <p>
+ * Espone solo le operazioni usate dai DAO; {@link #close()} non chiude la connessione fisica
+ * ma la restituisce al pool.
+ */
+public final class PooledConnection implements AutoCloseable {
+
+    private final SqliteConnectionPool pool;
+    private SqliteConnectionPool.Slot slot;
+
+    PooledConnection(SqliteConnectionPool pool, SqliteConnectionPool.Slot slot) {
+        this.pool = pool;
+        this.slot = slot;
+    }
+
+    private SqliteConnectionPool.Slot slot() throws SQLException {
+        if (slot == null) {
+            throw new SQLException("Connessione già restituita al pool");
+        }
+        return slot;
+    }
+
+    private Connection connection() throws SQLException {
+        return slot().connection;
+    }
+
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        return connection().prepareStatement(sql);
+    }
+
+    /**
+     * Restituisce uno statement preparato riutilizzabile per il testo SQL indicato, preparandolo solo
+     * se non è già nella cache della connessione fisica.
+     * <p>
+     * Lo statement appartiene alla cache: il chiamante deve chiudere i ResultSet ottenuti ma non lo
+     * statement stesso. I parametri di un utilizzo precedente vengono azzerati.
+     *
+     * @param sql testo SQL con segnaposto
+     * @return statement preparato, valido fino alla restituzione della connessione
+     * @throws SQLException se la preparazione fallisce
+     */
+    public PreparedStatement prepareCached(String sql) throws SQLException {
+        SqliteConnectionPool.Slot current = slot();
+        PreparedStatement stmt = current.statements.get(sql);
+        if (stmt != null && !stmt.isClosed()) {
+            pool.recordStatementCacheLookup(true);
+            stmt.clearParameters();
+            return stmt;
+        }
+
+        pool.recordStatementCacheLookup(false);
+        stmt = current.connection.prepareStatement(sql);
+        current.statements.put(sql, stmt);
+        return stmt;
+    }
+
+    public Statement createStatement() throws SQLException {
+        return connection().createStatement();
+    }
+
+    public void setAutoCommit(boolean autoCommit) throws SQLException {
+        connection().setAutoCommit(autoCommit);
+    }
+
+    public void commit() throws SQLException {
+        connection().commit();
+    }
+
+    public void rollback() throws SQLException {
+        connection().rollback();
+    }
+
+    /**
+     * Restituisce la connessione al pool. Chiamate successive non hanno effetto.
+     */
+    @Override
+    public void close() {
+        if (slot != null) {
+            SqliteConnectionPool.Slot released = slot;
+            slot = null;
+            pool.release(released);
+        }
+    }
+}
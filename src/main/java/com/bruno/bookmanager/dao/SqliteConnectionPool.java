@@ -0,0 +1,267 @@
+package com.bruno.bookmanager.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool di connessioni JDBC riutilizzabili verso un singolo database SQLite.
+ * <p>
+ * Le connessioni vengono aperte pigramente fino a {@code maxSize} e restituite al pool alla chiusura
+ * del {@link PooledConnection} ottenuto con {@link #acquire()}, evitando di pagare apertura del file e
+ * parsing dello schema ad ogni operazione. I database in memoria usano sempre una sola connessione,
+ * poiché ogni connessione {@code :memory:} aprirebbe un database distinto.
+ * <p>
+ * Ogni connessione fisica mantiene una cache LRU di statement preparati, indicizzata per testo SQL,
+ * accessibile tramite {@link PooledConnection#prepareCached(String)}.
+ */
+public class SqliteConnectionPool implements AutoCloseable {
+
+    /**
+     * Dimensione predefinita del pool.
+     */
+    public static final int DEFAULT_POOL_SIZE = 4;
+
+    private static final Logger logger = LoggerFactory.getLogger(SqliteConnectionPool.class);
+    private static final long ACQUIRE_TIMEOUT_SECONDS = 30;
+    private static final int STATEMENT_CACHE_SIZE = 32;
+
+    private final String url;
+    private final int maxSize;
+    private final SqliteProfile profile;
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<Slot> idle = new ConcurrentLinkedDeque<>();
+
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Crea un pool per l'URL indicato con il profilo predefinito.
+     *
+     * @param url     URL JDBC del database SQLite
+     * @param maxSize numero massimo di connessioni aperte contemporaneamente
+     * @throws IllegalArgumentException se maxSize è minore di 1
+     */
+    public SqliteConnectionPool(String url, int maxSize) {
+        this(url, maxSize, SqliteProfile.DEFAULT);
+    }
+
+    /**
+     * Crea un pool per l'URL indicato.
+     *
+     * @param url     URL JDBC del database SQLite
+     * @param maxSize numero massimo di connessioni aperte contemporaneamente
+     * @param profile profilo applicato a ogni connessione aperta dal pool
+     * @throws IllegalArgumentException se maxSize è minore di 1
+     */
+    public SqliteConnectionPool(String url, int maxSize, SqliteProfile profile) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("La dimensione del pool deve essere almeno 1");
+        }
+        this.url = url;
+        this.maxSize = isInMemory(url) ? 1 : maxSize;
+        this.profile = Objects.requireNonNull(profile);
+        this.permits = new Semaphore(this.maxSize, true);
+        logger.debug("Creato pool SQLite per {} con {} connessioni massime e profilo {}", url, this.maxSize,
+                profile);
+    }
+
+    static boolean isInMemory(String url) {
+        return url.contains(":memory:") || url.equals("jdbc:sqlite:");
+    }
+
+    /**
+     * Ottiene una connessione dal pool, aprendone una nuova se nessuna è libera e il limite non è raggiunto.
+     * La connessione va chiusa (tipicamente con try-with-resources) per restituirla al pool.
+     *
+     * @return connessione riservata al chiamante fino alla chiusura
+     * @throws SQLException se il pool è chiuso, se l'attesa supera il timeout o se l'apertura fallisce
+     */
+    public PooledConnection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Pool di connessioni chiuso: " + url);
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new SQLException("Timeout in attesa di una connessione libera verso " + url);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrotto in attesa di una connessione verso " + url, e);
+        }
+        waitNanos.addAndGet(System.nanoTime() - start);
+        acquisitions.incrementAndGet();
+
+        try {
+            Slot slot = idle.pollFirst();
+            if (slot == null) {
+                slot = new Slot(openConnection());
+            }
+            return new PooledConnection(this, slot);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Connection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        try {
+            profile.apply(connection);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        openConnections.incrementAndGet();
+        connectionsCreated.incrementAndGet();
+        logger.debug("Aperta nuova connessione verso {} ({} aperte)", url, openConnections.get());
+        return connection;
+    }
+
+    /**
+     * Restituisce una connessione al pool ripristinando l'autocommit. Le connessioni non più
+     * utilizzabili, o restituite dopo la chiusura del pool, vengono chiuse.
+     */
+    void release(Slot slot) {
+        Connection connection = slot.connection;
+        try {
+            boolean reusable = !closed && !connection.isClosed();
+            if (reusable && !connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+
+            if (reusable) {
+                idle.offerFirst(slot);
+            } else {
+                closeQuietly(connection);
+            }
+        } catch (SQLException e) {
+            logger.warn("Connessione verso {} scartata dopo un errore di ripristino", url, e);
+            closeQuietly(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    void recordStatementCacheLookup(boolean hit) {
+        (hit ? statementCacheHits : statementCacheMisses).incrementAndGet();
+    }
+
+    private void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.warn("Errore durante la chiusura di una connessione verso {}", url, e);
+        } finally {
+            openConnections.decrementAndGet();
+        }
+    }
+
+    /**
+     * Restituisce un'istantanea delle statistiche di utilizzo del pool.
+     *
+     * @return statistiche correnti
+     */
+    public PoolStats getStats() {
+        int open = openConnections.get();
+        int free = idle.size();
+        return new PoolStats(maxSize, open, free, maxSize - permits.availablePermits(), acquisitions.get(),
+                connectionsCreated.get(), TimeUnit.NANOSECONDS.toMillis(waitNanos.get()), statementCacheHits.get(),
+                statementCacheMisses.get());
+    }
+
+    /**
+     * Chiude le connessioni inattive; quelle in uso vengono chiuse alla loro restituzione.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        Slot slot;
+        while ((slot = idle.pollFirst()) != null) {
+            closeQuietly(slot.connection);
+        }
+        logger.info("Pool SQLite {} chiuso: {}", url, getStats());
+    }
+
+    /**
+     * @return profilo applicato alle connessioni del pool
+     */
+    public SqliteProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return true se il pool è stato chiuso
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Statistiche di utilizzo di un {@link SqliteConnectionPool}.
+     *
+     * @param maxSize              numero massimo di connessioni
+     * @param openConnections      connessioni attualmente aperte
+     * @param idleConnections      connessioni aperte e libere
+     * @param inUse                connessioni attualmente riservate dai chiamanti
+     * @param acquisitions         numero totale di richieste servite
+     * @param connectionsCreated   numero totale di connessioni aperte dalla creazione del pool
+     * @param totalWaitMillis      tempo complessivo trascorso in attesa di una connessione libera
+     * @param statementCacheHits   statement preparati riutilizzati dalla cache
+     * @param statementCacheMisses statement preparati da zero
+     */
+    public record PoolStats(int maxSize, int openConnections, int idleConnections, int inUse, long acquisitions,
+                            long connectionsCreated, long totalWaitMillis, long statementCacheHits,
+                            long statementCacheMisses) {
+    }
+
+    /**
+     * Connessione fisica con la relativa cache di statement preparati. La cache è usata da un solo
+     * chiamante alla volta, quello che ha riservato la connessione.
+     */
+    static final class Slot {
+        final Connection connection;
+        final Map<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= STATEMENT_CACHE_SIZE) {
+                    return false;
+                }
+                try {
+                    eldest.getValue().close();
+                } catch (SQLException e) {
+                    logger.debug("Errore durante la chiusura di uno statement rimosso dalla cache", e);
+                }
+                return true;
+            }
+        };
+
+        Slot(Connection connection) {
+            this.connection = connection;
+        }
+    }
+}
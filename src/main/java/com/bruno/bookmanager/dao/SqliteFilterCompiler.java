@@ -0,0 +1,146 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.filters.AndFilter;
+import com.bruno.bookmanager.filters.AutoreFilter;
+import com.bruno.bookmanager.filters.Filter;
+import com.bruno.bookmanager.filters.OrFilter;
+import com.bruno.bookmanager.filters.SqlFragment;
+import com.bruno.bookmanager.filters.TitoloFilter;
+import com.bruno.bookmanager.model.Libro;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Traduce un albero di filtri nella clausola WHERE usata da {@link SqliteLibroDAO}.
+ * <p>
+ * I filtri su titolo e autore vengono risolti sull'indice full-text {@code libri_fts} (tokenizer trigram),
+ * che a differenza di {@code LIKE '%testo%'} non richiede la scansione della tabella. Il tokenizer trigram
+ * gestisce solo testi di almeno tre caratteri: per quelli più brevi si usa il frammento SQL del filtro.
+ * Un OR tra titolo e autore sullo stesso testo diventa una sola ricerca su entrambe le colonne. Le catene di
+ * AND e di OR sono appiattite in un'unica espressione per operatore.
+ */
+final class SqliteFilterCompiler {
+
+    private static final int MIN_FTS_LENGTH = 3;
+
+    private SqliteFilterCompiler() {
+    }
+
+    /**
+     * @param filter filtro da tradurre
+     * @return frammento parametrizzato da usare nella clausola WHERE
+     */
+    static SqlFragment compile(Filter<Libro> filter) {
+        if (filter instanceof AndFilter<Libro> and) {
+            List<SqlFragment> operands = new ArrayList<>();
+            collectAnd(and, operands);
+            return SqlFragment.join("AND", operands);
+        }
+        if (filter instanceof OrFilter<Libro> or) {
+            Optional<String> combined = combinedTextMatch(or);
+            if (combined.isPresent()) {
+                return ftsMatch(combined.get());
+            }
+            List<SqlFragment> operands = new ArrayList<>();
+            collectOr(or, operands);
+            return SqlFragment.join("OR", operands);
+        }
+        return textMatch(filter).map(SqliteFilterCompiler::ftsMatch).orElseGet(filter::toSqlFragment);
+    }
+
+    /**
+     * Appiattisce una catena di congiunzioni in un'unica lista di operandi, senza parentesi annidate.
+     */
+    private static void collectAnd(Filter<Libro> filter, List<SqlFragment> operands) {
+        if (filter instanceof AndFilter<Libro> and) {
+            collectAnd(and.getLeft(), operands);
+            collectAnd(and.getRight(), operands);
+        } else {
+            operands.add(compile(filter));
+        }
+    }
+
+    /**
+     * Come {@link #collectAnd}, lasciando intere le disgiunzioni risolte con una sola ricerca full-text.
+     */
+    private static void collectOr(Filter<Libro> filter, List<SqlFragment> operands) {
+        if (filter instanceof OrFilter<Libro> or && combinedTextMatch(or).isEmpty()) {
+            collectOr(or.getLeft(), operands);
+            collectOr(or.getRight(), operands);
+        } else {
+            operands.add(compile(filter));
+        }
+    }
+
+    /**
+     * Costruisce l'espressione MATCH con cui ordinare per pertinenza: l'OR di tutte le ricerche testuali
+     * presenti nel filtro che possono usare l'indice full-text.
+     *
+     * @param filter filtro della ricerca
+     * @return espressione MATCH, vuota se il filtro non contiene ricerche testuali indicizzabili
+     */
+    static Optional<String> rankingMatch(Filter<Libro> filter) {
+        List<String> terms = new ArrayList<>();
+        collectTextMatches(filter, terms);
+        return terms.isEmpty() ? Optional.empty() : Optional.of(String.join(" OR ", terms));
+    }
+
+    private static void collectTextMatches(Filter<Libro> filter, List<String> terms) {
+        if (filter instanceof AndFilter<Libro> and) {
+            collectTextMatches(and.getLeft(), terms);
+            collectTextMatches(and.getRight(), terms);
+        } else if (filter instanceof OrFilter<Libro> or) {
+            Optional<String> combined = combinedTextMatch(or);
+            if (combined.isPresent()) {
+                terms.add(combined.get());
+            } else {
+                collectTextMatches(or.getLeft(), terms);
+                collectTextMatches(or.getRight(), terms);
+            }
+        } else {
+            textMatch(filter).ifPresent(terms::add);
+        }
+    }
+
+    private static SqlFragment ftsMatch(String matchExpression) {
+        return SqlFragment.of("libri.rowid IN (SELECT rowid FROM libri_fts WHERE libri_fts MATCH ?)",
+                matchExpression);
+    }
+
+    private static Optional<String> textMatch(Filter<Libro> filter) {
+        if (filter instanceof TitoloFilter titolo && isIndexable(titolo.getTitolo())) {
+            return Optional.of("titolo : " + phrase(titolo.getTitolo()));
+        }
+        if (filter instanceof AutoreFilter autore && isIndexable(autore.getAutore())) {
+            return Optional.of("autore : " + phrase(autore.getAutore()));
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<String> combinedTextMatch(OrFilter<Libro> or) {
+        String text = null;
+        if (or.getLeft() instanceof TitoloFilter t && or.getRight() instanceof AutoreFilter a
+                && t.getTitolo().equals(a.getAutore())) {
+            text = t.getTitolo();
+        } else if (or.getLeft() instanceof AutoreFilter a && or.getRight() instanceof TitoloFilter t
+                && t.getTitolo().equals(a.getAutore())) {
+            text = t.getTitolo();
+        }
+        return text != null && isIndexable(text) ? Optional.of("{titolo autore} : " + phrase(text))
+                : Optional.empty();
+    }
+
+    private static boolean isIndexable(String text) {
+        return text.codePointCount(0, text.length()) >= MIN_FTS_LENGTH;
+    }
+
+    /**
+     * Racchiude il testo in una frase FTS5, raddoppiando le virgolette: con il tokenizer trigram una frase
+     * corrisponde a qualsiasi sottostringa, prefissi compresi, senza distinzione tra maiuscole e minuscole.
+     */
+    private static String phrase(String text) {
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
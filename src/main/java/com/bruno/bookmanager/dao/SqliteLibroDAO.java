@@ -1,9 +1,15 @@
 package com.bruno.bookmanager.dao;
 
+import com.bruno.bookmanager.exception.BookManagerException;
 import com.bruno.bookmanager.exception.DAOException;
 import com.bruno.bookmanager.exception.LibroAlreadyExistsException;
 import com.bruno.bookmanager.exception.LibroNotFoundException;
+import com.bruno.bookmanager.exception.UncheckedDAOException;
+import com.bruno.bookmanager.filters.InMemorySearch;
+import com.bruno.bookmanager.filters.Page;
+import com.bruno.bookmanager.filters.PageToken;
 import com.bruno.bookmanager.filters.SearchCriteria;
+import com.bruno.bookmanager.filters.SqlFragment;
 import com.bruno.bookmanager.model.Genere;
 import com.bruno.bookmanager.model.Libro;
 import com.bruno.bookmanager.model.StatoLettura;
@@ -12,51 +18,101 @@ import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 /**
  * Implementazione di {@link LibroDAO} che utilizza un database SQLite per
  * la persistenza dei dati dei libri.
+ * <p>
+ * Le connessioni sono gestite da un {@link SqliteConnectionPool} e restano aperte fino a {@link #close()}.
+ * Le ricerche su titolo e autore usano l'indice full-text descritto in {@link SqliteFilterCompiler}.
+ * <p>
+ * La versione dei dati ({@link VersionedStorage}) è letta con {@code PRAGMA data_version} su una connessione
+ * dedicata, esterna al pool, su cui non avviene alcuna scrittura: il valore cambia a ogni commit di qualsiasi
+ * altra connessione, comprese quelle del pool.
  */
-public class SqliteLibroDAO implements LibroDAO, OptimizedSearch {
+public class SqliteLibroDAO implements LibroDAO, OptimizedSearch, VersionedStorage {
 
     private static final Logger logger = LoggerFactory.getLogger(SqliteLibroDAO.class);
 
+    /**
+     * Numero di libri per batch nelle scritture in blocco.
+     */
+    private static final int BULK_BATCH_SIZE = 500;
+
     private final String url;
+    private final SqliteConnectionPool pool;
+    private final SqliteWriteQueue writeQueue;
+
+    private final Object versionLock = new Object();
+    private Connection versionConnection;
+    private PreparedStatement versionStatement;
 
     /**
-     * Costruttore che inizializza la connessione e crea la tabella se assente.
+     * Costruttore che inizializza il pool di connessioni con la dimensione predefinita
+     * e crea la tabella se assente.
      *
      * @param url URL di connessione JDBC al database SQLite
      */
     public SqliteLibroDAO(String url) {
-        this.url = url;
+        this(url, SqliteConnectionPool.DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * Costruttore che inizializza il pool di connessioni con il profilo predefinito
+     * e crea la tabella se assente.
+     *
+     * @param url      URL di connessione JDBC al database SQLite
+     * @param poolSize numero massimo di connessioni mantenute aperte
+     */
+    public SqliteLibroDAO(String url, int poolSize) {
+        this(url, poolSize, SqliteProfile.DEFAULT);
+    }
+
+    /**
+     * Costruttore che inizializza il pool di connessioni e crea la tabella se assente.
+     *
+     * @param url      URL di connessione JDBC al database SQLite
+     * @param poolSize numero massimo di connessioni mantenute aperte
+     * @param profile  profilo di PRAGMA applicato a ogni connessione
+     */
+    public SqliteLibroDAO(String url, int poolSize, SqliteProfile profile) {
+        this(new Builder(url).poolSize(poolSize).profile(profile));
+    }
+
+    private SqliteLibroDAO(Builder builder) {
+        this.url = builder.url;
+        this.pool = new SqliteConnectionPool(url, builder.poolSize, builder.profile);
         try {
             initialize();
         } catch (DAOException e) {
             logger.error("Impossibile inizializzare il database SQLite", e);
+            pool.close();
             throw new RuntimeException("Inizializzazione database fallita", e);
         }
+        this.writeQueue = builder.groupCommit
+                ? new SqliteWriteQueue(pool, builder.groupCommitDelayMillis, builder.groupCommitBatchSize) : null;
     }
 
     private void initialize() throws DAOException {
-        String sql = """
-                CREATE TABLE IF NOT EXISTS libri (
-                                isbn TEXT PRIMARY KEY,
-                                titolo TEXT NOT NULL,
-                                autore TEXT,
-                                genere TEXT,
-                                valutazione INTEGER CHECK(valutazione >= 0 AND valutazione <= 5),
-                                stato TEXT NOT NULL
-                            );
-                """;
-
-        try (Connection conn = DriverManager.getConnection(url);
-             Statement stmt = conn.createStatement()) {
-
-            stmt.execute(sql);
+        try (PooledConnection conn = pool.acquire()) {
+            SqliteSchema.initialize(conn);
+            verifyProfile(conn);
             logger.info("Database SQLite inizializzato correttamente: {}", url);
 
         } catch (SQLException e) {
@@ -65,12 +121,69 @@ public class SqliteLibroDAO implements LibroDAO, OptimizedSearch {
         }
     }
 
+    /**
+     * Confronta i PRAGMA effettivi con quelli del profilo. Una differenza non impedisce l'uso del database
+     * (ad esempio un file system che non supporta il WAL) ma viene segnalata, perché cambia le prestazioni
+     * e le garanzie di durabilità attese.
+     */
+    private void verifyProfile(PooledConnection conn) throws SQLException {
+        Map<String, String> actual = readPragmas(conn, pool.getProfile().settings().keySet());
+        pool.getProfile().settings().forEach((pragma, expected) -> {
+            // I database in memoria usano sempre il journal in memoria
+            if (pragma.equals("journal_mode") && SqliteConnectionPool.isInMemory(url)) {
+                return;
+            }
+            if (!expected.equalsIgnoreCase(actual.get(pragma))) {
+                logger.warn("PRAGMA {} del profilo {} non applicato su {}: atteso {}, effettivo {}", pragma,
+                        pool.getProfile(), url, expected, actual.get(pragma));
+            }
+        });
+        logger.debug("PRAGMA effettivi per {}: {}", url, actual);
+    }
+
+    private static Map<String, String> readPragmas(PooledConnection conn, Collection<String> pragmas)
+            throws SQLException {
+        Map<String, String> values = new LinkedHashMap<>();
+        try (Statement stmt = conn.createStatement()) {
+            for (String pragma : pragmas) {
+                try (ResultSet rs = stmt.executeQuery("PRAGMA " + pragma)) {
+                    values.put(pragma, rs.next() ? rs.getString(1) : null);
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Legge i valori correnti dei PRAGMA gestiti dal profilo, su una connessione del pool.
+     *
+     * @return nome del PRAGMA e valore effettivo
+     * @throws DAOException se la lettura fallisce
+     */
+    public Map<String, String> getPragmaSettings() throws DAOException {
+        try (PooledConnection conn = pool.acquire()) {
+            return readPragmas(conn, pool.getProfile().settings().keySet());
+        } catch (SQLException e) {
+            logger.error("Errore durante la lettura dei PRAGMA", e);
+            throw new DAOException("Impossibile leggere la configurazione del database", e);
+        }
+    }
+
     private Libro mapRowToLibro(ResultSet rs) throws SQLException {
         return new Libro(rs.getString("titolo"), rs.getString("autore"), rs.getString("isbn"),
                 Genere.fromString(rs.getString("genere")), rs.getInt("valutazione"),
                 StatoLettura.valueOf(rs.getString("stato")));
     }
 
+    private void setUpdateParameters(PreparedStatement stmt, Libro libro) throws SQLException {
+        stmt.setString(1, libro.getTitolo());
+        stmt.setString(2, libro.getAutore());
+        stmt.setString(3, libro.getGenereName());
+        stmt.setInt(4, libro.getValutazione());
+        stmt.setString(5, libro.getStatoLettura().name());
+        stmt.setString(6, libro.getIsbn());
+    }
+
     private void setLibroParameters(PreparedStatement stmt, Libro libro) throws SQLException {
         stmt.setString(1, libro.getIsbn());
         stmt.setString(2, libro.getTitolo());
@@ -85,7 +198,7 @@ public class SqliteLibroDAO implements LibroDAO, OptimizedSearch {
         String sql = "SELECT * FROM libri";
         List<Libro> libri = new ArrayList<>();
 
-        try (Connection conn = DriverManager.getConnection(url);
+        try (PooledConnection conn = pool.acquire();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
 
@@ -101,6 +214,17 @@ public class SqliteLibroDAO implements LibroDAO, OptimizedSearch {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Le righe vengono lette dal ResultSet durante il consumo; valgono le avvertenze di
+     * {@link #searchStream(SearchCriteria)}.
+     */
+    @Override
+    public Stream<Libro> streamAll() throws DAOException {
+        return streamQuery(SqlFragment.of("SELECT * FROM libri"));
+    }
+
     @Override
     public void saveAll(List<Libro> libri) throws DAOException {
         String deleteSql = "DELETE FROM libri";
@@ -109,7 +233,7 @@ public class SqliteLibroDAO implements LibroDAO, OptimizedSearch {
                 VALUES (?, ?, ?, ?, ?, ?)
                 """;
 
-        try (Connection conn = DriverManager.getConnection(url)) {
+        try (PooledConnection conn = pool.acquire()) {
             conn.setAutoCommit(false);
 
             try {
@@ -139,13 +263,98 @@ public class SqliteLibroDAO implements LibroDAO, OptimizedSearch {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Tutti i libri vengono inseriti in un'unica transazione, con batch di
+     * {@code INSERT ... ON CONFLICT(isbn) DO NOTHING}: il numero di righe inserite da ciascun comando indica
+     * se il libro era già presente. La scrittura non passa dalla coda di commit di gruppo.
+     */
+    @Override
+    public BulkResult addAll(Collection<Libro> libri) throws DAOException {
+        return bulkWrite(libri, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * In un'unica transazione, ogni batch tenta prima l'inserimento con {@code ON CONFLICT(isbn) DO NOTHING}
+     * e aggiorna poi, con un secondo batch, i soli libri già presenti.
+     */
+    @Override
+    public BulkResult upsertAll(Collection<Libro> libri) throws DAOException {
+        return bulkWrite(libri, true);
+    }
+
+    private BulkResult bulkWrite(Collection<Libro> libri, boolean upsert) throws DAOException {
+        String insertSql = """
+                INSERT INTO libri (isbn, titolo, autore, genere, valutazione, stato)
+                VALUES (?, ?, ?, ?, ?, ?)
+                ON CONFLICT(isbn) DO NOTHING
+                """;
+        String updateSql = """
+                UPDATE libri SET titolo=?, autore=?, genere=?, valutazione=?, stato=?
+                WHERE isbn=?
+                """;
+        List<Libro> pending = new ArrayList<>(libri);
+        BulkResult.Outcome[] outcomes = new BulkResult.Outcome[pending.size()];
+
+        try (PooledConnection conn = pool.acquire()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement insert = conn.prepareStatement(insertSql);
+                 PreparedStatement update = conn.prepareStatement(updateSql)) {
+                for (int from = 0; from < pending.size(); from += BULK_BATCH_SIZE) {
+                    int to = Math.min(from + BULK_BATCH_SIZE, pending.size());
+                    for (int i = from; i < to; i++) {
+                        setLibroParameters(insert, pending.get(i));
+                        insert.addBatch();
+                    }
+                    int[] inserted = insert.executeBatch();
+
+                    boolean updates = false;
+                    for (int i = from; i < to; i++) {
+                        if (inserted[i - from] > 0) {
+                            outcomes[i] = BulkResult.Outcome.ADDED;
+                        } else if (upsert) {
+                            setUpdateParameters(update, pending.get(i));
+                            update.addBatch();
+                            outcomes[i] = BulkResult.Outcome.UPDATED;
+                            updates = true;
+                        } else {
+                            outcomes[i] = BulkResult.Outcome.ALREADY_EXISTS;
+                        }
+                    }
+                    if (updates) {
+                        update.executeBatch();
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Errore durante la scrittura in blocco di {} libri", pending.size(), e);
+            throw new DAOException("Impossibile salvare i libri nel database", e);
+        }
+
+        List<BulkResult.Entry> entries = new ArrayList<>(pending.size());
+        for (int i = 0; i < pending.size(); i++) {
+            entries.add(BulkResult.Entry.of(pending.get(i).getIsbn(), outcomes[i]));
+        }
+        BulkResult result = new BulkResult(entries);
+        logger.info("Scrittura in blocco su {}: {} aggiunti, {} aggiornati, {} già presenti", url,
+                result.count(BulkResult.Outcome.ADDED), result.count(BulkResult.Outcome.UPDATED),
+                result.count(BulkResult.Outcome.ALREADY_EXISTS));
+        return result;
+    }
+
     @Override
     public Optional<Libro> getByIsbn(String isbn) throws DAOException {
         String sql = "SELECT * FROM libri WHERE isbn = ?";
 
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement stmt = conn.prepareCached(sql);
             stmt.setString(1, isbn);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -166,27 +375,36 @@ public class SqliteLibroDAO implements LibroDAO, OptimizedSearch {
 
     @Override
     public void add(Libro libro) throws LibroAlreadyExistsException, DAOException {
+        if (writeQueue != null) {
+            awaitGroupCommit(addAsync(libro), LibroAlreadyExistsException.class);
+            return;
+        }
+        try (PooledConnection conn = pool.acquire()) {
+            insert(conn, libro);
+        } catch (SQLException e) {
+            logger.error("Errore durante l'aggiunta del libro con ISBN {}", libro.getIsbn(), e);
+            throw new DAOException("Impossibile aggiungere il libro", e);
+        }
+    }
+
+    private void insert(PooledConnection conn, Libro libro) throws SQLException, LibroAlreadyExistsException {
         String sql = """
                 INSERT INTO libri (isbn, titolo, autore, genere, valutazione, stato)
                 VALUES (?, ?, ?, ?, ?, ?)
                 """;
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            setLibroParameters(stmt, libro);
+        PreparedStatement stmt = conn.prepareCached(sql);
+        setLibroParameters(stmt, libro);
+        try {
             stmt.executeUpdate();
-
-            logger.info("Aggiunto libro: {} (ISBN: {})", libro.getTitolo(), libro.getIsbn());
-
         } catch (SQLException e) {
             if (isPrimaryKeyViolation(e)) {
                 logger.warn("Tentativo di aggiunta libro già esistente con ISBN {}", libro.getIsbn());
                 throw new LibroAlreadyExistsException(libro.getIsbn());
             }
-
-            logger.error("Errore durante l'aggiunta del libro con ISBN {}", libro.getIsbn(), e);
-            throw new DAOException("Impossibile aggiungere il libro", e);
+            throw e;
         }
+
+        logger.info("Aggiunto libro: {} (ISBN: {})", libro.getTitolo(), libro.getIsbn());
     }
 
     /**
@@ -202,56 +420,170 @@ public class SqliteLibroDAO implements LibroDAO, OptimizedSearch {
 
     @Override
     public void removeByIsbn(String isbn) throws LibroNotFoundException, DAOException {
-        String sql = "DELETE FROM libri WHERE isbn = ?";
-
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, isbn);
-            int deleted = stmt.executeUpdate();
-
-            if (deleted == 0) {
-                logger.warn("Tentativo di rimozione libro non esistente con ISBN {}", isbn);
-                throw new LibroNotFoundException(isbn);
-            }
-
-            logger.info("Rimosso libro con ISBN {}", isbn);
-
+        if (writeQueue != null) {
+            awaitGroupCommit(removeByIsbnAsync(isbn), LibroNotFoundException.class);
+            return;
+        }
+        try (PooledConnection conn = pool.acquire()) {
+            delete(conn, isbn);
         } catch (SQLException e) {
             logger.error("Errore durante la rimozione del libro con ISBN {}", isbn, e);
             throw new DAOException("Impossibile rimuovere il libro con ISBN " + isbn, e);
         }
     }
 
+    private void delete(PooledConnection conn, String isbn) throws SQLException, LibroNotFoundException {
+        PreparedStatement stmt = conn.prepareCached("DELETE FROM libri WHERE isbn = ?");
+        stmt.setString(1, isbn);
+        int deleted = stmt.executeUpdate();
+
+        if (deleted == 0) {
+            logger.warn("Tentativo di rimozione libro non esistente con ISBN {}", isbn);
+            throw new LibroNotFoundException(isbn);
+        }
+
+        logger.info("Rimosso libro con ISBN {}", isbn);
+    }
+
     @Override
     public void update(Libro libro) throws LibroNotFoundException, DAOException {
+        if (writeQueue != null) {
+            awaitGroupCommit(updateAsync(libro), LibroNotFoundException.class);
+            return;
+        }
+        try (PooledConnection conn = pool.acquire()) {
+            updateRow(conn, libro);
+        } catch (SQLException e) {
+            logger.error("Errore durante l'aggiornamento del libro con ISBN {}", libro.getIsbn(), e);
+            throw new DAOException("Impossibile aggiornare il libro", e);
+        }
+    }
+
+    private void updateRow(PooledConnection conn, Libro libro) throws SQLException, LibroNotFoundException {
         String sql = """
                 UPDATE libri SET titolo=?, autore=?, genere=?, valutazione=?, stato=?
                 WHERE isbn=?
                 """;
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        PreparedStatement stmt = conn.prepareCached(sql);
+        setUpdateParameters(stmt, libro);
 
-            stmt.setString(1, libro.getTitolo());
-            stmt.setString(2, libro.getAutore());
-            stmt.setString(3, libro.getGenereName());
-            stmt.setInt(4, libro.getValutazione());
-            stmt.setString(5, libro.getStatoLettura().name());
-            stmt.setString(6, libro.getIsbn());
+        int updated = stmt.executeUpdate();
 
-            int updated = stmt.executeUpdate();
+        if (updated == 0) {
+            logger.warn("Tentativo di aggiornamento libro non esistente con ISBN {}", libro.getIsbn());
+            throw new LibroNotFoundException(libro.getIsbn());
+        }
 
-            if (updated == 0) {
-                logger.warn("Tentativo di aggiornamento libro non esistente con ISBN {}", libro.getIsbn());
-                throw new LibroNotFoundException(libro.getIsbn());
-            }
+        logger.info("Aggiornato libro: {} (ISBN: {})", libro.getTitolo(), libro.getIsbn());
+    }
 
+    // ============= SCRITTURE ASINCRONE =============
 
-            logger.info("Aggiornato libro: {} (ISBN: {})", libro.getTitolo(), libro.getIsbn());
-        } catch (SQLException e) {
-            logger.error("Errore durante l'aggiornamento del libro con ISBN {}", libro.getIsbn(), e);
-            throw new DAOException("Impossibile aggiornare il libro", e);
+    /**
+     * Aggiunge un libro senza attenderne la conferma. Con il commit di gruppo attivo la scrittura viene
+     * accodata ed eseguita insieme alle altre; altrimenti viene eseguita subito.
+     *
+     * @param libro libro da aggiungere
+     * @return future completato dopo il commit, o fallito con {@link LibroAlreadyExistsException} o
+     * {@link DAOException}
+     */
+    public CompletableFuture<Void> addAsync(Libro libro) {
+        if (writeQueue != null) {
+            return writeQueue.submit(conn -> insert(conn, libro));
+        }
+        return runNow(() -> add(libro));
+    }
+
+    /**
+     * Aggiorna un libro senza attenderne la conferma, come {@link #addAsync(Libro)}.
+     *
+     * @param libro libro aggiornato
+     * @return future completato dopo il commit, o fallito con {@link LibroNotFoundException} o
+     * {@link DAOException}
+     */
+    public CompletableFuture<Void> updateAsync(Libro libro) {
+        if (writeQueue != null) {
+            return writeQueue.submit(conn -> updateRow(conn, libro));
+        }
+        return runNow(() -> update(libro));
+    }
+
+    /**
+     * Rimuove un libro senza attenderne la conferma, come {@link #addAsync(Libro)}.
+     *
+     * @param isbn ISBN del libro da rimuovere
+     * @return future completato dopo il commit, o fallito con {@link LibroNotFoundException} o
+     * {@link DAOException}
+     */
+    public CompletableFuture<Void> removeByIsbnAsync(String isbn) {
+        if (writeQueue != null) {
+            return writeQueue.submit(conn -> delete(conn, isbn));
         }
+        return runNow(() -> removeByIsbn(isbn));
+    }
+
+    @FunctionalInterface
+    private interface Write {
+        void run() throws BookManagerException;
+    }
+
+    private static CompletableFuture<Void> runNow(Write write) {
+        try {
+            write.run();
+            return CompletableFuture.completedFuture(null);
+        } catch (BookManagerException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Attende il commit di una scrittura accodata, rilanciando l'eccezione di dominio attesa o
+     * una {@link DAOException}.
+     */
+    private static <E extends BookManagerException> void awaitGroupCommit(CompletableFuture<Void> result,
+                                                                          Class<E> domainException)
+            throws E, DAOException {
+        try {
+            result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DAOException("Interrotto in attesa della conferma della scrittura", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (domainException.isInstance(cause)) {
+                throw domainException.cast(cause);
+            }
+            if (cause instanceof DAOException daoException) {
+                throw daoException;
+            }
+            throw new DAOException("Scrittura non riuscita", cause);
+        }
+    }
+
+    /**
+     * @return true se le scritture singole vengono confermate a gruppi
+     */
+    public boolean isGroupCommitEnabled() {
+        return writeQueue != null;
+    }
+
+    /**
+     * Restituisce quante transazioni e quante scritture ha confermato la coda di commit di gruppo.
+     *
+     * @return statistiche della coda, con valori a zero se il commit di gruppo non è attivo
+     */
+    public GroupCommitStats getGroupCommitStats() {
+        return writeQueue == null ? new GroupCommitStats(0, 0)
+                : new GroupCommitStats(writeQueue.getCommits(), writeQueue.getMutations());
+    }
+
+    /**
+     * Statistiche del commit di gruppo.
+     *
+     * @param commits   transazioni confermate
+     * @param mutations scritture incluse nelle transazioni confermate
+     */
+    public record GroupCommitStats(long commits, long mutations) {
     }
 
     @Override
@@ -259,49 +591,438 @@ public class SqliteLibroDAO implements LibroDAO, OptimizedSearch {
         if (criteria == null) {
             return getAll();
         }
+        return searchPage(criteria).items();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * La pagina successiva al cursore si ottiene con un confronto tra row value
+     * {@code (colonna, isbn) > (?, ?)} seguito da {@code LIMIT}, che sfrutta gli indici di ordinamento
+     * senza scorrere le righe delle pagine precedenti. L'ordinamento per pertinenza con punteggio bm25
+     * non è paginabile, perché il punteggio non è una chiave stabile del libro.
+     *
+     * @throws IllegalArgumentException se si richiede la paginazione di un ordinamento per pertinenza
+     *                                  su una ricerca testuale, o se il token non corrisponde ai criteri
+     */
+    @Override
+    public Page<Libro> searchPage(SearchCriteria criteria) throws DAOException {
+        if (criteria == null) {
+            criteria = SearchCriteria.all();
+        }
+        SqlFragment query = buildSearchQuery(criteria);
 
-        StringBuilder sql = new StringBuilder("SELECT * FROM libri");
+        try (PooledConnection conn = pool.acquire()) {
+            // Lo statement resta nella cache della connessione: si chiude solo il ResultSet
+            PreparedStatement stmt = prepareQuery(conn, query);
 
-        // Applica filtro se presente
-        if (criteria.hasFilter()) {
-            try {
-                String whereClause = criteria.getFilter().toSqlClause();
-                if (whereClause != null && !whereClause.trim().isEmpty()) {
-                    sql.append(" WHERE ").append(whereClause);
+            List<Libro> result = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    result.add(mapRowToLibro(rs));
                 }
-            } catch (Exception e) {
-                logger.error("Errore nell'applicare il filtro: {}", e.getMessage());
-                throw new DAOException("Impossibile convertire il filtro", e);
             }
+
+            logger.debug("Search completed: found {} books", result.size());
+            return InMemorySearch.toPage(result, criteria);
+
+        } catch (SQLException e) {
+            logger.error("Error during search operation", e);
+            throw new DAOException("Error during search operation", e);
         }
+    }
 
-        // Applica ordinamento se presente
-        if (criteria.hasSorting()) {
-            sql.append(" ORDER BY ");
-            sql.append(criteria.getSortField().name().toLowerCase());
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Lo stream è alimentato direttamente dal ResultSet e trattiene una connessione del pool fino alla
+     * chiusura; finché resta aperto la connessione mantiene anche una transazione di lettura, quindi va
+     * consumato e chiuso senza attese. Se i criteri sono paginati lo stream contiene solo la pagina richiesta.
+     */
+    @Override
+    public Stream<Libro> searchStream(SearchCriteria criteria) throws DAOException {
+        if (criteria == null) {
+            return streamAll();
+        }
+        Stream<Libro> stream = streamQuery(buildSearchQuery(criteria));
+        return criteria.hasPaging() ? stream.limit(criteria.getPageSize()) : stream;
+    }
+
+    /**
+     * Costruisce la query di ricerca: filtro, cursore di paginazione, ordinamento e limite.
+     */
+    private SqlFragment buildSearchQuery(SearchCriteria criteria) throws DAOException {
+        criteria.checkPageToken();
+
+        StringBuilder sql = new StringBuilder("SELECT libri.* FROM libri");
+        List<Object> parameters = new ArrayList<>();
 
-            if (!criteria.isSortAsc()) {
-                sql.append(" DESC");
+        // Per l'ordinamento per rilevanza si unisce il punteggio bm25 delle ricerche testuali
+        Optional<String> rankingMatch = Optional.empty();
+        if (criteria.hasFilter() && criteria.getSortField() == SearchCriteria.SortField.RILEVANZA) {
+            rankingMatch = SqliteFilterCompiler.rankingMatch(criteria.getFilter());
+        }
+        if (rankingMatch.isPresent() && criteria.hasPaging()) {
+            throw new IllegalArgumentException("L'ordinamento per pertinenza non supporta la paginazione");
+        }
+        if (rankingMatch.isPresent()) {
+            sql.append(" LEFT JOIN (SELECT rowid AS fts_rowid, bm25(libri_fts) AS fts_rank FROM libri_fts")
+                    .append(" WHERE libri_fts MATCH ?) r ON r.fts_rowid = libri.rowid");
+            parameters.add(rankingMatch.get());
+        }
+
+        // Applica filtro e cursore se presenti
+        List<String> conditions = new ArrayList<>();
+        Optional<SqlFragment> where = filterCondition(criteria);
+        if (where.isPresent()) {
+            conditions.add(where.get().sql());
+            parameters.addAll(where.get().parameters());
+        }
+        if (criteria.hasPaging() && criteria.getAfter() != null) {
+            SqlFragment keyset = keysetCondition(criteria.getAfter());
+            conditions.add(keyset.sql());
+            parameters.addAll(keyset.parameters());
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+
+        // Applica ordinamento se presente; la paginazione richiede sempre un ordine totale
+        if (criteria.hasSorting() || criteria.hasPaging()) {
+            SearchCriteria.SortField field = criteria.getKeysetSortField();
+            String direction = criteria.isKeysetAsc() ? "" : " DESC";
+            sql.append(" ORDER BY ");
+            if (rankingMatch.isPresent()) {
+                // bm25 è tanto più basso quanto più il libro è pertinente; chi non corrisponde va in coda
+                sql.append("r.fts_rank IS NULL, r.fts_rank").append(direction).append(", ");
+            }
+            sql.append(orderByColumn(field)).append(direction);
+            if (field != SearchCriteria.SortField.ISBN) {
+                sql.append(", isbn").append(direction);
             }
         }
 
+        // Si legge un libro in più per sapere se esiste una pagina successiva
+        if (criteria.hasPaging()) {
+            sql.append(" LIMIT ?");
+            parameters.add(criteria.getPageSize() + 1);
+        }
+
         logger.debug("Executing search query: {}", sql);
+        return new SqlFragment(sql.toString(), parameters);
+    }
 
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement stmt = conn.prepareStatement(sql.toString());
-             ResultSet rs = stmt.executeQuery()) {
+    private static Optional<SqlFragment> filterCondition(SearchCriteria criteria) throws DAOException {
+        if (criteria == null || !criteria.hasFilter()) {
+            return Optional.empty();
+        }
+        try {
+            SqlFragment where = SqliteFilterCompiler.compile(criteria.getFilter());
+            return where == null || where.sql().isBlank() ? Optional.empty() : Optional.of(where);
+        } catch (Exception e) {
+            logger.error("Errore nell'applicare il filtro: {}", e.getMessage());
+            throw new DAOException("Impossibile convertire il filtro", e);
+        }
+    }
 
-            List<Libro> result = new ArrayList<>();
+    // ============= AGGREGAZIONI =============
+
+    @Override
+    public long count(SearchCriteria criteria) throws DAOException {
+        return aggregate("COUNT(*)", null, null, criteria, rs -> rs.next() ? rs.getLong(1) : 0L);
+    }
+
+    @Override
+    public Map<Genere, Long> countByGenere(SearchCriteria criteria) throws DAOException {
+        Map<Genere, Long> counts = new HashMap<>();
+        // Un genere non riconosciuto viene contato come libro senza genere, come in mapRowToLibro
+        groupCount("genere", criteria).forEach(
+                (genere, count) -> counts.merge(Genere.fromString(genere), count, Long::sum));
+        return InMemorySearch.orderedCounts(counts, Comparator.naturalOrder());
+    }
+
+    @Override
+    public Map<StatoLettura, Long> countByStato(SearchCriteria criteria) throws DAOException {
+        Map<StatoLettura, Long> counts = new HashMap<>();
+        groupCount("stato", criteria).forEach((stato, count) -> counts.put(StatoLettura.valueOf(stato), count));
+        return InMemorySearch.orderedCounts(counts, Comparator.naturalOrder());
+    }
+
+    @Override
+    public Map<Integer, Long> countByValutazione(SearchCriteria criteria) throws DAOException {
+        Map<Integer, Long> counts = new HashMap<>();
+        groupCount("valutazione", criteria).forEach((valutazione, count) -> counts.merge(
+                valutazione == null ? 0 : Integer.valueOf(valutazione), count, Long::sum));
+        return InMemorySearch.orderedCounts(counts, Comparator.naturalOrder());
+    }
+
+    @Override
+    public OptionalDouble averageValutazione(SearchCriteria criteria) throws DAOException {
+        return aggregate("AVG(valutazione)", SqlFragment.of("valutazione > 0"), null, criteria, rs -> {
+            if (!rs.next()) {
+                return OptionalDouble.empty();
+            }
+            double average = rs.getDouble(1);
+            return rs.wasNull() ? OptionalDouble.empty() : OptionalDouble.of(average);
+        });
+    }
+
+    private Map<String, Long> groupCount(String column, SearchCriteria criteria) throws DAOException {
+        // La colonna è una costante interna, mai un valore fornito dall'utente
+        return aggregate(column + ", COUNT(*)", null, column, criteria, rs -> {
+            Map<String, Long> counts = new HashMap<>();
             while (rs.next()) {
-                result.add(mapRowToLibro(rs));
+                counts.put(rs.getString(1), rs.getLong(2));
             }
+            return counts;
+        });
+    }
 
-            logger.debug("Search completed: found {} books", result.size());
-            return result;
+    /**
+     * Esegue una query di aggregazione sui libri che soddisfano il filtro dei criteri: nessuna riga di
+     * libro viene trasferita, solo il risultato dell'aggregazione.
+     */
+    private <T> T aggregate(String select, SqlFragment extraCondition, String groupBy, SearchCriteria criteria,
+                            ResultReader<T> reader) throws DAOException {
+        StringBuilder sql = new StringBuilder("SELECT ").append(select).append(" FROM libri");
+        List<String> conditions = new ArrayList<>();
+        List<Object> parameters = new ArrayList<>();
+        Optional<SqlFragment> where = filterCondition(criteria);
+        if (where.isPresent()) {
+            conditions.add(where.get().sql());
+            parameters.addAll(where.get().parameters());
+        }
+        if (extraCondition != null) {
+            conditions.add(extraCondition.sql());
+            parameters.addAll(extraCondition.parameters());
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        if (groupBy != null) {
+            sql.append(" GROUP BY ").append(groupBy);
+        }
+
+        logger.debug("Executing aggregate query: {}", sql);
 
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement stmt = prepareQuery(conn, new SqlFragment(sql.toString(), parameters));
+            try (ResultSet rs = stmt.executeQuery()) {
+                return reader.read(rs);
+            }
         } catch (SQLException e) {
-            logger.error("Error during search operation", e);
-            throw new DAOException("Error during search operation", e);
+            logger.error("Errore durante l'aggregazione sui libri", e);
+            throw new DAOException("Impossibile calcolare l'aggregazione sui libri", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ResultReader<T> {
+        T read(ResultSet rs) throws SQLException;
+    }
+
+    private static PreparedStatement prepareQuery(PooledConnection conn, SqlFragment query) throws SQLException {
+        PreparedStatement stmt = conn.prepareCached(query.sql());
+        for (int i = 0; i < query.parameters().size(); i++) {
+            stmt.setObject(i + 1, query.parameters().get(i));
+        }
+        return stmt;
+    }
+
+    /**
+     * Esegue la query e restituisce uno stream che legge le righe dal ResultSet man mano che viene
+     * consumato. La chiusura dello stream chiude il ResultSet e restituisce la connessione al pool.
+     */
+    private Stream<Libro> streamQuery(SqlFragment query) throws DAOException {
+        PooledConnection conn = null;
+        ResultSet rs;
+        try {
+            conn = pool.acquire();
+            rs = prepareQuery(conn, query).executeQuery();
+        } catch (SQLException e) {
+            if (conn != null) {
+                conn.close();
+            }
+            logger.error("Errore durante l'apertura del cursore sui libri", e);
+            throw new DAOException("Impossibile leggere i libri dal database", e);
+        }
+
+        PooledConnection lease = conn;
+        Spliterator<Libro> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Libro> action) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    action.accept(mapRowToLibro(rs));
+                    return true;
+                } catch (SQLException e) {
+                    logger.error("Errore durante la lettura del cursore sui libri", e);
+                    throw new UncheckedDAOException(
+                            new DAOException("Impossibile leggere i libri dal database", e));
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false).onClose(() -> {
+            try {
+                rs.close();
+            } catch (SQLException e) {
+                logger.warn("Errore durante la chiusura del cursore sui libri", e);
+            } finally {
+                lease.close();
+            }
+        });
+    }
+
+    /**
+     * Condizione che seleziona i libri successivi al cursore nell'ordine della ricerca.
+     * <p>
+     * In SQLite i NULL precedono ogni altro valore in ordine crescente, ma un confronto con NULL non è mai
+     * vero: per le colonne che ammettono NULL i libri senza valore vanno quindi gestiti esplicitamente.
+     */
+    private static SqlFragment keysetCondition(PageToken after) {
+        SearchCriteria.SortField field = after.getSortField();
+        String column = orderByColumn(field);
+        String op = after.isAsc() ? ">" : "<";
+        if (field == SearchCriteria.SortField.ISBN) {
+            return SqlFragment.of("isbn " + op + " ?", after.getIsbn());
+        }
+
+        boolean nullable = field == SearchCriteria.SortField.AUTORE || field == SearchCriteria.SortField.GENERE;
+        String rawColumn = column.replace(" COLLATE NOCASE", "");
+        if (after.getKey() == null) {
+            return after.isAsc()
+                    ? SqlFragment.of("(" + rawColumn + " IS NOT NULL OR isbn > ?)", after.getIsbn())
+                    : SqlFragment.of("(" + rawColumn + " IS NULL AND isbn < ?)", after.getIsbn());
+        }
+        String rowValue = "(" + column + ", isbn) " + op + " (?, ?)";
+        if (nullable && !after.isAsc()) {
+            rowValue = "(" + rowValue + " OR " + rawColumn + " IS NULL)";
+        }
+        return SqlFragment.of(rowValue, after.getKey(), after.getIsbn());
+    }
+
+    /**
+     * Espressione di ordinamento per il campo indicato. Titolo e autore usano la collation NOCASE,
+     * la stessa degli indici di ordinamento e di {@link SearchCriteria.SortField#comparator()}.
+     * Per la rilevanza è l'ordinamento secondario, dopo il punteggio bm25.
+     */
+    private static String orderByColumn(SearchCriteria.SortField field) {
+        return switch (field) {
+            case TITOLO, RILEVANZA -> "titolo COLLATE NOCASE";
+            case AUTORE -> "autore COLLATE NOCASE";
+            case VALUTAZIONE -> "valutazione";
+            case GENERE -> "genere";
+            case STATO -> "stato";
+            case ISBN -> "isbn";
+        };
+    }
+
+    @Override
+    public long dataVersion() throws DAOException {
+        if (SqliteConnectionPool.isInMemory(url)) {
+            // Un database in memoria è visibile solo dall'unica connessione del pool
+            return 0;
+        }
+        synchronized (versionLock) {
+            try {
+                if (versionConnection == null) {
+                    versionConnection = DriverManager.getConnection(url);
+                    versionStatement = versionConnection.prepareStatement("PRAGMA data_version");
+                }
+                try (ResultSet rs = versionStatement.executeQuery()) {
+                    rs.next();
+                    return rs.getLong(1);
+                }
+            } catch (SQLException e) {
+                logger.error("Errore durante la lettura della versione del database {}", url, e);
+                throw new DAOException("Impossibile leggere la versione del database " + url, e);
+            }
+        }
+    }
+
+    /**
+     * Restituisce le statistiche di utilizzo del pool di connessioni.
+     *
+     * @return statistiche correnti del pool
+     */
+    public SqliteConnectionPool.PoolStats getPoolStats() {
+        return pool.getStats();
+    }
+
+    /**
+     * Chiude tutte le connessioni del pool. Dopo la chiusura il DAO non è più utilizzabile.
+     */
+    @Override
+    public void close() {
+        if (writeQueue != null) {
+            // Conferma le scritture ancora in coda prima di chiudere le connessioni
+            writeQueue.close();
+        }
+        synchronized (versionLock) {
+            if (versionConnection != null) {
+                try {
+                    versionConnection.close();
+                } catch (SQLException e) {
+                    logger.debug("Errore durante la chiusura della connessione di versione", e);
+                }
+                versionConnection = null;
+            }
+        }
+        pool.close();
+        logger.debug("SqliteLibroDAO chiuso: {}", url);
+    }
+
+    /**
+     * Builder per configurare un {@link SqliteLibroDAO} oltre ai valori predefiniti.
+     */
+    public static class Builder {
+        private final String url;
+        private int poolSize = SqliteConnectionPool.DEFAULT_POOL_SIZE;
+        private SqliteProfile profile = SqliteProfile.DEFAULT;
+        private boolean groupCommit;
+        private long groupCommitDelayMillis;
+        private int groupCommitBatchSize;
+
+        /**
+         * @param url URL di connessione JDBC al database SQLite
+         */
+        public Builder(String url) {
+            this.url = url;
+        }
+
+        public Builder poolSize(int poolSize) {
+            this.poolSize = poolSize;
+            return this;
+        }
+
+        public Builder profile(SqliteProfile profile) {
+            this.profile = profile;
+            return this;
+        }
+
+        /**
+         * Attiva il commit di gruppo per add, update e removeByIsbn: le scritture vengono confermate in
+         * un'unica transazione ogni {@code maxDelayMillis} millisecondi o ogni {@code maxBatchSize} scritture.
+         *
+         * @param maxDelayMillis attesa massima dalla prima scrittura del gruppo al commit
+         * @param maxBatchSize   numero massimo di scritture per transazione
+         * @throws IllegalArgumentException se il ritardo è negativo o la dimensione minore di 1
+         */
+        public Builder groupCommit(long maxDelayMillis, int maxBatchSize) {
+            if (maxDelayMillis < 0 || maxBatchSize < 1) {
+                throw new IllegalArgumentException("Ritardo non negativo e dimensione del gruppo almeno 1 richiesti");
+            }
+            this.groupCommit = true;
+            this.groupCommitDelayMillis = maxDelayMillis;
+            this.groupCommitBatchSize = maxBatchSize;
+            return this;
+        }
+
+        public SqliteLibroDAO build() {
+            return new SqliteLibroDAO(this);
         }
     }
 }
@@ -0,0 +1,96 @@
+package com.bruno.bookmanager.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Profili di configurazione delle connessioni SQLite, applicati tramite PRAGMA all'apertura di ogni
+ * connessione del pool.
+ * <p>
+ * Con il journal WAL i lettori non vengono bloccati dalle scritture e un commit richiede solo l'accodamento
+ * al file {@code -wal}; con {@code synchronous=NORMAL} il file viene sincronizzato ai checkpoint e non a
+ * ogni commit. In caso di interruzione di corrente possono andare perse le ultime transazioni confermate,
+ * ma il database resta integro.
+ */
+public enum SqliteProfile {
+
+    /**
+     * Impostazioni predefinite di SQLite: journal di rollback e sincronizzazione completa a ogni commit.
+     */
+    COMPATIBLE("delete", 2, null, null, null, 3000),
+
+    /**
+     * Journal WAL con sincronizzazione completa a ogni commit: nessuna transazione confermata viene persa.
+     */
+    DURABLE("wal", 2, null, null, null, 5000),
+
+    /**
+     * Journal WAL, sincronizzazione ai soli checkpoint, file mappato in memoria fino a 256 MiB,
+     * cache di pagina di 16 MiB e tabelle temporanee in memoria.
+     */
+    PERFORMANCE("wal", 1, 256L * 1024 * 1024, -16 * 1024, 2, 5000);
+
+    /**
+     * Profilo usato quando non ne viene indicato uno.
+     */
+    public static final SqliteProfile DEFAULT = PERFORMANCE;
+
+    private final String journalMode;
+    private final int synchronous;
+    private final Long mmapSize;
+    private final Integer cacheSize;
+    private final Integer tempStore;
+    private final int busyTimeoutMillis;
+
+    SqliteProfile(String journalMode, int synchronous, Long mmapSize, Integer cacheSize, Integer tempStore,
+                  int busyTimeoutMillis) {
+        this.journalMode = journalMode;
+        this.synchronous = synchronous;
+        this.mmapSize = mmapSize;
+        this.cacheSize = cacheSize;
+        this.tempStore = tempStore;
+        this.busyTimeoutMillis = busyTimeoutMillis;
+    }
+
+    /**
+     * Valori attesi dei PRAGMA, nella forma in cui SQLite li restituisce alla lettura. I PRAGMA non
+     * elencati restano al valore predefinito.
+     *
+     * @return nome del PRAGMA e valore atteso, nell'ordine di applicazione
+     */
+    public Map<String, String> settings() {
+        Map<String, String> settings = new LinkedHashMap<>();
+        // busy_timeout per primo: il cambio di journal_mode richiede un lock esclusivo sul file
+        settings.put("busy_timeout", String.valueOf(busyTimeoutMillis));
+        settings.put("journal_mode", journalMode);
+        settings.put("synchronous", String.valueOf(synchronous));
+        if (mmapSize != null) {
+            settings.put("mmap_size", String.valueOf(mmapSize));
+        }
+        if (cacheSize != null) {
+            settings.put("cache_size", String.valueOf(cacheSize));
+        }
+        if (tempStore != null) {
+            settings.put("temp_store", String.valueOf(tempStore));
+        }
+        return settings;
+    }
+
+    /**
+     * Applica il profilo a una connessione appena aperta.
+     *
+     * @param connection connessione da configurare
+     * @throws SQLException se un PRAGMA non può essere eseguito
+     */
+    void apply(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            // PRAGMA non accetta parametri: i valori sono costanti del profilo
+            for (Map.Entry<String, String> setting : settings().entrySet()) {
+                stmt.execute("PRAGMA " + setting.getKey() + " = " + setting.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.bruno.bookmanager.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Schema del database SQLite e relative migrazioni.
+ * <p>
+ * La versione dello schema è memorizzata in {@code PRAGMA user_version}: all'apertura vengono applicate,
+ * in un'unica transazione, tutte le migrazioni successive alla versione presente nel file. I database
+ * creati prima dell'introduzione del versionamento hanno versione 0 e ricevono quindi tutte le migrazioni.
+ */
+final class SqliteSchema {
+
+    private static final Logger logger = LoggerFactory.getLogger(SqliteSchema.class);
+
+    private static final String CREATE_TABLE = """
+            CREATE TABLE IF NOT EXISTS libri (
+                            isbn TEXT PRIMARY KEY,
+                            titolo TEXT NOT NULL,
+                            autore TEXT,
+                            genere TEXT,
+                            valutazione INTEGER CHECK(valutazione >= 0 AND valutazione <= 5),
+                            stato TEXT NOT NULL
+                        );
+            """;
+
+    /**
+     * Migrazioni in ordine: l'elemento i porta lo schema dalla versione i alla versione i + 1.
+     */
+    private static final List<List<String>> MIGRATIONS = List.of(
+            // v1: indici secondari per i filtri e indici di ordinamento con collation NOCASE.
+            // L'ISBN in coda agli indici di ordinamento copre anche lo spareggio dell'ORDER BY.
+            List.of("CREATE INDEX IF NOT EXISTS idx_libri_genere ON libri(genere)",
+                    "CREATE INDEX IF NOT EXISTS idx_libri_stato ON libri(stato)",
+                    "CREATE INDEX IF NOT EXISTS idx_libri_valutazione ON libri(valutazione, isbn)",
+                    "CREATE INDEX IF NOT EXISTS idx_libri_titolo ON libri(titolo COLLATE NOCASE, isbn)",
+                    "CREATE INDEX IF NOT EXISTS idx_libri_autore ON libri(autore COLLATE NOCASE, isbn)"),
+            // v2: indice full-text su titolo e autore, a contenuto esterno e sincronizzato da trigger.
+            // Il collegamento avviene per rowid, che il DAO non riassegna (nessun VACUUM): dopo un VACUUM
+            // esterno l'indice va ricostruito con il comando 'rebuild'.
+            List.of("""
+                            CREATE VIRTUAL TABLE IF NOT EXISTS libri_fts USING fts5(
+                                titolo, autore, content='libri', content_rowid='rowid', tokenize='trigram')
+                            """,
+                    """
+                            CREATE TRIGGER IF NOT EXISTS libri_fts_ai AFTER INSERT ON libri BEGIN
+                                INSERT INTO libri_fts(rowid, titolo, autore) VALUES (new.rowid, new.titolo, new.autore);
+                            END
+                            """,
+                    """
+                            CREATE TRIGGER IF NOT EXISTS libri_fts_ad AFTER DELETE ON libri BEGIN
+                                INSERT INTO libri_fts(libri_fts, rowid, titolo, autore)
+                                VALUES ('delete', old.rowid, old.titolo, old.autore);
+                            END
+                            """,
+                    """
+                            CREATE TRIGGER IF NOT EXISTS libri_fts_au AFTER UPDATE ON libri BEGIN
+                                INSERT INTO libri_fts(libri_fts, rowid, titolo, autore)
+                                VALUES ('delete', old.rowid, old.titolo, old.autore);
+                                INSERT INTO libri_fts(rowid, titolo, autore) VALUES (new.rowid, new.titolo, new.autore);
+                            END
+                            """,
+                    "INSERT INTO libri_fts(libri_fts) VALUES ('rebuild')"));
+
+    /**
+     * Versione dello schema prodotta dall'applicazione di tutte le migrazioni.
+     */
+    static final int CURRENT_VERSION = MIGRATIONS.size();
+
+    private SqliteSchema() {
+    }
+
+    /**
+     * Crea la tabella se assente e applica le migrazioni mancanti.
+     *
+     * @param conn connessione su cui operare, in autocommit
+     * @throws SQLException se la creazione o una migrazione fallisce; in tal caso nessuna migrazione
+     *                      viene applicata
+     */
+    static void initialize(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(CREATE_TABLE);
+
+            int version = readVersion(stmt);
+            if (version >= CURRENT_VERSION) {
+                return;
+            }
+
+            conn.setAutoCommit(false);
+            try {
+                for (int v = version; v < CURRENT_VERSION; v++) {
+                    for (String sql : MIGRATIONS.get(v)) {
+                        stmt.execute(sql);
+                    }
+                }
+                // PRAGMA non accetta parametri: la versione è una costante interna
+                stmt.execute("PRAGMA user_version = " + CURRENT_VERSION);
+                conn.commit();
+                logger.info("Schema SQLite migrato dalla versione {} alla {}", version, CURRENT_VERSION);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    static int readVersion(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
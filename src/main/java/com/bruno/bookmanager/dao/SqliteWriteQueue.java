@@ -0,0 +1,202 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.exception.BookManagerException;
+import com.bruno.bookmanager.exception.DAOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coda di scritture con commit di gruppo per {@link SqliteLibroDAO}.
+ * <p>
+ * Un unico thread scrittore preleva le modifiche dalla coda e le esegue in una sola transazione, confermata
+ * quando il gruppo raggiunge {@code maxBatchSize} modifiche o quando sono trascorsi {@code maxDelayMillis}
+ * dalla prima: la sincronizzazione su disco del commit viene così pagata una volta per gruppo invece che
+ * per riga. Il future di ogni modifica si completa solo dopo il commit del suo gruppo.
+ * <p>
+ * Ogni modifica è isolata da un SAVEPOINT: un errore, di dominio, SQL o imprevisto, annulla e fa fallire solo
+ * la modifica che lo ha causato, mentre le altre del gruppo vengono confermate. Se fallisce il commit
+ * falliscono tutte. Il thread scrittore sopravvive a qualunque errore di un gruppo e nessun future resta in
+ * attesa.
+ */
+final class SqliteWriteQueue implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SqliteWriteQueue.class);
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    /**
+     * Modifica da eseguire sulla connessione del gruppo, senza gestire la transazione.
+     */
+    @FunctionalInterface
+    interface Mutation {
+        void apply(PooledConnection conn) throws SQLException, BookManagerException;
+    }
+
+    private record Pending(Mutation mutation, CompletableFuture<Void> result) {
+    }
+
+    private final SqliteConnectionPool pool;
+    private final long maxDelayMillis;
+    private final int maxBatchSize;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong mutations = new AtomicLong();
+    private volatile boolean closed;
+
+    SqliteWriteQueue(SqliteConnectionPool pool, long maxDelayMillis, int maxBatchSize) {
+        this.pool = pool;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.writer = new Thread(this::run, "sqlite-group-commit");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Accoda una modifica.
+     *
+     * @param mutation modifica da eseguire
+     * @return future completato dopo il commit del gruppo, o fallito con l'eccezione della modifica
+     */
+    synchronized CompletableFuture<Void> submit(Mutation mutation) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        if (closed) {
+            result.completeExceptionally(new DAOException("Coda di scrittura chiusa"));
+        } else {
+            queue.add(new Pending(mutation, result));
+        }
+        return result;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (!closed || !queue.isEmpty()) {
+                Pending first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                try {
+                    commit(batch);
+                } finally {
+                    failIncomplete(batch);
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            DAOException failure = new DAOException("Scrittore interrotto");
+            batch.forEach(pending -> pending.result().completeExceptionally(failure));
+            queue.forEach(pending -> pending.result().completeExceptionally(failure));
+        }
+    }
+
+    /**
+     * Fa fallire i future del gruppo non ancora completati, se il commit si è interrotto con un errore
+     * non gestito: chi attende una scrittura non deve restare bloccato.
+     */
+    private static void failIncomplete(List<Pending> batch) {
+        if (batch.stream().allMatch(pending -> pending.result().isDone())) {
+            return;
+        }
+        DAOException failure = new DAOException("Scrittura interrotta da un errore imprevisto");
+        batch.forEach(pending -> pending.result().completeExceptionally(failure));
+    }
+
+    private void commit(List<Pending> batch) {
+        List<Throwable> outcomes = new ArrayList<>(batch.size());
+        try (PooledConnection conn = pool.acquire(); Statement control = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            for (Pending pending : batch) {
+                outcomes.add(applyIsolated(conn, control, pending.mutation()));
+            }
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            // La restituzione al pool annulla la transazione non confermata
+            logger.error("Commit di un gruppo di {} scritture fallito", batch.size(), e);
+            DAOException failure = new DAOException("Impossibile confermare le scritture", e);
+            batch.forEach(pending -> pending.result().completeExceptionally(failure));
+            return;
+        }
+
+        commits.incrementAndGet();
+        mutations.addAndGet(batch.size());
+        logger.debug("Confermato un gruppo di {} scritture", batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Throwable outcome = outcomes.get(i);
+            if (outcome == null) {
+                batch.get(i).result().complete(null);
+            } else {
+                batch.get(i).result().completeExceptionally(outcome);
+            }
+        }
+    }
+
+    private static Throwable applyIsolated(PooledConnection conn, Statement control, Mutation mutation)
+            throws SQLException {
+        control.execute("SAVEPOINT scrittura");
+        try {
+            mutation.apply(conn);
+            control.execute("RELEASE scrittura");
+            return null;
+        } catch (SQLException | BookManagerException | RuntimeException e) {
+            control.execute("ROLLBACK TO scrittura");
+            control.execute("RELEASE scrittura");
+            if (e instanceof RuntimeException) {
+                logger.error("Errore imprevisto in una scrittura del gruppo", e);
+            }
+            return e instanceof BookManagerException ? e : new DAOException("Impossibile eseguire la scrittura", e);
+        }
+    }
+
+    /**
+     * @return numero di transazioni confermate
+     */
+    long getCommits() {
+        return commits.get();
+    }
+
+    /**
+     * @return numero di modifiche eseguite nelle transazioni confermate
+     */
+    long getMutations() {
+        return mutations.get();
+    }
+
+    /**
+     * Smette di accettare modifiche e attende che quelle già accodate siano confermate.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrotto in attesa dello svuotamento della coda di scrittura");
+        }
+    }
+}
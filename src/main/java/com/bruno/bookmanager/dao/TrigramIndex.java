@@ -0,0 +1,363 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.filters.AndFilter;
+import com.bruno.bookmanager.filters.AutoreFilter;
+import com.bruno.bookmanager.filters.Filter;
+import com.bruno.bookmanager.filters.OrFilter;
+import com.bruno.bookmanager.filters.TitoloFilter;
+import com.bruno.bookmanager.model.Libro;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Indice invertito dei trigrammi di titolo e autore, per le ricerche di sottostringa in memoria.
+ * <p>
+ * I libri sono identificati dal loro numero nella {@link LibroSequence} dell'istantanea, che segue l'ordine
+ * della cache. Per ogni trigramma di titolo o autore, con maiuscole e minuscole uniformate carattere per
+ * carattere come in {@link String#regionMatches(boolean, int, String, int, int)}, l'indice conserva i numeri
+ * dei libri che lo contengono in un array ordinato. Un testo cercato di almeno tre caratteri può comparire
+ * solo nei libri che contengono tutti i suoi trigrammi: i candidati si ottengono intersecando le liste, a
+ * partire dalla più corta, con un costo che dipende dalla lunghezza delle liste e non dal numero di libri.
+ * <p>
+ * L'indice è immutabile. Le liste costruite da {@link #build} sono condivise da tutte le versioni successive;
+ * {@link #replace} registra i numeri aggiunti e tolti da ogni lista in una mappa di variazioni, che copia
+ * insieme ai soli trigrammi del libro modificato, e le variazioni vengono applicate alla lettura. Quando la
+ * mappa supera una soglia proporzionale alla radice quadrata dei trigrammi distinti viene fusa in una nuova
+ * mappa delle liste, che condivide gli array di quelle non modificate. Una modifica costa quindi in media
+ * O(√t), con t trigrammi distinti, più i trigrammi del libro, invece di una copia dell'intero indice.
+ */
+final class TrigramIndex {
+
+    private static final int TITOLO = 0;
+    private static final int AUTORE = 1;
+    private static final int[] NONE = new int[0];
+    // Ogni libro tocca alcune decine di trigrammi: la soglia bilancia la copia delle variazioni a ogni
+    // modifica con la copia della mappa delle liste a ogni fusione
+    private static final int MIN_CHANGES = 256;
+    private static final int CHANGES_PER_SQRT = 8;
+
+    /**
+     * Numeri aggiunti e tolti da una lista dopo la sua costruzione, in array ordinati. I numeri tolti sono
+     * presenti nella lista, quelli aggiunti no.
+     */
+    private record Delta(int[] added, int[] removed) {
+    }
+
+    private final LibroSequence sequence;
+    private final Map<Long, int[]> postings;
+    private final Map<Long, Delta> changes;
+
+    private TrigramIndex(LibroSequence sequence, Map<Long, int[]> postings, Map<Long, Delta> changes) {
+        this.sequence = sequence;
+        this.postings = postings;
+        this.changes = changes;
+    }
+
+    /**
+     * Costruisce l'indice con un solo passaggio sui libri.
+     *
+     * @param sequence libri da indicizzare, con la loro numerazione
+     * @return indice dei libri
+     */
+    static TrigramIndex build(LibroSequence sequence) {
+        Map<Long, int[]> lists = new HashMap<>();
+        Map<Long, Integer> sizes = new HashMap<>();
+        sequence.forEach((libro, seq) -> {
+            for (long key : keys(libro)) {
+                int size = sizes.merge(key, 1, Integer::sum);
+                int[] list = lists.get(key);
+                if (list == null || list.length < size) {
+                    list = Arrays.copyOf(list == null ? NONE : list, Math.max(4, size * 2));
+                    lists.put(key, list);
+                }
+                list[size - 1] = seq;
+            }
+        });
+        Map<Long, int[]> postings = new HashMap<>(capacity(lists.size()));
+        lists.forEach((key, list) -> postings.put(key, Arrays.copyOf(list, sizes.get(key))));
+        return new TrigramIndex(sequence, postings, Collections.emptyMap());
+    }
+
+    /**
+     * Restituisce l'indice dopo l'aggiunta, l'aggiornamento o la rimozione di un libro.
+     *
+     * @param updated numerazione dopo la modifica, ottenuta con {@link LibroSequence#replace} da quella
+     *                di questo indice
+     * @param before  libro presente prima della modifica, null per un'aggiunta
+     * @param after   libro presente dopo la modifica, null per una rimozione
+     * @return nuovo indice; questo resta invariato
+     */
+    TrigramIndex replace(LibroSequence updated, Libro before, Libro after) {
+        int seq = sequence.seqFor(before);
+        Set<Long> oldKeys = before != null ? keys(before) : Set.of();
+        Set<Long> newKeys = after != null ? keys(after) : Set.of();
+        Map<Long, Delta> changes = new HashMap<>(this.changes);
+        for (long key : oldKeys) {
+            if (!newKeys.contains(key)) {
+                Delta delta = changes.get(key);
+                if (delta != null && contains(delta.added(), seq)) {
+                    put(changes, key, new Delta(without(delta.added(), seq), delta.removed()));
+                } else {
+                    put(changes, key, new Delta(delta != null ? delta.added() : NONE,
+                            with(delta != null ? delta.removed() : NONE, seq)));
+                }
+            }
+        }
+        for (long key : newKeys) {
+            if (!oldKeys.contains(key)) {
+                Delta delta = changes.get(key);
+                if (delta != null && contains(delta.removed(), seq)) {
+                    put(changes, key, new Delta(delta.added(), without(delta.removed(), seq)));
+                } else {
+                    put(changes, key, new Delta(with(delta != null ? delta.added() : NONE, seq),
+                            delta != null ? delta.removed() : NONE));
+                }
+            }
+        }
+
+        if (changes.size() <= Math.max(MIN_CHANGES, CHANGES_PER_SQRT * (int) Math.sqrt(postings.size()))) {
+            return new TrigramIndex(updated, postings, changes);
+        }
+        Map<Long, int[]> merged = new HashMap<>(postings);
+        changes.forEach((key, delta) -> {
+            int[] list = apply(postings.getOrDefault(key, NONE), delta);
+            if (list.length == 0) {
+                merged.remove(key);
+            } else {
+                merged.put(key, list);
+            }
+        });
+        return new TrigramIndex(updated, merged, Collections.emptyMap());
+    }
+
+    private static void put(Map<Long, Delta> changes, long key, Delta delta) {
+        if (delta.added().length == 0 && delta.removed().length == 0) {
+            changes.remove(key);
+        } else {
+            changes.put(key, delta);
+        }
+    }
+
+    /**
+     * Indica se l'indice può restringere la ricerca per il filtro, senza bisogno di costruirlo.
+     *
+     * @param filter filtro da risolvere
+     * @return true se {@link #candidates} non restituirà null
+     */
+    static boolean resolves(Filter<Libro> filter) {
+        if (filter instanceof TitoloFilter titolo) {
+            return titolo.getNeedle().length() >= 3;
+        }
+        if (filter instanceof AutoreFilter autore) {
+            return autore.getNeedle().length() >= 3;
+        }
+        if (filter instanceof AndFilter<Libro> and) {
+            return resolves(and.getLeft()) || resolves(and.getRight());
+        }
+        if (filter instanceof OrFilter<Libro> or) {
+            return resolves(or.getLeft()) && resolves(or.getRight());
+        }
+        return false;
+    }
+
+    /**
+     * Restituisce, nell'ordine della cache, i libri candidati a soddisfare il filtro.
+     * <p>
+     * L'indice risolve {@link TitoloFilter} e {@link AutoreFilter} con testi di almeno tre caratteri e le
+     * loro combinazioni con AND e OR; i candidati sono un sovrainsieme del risultato, da verificare con
+     * {@link Filter#test}.
+     *
+     * @param filter filtro da risolvere
+     * @return libri candidati, null se l'indice non restringe la ricerca
+     */
+    List<Libro> candidates(Filter<Libro> filter) {
+        int[] seqs = seqs(filter);
+        return seqs != null ? sequence.libri(seqs) : null;
+    }
+
+    /**
+     * @return numeri ordinati dei libri che possono soddisfare il filtro, null se tutti possono soddisfarlo
+     */
+    private int[] seqs(Filter<Libro> filter) {
+        if (filter instanceof TitoloFilter titolo) {
+            return lookup(TITOLO, titolo.getNeedle());
+        }
+        if (filter instanceof AutoreFilter autore) {
+            return lookup(AUTORE, autore.getNeedle());
+        }
+        if (filter instanceof AndFilter<Libro> and) {
+            int[] left = seqs(and.getLeft());
+            int[] right = seqs(and.getRight());
+            if (left == null || right == null) {
+                // L'altro ramo verrà verificato sui soli candidati
+                return left == null ? right : left;
+            }
+            return intersect(left, right);
+        }
+        if (filter instanceof OrFilter<Libro> or) {
+            int[] left = seqs(or.getLeft());
+            if (left == null) {
+                return null;
+            }
+            int[] right = seqs(or.getRight());
+            return right == null ? null : union(left, right);
+        }
+        return null;
+    }
+
+    private int[] lookup(int field, String needle) {
+        if (needle.length() < 3) {
+            return null;
+        }
+        List<int[]> lists = new ArrayList<>();
+        for (long key : trigrams(field, needle)) {
+            int[] list = list(key);
+            if (list.length == 0) {
+                return NONE;
+            }
+            lists.add(list);
+        }
+        lists.sort((a, b) -> Integer.compare(a.length, b.length));
+        int[] result = lists.get(0);
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = intersect(result, lists.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * @return numeri ordinati dei libri che contengono il trigramma, con le variazioni applicate
+     */
+    private int[] list(long key) {
+        int[] list = postings.getOrDefault(key, NONE);
+        Delta delta = changes.get(key);
+        return delta != null ? apply(list, delta) : list;
+    }
+
+    private static int[] apply(int[] list, Delta delta) {
+        return union(difference(list, delta.removed()), delta.added());
+    }
+
+    private static Set<Long> keys(Libro libro) {
+        Set<Long> keys = new LinkedHashSet<>();
+        if (libro.getTitolo() != null) {
+            keys.addAll(trigrams(TITOLO, libro.getTitolo()));
+        }
+        if (libro.getAutore() != null) {
+            keys.addAll(trigrams(AUTORE, libro.getAutore()));
+        }
+        return keys;
+    }
+
+    private static Set<Long> trigrams(int field, String text) {
+        Set<Long> keys = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            keys.add((long) field << 48 | (long) fold(text.charAt(i)) << 32 | (long) fold(text.charAt(i + 1)) << 16
+                    | fold(text.charAt(i + 2)));
+        }
+        return keys;
+    }
+
+    /**
+     * Forma canonica di un carattere: due caratteri sono uguali ignorando maiuscole e minuscole, secondo
+     * {@link String#regionMatches(boolean, int, String, int, int)}, se e solo se hanno la stessa forma.
+     */
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static boolean contains(int[] list, int seq) {
+        return Arrays.binarySearch(list, seq) >= 0;
+    }
+
+    private static int[] with(int[] list, int seq) {
+        int position = Arrays.binarySearch(list, seq);
+        if (position >= 0) {
+            return list;
+        }
+        int insertion = -position - 1;
+        int[] result = new int[list.length + 1];
+        System.arraycopy(list, 0, result, 0, insertion);
+        result[insertion] = seq;
+        System.arraycopy(list, insertion, result, insertion + 1, list.length - insertion);
+        return result;
+    }
+
+    private static int[] without(int[] list, int seq) {
+        int position = Arrays.binarySearch(list, seq);
+        if (position < 0) {
+            return list;
+        }
+        int[] result = new int[list.length - 1];
+        System.arraycopy(list, 0, result, 0, position);
+        System.arraycopy(list, position + 1, result, position, list.length - position - 1);
+        return result;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        if (b.length == 0) {
+            return a;
+        }
+        int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                result[n++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                result[n++] = b[j++];
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static int[] difference(int[] a, int[] b) {
+        if (b.length == 0) {
+            return a;
+        }
+        int[] result = new int[a.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length) {
+            if (j == b.length || a[i] < b[j]) {
+                result[n++] = a[i++];
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static int capacity(int size) {
+        return Math.max(16, (int) (size / 0.75f) + 1);
+    }
+}
@@ -0,0 +1,22 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.exception.DAOException;
+
+/**
+ * Interfaccia per DAO che sanno segnalare, a basso costo, se la persistenza è stata modificata da altri.
+ * <p>
+ * {@link CachedLibroDAO} la usa per accorgersi delle modifiche esterne senza rileggere i dati: finché la
+ * versione non cambia la cache in memoria resta valida.
+ */
+public interface VersionedStorage {
+
+    /**
+     * Restituisce la versione corrente dei dati. Il valore non ha significato in sé: due letture
+     * restituiscono valori diversi se tra l'una e l'altra i dati sono stati modificati da un'altra
+     * connessione o da un altro processo, comprese le scritture fatte dallo stesso DAO.
+     *
+     * @return versione dei dati
+     * @throws DAOException se la versione non può essere letta
+     */
+    long dataVersion() throws DAOException;
+}
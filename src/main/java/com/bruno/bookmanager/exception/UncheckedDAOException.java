@@ -0,0 +1,16 @@
+package com.bruno.bookmanager.exception;
+
+/**
+ * Involucro non controllato di una {@link DAOException}, usato dove l'eccezione non può essere
+ * dichiarata: ad esempio durante il consumo di uno stream di libri letto dalla persistenza.
+ */
+public class UncheckedDAOException extends RuntimeException {
+    public UncheckedDAOException(DAOException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized DAOException getCause() {
+        return (DAOException) super.getCause();
+    }
+}
@@ -1,22 +1,56 @@
 package com.bruno.bookmanager.filters;
 
 import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.utils.StringUtils;
+
+import java.util.Objects;
 
 public class AutoreFilter implements Filter<Libro> {
     private final String autore;
+    // Calcolato una sola volta: il confronto con ogni autore non alloca stringhe
+    private final String needle;
 
     public AutoreFilter(String autore) {
         this.autore = autore != null ? autore.trim() : "";
+        this.needle = StringUtils.lowerCase(this.autore);
+    }
+
+    public String getAutore() {
+        return autore;
+    }
+
+    /**
+     * @return testo cercato in minuscolo, da usare con {@link StringUtils#containsIgnoreCase}
+     */
+    public String getNeedle() {
+        return needle;
     }
 
     @Override
     public boolean test(Libro libro) {
-        return libro.getAutore().toLowerCase().contains(autore.toLowerCase());
+        return StringUtils.containsIgnoreCase(libro.getAutore(), needle);
     }
 
+    @Deprecated
     @Override
     public String toSqlClause() {
         return "autore LIKE '%" + autore + "%'";
     }
-}
 
+    @Override
+    public SqlFragment toSqlFragment() {
+        return SqlFragment.likeContains("autore", autore);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AutoreFilter that)) return false;
+        return Objects.equals(autore, that.autore);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * AutoreFilter.class.hashCode() + Objects.hashCode(autore);
+    }
+}
@@ -3,7 +3,18 @@ package com.bruno.bookmanager.filters;
 public interface Filter<T> {
     boolean test(T item);
 
-    String toSqlClause();
+    /**
+     * @return clausola SQL con i valori scritti nel testo
+     * @deprecated i valori non vengono associati come parametri: usare {@link #toSqlFragment()}. La
+     * implementano solo i filtri che la avevano già; per gli altri solleva
+     * {@link UnsupportedOperationException}.
+     */
+    @Deprecated
+    default String toSqlClause() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + ": usare toSqlFragment()");
+    }
+
+    SqlFragment toSqlFragment();
 
     default Filter<T> and(Filter<T> f) {
         return new AndFilter<>(this, f);
@@ -0,0 +1,135 @@
+package com.bruno.bookmanager.filters;
+
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+import com.bruno.bookmanager.utils.StringUtils;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Compila un albero di {@link Filter} in un unico predicato specializzato, da usare quando lo stesso filtro
+ * viene applicato a molti libri.
+ * <p>
+ * Le congiunzioni e le disgiunzioni annidate vengono appiattite, i confronti su genere e stato di lettura
+ * sono confronti di identità o di appartenenza a un {@link EnumSet} e le ricerche su titolo e autore usano il
+ * testo cercato già in minuscolo con {@link StringUtils#containsIgnoreCase}, senza allocare stringhe per ogni
+ * libro. Il predicato ottenuto accetta gli stessi libri di {@link Filter#test}, tranne i libri con campi
+ * null, che vengono scartati invece di causare un errore. I filtri non riconosciuti sono richiamati tramite
+ * {@link Filter#test}.
+ */
+public final class FilterCompiler {
+
+    private FilterCompiler() {
+    }
+
+    /**
+     * @param filter filtro da compilare, null per nessun filtro
+     * @return predicato equivalente al filtro; accetta ogni libro se il filtro è null
+     */
+    public static Predicate<Libro> compile(Filter<Libro> filter) {
+        if (filter == null) {
+            return libro -> true;
+        }
+        if (filter instanceof AndFilter<Libro> and) {
+            List<Predicate<Libro>> operands = new ArrayList<>();
+            collectAnd(and, operands);
+            return allOf(operands);
+        }
+        if (filter instanceof OrFilter<Libro> or) {
+            List<Predicate<Libro>> operands = new ArrayList<>();
+            collectOr(or, operands);
+            return anyOf(operands);
+        }
+        if (filter instanceof TitoloFilter titolo) {
+            String needle = titolo.getNeedle();
+            return libro -> {
+                String value = libro.getTitolo();
+                return value != null && StringUtils.containsIgnoreCase(value, needle);
+            };
+        }
+        if (filter instanceof AutoreFilter autore) {
+            String needle = autore.getNeedle();
+            return libro -> {
+                String value = libro.getAutore();
+                return value != null && StringUtils.containsIgnoreCase(value, needle);
+            };
+        }
+        if (filter instanceof GenereFilter genereFilter) {
+            Genere genere = genereFilter.getGenere();
+            return genere == null ? libro -> false : libro -> libro.getGenere() == genere;
+        }
+        if (filter instanceof StatoLetturaFilter statoFilter) {
+            StatoLettura stato = statoFilter.getStatoLettura();
+            return stato == null ? libro -> false : libro -> libro.getStatoLettura() == stato;
+        }
+        if (filter instanceof GeneriFilter generiFilter) {
+            EnumSet<Genere> generi = EnumSet.copyOf(generiFilter.getGeneri());
+            return libro -> generi.contains(libro.getGenere());
+        }
+        if (filter instanceof StatiLetturaFilter statiFilter) {
+            EnumSet<StatoLettura> stati = EnumSet.copyOf(statiFilter.getStati());
+            return libro -> stati.contains(libro.getStatoLettura());
+        }
+        if (filter instanceof ValutazioneFilter valutazioneFilter) {
+            int valutazione = valutazioneFilter.getValutazione();
+            return libro -> libro.getValutazione() == valutazione;
+        }
+        return filter::test;
+    }
+
+    private static void collectAnd(Filter<Libro> filter, List<Predicate<Libro>> operands) {
+        if (filter instanceof AndFilter<Libro> and) {
+            collectAnd(and.getLeft(), operands);
+            collectAnd(and.getRight(), operands);
+        } else {
+            operands.add(compile(filter));
+        }
+    }
+
+    private static void collectOr(Filter<Libro> filter, List<Predicate<Libro>> operands) {
+        if (filter instanceof OrFilter<Libro> or) {
+            collectOr(or.getLeft(), operands);
+            collectOr(or.getRight(), operands);
+        } else {
+            operands.add(compile(filter));
+        }
+    }
+
+    private static Predicate<Libro> allOf(List<Predicate<Libro>> operands) {
+        if (operands.size() == 2) {
+            Predicate<Libro> first = operands.get(0);
+            Predicate<Libro> second = operands.get(1);
+            return libro -> first.test(libro) && second.test(libro);
+        }
+        List<Predicate<Libro>> all = List.copyOf(operands);
+        return libro -> {
+            for (Predicate<Libro> operand : all) {
+                if (!operand.test(libro)) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    private static Predicate<Libro> anyOf(List<Predicate<Libro>> operands) {
+        if (operands.size() == 2) {
+            Predicate<Libro> first = operands.get(0);
+            Predicate<Libro> second = operands.get(1);
+            return libro -> first.test(libro) || second.test(libro);
+        }
+        List<Predicate<Libro>> any = List.copyOf(operands);
+        return libro -> {
+            for (Predicate<Libro> operand : any) {
+                if (operand.test(libro)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+}
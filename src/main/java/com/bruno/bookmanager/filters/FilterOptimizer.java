@@ -0,0 +1,248 @@
+package com.bruno.bookmanager.filters;
+
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Riscrive un albero di filtri in una forma equivalente e più economica da valutare, in memoria e in SQL.
+ * <p>
+ * Le catene di {@link AndFilter} e {@link OrFilter} annidate vengono appiattite e gli operandi ripetuti
+ * rimossi. In una disgiunzione i filtri su genere, stato di lettura e valutazione vengono raccolti in un
+ * unico filtro di appartenenza ({@link GeneriFilter}, {@link StatiLetturaFilter}, {@link ValutazioniFilter}).
+ * Gli operandi sono poi ordinati per costo e selettività stimati: in una congiunzione prima quelli che
+ * scartano più libri a parità di costo, quindi i confronti sugli enumerativi prima delle ricerche di
+ * sottostringa; in una disgiunzione prima quelli che ne accettano di più. Il risultato è ricostruito come
+ * catena di filtri binari, che i compilatori ({@link FilterCompiler} e quello SQL) appiattiscono di nuovo.
+ */
+public final class FilterOptimizer {
+
+    private static final int VALUTAZIONI = 6;
+    private static final double TEXT_SELECTIVITY = 0.1;
+    private static final double UNKNOWN_SELECTIVITY = 0.5;
+
+    private FilterOptimizer() {
+    }
+
+    /**
+     * @param filter filtro da ottimizzare, anche null
+     * @return filtro equivalente ottimizzato; null se il filtro è null
+     */
+    public static Filter<Libro> optimize(Filter<Libro> filter) {
+        if (filter instanceof AndFilter<Libro>) {
+            List<Filter<Libro>> operands = new ArrayList<>();
+            for (Filter<Libro> operand : flatten(filter, true)) {
+                operands.addAll(flatten(optimize(operand), true));
+            }
+            return chain(sorted(dedupe(operands), FilterOptimizer::conjunctRank), true);
+        }
+        if (filter instanceof OrFilter<Libro>) {
+            List<Filter<Libro>> operands = new ArrayList<>();
+            for (Filter<Libro> operand : flatten(filter, false)) {
+                operands.addAll(flatten(optimize(operand), false));
+            }
+            return chain(sorted(dedupe(fold(operands)), FilterOptimizer::disjunctRank), false);
+        }
+        return filter;
+    }
+
+    private static List<Filter<Libro>> flatten(Filter<Libro> filter, boolean and) {
+        List<Filter<Libro>> operands = new ArrayList<>();
+        collect(filter, and, operands);
+        return operands;
+    }
+
+    private static void collect(Filter<Libro> filter, boolean and, List<Filter<Libro>> operands) {
+        if (and && filter instanceof AndFilter<Libro> conjunction) {
+            collect(conjunction.getLeft(), true, operands);
+            collect(conjunction.getRight(), true, operands);
+        } else if (!and && filter instanceof OrFilter<Libro> disjunction) {
+            collect(disjunction.getLeft(), false, operands);
+            collect(disjunction.getRight(), false, operands);
+        } else {
+            operands.add(filter);
+        }
+    }
+
+    private static List<Filter<Libro>> dedupe(List<Filter<Libro>> operands) {
+        return new ArrayList<>(new LinkedHashSet<>(operands));
+    }
+
+    /**
+     * Campo di un filtro che una disgiunzione può raccogliere in un filtro di appartenenza.
+     */
+    private enum Foldable {
+        GENERE, STATO, VALUTAZIONE;
+
+        static Foldable of(Filter<Libro> filter) {
+            if ((filter instanceof GenereFilter genere && genere.getGenere() != null)
+                    || filter instanceof GeneriFilter) {
+                return GENERE;
+            }
+            if ((filter instanceof StatoLetturaFilter stato && stato.getStatoLettura() != null)
+                    || filter instanceof StatiLetturaFilter) {
+                return STATO;
+            }
+            if (filter instanceof ValutazioneFilter || filter instanceof ValutazioniFilter) {
+                return VALUTAZIONE;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Raccoglie gli operandi di una disgiunzione sullo stesso campo in un filtro di appartenenza, posto al
+     * posto del primo di essi.
+     */
+    private static List<Filter<Libro>> fold(List<Filter<Libro>> operands) {
+        Set<Genere> generi = EnumSet.noneOf(Genere.class);
+        Set<StatoLettura> stati = EnumSet.noneOf(StatoLettura.class);
+        Set<Integer> valutazioni = new TreeSet<>();
+        Map<Foldable, Integer> counts = new EnumMap<>(Foldable.class);
+        for (Filter<Libro> operand : operands) {
+            Foldable field = Foldable.of(operand);
+            if (field == null) {
+                continue;
+            }
+            counts.merge(field, 1, Integer::sum);
+            switch (operand) {
+                case GenereFilter genere -> generi.add(genere.getGenere());
+                case GeneriFilter multi -> generi.addAll(multi.getGeneri());
+                case StatoLetturaFilter stato -> stati.add(stato.getStatoLettura());
+                case StatiLetturaFilter multi -> stati.addAll(multi.getStati());
+                case ValutazioneFilter valutazione -> valutazioni.add(valutazione.getValutazione());
+                case ValutazioniFilter multi -> valutazioni.addAll(multi.getValutazioni());
+                default -> throw new IllegalStateException();
+            }
+        }
+
+        List<Filter<Libro>> result = new ArrayList<>(operands.size());
+        for (Filter<Libro> operand : operands) {
+            Foldable field = Foldable.of(operand);
+            Integer count = field == null ? null : counts.get(field);
+            if (count == null || count == 1) {
+                result.add(operand);
+            } else if (count > 1) {
+                result.add(switch (field) {
+                    case GENERE -> generi.size() == 1 ? new GenereFilter(generi.iterator().next())
+                            : new GeneriFilter(generi);
+                    case STATO -> stati.size() == 1 ? new StatoLetturaFilter(stati.iterator().next())
+                            : new StatiLetturaFilter(stati);
+                    case VALUTAZIONE -> valutazioni.size() == 1
+                            ? new ValutazioneFilter(valutazioni.iterator().next()) : new ValutazioniFilter(valutazioni);
+                });
+                // Gli altri operandi dello stesso campo sono già inclusi
+                counts.put(field, 0);
+            }
+        }
+        return result;
+    }
+
+    private static List<Filter<Libro>> sorted(List<Filter<Libro>> operands,
+                                              ToDoubleFunction<Filter<Libro>> rank) {
+        // Ordinamento stabile: a parità di stima resta l'ordine originale
+        operands.sort(Comparator.comparingDouble(rank));
+        return operands;
+    }
+
+    private static Filter<Libro> chain(List<Filter<Libro>> operands, boolean and) {
+        Filter<Libro> result = operands.get(0);
+        for (int i = 1; i < operands.size(); i++) {
+            result = and ? result.and(operands.get(i)) : result.or(operands.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Costo atteso per libro scartato: conviene valutare prima gli operandi con il valore più basso.
+     */
+    private static double conjunctRank(Filter<Libro> filter) {
+        double rejected = 1 - selectivity(filter);
+        return rejected <= 0 ? Double.MAX_VALUE : cost(filter) / rejected;
+    }
+
+    /**
+     * Costo atteso per libro accettato: conviene valutare prima gli operandi con il valore più basso.
+     */
+    private static double disjunctRank(Filter<Libro> filter) {
+        double accepted = selectivity(filter);
+        return accepted <= 0 ? Double.MAX_VALUE : cost(filter) / accepted;
+    }
+
+    /**
+     * Costo relativo della valutazione del filtro su un libro: i confronti su enumerativi e interi costano 1,
+     * le ricerche di sottostringa di più.
+     */
+    static double cost(Filter<Libro> filter) {
+        if (filter instanceof AndFilter<Libro> and) {
+            return cost(and.getLeft()) + selectivity(and.getLeft()) * cost(and.getRight());
+        }
+        if (filter instanceof OrFilter<Libro> or) {
+            return cost(or.getLeft()) + (1 - selectivity(or.getLeft())) * cost(or.getRight());
+        }
+        if (filter instanceof GenereFilter || filter instanceof StatoLetturaFilter
+                || filter instanceof ValutazioneFilter || filter instanceof GeneriFilter
+                || filter instanceof StatiLetturaFilter || filter instanceof ValutazioniFilter) {
+            return 1;
+        }
+        if (filter instanceof ISBNFilter) {
+            return 4;
+        }
+        if (filter instanceof TitoloFilter || filter instanceof AutoreFilter) {
+            return 8;
+        }
+        return 10;
+    }
+
+    /**
+     * Frazione stimata dei libri che soddisfano il filtro, assumendo valori distribuiti uniformemente e
+     * campi indipendenti.
+     */
+    static double selectivity(Filter<Libro> filter) {
+        if (filter instanceof AndFilter<Libro> and) {
+            return selectivity(and.getLeft()) * selectivity(and.getRight());
+        }
+        if (filter instanceof OrFilter<Libro> or) {
+            return 1 - (1 - selectivity(or.getLeft())) * (1 - selectivity(or.getRight()));
+        }
+        if (filter instanceof GenereFilter) {
+            return 1.0 / Genere.values().length;
+        }
+        if (filter instanceof GeneriFilter generi) {
+            return (double) generi.getGeneri().size() / Genere.values().length;
+        }
+        if (filter instanceof StatoLetturaFilter) {
+            return 1.0 / StatoLettura.values().length;
+        }
+        if (filter instanceof StatiLetturaFilter stati) {
+            return (double) stati.getStati().size() / StatoLettura.values().length;
+        }
+        if (filter instanceof ValutazioneFilter) {
+            return 1.0 / VALUTAZIONI;
+        }
+        if (filter instanceof ValutazioniFilter valutazioni) {
+            return Math.min(1.0, (double) valutazioni.getValutazioni().size() / VALUTAZIONI);
+        }
+        if (filter instanceof TitoloFilter titolo) {
+            return titolo.getTitolo().isEmpty() ? 1 : TEXT_SELECTIVITY;
+        }
+        if (filter instanceof AutoreFilter autore) {
+            return autore.getAutore().isEmpty() ? 1 : TEXT_SELECTIVITY;
+        }
+        if (filter instanceof ISBNFilter) {
+            return TEXT_SELECTIVITY;
+        }
+        return UNKNOWN_SELECTIVITY;
+    }
+}
@@ -3,6 +3,8 @@ package com.bruno.bookmanager.filters;
 import com.bruno.bookmanager.model.Genere;
 import com.bruno.bookmanager.model.Libro;
 
+import java.util.Objects;
+
 public class GenereFilter implements Filter<Libro> {
     private final Genere genere;
 
@@ -10,13 +12,35 @@ public class GenereFilter implements Filter<Libro> {
         this.genere = genere;
     }
 
+    public Genere getGenere() {
+        return genere;
+    }
+
     @Override
     public boolean test(Libro libro) {
         return libro.getGenere().equals(genere);
     }
 
+    @Deprecated
     @Override
     public String toSqlClause() {
         return "genere = '" + genere.name() + "'";
     }
+
+    @Override
+    public SqlFragment toSqlFragment() {
+        return SqlFragment.of("genere = ?", genere.name());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GenereFilter that)) return false;
+        return Objects.equals(genere, that.genere);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * GenereFilter.class.hashCode() + Objects.hashCode(genere);
+    }
 }
@@ -0,0 +1,49 @@
+package com.bruno.bookmanager.filters;
+
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Libri con uno qualsiasi dei generi indicati: equivale all'OR dei rispettivi {@link GenereFilter}.
+ */
+public class GeneriFilter implements Filter<Libro> {
+    private final Set<Genere> generi;
+
+    /**
+     * @param generi generi ammessi, almeno uno e nessuno null
+     */
+    public GeneriFilter(Collection<Genere> generi) {
+        this.generi = Collections.unmodifiableSet(EnumSet.copyOf(generi));
+    }
+
+    public Set<Genere> getGeneri() {
+        return generi;
+    }
+
+    @Override
+    public boolean test(Libro libro) {
+        return generi.contains(libro.getGenere());
+    }
+
+    @Override
+    public SqlFragment toSqlFragment() {
+        return SqlFragment.in("genere", generi.stream().map(Genere::name).toList());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GeneriFilter that)) return false;
+        return generi.equals(that.generi);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * GeneriFilter.class.hashCode() + generi.hashCode();
+    }
+}
@@ -3,6 +3,8 @@ package com.bruno.bookmanager.filters;
 
 import com.bruno.bookmanager.model.Libro;
 
+import java.util.Objects;
+
 public class ISBNFilter implements Filter<Libro> {
     private final String isbn;
 
@@ -15,8 +17,26 @@ public class ISBNFilter implements Filter<Libro> {
         return libro.getIsbn().contains(isbn);
     }
 
+    @Deprecated
     @Override
     public String toSqlClause() {
         return "isbn LIKE '%" + isbn + "%'";
     }
+
+    @Override
+    public SqlFragment toSqlFragment() {
+        return SqlFragment.likeContains("isbn", isbn);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ISBNFilter that)) return false;
+        return Objects.equals(isbn, that.isbn);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * ISBNFilter.class.hashCode() + Objects.hashCode(isbn);
+    }
 }
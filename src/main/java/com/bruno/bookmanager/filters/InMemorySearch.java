@@ -0,0 +1,176 @@
+package com.bruno.bookmanager.filters;
+
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Applicazione dei {@link SearchCriteria} a una collezione di libri già in memoria.
+ * <p>
+ * Produce gli stessi risultati, nello stesso ordine e con gli stessi cursori di pagina, della ricerca
+ * ottimizzata di {@code SqliteLibroDAO}: è il percorso usato per i DAO che non supportano query native.
+ * Il filtro viene compilato con {@link FilterCompiler} una volta per ricerca.
+ */
+public final class InMemorySearch {
+
+    private InMemorySearch() {
+    }
+
+    /**
+     * @param libri    libri su cui cercare
+     * @param criteria criteri di ricerca
+     * @return libri che soddisfano i criteri, limitati alla pagina richiesta se la ricerca è paginata
+     */
+    public static List<Libro> search(Collection<Libro> libri, SearchCriteria criteria) {
+        return searchPage(libri, criteria).items();
+    }
+
+    /**
+     * Filtra, ordina e pagina i libri. Per una ricerca paginata si mantengono solo i primi
+     * {@code pageSize + 1} libri successivi al cursore, senza ordinare l'intera collezione.
+     *
+     * @param libri    libri su cui cercare
+     * @param criteria criteri di ricerca
+     * @return pagina di risultati
+     * @throws IllegalArgumentException se il token di pagina non corrisponde ai criteri
+     */
+    public static Page<Libro> searchPage(Collection<Libro> libri, SearchCriteria criteria) {
+        criteria.checkPageToken();
+        Predicate<Libro> filter = criteria.hasFilter() ? FilterCompiler.compile(criteria.getFilter()) : null;
+
+        if (!criteria.hasPaging()) {
+            List<Libro> result = new ArrayList<>();
+            for (Libro libro : libri) {
+                if (filter == null || filter.test(libro)) {
+                    result.add(libro);
+                }
+            }
+            if (criteria.hasSorting()) {
+                result.sort(comparator(criteria));
+            }
+            return new Page<>(result, null);
+        }
+
+        Comparator<Libro> comparator = comparator(criteria);
+        PageToken after = criteria.getAfter();
+        int limit = criteria.getPageSize() + 1;
+
+        // Heap con in cima il peggiore dei libri trattenuti
+        PriorityQueue<Libro> top = new PriorityQueue<>(limit + 1, comparator.reversed());
+        for (Libro libro : libri) {
+            if ((filter == null || filter.test(libro)) && (after == null || after.precedes(libro))) {
+                top.add(libro);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+        }
+
+        List<Libro> result = new ArrayList<>(top);
+        result.sort(comparator);
+        return toPage(result, criteria);
+    }
+
+    /**
+     * Costruisce la pagina a partire dai primi {@code pageSize + 1} risultati ordinati: l'eventuale libro
+     * in eccesso indica che esiste una pagina successiva e non viene restituito.
+     *
+     * @param rows     risultati ordinati, al più uno oltre la dimensione della pagina
+     * @param criteria criteri della ricerca
+     * @return pagina con il cursore per la pagina successiva, se esiste
+     */
+    public static Page<Libro> toPage(List<Libro> rows, SearchCriteria criteria) {
+        if (!criteria.hasPaging() || rows.size() <= criteria.getPageSize()) {
+            return new Page<>(rows, null);
+        }
+        List<Libro> items = rows.subList(0, criteria.getPageSize());
+        PageToken next = PageToken.after(criteria.getKeysetSortField(), criteria.isKeysetAsc(),
+                items.get(items.size() - 1));
+        return new Page<>(items, next);
+    }
+
+    // ============= AGGREGAZIONI =============
+    // Considerano solo il filtro dei criteri: ordinamento e paginazione non influiscono sul risultato.
+
+    /**
+     * @param libri    libri su cui contare, consumati una sola volta
+     * @param criteria criteri di cui applicare il filtro
+     * @return numero di libri che soddisfano il filtro
+     */
+    public static long count(Stream<Libro> libri, SearchCriteria criteria) {
+        return matching(libri, criteria).count();
+    }
+
+    /**
+     * @return conteggi per genere, in ordine di genere; i libri senza genere hanno chiave null, in coda
+     */
+    public static Map<Genere, Long> countByGenere(Stream<Libro> libri, SearchCriteria criteria) {
+        return countBy(matching(libri, criteria), Libro::getGenere, Comparator.naturalOrder());
+    }
+
+    /**
+     * @return conteggi per stato di lettura, in ordine di stato
+     */
+    public static Map<StatoLettura, Long> countByStato(Stream<Libro> libri, SearchCriteria criteria) {
+        return countBy(matching(libri, criteria), Libro::getStatoLettura, Comparator.naturalOrder());
+    }
+
+    /**
+     * @return conteggi per valutazione, in ordine crescente; la valutazione 0 indica i libri non valutati
+     */
+    public static Map<Integer, Long> countByValutazione(Stream<Libro> libri, SearchCriteria criteria) {
+        return countBy(matching(libri, criteria), Libro::getValutazione, Comparator.naturalOrder());
+    }
+
+    /**
+     * @return media delle valutazioni dei libri valutati (valutazione maggiore di 0), vuota se non ce ne sono
+     */
+    public static OptionalDouble averageValutazione(Stream<Libro> libri, SearchCriteria criteria) {
+        return matching(libri, criteria).mapToInt(Libro::getValutazione).filter(v -> v > 0).average();
+    }
+
+    /**
+     * Riporta i conteggi nell'ordine canonico delle chiavi, lo stesso per tutte le implementazioni.
+     *
+     * @param counts conteggi in ordine qualsiasi, chiave null ammessa
+     * @param order  ordine delle chiavi non null; la chiave null va in coda
+     * @return conteggi ordinati
+     */
+    public static <K> Map<K, Long> orderedCounts(Map<K, Long> counts, Comparator<? super K> order) {
+        Map<K, Long> ordered = new LinkedHashMap<>();
+        counts.entrySet().stream().sorted(Map.Entry.comparingByKey(Comparator.nullsLast(order)))
+                .forEach(entry -> ordered.put(entry.getKey(), entry.getValue()));
+        return ordered;
+    }
+
+    private static Stream<Libro> matching(Stream<Libro> libri, SearchCriteria criteria) {
+        return criteria != null && criteria.hasFilter() ? libri.filter(FilterCompiler.compile(criteria.getFilter()))
+                : libri;
+    }
+
+    private static <K> Map<K, Long> countBy(Stream<Libro> libri, Function<Libro, K> key,
+                                            Comparator<? super K> order) {
+        // groupingBy non ammette chiavi null, necessarie per i libri senza genere
+        Map<K, Long> counts = new HashMap<>();
+        libri.forEach(libro -> counts.merge(key.apply(libro), 1L, Long::sum));
+        return orderedCounts(counts, order);
+    }
+
+    private static Comparator<Libro> comparator(SearchCriteria criteria) {
+        Comparator<Libro> comparator = criteria.getKeysetSortField().comparator();
+        return criteria.isKeysetAsc() ? comparator : comparator.reversed();
+    }
+}
@@ -1,21 +1,83 @@
 package com.bruno.bookmanager.filters;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 public class OrFilter<T> implements Filter<T> {
 
     private final Filter<T> left, right;
+    private Set<Filter<T>> operands;
 
     public OrFilter(Filter<T> left, Filter<T> right) {
         this.left = left;
         this.right = right;
     }
 
+    public Filter<T> getLeft() {
+        return left;
+    }
+
+    public Filter<T> getRight() {
+        return right;
+    }
+
     @Override
     public boolean test(T item) {
         return left.test(item) || right.test(item);
     }
 
+    @Deprecated
     @Override
     public String toSqlClause() {
         return "(" + left.toSqlClause() + " OR " + right.toSqlClause() + ")";
     }
+
+    @Override
+    public SqlFragment toSqlFragment() {
+        return SqlFragment.join("OR", List.of(left.toSqlFragment(), right.toSqlFragment()));
+    }
+
+    /**
+     * Operandi della disgiunzione, con le disgiunzioni annidate appiattite: l'ordine e le ripetizioni degli
+     * operandi non cambiano il risultato del filtro.
+     *
+     * @return insieme degli operandi
+     */
+    Set<Filter<T>> operands() {
+        Set<Filter<T>> result = operands;
+        if (result == null) {
+            result = new HashSet<>();
+            collect(left, result);
+            collect(right, result);
+            // Immutabile: può essere condiviso tra thread anche se calcolato più volte
+            result = Set.copyOf(result);
+            operands = result;
+        }
+        return result;
+    }
+
+    private static <T> void collect(Filter<T> filter, Set<Filter<T>> result) {
+        if (filter instanceof OrFilter<T> nested) {
+            result.addAll(nested.operands());
+        } else {
+            result.add(filter);
+        }
+    }
+
+    /**
+     * Due disgiunzioni sono uguali se hanno gli stessi operandi, indipendentemente dall'ordine e dal modo in
+     * cui sono annidate.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof OrFilter<?> that)) return false;
+        return operands().equals(that.operands());
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * OrFilter.class.hashCode() + operands().hashCode();
+    }
 }
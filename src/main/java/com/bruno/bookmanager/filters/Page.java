@@ -0,0 +1,22 @@
+package com.bruno.bookmanager.filters;
+
+import java.util.List;
+
+/**
+ * Pagina di risultati di una ricerca paginata.
+ *
+ * @param items     elementi della pagina, nell'ordine della ricerca
+ * @param nextToken cursore da passare a {@link SearchCriteria.Builder#after(PageToken)} per ottenere la
+ *                  pagina successiva, null se questa è l'ultima
+ * @param <T>       tipo degli elementi
+ */
+public record Page<T>(List<T> items, PageToken nextToken) {
+
+    public Page {
+        items = List.copyOf(items);
+    }
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+}
@@ -0,0 +1,142 @@
+package com.bruno.bookmanager.filters;
+
+import com.bruno.bookmanager.model.Libro;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Cursore di paginazione keyset: identifica l'ultimo libro di una pagina tramite il suo valore di
+ * ordinamento e l'ISBN, usato come spareggio.
+ * <p>
+ * La pagina successiva contiene i libri che, nell'ordine dei criteri di ricerca, seguono strettamente
+ * il cursore. A differenza di un offset, il cursore resta valido anche se nel frattempo vengono aggiunti
+ * o rimossi libri che precedono la pagina. Il token può essere serializzato in forma testuale con
+ * {@link #encode()} e ricostruito con {@link #decode(String)}.
+ */
+public final class PageToken {
+
+    private static final int NULL_KEY = 0;
+    private static final int STRING_KEY = 1;
+    private static final int INT_KEY = 2;
+
+    private final SearchCriteria.SortField sortField;
+    private final boolean asc;
+    private final Object key;
+    private final String isbn;
+
+    private PageToken(SearchCriteria.SortField sortField, boolean asc, Object key, String isbn) {
+        this.sortField = Objects.requireNonNull(sortField);
+        this.asc = asc;
+        this.key = key;
+        this.isbn = Objects.requireNonNull(isbn);
+    }
+
+    /**
+     * Crea il cursore posizionato sul libro indicato.
+     *
+     * @param sortField campo di ordinamento della ricerca
+     * @param asc       direzione di ordinamento della ricerca
+     * @param last      ultimo libro della pagina
+     * @return cursore per la pagina successiva
+     */
+    public static PageToken after(SearchCriteria.SortField sortField, boolean asc, Libro last) {
+        return new PageToken(sortField, asc, sortField.keyOf(last), last.getIsbn());
+    }
+
+    public SearchCriteria.SortField getSortField() {
+        return sortField;
+    }
+
+    public boolean isAsc() {
+        return asc;
+    }
+
+    /**
+     * @return valore di ordinamento dell'ultimo libro (String o Integer), eventualmente null
+     */
+    public Object getKey() {
+        return key;
+    }
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    /**
+     * @param libro libro da confrontare
+     * @return true se il libro segue il cursore nell'ordine della ricerca
+     */
+    public boolean precedes(Libro libro) {
+        int cmp = sortField.compareToKey(libro, key, isbn);
+        return asc ? cmp > 0 : cmp < 0;
+    }
+
+    /**
+     * @return rappresentazione testuale del token, sicura da usare in URL e file
+     */
+    public String encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(sortField.name());
+            out.writeBoolean(asc);
+            if (key == null) {
+                out.writeByte(NULL_KEY);
+            } else if (key instanceof Integer value) {
+                out.writeByte(INT_KEY);
+                out.writeInt(value);
+            } else {
+                out.writeByte(STRING_KEY);
+                out.writeUTF((String) key);
+            }
+            out.writeUTF(isbn);
+        } catch (IOException e) {
+            throw new IllegalStateException("Impossibile codificare il token di pagina", e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * @param token token prodotto da {@link #encode()}
+     * @return token decodificato
+     * @throws IllegalArgumentException se il token non è valido
+     */
+    public static PageToken decode(String token) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            SearchCriteria.SortField sortField = SearchCriteria.SortField.valueOf(in.readUTF());
+            boolean asc = in.readBoolean();
+            Object key = switch (in.readByte()) {
+                case NULL_KEY -> null;
+                case STRING_KEY -> in.readUTF();
+                case INT_KEY -> in.readInt();
+                default -> throw new IllegalArgumentException("Tipo di chiave sconosciuto");
+            };
+            return new PageToken(sortField, asc, key, in.readUTF());
+        } catch (IOException | NullPointerException e) {
+            throw new IllegalArgumentException("Token di pagina non valido: " + token, e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PageToken that)) return false;
+        return asc == that.asc && sortField == that.sortField && Objects.equals(key, that.key)
+                && isbn.equals(that.isbn);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sortField, asc, key, isbn);
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+}
@@ -1,6 +1,10 @@
 package com.bruno.bookmanager.filters;
 
 import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.utils.StringUtils;
+
+import java.util.Comparator;
+import java.util.Objects;
 
 public class SearchCriteria {
 
@@ -9,10 +13,15 @@ public class SearchCriteria {
     private final SortField sortField;
     private final boolean sortAsc;
 
+    private final int pageSize;
+    private final PageToken after;
+
     private SearchCriteria(Builder builder) {
-        this.filter = builder.filter;
+        this.filter = FilterOptimizer.optimize(builder.filter);
         this.sortField = builder.sortField;
         this.sortAsc = builder.sortAsc;
+        this.pageSize = builder.pageSize;
+        this.after = builder.after;
     }
 
     // Static factory methods per casi comuni
@@ -34,6 +43,9 @@ public class SearchCriteria {
 
     //Helper
 
+    /**
+     * @return filtro della ricerca nella forma prodotta da {@link FilterOptimizer}, null se assente
+     */
     public Filter<Libro> getFilter() {
         return filter;
     }
@@ -54,14 +66,136 @@ public class SearchCriteria {
         return sortField != null;
     }
 
+    /**
+     * @return numero massimo di libri per pagina, 0 se la ricerca non è paginata
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return token della pagina precedente da cui proseguire, null per la prima pagina
+     */
+    public PageToken getAfter() {
+        return after;
+    }
+
+    public boolean hasPaging() {
+        return pageSize > 0;
+    }
+
+    /**
+     * Campo su cui si basa il cursore di paginazione: quello di ordinamento, oppure l'ISBN se la ricerca
+     * non è ordinata, dato che la paginazione keyset richiede un ordine totale.
+     *
+     * @return campo di ordinamento effettivo per la paginazione
+     */
+    public SortField getKeysetSortField() {
+        return sortField != null ? sortField : SortField.ISBN;
+    }
+
+    /**
+     * @return direzione di ordinamento effettiva per la paginazione
+     */
+    public boolean isKeysetAsc() {
+        return sortField == null || sortAsc;
+    }
+
+    /**
+     * Verifica che il token di continuazione sia stato prodotto da una ricerca con lo stesso ordinamento.
+     *
+     * @throws IllegalArgumentException se il token non è compatibile con questi criteri
+     */
+    public void checkPageToken() {
+        if (after != null && (after.getSortField() != getKeysetSortField() || after.isAsc() != isKeysetAsc())) {
+            throw new IllegalArgumentException("Il token di pagina non corrisponde all'ordinamento della ricerca");
+        }
+    }
+
+    /**
+     * Due criteri sono uguali se producono la stessa ricerca: stessi filtri (confrontati strutturalmente),
+     * stesso ordinamento e stessa pagina.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SearchCriteria that)) return false;
+        return sortAsc == that.sortAsc && pageSize == that.pageSize && sortField == that.sortField
+                && Objects.equals(filter, that.filter) && Objects.equals(after, that.after);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(filter, sortField, sortAsc, pageSize, after);
+    }
+
     public enum SortField {
-        TITOLO, AUTORE, VALUTAZIONE, GENERE, STATO, ISBN
+        TITOLO, AUTORE, VALUTAZIONE, GENERE, STATO, ISBN,
+        /**
+         * Pertinenza rispetto ai filtri testuali (bm25 sull'indice full-text di SQLite). Senza filtri testuali,
+         * e nelle ricerche in memoria, equivale all'ordinamento per titolo.
+         */
+        RILEVANZA;
+
+        /**
+         * Comparatore in memoria equivalente all'ORDER BY di SqliteLibroDAO: titolo e autore seguono la
+         * collation NOCASE, i valori null precedono gli altri come in SQLite e l'ISBN fa da spareggio.
+         *
+         * @return comparatore crescente per questo campo
+         */
+        public Comparator<Libro> comparator() {
+            Comparator<Libro> byField = Comparator.comparing(this::keyOf, keyOrder());
+            return this == ISBN ? byField : byField.thenComparing(Libro::getIsbn);
+        }
+
+        /**
+         * Valore di ordinamento del libro per questo campo, nella forma in cui è memorizzato in SQLite:
+         * stringa per i campi testuali ed enumerativi, intero per la valutazione.
+         *
+         * @param libro libro di cui estrarre la chiave
+         * @return chiave di ordinamento, eventualmente null
+         */
+        public Object keyOf(Libro libro) {
+            return switch (this) {
+                case TITOLO, RILEVANZA -> libro.getTitolo();
+                case AUTORE -> libro.getAutore();
+                case VALUTAZIONE -> libro.getValutazione();
+                case GENERE -> libro.getGenereName();
+                case STATO -> libro.getStatoLettura().name();
+                case ISBN -> libro.getIsbn();
+            };
+        }
+
+        /**
+         * Confronta la posizione del libro con quella del cursore (chiave e ISBN) secondo
+         * {@link #comparator()} in ordine crescente.
+         *
+         * @return valore negativo, zero o positivo se il libro precede, coincide o segue il cursore
+         */
+        public int compareToKey(Libro libro, Object key, String isbn) {
+            int result = keyOrder().compare(keyOf(libro), key);
+            if (result != 0 || this == ISBN) {
+                return result;
+            }
+            return libro.getIsbn().compareTo(isbn);
+        }
+
+        private Comparator<Object> keyOrder() {
+            Comparator<Object> order = switch (this) {
+                case TITOLO, RILEVANZA, AUTORE -> (a, b) -> StringUtils.compareNoCase((String) a, (String) b);
+                case VALUTAZIONE -> Comparator.comparingInt(value -> (Integer) value);
+                case GENERE, STATO, ISBN -> Comparator.comparing(value -> (String) value);
+            };
+            return Comparator.nullsFirst(order);
+        }
     }
 
     public static class Builder {
         private Filter<Libro> filter;
         private SortField sortField = SortField.TITOLO;
         private boolean sortAsc = true;
+        private int pageSize;
+        private PageToken after;
 
         public Builder filter(Filter<Libro> filter) {
             this.filter = filter;
@@ -90,6 +224,30 @@ public class SearchCriteria {
             return sortBy(SortField.VALUTAZIONE, ascending);
         }
 
+        /**
+         * Limita la ricerca a pagine di al più {@code pageSize} libri.
+         *
+         * @param pageSize dimensione della pagina, 0 per disattivare la paginazione
+         * @throws IllegalArgumentException se pageSize è negativo
+         */
+        public Builder pageSize(int pageSize) {
+            if (pageSize < 0) {
+                throw new IllegalArgumentException("La dimensione della pagina non può essere negativa");
+            }
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * Prosegue la ricerca dalla pagina successiva a quella che ha prodotto il token.
+         *
+         * @param after token di continuazione restituito con la pagina precedente, null per la prima pagina
+         */
+        public Builder after(PageToken after) {
+            this.after = after;
+            return this;
+        }
+
         public SearchCriteria build() {
             return new SearchCriteria(this);
         }
@@ -0,0 +1,85 @@
+package com.bruno.bookmanager.filters;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Frammento di clausola SQL parametrizzato: il testo contiene un segnaposto {@code ?} per ogni
+ * valore, e {@link #parameters()} elenca i valori da associare nello stesso ordine.
+ * <p>
+ * Due filtri con la stessa struttura producono lo stesso testo SQL indipendentemente dai valori,
+ * così il DAO può riutilizzare lo statement già preparato.
+ *
+ * @param sql        testo SQL con segnaposto posizionali
+ * @param parameters valori da associare ai segnaposto, in ordine
+ */
+public record SqlFragment(String sql, List<Object> parameters) {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    public SqlFragment {
+        parameters = List.copyOf(parameters);
+    }
+
+    public static SqlFragment of(String sql, Object... parameters) {
+        return new SqlFragment(sql, List.of(parameters));
+    }
+
+    /**
+     * Crea un confronto {@code LIKE} di sottostringa sulla colonna indicata. I caratteri jolly
+     * presenti nel testo vengono trattati letteralmente.
+     *
+     * @param column colonna da confrontare
+     * @param text   testo da cercare
+     * @return frammento {@code column LIKE ? ESCAPE '\'}
+     */
+    public static SqlFragment likeContains(String column, String text) {
+        return of(column + " LIKE ? ESCAPE '" + LIKE_ESCAPE + "'", "%" + escapeLike(text) + "%");
+    }
+
+    /**
+     * Crea un confronto di appartenenza a un insieme di valori. Il testo SQL dipende solo dal numero
+     * di valori.
+     *
+     * @param column colonna da confrontare
+     * @param values valori ammessi, almeno uno
+     * @return frammento {@code column IN (?, ...)}
+     */
+    public static SqlFragment in(String column, List<?> values) {
+        return new SqlFragment(column + " IN (" + String.join(", ", Collections.nCopies(values.size(), "?"))
+                + ")", new ArrayList<>(values));
+    }
+
+    private static String escapeLike(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                sb.append(LIKE_ESCAPE);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Combina più frammenti con l'operatore indicato, racchiudendo il risultato tra parentesi.
+     *
+     * @param operator  operatore logico ({@code AND} o {@code OR})
+     * @param fragments frammenti da combinare
+     * @return frammento combinato con i parametri concatenati nell'ordine dei frammenti
+     */
+    public static SqlFragment join(String operator, List<SqlFragment> fragments) {
+        StringBuilder sql = new StringBuilder("(");
+        List<Object> parameters = new ArrayList<>();
+        for (int i = 0; i < fragments.size(); i++) {
+            if (i > 0) {
+                sql.append(' ').append(operator).append(' ');
+            }
+            sql.append(fragments.get(i).sql());
+            parameters.addAll(fragments.get(i).parameters());
+        }
+        return new SqlFragment(sql.append(')').toString(), parameters);
+    }
+}
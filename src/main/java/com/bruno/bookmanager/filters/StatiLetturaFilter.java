@@ -0,0 +1,50 @@
+package com.bruno.bookmanager.filters;
+
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Libri in uno qualsiasi degli stati di lettura indicati: equivale all'OR dei rispettivi
+ * {@link StatoLetturaFilter}.
+ */
+public class StatiLetturaFilter implements Filter<Libro> {
+    private final Set<StatoLettura> stati;
+
+    /**
+     * @param stati stati ammessi, almeno uno e nessuno null
+     */
+    public StatiLetturaFilter(Collection<StatoLettura> stati) {
+        this.stati = Collections.unmodifiableSet(EnumSet.copyOf(stati));
+    }
+
+    public Set<StatoLettura> getStati() {
+        return stati;
+    }
+
+    @Override
+    public boolean test(Libro libro) {
+        return stati.contains(libro.getStatoLettura());
+    }
+
+    @Override
+    public SqlFragment toSqlFragment() {
+        return SqlFragment.in("stato", stati.stream().map(StatoLettura::name).toList());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof StatiLetturaFilter that)) return false;
+        return stati.equals(that.stati);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * StatiLetturaFilter.class.hashCode() + stati.hashCode();
+    }
+}
@@ -1,6 +1,8 @@
 package com.bruno.bookmanager.filters;
 
 import com.bruno.bookmanager.model.Libro;
+
+import java.util.Objects;
 import com.bruno.bookmanager.model.StatoLettura;
 
 public class StatoLetturaFilter implements Filter<Libro> {
@@ -11,13 +13,35 @@ public class StatoLetturaFilter implements Filter<Libro> {
         this.statoLettura = stato;
     }
 
+    public StatoLettura getStatoLettura() {
+        return statoLettura;
+    }
+
     @Override
     public boolean test(Libro libro) {
         return libro.getStatoLettura().equals(statoLettura);
     }
 
+    @Deprecated
     @Override
     public String toSqlClause() {
         return "stato = '" + statoLettura.name() + "'";
     }
+
+    @Override
+    public SqlFragment toSqlFragment() {
+        return SqlFragment.of("stato = ?", statoLettura.name());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof StatoLetturaFilter that)) return false;
+        return Objects.equals(statoLettura, that.statoLettura);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * StatoLetturaFilter.class.hashCode() + Objects.hashCode(statoLettura);
+    }
 }
@@ -1,21 +1,56 @@
 package com.bruno.bookmanager.filters;
 
 import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.utils.StringUtils;
+
+import java.util.Objects;
 
 public class TitoloFilter implements Filter<Libro> {
     private final String titolo;
+    // Testo cercato già in minuscolo, per confrontarlo con ogni libro senza allocare stringhe
+    private final String needle;
 
     public TitoloFilter(String titolo) {
         this.titolo = titolo != null ? titolo.trim() : "";
+        this.needle = StringUtils.lowerCase(this.titolo);
+    }
+
+    public String getTitolo() {
+        return titolo;
+    }
+
+    /**
+     * @return testo cercato in minuscolo, da usare con {@link StringUtils#containsIgnoreCase}
+     */
+    public String getNeedle() {
+        return needle;
     }
 
     @Override
     public boolean test(Libro libro) {
-        return libro.getTitolo().toLowerCase().contains(titolo.toLowerCase());
+        return StringUtils.containsIgnoreCase(libro.getTitolo(), needle);
     }
 
+    @Deprecated
     @Override
     public String toSqlClause() {
         return "titolo LIKE '%" + titolo + "%'";
     }
+
+    @Override
+    public SqlFragment toSqlFragment() {
+        return SqlFragment.likeContains("titolo", titolo);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TitoloFilter that)) return false;
+        return Objects.equals(titolo, that.titolo);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * TitoloFilter.class.hashCode() + Objects.hashCode(titolo);
+    }
 }
@@ -10,13 +10,35 @@ public class ValutazioneFilter implements Filter<Libro> {
         this.valutazione = valutazione;
     }
 
+    public int getValutazione() {
+        return valutazione;
+    }
+
     @Override
     public boolean test(Libro libro) {
         return valutazione == libro.getValutazione();
     }
 
+    @Deprecated
     @Override
     public String toSqlClause() {
         return "valutazione = '" + valutazione + "'";
     }
+
+    @Override
+    public SqlFragment toSqlFragment() {
+        return SqlFragment.of("valutazione = ?", valutazione);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ValutazioneFilter that)) return false;
+        return valutazione == that.valutazione;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * ValutazioneFilter.class.hashCode() + Integer.hashCode(valutazione);
+    }
 }
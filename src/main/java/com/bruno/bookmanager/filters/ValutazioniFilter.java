@@ -0,0 +1,61 @@
+package com.bruno.bookmanager.filters;
+
+import com.bruno.bookmanager.model.Libro;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Libri con una qualsiasi delle valutazioni indicate: equivale all'OR dei rispettivi {@link ValutazioneFilter}.
+ */
+public class ValutazioniFilter implements Filter<Libro> {
+    private final Set<Integer> valutazioni;
+    // Valutazioni in ordine crescente: per pochi valori la scansione evita il boxing di Set.contains
+    private final int[] values;
+
+    /**
+     * @param valutazioni valutazioni ammesse, almeno una
+     */
+    public ValutazioniFilter(Collection<Integer> valutazioni) {
+        TreeSet<Integer> sorted = new TreeSet<>(valutazioni);
+        if (sorted.isEmpty()) {
+            throw new IllegalArgumentException("Serve almeno una valutazione");
+        }
+        this.valutazioni = Set.copyOf(sorted);
+        this.values = sorted.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public Set<Integer> getValutazioni() {
+        return valutazioni;
+    }
+
+    @Override
+    public boolean test(Libro libro) {
+        int valutazione = libro.getValutazione();
+        for (int value : values) {
+            if (value == valutazione) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public SqlFragment toSqlFragment() {
+        return SqlFragment.in("valutazione", Arrays.stream(values).boxed().toList());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ValutazioniFilter that)) return false;
+        return valutazioni.equals(that.valutazioni);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * ValutazioniFilter.class.hashCode() + valutazioni.hashCode();
+    }
+}
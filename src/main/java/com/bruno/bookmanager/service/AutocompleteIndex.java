@@ -0,0 +1,536 @@
+package com.bruno.bookmanager.service;
+
+import com.bruno.bookmanager.model.Libro;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Indice dei titoli e dei nomi degli autori per i suggerimenti di completamento della ricerca.
+ * <p>
+ * Titoli e autori sono normalizzati (minuscole, senza accenti, spazi uniformati) e raccolti in voci distinte:
+ * più libri con lo stesso titolo o lo stesso autore formano una sola voce. I completamenti di un prefisso sono
+ * ordinati per numero di libri della voce e, a parità, per somma delle valutazioni, cioè per valutazione media,
+ * infine alfabeticamente; viene suggerito il testo del primo libro indicizzato per la voce.
+ * <p>
+ * L'indice viene aggiornato a ogni aggiunta, modifica o rimozione di un libro e conserva la versione della
+ * persistenza a cui corrisponde: {@link LibroService} lo ricostruisce quando la libreria cambia in altro modo.
+ * I metodi sono sincronizzati.
+ */
+final class AutocompleteIndex {
+
+    private static final Pattern ACCENTI = Pattern.compile("\\p{M}+");
+    private static final Pattern SPAZI = Pattern.compile("\\s+");
+
+    /**
+     * Testi di un libro indicizzato, copiati perché i libri sono modificabili.
+     */
+    private record Voce(String titolo, String autore, int valutazione) {
+        static Voce of(Libro libro) {
+            return new Voce(libro.getTitolo(), libro.getAutore(), libro.getValutazione());
+        }
+    }
+
+    private PrefixIndex titoli = new PrefixIndex();
+    private PrefixIndex autori = new PrefixIndex();
+    private final Map<String, Voce> voci = new HashMap<>();
+    private boolean valido;
+    private long versione;
+
+    /**
+     * @param versione versione della persistenza, 0 se non disponibile
+     * @return true se l'indice corrisponde alla versione indicata della persistenza
+     */
+    synchronized boolean isAggiornato(long versione) {
+        return valido && this.versione == versione;
+    }
+
+    /**
+     * Ricostruisce l'indice da tutti i libri.
+     *
+     * @param libri    libri della libreria
+     * @param versione versione della persistenza da cui sono stati letti
+     */
+    synchronized void ricostruisci(Iterable<Libro> libri, long versione) {
+        voci.clear();
+        Map<String, PrefixIndex.Term> perTitolo = new HashMap<>();
+        Map<String, PrefixIndex.Term> perAutore = new HashMap<>();
+        for (Libro libro : libri) {
+            Voce voce = Voce.of(libro);
+            Voce precedente = voci.put(libro.getIsbn(), voce);
+            if (precedente != null) {
+                PrefixIndex.count(perTitolo, precedente.titolo(), precedente.valutazione(), -1);
+                PrefixIndex.count(perAutore, precedente.autore(), precedente.valutazione(), -1);
+            }
+            PrefixIndex.count(perTitolo, voce.titolo(), voce.valutazione(), 1);
+            PrefixIndex.count(perAutore, voce.autore(), voce.valutazione(), 1);
+        }
+        titoli = new PrefixIndex(perTitolo.values());
+        autori = new PrefixIndex(perAutore.values());
+        valido = true;
+        this.versione = versione;
+    }
+
+    /**
+     * Indicizza un libro aggiunto o modificato. Se l'indice non corrispondeva alla persistenza prima della
+     * scrittura viene invece invalidato.
+     *
+     * @param libro libro scritto
+     * @param prima versione della persistenza prima della scrittura
+     * @param dopo  versione della persistenza dopo la scrittura
+     */
+    synchronized void aggiorna(Libro libro, long prima, long dopo) {
+        if (!isAggiornato(prima)) {
+            invalida();
+            return;
+        }
+        Voce voce = Voce.of(libro);
+        togli(voci.put(libro.getIsbn(), voce));
+        titoli.add(voce.titolo(), voce.valutazione());
+        autori.add(voce.autore(), voce.valutazione());
+        versione = dopo;
+    }
+
+    /**
+     * Toglie dall'indice un libro rimosso. Se l'indice non corrispondeva alla persistenza prima della
+     * scrittura viene invece invalidato.
+     *
+     * @param isbn  ISBN del libro rimosso
+     * @param prima versione della persistenza prima della scrittura
+     * @param dopo  versione della persistenza dopo la scrittura
+     */
+    synchronized void rimuovi(String isbn, long prima, long dopo) {
+        if (!isAggiornato(prima)) {
+            invalida();
+            return;
+        }
+        togli(voci.remove(isbn));
+        versione = dopo;
+    }
+
+    private void togli(Voce voce) {
+        if (voce != null) {
+            titoli.remove(voce.titolo(), voce.valutazione());
+            autori.remove(voce.autore(), voce.valutazione());
+        }
+    }
+
+    /**
+     * Scarta il contenuto dell'indice, che verrà ricostruito alla richiesta successiva.
+     */
+    synchronized void invalida() {
+        valido = false;
+        voci.clear();
+        titoli = new PrefixIndex();
+        autori = new PrefixIndex();
+    }
+
+    /**
+     * @param prefisso inizio del titolo, confrontato dopo la normalizzazione
+     * @param max      numero massimo di suggerimenti
+     * @return titoli che iniziano con il prefisso, dal più rilevante
+     */
+    synchronized List<String> completaTitolo(String prefisso, int max) {
+        return titoli.complete(prefisso, max);
+    }
+
+    /**
+     * @param prefisso inizio del nome dell'autore, confrontato dopo la normalizzazione
+     * @param max      numero massimo di suggerimenti
+     * @return autori il cui nome inizia con il prefisso, dal più rilevante
+     */
+    synchronized List<String> completaAutore(String prefisso, int max) {
+        return autori.complete(prefisso, max);
+    }
+
+    /**
+     * @return il testo in minuscolo, senza accenti, senza spazi iniziali e finali e con gli spazi interni
+     * ridotti a uno
+     */
+    static String normalize(String text) {
+        String ascii = normalizeAscii(text);
+        if (ascii != null) {
+            return ascii;
+        }
+        String decomposed = Normalizer.normalize(text.strip(), Normalizer.Form.NFD);
+        return SPAZI.matcher(ACCENTI.matcher(decomposed).replaceAll("")).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Normalizzazione dei testi solo ASCII, i più comuni, senza decomposizione né espressioni regolari.
+     *
+     * @return il testo normalizzato, null se contiene caratteri non ASCII
+     */
+    private static String normalizeAscii(String text) {
+        StringBuilder result = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                return null;
+            }
+            if (Character.isWhitespace(c)) {
+                space = !result.isEmpty();
+            } else {
+                if (space) {
+                    result.append(' ');
+                    space = false;
+                }
+                result.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Voci di un campo ordinate per chiave normalizzata, con un albero di segmenti che conserva in ogni nodo la
+     * voce più rilevante del suo intervallo.
+     * <p>
+     * Le voci di un prefisso occupano un intervallo contiguo dell'array, trovato con due ricerche binarie. Le
+     * più rilevanti si estraggono dall'albero una alla volta: il nodo migliore della frontiera fornisce la voce
+     * successiva, e il resto del suo sottoalbero entra nella frontiera come fratelli dei nodi sul cammino fino
+     * alla voce. Il costo dipende dal numero di suggerimenti e dal logaritmo delle voci, non dalla grandezza
+     * dell'intervallo. Aggiornare il conteggio di una voce presente aggiorna il solo cammino dalla foglia alla
+     * radice. Le voci nuove vanno in una mappa ordinata separata, consultata a ogni ricerca e fusa nell'array
+     * quando supera quattro volte la radice quadrata del numero di voci; le voci senza più libri restano
+     * nell'array, ignorate, fino alla fusione successiva.
+     */
+    static final class PrefixIndex {
+
+        private static final int MIN_PENDING = 64;
+
+        /**
+         * Voce distinta di un campo.
+         */
+        static final class Term {
+            final String key;
+            String display;
+            int count;
+            long ratings;
+
+            Term(String key, String display) {
+                this.key = key;
+                this.display = display;
+            }
+
+            /**
+             * @return rilevanza della voce: numero di libri, poi somma delle valutazioni
+             */
+            long score() {
+                return (long) count << 32 | ratings;
+            }
+        }
+
+        /**
+         * Ordine di rilevanza dei suggerimenti, dalla voce più rilevante.
+         */
+        private static final Comparator<Term> RELEVANCE = Comparator.comparingLong(Term::score).reversed()
+                .thenComparing(term -> term.key);
+
+        private Term[] terms;
+        // Rilevanza delle voci dell'array, per confronti senza accedere alle voci
+        private long[] scores;
+        // tree[1] è la radice, i figli di n sono 2n e 2n+1; le foglie partono da leaves
+        private int[] tree;
+        private int leaves;
+        private final TreeMap<String, Term> pending = new TreeMap<>();
+        private int empty;
+
+        PrefixIndex() {
+            this(List.of());
+        }
+
+        PrefixIndex(Collection<Term> terms) {
+            this.terms = terms.stream().filter(term -> term.count > 0).sorted(Comparator.comparing(term -> term.key))
+                    .toArray(Term[]::new);
+            buildTree();
+        }
+
+        /**
+         * Aggiunge o toglie un libro dal conteggio di una voce in una mappa per chiave, per la costruzione.
+         */
+        static void count(Map<String, Term> terms, String text, int rating, int delta) {
+            if (text == null || text.isBlank()) {
+                return;
+            }
+            Term term = terms.computeIfAbsent(normalize(text), key -> new Term(key, text.strip()));
+            term.count += delta;
+            term.ratings += (long) rating * delta;
+        }
+
+        void add(String text, int rating) {
+            if (text == null || text.isBlank()) {
+                return;
+            }
+            String key = normalize(text);
+            int position = find(key);
+            if (position >= 0) {
+                Term term = terms[position];
+                if (term.count == 0) {
+                    term.display = text.strip();
+                    empty--;
+                }
+                term.count++;
+                term.ratings += rating;
+                update(position);
+                return;
+            }
+            Term term = pending.computeIfAbsent(key, k -> new Term(k, text.strip()));
+            term.count++;
+            term.ratings += rating;
+            if (pending.size() > Math.max(MIN_PENDING, 4 * (int) Math.sqrt(terms.length))) {
+                compact();
+            }
+        }
+
+        void remove(String text, int rating) {
+            if (text == null || text.isBlank()) {
+                return;
+            }
+            String key = normalize(text);
+            int position = find(key);
+            if (position >= 0) {
+                Term term = terms[position];
+                term.count--;
+                term.ratings -= rating;
+                update(position);
+                if (term.count == 0 && ++empty > Math.max(MIN_PENDING, terms.length / 2)) {
+                    compact();
+                }
+                return;
+            }
+            Term term = pending.get(key);
+            if (term != null) {
+                term.count--;
+                term.ratings -= rating;
+                if (term.count == 0) {
+                    pending.remove(key);
+                }
+            }
+        }
+
+        List<String> complete(String prefix, int max) {
+            if (prefix == null || max <= 0) {
+                return List.of();
+            }
+            String key = normalize(prefix);
+            if (key.isEmpty()) {
+                return List.of();
+            }
+            if (Character.isWhitespace(prefix.charAt(prefix.length() - 1))) {
+                // Parola già completata: non vanno suggerite quelle che la proseguono
+                key += " ";
+            }
+            List<Term> found = best(lowerBound(key), upperBound(key), max);
+            for (Term term : pending.subMap(key, true, key + Character.MAX_VALUE, false).values()) {
+                found.add(term);
+                if (found.size() > 2 * max) {
+                    truncate(found, max);
+                }
+            }
+            truncate(found, max);
+            return found.stream().map(term -> term.display).toList();
+        }
+
+        private static void truncate(List<Term> terms, int max) {
+            terms.sort(RELEVANCE);
+            if (terms.size() > max) {
+                terms.subList(max, terms.size()).clear();
+            }
+        }
+
+        /**
+         * @return le voci più rilevanti tra quelle in posizione [from, to), al massimo max
+         */
+        private List<Term> best(int from, int to, int max) {
+            List<Term> result = new ArrayList<>();
+            if (from >= to) {
+                return result;
+            }
+            int depth = Integer.numberOfTrailingZeros(leaves) + 1;
+            Frontier frontier = new Frontier(depth * (2 + Math.min(max, to - from)));
+            // Nodi che coprono esattamente l'intervallo
+            for (int lo = from + leaves, hi = to + leaves; lo < hi; lo >>= 1, hi >>= 1) {
+                if ((lo & 1) == 1) {
+                    frontier.offer(lo++);
+                }
+                if ((hi & 1) == 1) {
+                    frontier.offer(--hi);
+                }
+            }
+            while (result.size() < max && !frontier.isEmpty()) {
+                int node = frontier.poll();
+                int leaf = tree[node];
+                result.add(terms[leaf]);
+                for (int child = leaf + leaves; child != node; child >>= 1) {
+                    frontier.offer(child ^ 1);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Coda di priorità dei nodi dell'albero, ordinati per la voce migliore del loro intervallo.
+         */
+        private final class Frontier {
+            private final int[] heap;
+            private int size;
+
+            Frontier(int capacity) {
+                heap = new int[capacity];
+            }
+
+            boolean isEmpty() {
+                return size == 0;
+            }
+
+            /**
+             * Aggiunge il nodo, se il suo intervallo contiene voci con almeno un libro.
+             */
+            void offer(int node) {
+                int term = tree[node];
+                if (term < 0 || scores[term] == 0) {
+                    return;
+                }
+                int i = size++;
+                while (i > 0 && before(node, heap[(i - 1) / 2])) {
+                    heap[i] = heap[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                heap[i] = node;
+            }
+
+            int poll() {
+                int top = heap[0];
+                int last = heap[--size];
+                int i = 0;
+                while (2 * i + 1 < size) {
+                    int child = 2 * i + 1;
+                    if (child + 1 < size && before(heap[child + 1], heap[child])) {
+                        child++;
+                    }
+                    if (!before(heap[child], last)) {
+                        break;
+                    }
+                    heap[i] = heap[child];
+                    i = child;
+                }
+                heap[i] = last;
+                return top;
+            }
+
+            private boolean before(int a, int b) {
+                return better(tree[a], tree[b]) == tree[a];
+            }
+        }
+
+        private int find(String key) {
+            int position = lowerBound(key);
+            return position < terms.length && terms[position].key.equals(key) ? position : -1;
+        }
+
+        /**
+         * @return posizione della prima voce con chiave maggiore o uguale a quella indicata
+         */
+        private int lowerBound(String key) {
+            int lo = 0, hi = terms.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (terms[mid].key.compareTo(key) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * @return posizione della prima voce, dopo quelle che iniziano con il prefisso, che non inizia con esso
+         */
+        private int upperBound(String prefix) {
+            int lo = lowerBound(prefix), hi = terms.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (terms[mid].key.startsWith(prefix)) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private void buildTree() {
+            scores = new long[terms.length];
+            for (int i = 0; i < terms.length; i++) {
+                scores[i] = terms[i].score();
+            }
+            leaves = Integer.highestOneBit(Math.max(1, terms.length - 1)) << 1;
+            tree = new int[2 * leaves];
+            Arrays.fill(tree, -1);
+            for (int i = 0; i < terms.length; i++) {
+                tree[leaves + i] = i;
+            }
+            for (int node = leaves - 1; node > 0; node--) {
+                tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+            }
+            empty = 0;
+        }
+
+        private void update(int position) {
+            scores[position] = terms[position].score();
+            for (int node = (position + leaves) >> 1; node > 0; node >>= 1) {
+                tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+            }
+        }
+
+        /**
+         * @return la più rilevante tra le due voci dell'array; a parità la prima, che ha la chiave minore
+         */
+        private int better(int a, int b) {
+            if (a < 0 || b < 0) {
+                return a < 0 ? b : a;
+            }
+            if (scores[a] != scores[b]) {
+                return scores[a] > scores[b] ? a : b;
+            }
+            return Math.min(a, b);
+        }
+
+        /**
+         * Fonde le voci nuove nell'array ordinato e scarta quelle senza libri.
+         */
+        private void compact() {
+            List<Term> merged = new ArrayList<>(terms.length + pending.size());
+            int i = 0;
+            for (Term term : pending.values()) {
+                while (i < terms.length && terms[i].key.compareTo(term.key) < 0) {
+                    addIfCounted(merged, terms[i++]);
+                }
+                merged.add(term);
+            }
+            while (i < terms.length) {
+                addIfCounted(merged, terms[i++]);
+            }
+            pending.clear();
+            terms = merged.toArray(Term[]::new);
+            buildTree();
+        }
+
+        private static void addIfCounted(List<Term> terms, Term term) {
+            if (term.count > 0) {
+                terms.add(term);
+            }
+        }
+    }
+}
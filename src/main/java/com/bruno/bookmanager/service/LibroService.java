@@ -1,20 +1,36 @@
 package com.bruno.bookmanager.service;
 
+import com.bruno.bookmanager.dao.BulkResult;
+import com.bruno.bookmanager.dao.CachedLibroDAO;
 import com.bruno.bookmanager.dao.DAOFactory;
 import com.bruno.bookmanager.dao.DAOType;
 import com.bruno.bookmanager.dao.LibroDAO;
 import com.bruno.bookmanager.dao.OptimizedSearch;
+import com.bruno.bookmanager.dao.VersionedStorage;
 import com.bruno.bookmanager.exception.*;
 import com.bruno.bookmanager.filters.Filter;
+import com.bruno.bookmanager.filters.FilterCompiler;
 import com.bruno.bookmanager.filters.ISBNFilter;
+import com.bruno.bookmanager.filters.InMemorySearch;
+import com.bruno.bookmanager.filters.Page;
 import com.bruno.bookmanager.filters.SearchCriteria;
+import com.bruno.bookmanager.model.Genere;
 import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 /**
@@ -24,6 +40,7 @@ import java.util.stream.Stream;
  * <ul>
  *     <li>CRUD operations sui libri</li>
  *     <li>Ricerca e filtri</li>
+ *     <li>Suggerimenti di completamento per titoli e autori</li>
  *     <li>Ordinamento</li>
  *     <li>Validazione dei dati</li>
  *     <li>Gestione persistenza</li>
@@ -38,6 +55,12 @@ public final class LibroService {
 
     private LibroDAO libroDAO;
 
+    private final SearchResultCache searchCache = new SearchResultCache(SearchResultCache.DEFAULT_MAX_ENTRIES);
+    // Incrementato da ogni modifica fatta tramite il service: invalida i risultati delle ricerche in cache
+    private final AtomicLong versione = new AtomicLong();
+    private final AutocompleteIndex suggerimenti = new AutocompleteIndex();
+    private volatile Consumer<BookManagerException> salvataggioFallitoListener;
+
     private LibroService() {
         logger.info("LibroService inizializzato");
     }
@@ -50,18 +73,139 @@ public final class LibroService {
     }
 
     /**
-     * Imposta il tipo di DAO e il path del file da utilizzare.
+     * Imposta il tipo di DAO e il path del file da utilizzare. Le modifiche del DAO corrente ancora in attesa
+     * di scrittura differita vengono salvate prima del cambio; se il salvataggio fallisce il DAO corrente
+     * resta in uso.
      *
      * @param type tipo di DAO da impostare
      * @param path percorso del file su cui avviare il DAO
+     * @throws BookManagerException se non è possibile salvare le modifiche in attesa del DAO corrente
      */
-    public void setDAO(DAOType type, String path) {
-        this.libroDAO = DAOFactory.createDAO(type, path);
+    public void setDAO(DAOType type, String path) throws BookManagerException {
+        salvaModifiche();
+        LibroDAO nuovo = DAOFactory.createDAO(type, path);
+        closeCurrentDAO();
+        installaDAO(nuovo);
         logger.info("Strategia DAO cambiata a: {}", type.name());
     }
 
     public void setLibroDAO(LibroDAO libroDAO) {
-        this.libroDAO = libroDAO;
+        installaDAO(libroDAO);
+    }
+
+    private void installaDAO(LibroDAO nuovo) {
+        this.libroDAO = nuovo;
+        if (nuovo instanceof CachedLibroDAO cached) {
+            cached.setFlushFailureListener(this::salvataggioFallito);
+        }
+        libreriaCambiata();
+    }
+
+    /**
+     * Imposta chi avvisare quando il salvataggio in background delle modifiche fallisce. Il listener viene
+     * chiamato dal thread della scrittura differita, non da quello dell'interfaccia.
+     *
+     * @param listener listener da chiamare con l'errore, null per nessuno
+     */
+    public void setSalvataggioFallitoListener(Consumer<BookManagerException> listener) {
+        this.salvataggioFallitoListener = listener;
+    }
+
+    private void salvataggioFallito(DAOException e) {
+        Consumer<BookManagerException> listener = salvataggioFallitoListener;
+        if (listener != null) {
+            listener.accept(new BookManagerException("Impossibile salvare le modifiche", e));
+        }
+    }
+
+    /**
+     * @return true se ci sono modifiche in attesa di scrittura differita non ancora salvate
+     */
+    public boolean hasModificheNonSalvate() {
+        return libroDAO instanceof CachedLibroDAO cached && cached.hasPendingWrites();
+    }
+
+    /**
+     * Salva subito le modifiche in attesa di scrittura differita. Non fa nulla se non ce ne sono.
+     *
+     * @throws BookManagerException se il salvataggio fallisce; le modifiche restano in attesa
+     */
+    public void salvaModifiche() throws BookManagerException {
+        if (!(libroDAO instanceof CachedLibroDAO cached)) {
+            return;
+        }
+        try {
+            cached.flush();
+        } catch (DAOException e) {
+            logger.error("Errore durante il salvataggio delle modifiche", e);
+            throw new BookManagerException("Impossibile salvare le modifiche", e);
+        }
+    }
+
+    private void libreriaCambiata() {
+        versione.incrementAndGet();
+        searchCache.clear();
+        suggerimenti.invalida();
+    }
+
+    /**
+     * Registra una modifica della libreria: i risultati delle ricerche calcolati prima diventano obsoleti.
+     * Va chiamato anche se la scrittura fallisce, perché potrebbe essere stata applicata in parte.
+     */
+    private void libreriaModificata() {
+        versione.incrementAndGet();
+    }
+
+    private SearchResultCache.LibraryVersion libraryVersion() throws DAOException {
+        return new SearchResultCache.LibraryVersion(versione.get(), storageVersion());
+    }
+
+    private long storageVersion() throws DAOException {
+        return libroDAO instanceof VersionedStorage versioned ? versioned.dataVersion() : 0;
+    }
+
+    /**
+     * @return statistiche della cache dei risultati di {@link #search} e {@link #searchPage}
+     */
+    public SearchResultCache.Stats getSearchCacheStats() {
+        return searchCache.getStats();
+    }
+
+    /**
+     * Chiude il DAO corrente, rilasciandone le risorse (es. connessioni al database).
+     */
+    private void closeCurrentDAO() {
+        if (libroDAO == null) {
+            return;
+        }
+        try {
+            libroDAO.close();
+        } catch (DAOException e) {
+            logger.warn("Errore durante la chiusura del DAO precedente", e);
+        }
+    }
+
+    /**
+     * Chiude il DAO corrente, salvando le eventuali modifiche in attesa di scrittura differita.
+     * Va chiamato alla chiusura dell'applicazione. Se il salvataggio fallisce il DAO resta aperto, così le
+     * modifiche non vanno perse e si può ritentare.
+     *
+     * @throws BookManagerException se il salvataggio delle modifiche o la chiusura del DAO falliscono
+     */
+    public void chiudi() throws BookManagerException {
+        if (libroDAO == null) {
+            return;
+        }
+        salvaModifiche();
+        try {
+            libroDAO.close();
+        } catch (DAOException e) {
+            logger.error("Errore durante la chiusura del DAO", e);
+            throw new BookManagerException("Impossibile chiudere l'archivio", e);
+        } finally {
+            libroDAO = null;
+            libreriaCambiata();
+        }
     }
 
     private void checkDAOInitialized() throws BookManagerException {
@@ -91,11 +235,16 @@ public final class LibroService {
         checkDAOInitialized();
         Validator.validateLibro(libro);
         try {
+            long prima = storageVersion();
             libroDAO.add(libro);
+            suggerimenti.aggiorna(libro, prima, storageVersion());
             logger.info("Libro aggiunto con successo: {} (ISBN: {})", libro.getTitolo(), libro.getIsbn());
         } catch (DAOException e) {
+            suggerimenti.invalida();
             logger.error("Errore durante l'aggiunta del libro", e);
             throw new BookManagerException("Impossibile aggiungere il libro", e);
+        } finally {
+            libreriaModificata();
         }
     }
 
@@ -111,11 +260,16 @@ public final class LibroService {
         checkDAOInitialized();
         Validator.validateIsbn(isbn);
         try {
+            long prima = storageVersion();
             libroDAO.removeByIsbn(isbn);
+            suggerimenti.rimuovi(isbn, prima, storageVersion());
             logger.info("Libro rimosso con successo: ISBN {}", isbn);
         } catch (DAOException e) {
+            suggerimenti.invalida();
             logger.error("Errore durante la rimozione del libro", e);
             throw new BookManagerException("Impossibile rimuovere il libro", e);
+        } finally {
+            libreriaModificata();
         }
     }
 
@@ -132,11 +286,70 @@ public final class LibroService {
         Validator.validateLibro(libro);
 
         try {
+            long prima = storageVersion();
             libroDAO.update(libro);
+            suggerimenti.aggiorna(libro, prima, storageVersion());
             logger.info("Libro aggiornato con successo: {} (ISBN: {})", libro.getTitolo(), libro.getIsbn());
         } catch (DAOException e) {
+            suggerimenti.invalida();
             logger.error("Errore durante l'aggiornamento del libro", e);
             throw new BookManagerException("Impossibile aggiornare il libro", e);
+        } finally {
+            libreriaModificata();
+        }
+    }
+
+    /**
+     * Importa più libri in un'unica scrittura sulla persistenza.
+     * <p>
+     * Tutti i libri vengono validati prima della scrittura: quelli non validi non interrompono
+     * l'importazione ma vengono riportati come {@link BulkResult.Outcome#INVALID}, con il messaggio di
+     * validazione. I restanti vengono scritti con {@link LibroDAO#addAll} o {@link LibroDAO#upsertAll}.
+     *
+     * @param libri             libri da importare
+     * @param aggiornaEsistenti true per sostituire i libri già presenti, false per lasciarli invariati
+     * @return esito per ogni libro, nell'ordine ricevuto
+     * @throws BookManagerException per errori di accesso ai dati
+     */
+    public BulkResult importaLibri(Collection<Libro> libri, boolean aggiornaEsistenti) throws BookManagerException {
+        checkDAOInitialized();
+
+        BulkResult.Entry[] entries = new BulkResult.Entry[libri.size()];
+        List<Libro> validi = new ArrayList<>(libri.size());
+        int i = 0;
+        for (Libro libro : libri) {
+            try {
+                Validator.validateLibro(libro);
+                validi.add(libro);
+            } catch (ValidationException e) {
+                entries[i] = new BulkResult.Entry(libro == null ? null : libro.getIsbn(), BulkResult.Outcome.INVALID,
+                        e.getMessage());
+            }
+            i++;
+        }
+
+        try {
+            BulkResult scritti = aggiornaEsistenti ? libroDAO.upsertAll(validi) : libroDAO.addAll(validi);
+            // Gli esiti della persistenza riempiono, in ordine, le posizioni dei libri validi
+            Iterator<BulkResult.Entry> esiti = scritti.entries().iterator();
+            for (int j = 0; j < entries.length; j++) {
+                if (entries[j] == null) {
+                    entries[j] = esiti.next();
+                }
+            }
+            BulkResult result = new BulkResult(Arrays.asList(entries));
+            logger.info("Importati {} libri: {} aggiunti, {} aggiornati, {} già presenti, {} non validi",
+                    entries.length, result.count(BulkResult.Outcome.ADDED),
+                    result.count(BulkResult.Outcome.UPDATED), result.count(BulkResult.Outcome.ALREADY_EXISTS),
+                    result.count(BulkResult.Outcome.INVALID));
+            return result;
+        } catch (DAOException e) {
+            logger.error("Errore durante l'importazione dei libri", e);
+            throw new BookManagerException("Impossibile importare i libri", e);
+        } finally {
+            libreriaModificata();
+            // Più libri scritti insieme: l'indice dei suggerimenti verrà ricostruito alla prossima richiesta
+            suggerimenti.invalida();
         }
     }
 
@@ -179,9 +392,39 @@ public final class LibroService {
         }
     }
 
-    // ============= RICERCA E FILTRI =============
+    /**
+     * Restituisce tutti i libri come stream letto dalla persistenza durante il consumo, senza costruire
+     * la lista completa: adatto a esportazioni e aggregazioni su collezioni grandi.
+     * <p>
+     * Lo stream va chiuso dopo l'uso (try-with-resources); gli errori di lettura durante il consumo sono
+     * segnalati con {@link com.bruno.bookmanager.exception.UncheckedDAOException}.
+     *
+     * @return stream di tutti i libri, in ordine non specificato
+     * @throws BookManagerException per errori di accesso ai dati
+     */
+    public Stream<Libro> streamLibri() throws BookManagerException {
+        checkDAOInitialized();
 
+        try {
+            return libroDAO.streamAll();
+        } catch (DAOException e) {
+            logger.error("Errore durante l'apertura dello stream dei libri", e);
+            throw new BookManagerException("Impossibile leggere i libri", e);
+        }
+    }
 
+    // ============= RICERCA E FILTRI =============
+    // I risultati di search e searchPage sono conservati in una cache LRU, indicizzata per criteri
+    // (confrontati strutturalmente) e valida finché la libreria non viene modificata.
+
+    /**
+     * Cerca, filtra e ordina i libri. Ripetere la stessa ricerca senza modifiche intermedie alla libreria
+     * restituisce il risultato conservato in cache.
+     *
+     * @param criteria criteri di ricerca (null per tutti i libri)
+     * @return lista immutabile dei libri che soddisfano i criteri
+     * @throws BookManagerException per errori di accesso ai dati
+     */
     public List<Libro> search(SearchCriteria criteria) throws BookManagerException {
         checkDAOInitialized();
         if (criteria == null) {
@@ -189,18 +432,27 @@ public final class LibroService {
         }
 
         try {
+            // Versione letta prima della ricerca: una modifica concorrente rende obsoleto il risultato
+            SearchResultCache.LibraryVersion version = libraryVersion();
+            Optional<List<Libro>> cached = searchCache.get(SearchResultCache.Kind.LIST, criteria, version);
+            if (cached.isPresent()) {
+                logger.debug("Ricerca servita dalla cache: {} libri trovati", cached.get().size());
+                return cached.get();
+            }
+
+            List<Libro> result;
             if (supportsOptimizedSearch()) {
                 // Usa ricerca ottimizzata
                 OptimizedSearch optimizedDAO = (OptimizedSearch) libroDAO;
-                List<Libro> result = optimizedDAO.search(criteria);
+                result = List.copyOf(optimizedDAO.search(criteria));
                 logger.debug("Ricerca ottimizzata completata: {} libri trovati", result.size());
-                return result;
             } else {
                 // Fallback: ricerca in memoria
-                List<Libro> result = applyCriteria(criteria);
+                result = applyCriteria(criteria).items();
                 logger.debug("Ricerca in memoria completata: {} libri trovati", result.size());
-                return result;
             }
+            searchCache.put(SearchResultCache.Kind.LIST, criteria, version, result);
+            return result;
         } catch (DAOException e) {
             logger.error("Errore durante la ricerca", e);
             throw new BookManagerException("Impossibile eseguire la ricerca", e);
@@ -208,36 +460,210 @@ public final class LibroService {
 
     }
 
-    private List<Libro> applyCriteria(SearchCriteria criteria) throws DAOException {
-        List<Libro> allBooks = libroDAO.getAll();
-        Stream<Libro> stream = allBooks.stream();
+    /**
+     * Cerca una pagina di libri. Il cursore per la pagina successiva va passato ai criteri della
+     * ricerca seguente con {@link SearchCriteria.Builder#after}.
+     *
+     * @param criteria criteri di ricerca, con dimensione della pagina ed eventuale cursore
+     * @return pagina di risultati
+     * @throws BookManagerException per errori di accesso ai dati
+     * @throws IllegalArgumentException se il cursore non corrisponde all'ordinamento dei criteri
+     */
+    public Page<Libro> searchPage(SearchCriteria criteria) throws BookManagerException {
+        checkDAOInitialized();
+        if (criteria == null) {
+            criteria = SearchCriteria.all();
+        }
 
-        // Applica filtro se presente
-        if (criteria.hasFilter()) {
-            stream = stream.filter(criteria.getFilter()::test);
+        try {
+            SearchResultCache.LibraryVersion version = libraryVersion();
+            Optional<Page<Libro>> cached = searchCache.get(SearchResultCache.Kind.PAGE, criteria, version);
+            if (cached.isPresent()) {
+                logger.debug("Pagina di ricerca servita dalla cache: {} libri", cached.get().items().size());
+                return cached.get();
+            }
+
+            Page<Libro> page = supportsOptimizedSearch() ? ((OptimizedSearch) libroDAO).searchPage(criteria)
+                    : applyCriteria(criteria);
+            logger.debug("Pagina di ricerca completata: {} libri, altre pagine: {}", page.items().size(),
+                    page.hasNext());
+            searchCache.put(SearchResultCache.Kind.PAGE, criteria, version, page);
+            return page;
+        } catch (DAOException e) {
+            logger.error("Errore durante la ricerca paginata", e);
+            throw new BookManagerException("Impossibile eseguire la ricerca", e);
         }
+    }
 
-        // Applica ordinamento se presente
-        if (criteria.hasSorting()) {
-            Comparator<Libro> comparator = switch (criteria.getSortField()) {
-                case TITOLO -> Comparator.comparing(Libro::getTitolo);
-                case AUTORE -> Comparator.comparing(Libro::getAutore);
-                case VALUTAZIONE -> Comparator.comparing(Libro::getValutazione);
-                case GENERE ->
-                        Comparator.comparing(libro -> libro.getGenere() != null ? libro.getGenere().name() : null,
-                                Comparator.nullsLast(String::compareTo));
-                case STATO -> Comparator.comparing(libro -> libro.getStatoLettura().name());
-                case ISBN -> Comparator.comparing(Libro::getIsbn);
-            };
-
-            if (!criteria.isSortAsc()) {
-                comparator = comparator.reversed();
+    /**
+     * Cerca libri restituendoli come stream. Con un DAO ottimizzato, o se i criteri non richiedono
+     * ordinamento né paginazione, i libri non vengono mai caricati tutti in memoria; altrimenti lo stream
+     * scorre il risultato della ricerca in memoria.
+     * <p>
+     * Lo stream va chiuso dopo l'uso, come quello di {@link #streamLibri()}.
+     *
+     * @param criteria criteri di ricerca (null per tutti i libri)
+     * @return stream dei libri che soddisfano i criteri
+     * @throws BookManagerException per errori di accesso ai dati
+     */
+    public Stream<Libro> streamLibri(SearchCriteria criteria) throws BookManagerException {
+        checkDAOInitialized();
+        if (criteria == null) {
+            return streamLibri();
+        }
+
+        try {
+            if (supportsOptimizedSearch()) {
+                return ((OptimizedSearch) libroDAO).searchStream(criteria);
             }
+            if (!criteria.hasSorting() && !criteria.hasPaging()) {
+                Stream<Libro> stream = libroDAO.streamAll();
+                return criteria.hasFilter() ? stream.filter(FilterCompiler.compile(criteria.getFilter())) : stream;
+            }
+            return applyCriteria(criteria).items().stream();
+        } catch (DAOException e) {
+            logger.error("Errore durante la ricerca in streaming", e);
+            throw new BookManagerException("Impossibile eseguire la ricerca", e);
+        }
+    }
 
-            stream = stream.sorted(comparator);
+    // Filtro, ordinamento e paginazione con la stessa collation e gli stessi cursori usati da SQLite.
+    // Con la cache si cerca sull'istantanea corrente, senza copiarla, o sui soli candidati dei suoi indici.
+    private Page<Libro> applyCriteria(SearchCriteria criteria) throws DAOException {
+        if (!(libroDAO instanceof CachedLibroDAO cached)) {
+            return InMemorySearch.searchPage(libroDAO.getAll(), criteria);
         }
+        List<Libro> libri = criteria.hasFilter()
+                ? cached.findCandidates(criteria.getFilter()).orElse(cached.getSnapshot())
+                : cached.getSnapshot();
+        return InMemorySearch.searchPage(libri, criteria);
+    }
+
+    // ============= SUGGERIMENTI =============
+    // L'indice dei suggerimenti viene costruito alla prima richiesta e poi aggiornato dalle modifiche fatte
+    // tramite il service; se la persistenza cambia in altro modo viene ricostruito.
+
+    /**
+     * Suggerisce i titoli che iniziano con il testo digitato, senza distinguere maiuscole, minuscole e
+     * accenti. I titoli condivisi da più libri vengono prima, poi quelli con valutazione più alta.
+     *
+     * @param prefisso inizio del titolo
+     * @param max      numero massimo di suggerimenti
+     * @return titoli suggeriti, dal più rilevante; vuota se il prefisso è vuoto
+     * @throws BookManagerException per errori di accesso ai dati
+     */
+    public List<String> suggerisciTitoli(String prefisso, int max) throws BookManagerException {
+        return suggerimentiAggiornati().completaTitolo(prefisso, max);
+    }
+
+    /**
+     * Suggerisce gli autori il cui nome inizia con il testo digitato, senza distinguere maiuscole, minuscole
+     * e accenti. Gli autori con più libri vengono prima, poi quelli con valutazione media più alta.
+     *
+     * @param prefisso inizio del nome dell'autore
+     * @param max      numero massimo di suggerimenti
+     * @return autori suggeriti, dal più rilevante; vuota se il prefisso è vuoto
+     * @throws BookManagerException per errori di accesso ai dati
+     */
+    public List<String> suggerisciAutori(String prefisso, int max) throws BookManagerException {
+        return suggerimentiAggiornati().completaAutore(prefisso, max);
+    }
+
+    private AutocompleteIndex suggerimentiAggiornati() throws BookManagerException {
+        checkDAOInitialized();
+
+        try {
+            long storage = storageVersion();
+            if (!suggerimenti.isAggiornato(storage)) {
+                try (Stream<Libro> libri = libroDAO.streamAll()) {
+                    suggerimenti.ricostruisci(libri::iterator, storage);
+                }
+                logger.debug("Indice dei suggerimenti ricostruito");
+            }
+            return suggerimenti;
+        } catch (DAOException e) {
+            logger.error("Errore durante la costruzione dei suggerimenti", e);
+            throw new BookManagerException("Impossibile calcolare i suggerimenti", e);
+        } catch (UncheckedDAOException e) {
+            logger.error("Errore durante la costruzione dei suggerimenti", e.getCause());
+            throw new BookManagerException("Impossibile calcolare i suggerimenti", e.getCause());
+        }
+    }
+
+    // ============= STATISTICHE =============
+    // Con un DAO ottimizzato il calcolo avviene nella persistenza; altrimenti scorre lo stream dei libri,
+    // senza costruirne la lista. Si applica solo il filtro dei criteri (null per tutti i libri).
+
+    /**
+     * @param criteria criteri di cui applicare il filtro
+     * @return numero di libri che soddisfano il filtro
+     * @throws BookManagerException per errori di accesso ai dati
+     */
+    public long contaLibri(SearchCriteria criteria) throws BookManagerException {
+        return aggregate(dao -> dao.count(criteria), libri -> InMemorySearch.count(libri, criteria));
+    }
+
+    /**
+     * @param criteria criteri di cui applicare il filtro
+     * @return numero di libri per genere, in ordine di genere; i libri senza genere hanno chiave null
+     * @throws BookManagerException per errori di accesso ai dati
+     */
+    public Map<Genere, Long> contaPerGenere(SearchCriteria criteria) throws BookManagerException {
+        return aggregate(dao -> dao.countByGenere(criteria), libri -> InMemorySearch.countByGenere(libri, criteria));
+    }
+
+    /**
+     * @param criteria criteri di cui applicare il filtro
+     * @return numero di libri per stato di lettura, in ordine di stato
+     * @throws BookManagerException per errori di accesso ai dati
+     */
+    public Map<StatoLettura, Long> contaPerStato(SearchCriteria criteria) throws BookManagerException {
+        return aggregate(dao -> dao.countByStato(criteria), libri -> InMemorySearch.countByStato(libri, criteria));
+    }
+
+    /**
+     * @param criteria criteri di cui applicare il filtro
+     * @return numero di libri per valutazione, in ordine crescente (0 per i libri non valutati)
+     * @throws BookManagerException per errori di accesso ai dati
+     */
+    public Map<Integer, Long> contaPerValutazione(SearchCriteria criteria) throws BookManagerException {
+        return aggregate(dao -> dao.countByValutazione(criteria),
+                libri -> InMemorySearch.countByValutazione(libri, criteria));
+    }
+
+    /**
+     * @param criteria criteri di cui applicare il filtro
+     * @return valutazione media dei libri valutati, vuota se nessun libro è valutato
+     * @throws BookManagerException per errori di accesso ai dati
+     */
+    public OptionalDouble valutazioneMedia(SearchCriteria criteria) throws BookManagerException {
+        return aggregate(dao -> dao.averageValutazione(criteria),
+                libri -> InMemorySearch.averageValutazione(libri, criteria));
+    }
+
+    private <T> T aggregate(OptimizedAggregate<T> optimized, Function<Stream<Libro>, T> inMemory)
+            throws BookManagerException {
+        checkDAOInitialized();
+
+        try {
+            if (supportsOptimizedSearch()) {
+                return optimized.apply((OptimizedSearch) libroDAO);
+            }
+            try (Stream<Libro> libri = libroDAO.streamAll()) {
+                return inMemory.apply(libri);
+            }
+        } catch (DAOException e) {
+            logger.error("Errore durante il calcolo delle statistiche", e);
+            throw new BookManagerException("Impossibile calcolare le statistiche", e);
+        } catch (UncheckedDAOException e) {
+            logger.error("Errore durante il calcolo delle statistiche", e.getCause());
+            throw new BookManagerException("Impossibile calcolare le statistiche", e.getCause());
+        }
+    }
 
-        return stream.toList();
+    @FunctionalInterface
+    private interface OptimizedAggregate<T> {
+        T apply(OptimizedSearch dao) throws DAOException;
     }
 
     //Metodi di convenienza
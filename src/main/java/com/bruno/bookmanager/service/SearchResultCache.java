@@ -0,0 +1,138 @@
+package com.bruno.bookmanager.service;
+
+import com.bruno.bookmanager.filters.SearchCriteria;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Cache LRU dei risultati delle ricerche, indicizzata per {@link SearchCriteria}.
+ * <p>
+ * Ogni risultato è associato alla versione della libreria in cui è stato calcolato: una lettura con una
+ * versione diversa è un mancato successo e rimuove il risultato obsoleto. Oltre {@code maxEntries} risultati
+ * viene scartato quello usato meno di recente.
+ */
+public final class SearchResultCache {
+
+    /**
+     * Numero predefinito di risultati conservati.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+
+    /**
+     * Tipo di risultato: la stessa ricerca può essere chiesta come lista o come pagina.
+     */
+    enum Kind {
+        LIST, PAGE
+    }
+
+    private record Key(Kind kind, SearchCriteria criteria) {
+    }
+
+    private record Entry(LibraryVersion version, Object result) {
+    }
+
+    /**
+     * Versione della libreria: modifiche fatte tramite il service e versione della persistenza, che cambia
+     * con le modifiche esterne.
+     *
+     * @param mutations contatore delle modifiche fatte tramite il service
+     * @param storage   versione riportata dalla persistenza, 0 se non disponibile
+     */
+    record LibraryVersion(long mutations, long storage) {
+    }
+
+    private final int maxEntries;
+    private final Map<Key, Entry> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxEntries numero massimo di risultati conservati
+     * @throws IllegalArgumentException se maxEntries è minore di 1
+     */
+    public SearchResultCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("La cache deve poter contenere almeno un risultato");
+        }
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() <= SearchResultCache.this.maxEntries) {
+                    return false;
+                }
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @param kind     tipo di risultato
+     * @param criteria criteri della ricerca
+     * @param version  versione corrente della libreria
+     * @return risultato calcolato nella stessa versione, vuoto altrimenti
+     */
+    synchronized <T> Optional<T> get(Kind kind, SearchCriteria criteria, LibraryVersion version) {
+        Key key = new Key(kind, criteria);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.version().equals(version)) {
+            hits++;
+            @SuppressWarnings("unchecked")
+            T result = (T) entry.result();
+            return Optional.of(result);
+        }
+        if (entry != null) {
+            entries.remove(key);
+        }
+        misses++;
+        return Optional.empty();
+    }
+
+    /**
+     * @param kind     tipo di risultato
+     * @param criteria criteri della ricerca
+     * @param version  versione della libreria letta prima di calcolare il risultato
+     * @param result   risultato immutabile
+     */
+    synchronized void put(Kind kind, SearchCriteria criteria, LibraryVersion version, Object result) {
+        entries.put(new Key(kind, criteria), new Entry(version, result));
+    }
+
+    /**
+     * Svuota la cache, senza azzerare le statistiche.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return statistiche di utilizzo dalla creazione della cache
+     */
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, entries.size(), maxEntries);
+    }
+
+    /**
+     * Statistiche di utilizzo di una {@link SearchResultCache}.
+     *
+     * @param hits       ricerche servite dalla cache
+     * @param misses     ricerche calcolate perché assenti o obsolete
+     * @param evictions  risultati scartati per fare spazio
+     * @param size       risultati attualmente conservati
+     * @param maxEntries numero massimo di risultati conservati
+     */
+    public record Stats(long hits, long misses, long evictions, int size, int maxEntries) {
+
+        /**
+         * @return frazione delle ricerche servite dalla cache, 0 se non ce ne sono state
+         */
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+}
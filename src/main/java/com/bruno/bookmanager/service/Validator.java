@@ -3,9 +3,14 @@ package com.bruno.bookmanager.service;
 import com.bruno.bookmanager.exception.ValidationException;
 import com.bruno.bookmanager.model.Libro;
 
+import java.util.regex.Pattern;
+
 
 public class Validator {
 
+    // Compilato una sola volta: la validazione in blocco lo applica a ogni libro importato
+    private static final Pattern ISBN_PATTERN = Pattern.compile("^(\\d{9}[\\dX]|\\d{13})$");
+
     public static void validateLibro(Libro libro) throws ValidationException {
         if (libro == null) {
             throw new ValidationException("Libro non può essere null");
@@ -32,7 +37,7 @@ public class Validator {
         if (isbn == null || isbn.isBlank()) {
             throw new ValidationException("ISBN non può essere vuoto");
         }
-        if (!isbn.matches("^(\\d{9}[\\dX]|\\d{13})$")) throw new ValidationException("ISBN non valido");
+        if (!ISBN_PATTERN.matcher(isbn).matches()) throw new ValidationException("ISBN non valido");
     }
 
 
@@ -1,9 +1,72 @@
 package com.bruno.bookmanager.utils;
 
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
 import java.util.stream.Collectors;
 
 public class StringUtils {
+
+    /**
+     * Confronto case-insensitive equivalente alla collation NOCASE di SQLite: vengono uniformate
+     * solo le lettere ASCII, gli altri caratteri sono confrontati per code point.
+     */
+    public static final Comparator<String> NOCASE_ORDER = StringUtils::compareNoCase;
+
+    public static int compareNoCase(String a, String b) {
+        int i = 0, j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) {
+                int fa = foldAscii(ca);
+                int fb = foldAscii(cb);
+                if (fa != fb) {
+                    return Integer.compare(fa, fb);
+                }
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Boolean.compare(i < a.length(), j < b.length());
+    }
+
+    private static int foldAscii(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    /**
+     * Verifica se {@code text} contiene {@code lowerNeedle} senza distinguere maiuscole e minuscole, senza
+     * allocare stringhe: i caratteri sono confrontati uno a uno come in
+     * {@link String#regionMatches(boolean, int, String, int, int)}.
+     *
+     * @param text        testo in cui cercare
+     * @param lowerNeedle testo cercato, già convertito con {@link #lowerCase(String)}
+     * @return true se il testo contiene quello cercato; sempre true se quello cercato è vuoto
+     */
+    public static boolean containsIgnoreCase(String text, String lowerNeedle) {
+        int length = lowerNeedle.length();
+        if (length == 0) {
+            return true;
+        }
+        char first = lowerNeedle.charAt(0);
+        int last = text.length() - length;
+        for (int i = 0; i <= last; i++) {
+            if (Character.toLowerCase(text.charAt(i)) == first
+                    && text.regionMatches(true, i + 1, lowerNeedle, 1, length - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return il testo in minuscolo, indipendentemente dalla lingua di sistema
+     */
+    public static String lowerCase(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
     public static String formatEnumName(String raw) {
         if (raw == null || raw.isEmpty()) return "";
         return Arrays.stream(raw.split("_")).map(word -> word.charAt(0) + word.substring(1).toLowerCase()).collect(
@@ -7,11 +7,13 @@ import com.bruno.bookmanager.model.Libro;
 import com.bruno.bookmanager.model.StatoLettura;
 import com.bruno.bookmanager.service.LibroService;
 import com.bruno.bookmanager.utils.StringUtils;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.geometry.Side;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.control.*;
@@ -29,6 +31,8 @@ import java.util.List;
 
 public class LibreriaController {
 
+    private static final int MAX_SUGGESTIONS = 8;
+
     // Services and controllers
     private final LibroService libroService = LibroService.getInstance();
     private final CommandHistory commandHistory = CommandHistory.getInstance();
@@ -56,6 +60,7 @@ public class LibreriaController {
     private UnifiedBookPanelController panelController;
     private AdvancedFilterComponent advancedFilter;
     private List<Libro> currentBooks;
+    private final ContextMenu suggestionsMenu = new ContextMenu();
 
     @FXML
     public void initialize() {
@@ -66,6 +71,9 @@ public class LibreriaController {
         });
         setupControls();
         setupEventListeners();
+        // Il salvataggio differito avviene in background: l'errore va mostrato dal thread dell'interfaccia
+        libroService.setSalvataggioFallitoListener(e -> Platform.runLater(() ->
+                showErrorAlert("Errore", "Impossibile salvare le modifiche: " + e.getCause().getMessage())));
         loadBooks();
         updateUndoRedoButtons();
     }
@@ -81,6 +89,10 @@ public class LibreriaController {
 
         // Setup sort combo
         sortComboBox.getItems().addAll("Titolo", "Autore", "Valutazione", "Genere", "Stato");
+        // Solo la ricerca ottimizzata di SQLite ordina per pertinenza; in memoria sarebbe l'ordine per titolo
+        if (libroService.supportsOptimizedSearch()) {
+            sortComboBox.getItems().add("Rilevanza");
+        }
         sortComboBox.setValue("Titolo");
         sortOrderCheckBox.setText("Decrescente");
         sortOrderCheckBox.setSelected(false); // Default: crescente
@@ -88,7 +100,15 @@ public class LibreriaController {
 
     private void setupEventListeners() {
 
-        searchField.textProperty().addListener((obs, oldText, newText) -> applyFiltersAndSearch());
+        searchField.textProperty().addListener((obs, oldText, newText) -> {
+            applyFiltersAndSearch();
+            updateSuggestions(newText);
+        });
+        searchField.focusedProperty().addListener((obs, wasFocused, focused) -> {
+            if (!focused) {
+                suggestionsMenu.hide();
+            }
+        });
         searchTypeComboBox.valueProperty().addListener((obs, oldVal, newVal) -> applyFiltersAndSearch());
         sortComboBox.valueProperty().addListener((obs, oldVal, newVal) -> applyFiltersAndSearch());
         sortOrderCheckBox.selectedProperty().addListener((obs, oldVal, newVal) -> applyFiltersAndSearch());
@@ -131,6 +151,49 @@ public class LibreriaController {
         }
     }
 
+    /**
+     * Mostra sotto il campo di ricerca i titoli o gli autori che iniziano con il testo digitato.
+     */
+    private void updateSuggestions(String text) {
+        String searchType = searchTypeComboBox.getValue();
+        if (text == null || text.isBlank() || !searchField.isFocused()
+                || !("Titolo".equals(searchType) || "Autore".equals(searchType))) {
+            suggestionsMenu.hide();
+            return;
+        }
+
+        try {
+            List<String> suggestions = "Autore".equals(searchType)
+                    ? libroService.suggerisciAutori(text, MAX_SUGGESTIONS)
+                    : libroService.suggerisciTitoli(text, MAX_SUGGESTIONS);
+            // Il testo già completato non va riproposto
+            List<MenuItem> items = suggestions.stream()
+                    .filter(suggestion -> !suggestion.equalsIgnoreCase(text.strip()))
+                    .map(this::createSuggestionItem)
+                    .toList();
+            if (items.isEmpty()) {
+                suggestionsMenu.hide();
+                return;
+            }
+            suggestionsMenu.getItems().setAll(items);
+            if (!suggestionsMenu.isShowing()) {
+                suggestionsMenu.show(searchField, Side.BOTTOM, 0, 0);
+            }
+        } catch (BookManagerException e) {
+            // I suggerimenti sono facoltativi: la ricerca resta utilizzabile
+            suggestionsMenu.hide();
+        }
+    }
+
+    private MenuItem createSuggestionItem(String suggestion) {
+        MenuItem item = new MenuItem(suggestion);
+        item.setOnAction(event -> {
+            searchField.setText(suggestion);
+            searchField.positionCaret(suggestion.length());
+        });
+        return item;
+    }
+
     private Filter<Libro> buildCombinedFilter() {
         Filter<Libro> filter = null;
 
@@ -163,6 +226,7 @@ public class LibreriaController {
             case "Valutazione" -> SearchCriteria.SortField.VALUTAZIONE;
             case "Genere" -> SearchCriteria.SortField.GENERE;
             case "Stato" -> SearchCriteria.SortField.STATO;
+            case "Rilevanza" -> SearchCriteria.SortField.RILEVANZA;
             default -> SearchCriteria.SortField.TITOLO;
         };
     }
@@ -1,13 +1,25 @@
 package com.bruno.bookmanager.view;
 
+import com.bruno.bookmanager.exception.BookManagerException;
+import com.bruno.bookmanager.service.LibroService;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonBar;
+import javafx.scene.control.ButtonType;
 import javafx.stage.Stage;
+import javafx.stage.Window;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Optional;
 
 public class MainApp extends Application {
+
+    private static final Logger logger = LoggerFactory.getLogger(MainApp.class);
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -18,6 +30,52 @@ public class MainApp extends Application {
         Scene scene = new Scene(loader.load());
         primaryStage.setTitle("Book Manager");
         primaryStage.setScene(scene);
+        // Le modifiche in attesa di scrittura differita vanno salvate prima di lasciar chiudere la finestra
+        primaryStage.setOnCloseRequest(event -> {
+            if (!salvaPrimaDiUscire(primaryStage)) {
+                event.consume();
+            }
+        });
         primaryStage.show();
     }
+
+    /**
+     * Salva le modifiche in attesa di scrittura differita. Se il salvataggio fallisce chiede all'utente se
+     * riprovare, uscire perdendo le modifiche o annullare la chiusura.
+     *
+     * @return true se la finestra può essere chiusa
+     */
+    private static boolean salvaPrimaDiUscire(Window owner) {
+        ButtonType riprova = new ButtonType("Riprova", ButtonBar.ButtonData.YES);
+        ButtonType esci = new ButtonType("Esci senza salvare", ButtonBar.ButtonData.NO);
+        while (true) {
+            try {
+                LibroService.getInstance().salvaModifiche();
+                return true;
+            } catch (BookManagerException e) {
+                Alert alert = new Alert(Alert.AlertType.ERROR, e.getMessage() + ": " + e.getCause().getMessage(),
+                        riprova, esci, ButtonType.CANCEL);
+                alert.initOwner(owner);
+                alert.setTitle("Errore");
+                alert.setHeaderText("Alcune modifiche non sono state salvate");
+                Optional<ButtonType> scelta = alert.showAndWait();
+                if (scelta.isEmpty() || scelta.get() == ButtonType.CANCEL) {
+                    return false;
+                }
+                if (scelta.get() == esci) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        // Le modifiche in attesa sono già state salvate, o scartate dall'utente, dalla richiesta di chiusura
+        try {
+            LibroService.getInstance().chiudi();
+        } catch (BookManagerException e) {
+            logger.error("Errore durante la chiusura della libreria", e);
+        }
+    }
 }
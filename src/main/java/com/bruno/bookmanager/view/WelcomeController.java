@@ -3,15 +3,18 @@ package com.bruno.bookmanager.view;
 import com.bruno.bookmanager.dao.DAOType;
 import com.bruno.bookmanager.service.LibroService;
 import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.geometry.Rectangle2D;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
+import javafx.scene.control.CheckBox;
 import javafx.stage.FileChooser;
 import javafx.stage.Screen;
 import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,6 +25,14 @@ public class WelcomeController {
 
     private static final Logger logger = LoggerFactory.getLogger(WelcomeController.class);
 
+    /**
+     * Estensione dei file della libreria in formato binario ({@link DAOType#BINARY}).
+     */
+    private static final String BINARY_EXTENSION = ".bml";
+
+    @FXML
+    private CheckBox sqliteCacheCheckBox;
+
     /**
      * Metodo pubblico per permettere alla LibreriaView di tornare alla WelcomeView
      */
@@ -69,7 +80,8 @@ public class WelcomeController {
             FileChooser fileChooser = new FileChooser();
             fileChooser.setTitle("Crea Nuova Libreria");
             fileChooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("File JSON", "*.json"),
-                    new FileChooser.ExtensionFilter("Database SQLite", "*.db"));
+                    new FileChooser.ExtensionFilter("Database SQLite", "*.db"),
+                    new FileChooser.ExtensionFilter("Libreria binaria", "*" + BINARY_EXTENSION));
             fileChooser.setInitialFileName("mia_libreria.json");
             fileChooser.setInitialDirectory(new File(System.getProperty("user.home")));
 
@@ -78,12 +90,7 @@ public class WelcomeController {
 
             if (selectedFile != null) {
                 // Determina il tipo di DAO in base all'estensione
-                DAOType daoType;
-                if (selectedFile.getName().toLowerCase().endsWith(".db")) {
-                    daoType = DAOType.SQLITE;
-                } else {
-                    daoType = DAOType.CACHED_JSON; // Usa versione cached per prestazioni migliori
-                }
+                DAOType daoType = daoTypeFor(selectedFile);
                 if (selectedFile.exists()) selectedFile.delete();
 
                 // Configura il service
@@ -105,6 +112,7 @@ public class WelcomeController {
             fileChooser.setTitle("Carica Libreria Esistente");
             fileChooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("File JSON", "*.json"),
                     new FileChooser.ExtensionFilter("Database SQLite", "*.db"),
+                    new FileChooser.ExtensionFilter("Libreria binaria", "*" + BINARY_EXTENSION),
                     new FileChooser.ExtensionFilter("Tutti i file", "*.*"));
             fileChooser.setInitialDirectory(new File(System.getProperty("user.home")));
 
@@ -113,12 +121,7 @@ public class WelcomeController {
 
             if (selectedFile != null && selectedFile.exists()) {
                 // Determina il tipo di DAO in base all'estensione
-                DAOType daoType;
-                if (selectedFile.getName().toLowerCase().endsWith(".db")) {
-                    daoType = DAOType.SQLITE;
-                } else {
-                    daoType = DAOType.CACHED_JSON;
-                }
+                DAOType daoType = daoTypeFor(selectedFile);
 
                 LibroService service = LibroService.getInstance();
 
@@ -131,6 +134,22 @@ public class WelcomeController {
         }
     }
 
+    /**
+     * Sceglie il tipo di DAO in base all'estensione del file; i file JSON usano la versione con cache per
+     * prestazioni migliori. I database SQLite usano la cache solo se richiesto, perché senza la ricerca
+     * ottimizzata di SQLite non sono disponibili l'ordinamento per rilevanza e la paginazione sul database.
+     */
+    private DAOType daoTypeFor(File file) {
+        String name = file.getName().toLowerCase();
+        if (name.endsWith(".db")) {
+            return sqliteCacheCheckBox.isSelected() ? DAOType.CACHED_SQLITE : DAOType.SQLITE;
+        }
+        if (name.endsWith(BINARY_EXTENSION)) {
+            return DAOType.BINARY;
+        }
+        return DAOType.CACHED_JSON;
+    }
+
     /**
      * Apre la vista principale della libreria.
      */
@@ -162,11 +181,12 @@ public class WelcomeController {
     }
 
     private void setupReturnToWelcome(Stage stage, Scene welcomeScene) {
-
+        // Tornati alla WelcomeView si ripristina il gestore precedente, che salva le modifiche prima di uscire
+        EventHandler<WindowEvent> previous = stage.getOnCloseRequest();
         stage.setOnCloseRequest(event -> {
             event.consume();
             returnToWelcomeView(stage, welcomeScene);
-            stage.setOnCloseRequest(null);
+            stage.setOnCloseRequest(previous);
         });
     }
 
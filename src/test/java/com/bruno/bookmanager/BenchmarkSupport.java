@@ -0,0 +1,29 @@
+package com.bruno.bookmanager;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Utilità comuni ai benchmark eseguibili con {@code main} sotto {@code src/test/java}.
+ */
+public final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Limita il log agli avvisi: la configurazione di test registra ogni operazione a livello DEBUG,
+     * il cui costo falserebbe le misure.
+     */
+    public static void quietLogging() {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+
+    /**
+     * @return operazioni al secondo per {@code ops} operazioni eseguite tra i due istanti
+     */
+    public static double opsPerSecond(long ops, long fromNanos, long toNanos) {
+        return ops / ((toNanos - fromNanos) / 1e9);
+    }
+}
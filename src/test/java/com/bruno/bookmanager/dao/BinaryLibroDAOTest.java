@@ -0,0 +1,111 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.exception.DAOException;
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryLibroDAOTest {
+
+    private static final String PATH = "binary_test.bml";
+    private static final String JSON_PATH = "binary_test.json";
+
+    @AfterEach
+    void cleanup() throws Exception {
+        Files.deleteIfExists(Path.of(PATH));
+        Files.deleteIfExists(Path.of(JSON_PATH));
+    }
+
+    @Test
+    void fieldsRoundTripTest() throws Exception {
+        Libro packed = new Libro("Città di vetro", "Paul Auster", "0000123456789", Genere.GIALLO, 5,
+                StatoLettura.IN_LETTURA);
+        Libro isbn10 = new Libro("Dune", null, "043942089X", null, 0, StatoLettura.DA_LEGGERE);
+        Libro senzaStato = new Libro("日本語のタイトル", "", "9788804668237", Genere.UMORISTICO, 3, null);
+        BinaryLibroDAO dao = new BinaryLibroDAO(PATH);
+
+        dao.saveAll(List.of(packed, isbn10, senzaStato));
+        List<Libro> letti = dao.getAll();
+
+        assertEquals(3, letti.size());
+        for (int i = 0; i < letti.size(); i++) {
+            Libro expected = List.of(packed, isbn10, senzaStato).get(i);
+            Libro actual = letti.get(i);
+            assertEquals(expected.getIsbn(), actual.getIsbn());
+            assertEquals(expected.getTitolo(), actual.getTitolo());
+            assertEquals(expected.getAutore(), actual.getAutore());
+            assertEquals(expected.getGenere(), actual.getGenere());
+            assertEquals(expected.getValutazione(), actual.getValutazione());
+            assertEquals(expected.getStatoLettura(), actual.getStatoLettura());
+        }
+    }
+
+    @Test
+    void fileIsSmallerThanJsonTest() throws Exception {
+        List<Libro> libri = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            libri.add(new Libro("Il nome della rosa " + i, "Umberto Eco", String.valueOf(9788845292000L + i),
+                    Genere.ROMANZO_STORICO, i % 6, StatoLettura.LETTO));
+        }
+
+        new BinaryLibroDAO(PATH).saveAll(libri);
+        new JsonLibroDAO(JSON_PATH).saveAll(libri);
+
+        assertTrue(Files.size(Path.of(PATH)) * 2 < Files.size(Path.of(JSON_PATH)));
+    }
+
+    @Test
+    void invalidFileIsReportedTest() throws Exception {
+        Files.writeString(Path.of(PATH), "[{\"isbn\":\"123\"}]");
+
+        assertThrows(DAOException.class, () -> new BinaryLibroDAO(PATH).getAll());
+    }
+
+    @Test
+    void truncatedFileIsReportedTest() throws Exception {
+        BinaryLibroDAO dao = new BinaryLibroDAO(PATH);
+        dao.saveAll(List.of(new Libro("Titolo", "Autore", "9788845292613", Genere.ROMANZO, 1,
+                StatoLettura.LETTO)));
+        byte[] content = Files.readAllBytes(Path.of(PATH));
+        Files.write(Path.of(PATH), Arrays.copyOf(content, content.length - 3));
+
+        assertThrows(DAOException.class, dao::getAll);
+    }
+
+    @Test
+    void fileCanBeReplacedRightAfterReadingTest() throws Exception {
+        // Una lettura non deve lasciare il file bloccato: su Windows un file mappato non si può sostituire
+        BinaryLibroDAO dao = new BinaryLibroDAO(PATH);
+        dao.saveAll(List.of(new Libro("Titolo", "Autore", "9788845292613", Genere.ROMANZO, 1,
+                StatoLettura.LETTO)));
+        for (int i = 0; i < 20; i++) {
+            List<Libro> libri = dao.getAll();
+            libri.add(new Libro("Titolo " + i, "Autore", String.valueOf(9788845292000L + i), Genere.ROMANZO, 2,
+                    StatoLettura.DA_LEGGERE));
+            dao.saveAll(libri);
+        }
+
+        assertEquals(21, dao.getAll().size());
+        assertFalse(Files.exists(Path.of(PATH + ".tmp")));
+    }
+
+    @Test
+    void unrepresentableRatingIsRejectedTest() {
+        BinaryLibroDAO dao = new BinaryLibroDAO(PATH);
+
+        assertThrows(DAOException.class, () -> dao.saveAll(List.of(new Libro("Titolo", "Autore", "1", Genere.ROMANZO,
+                16, StatoLettura.LETTO))));
+        assertFalse(Files.exists(Path.of(PATH)));
+        assertFalse(Files.exists(Path.of(PATH + ".tmp")));
+    }
+}
@@ -0,0 +1,181 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.BenchmarkSupport;
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Benchmark delle operazioni puntuali di {@link CachedLibroDAO} rispetto alla cache precedente, una lista
+ * scorsa per intero a ogni ricerca, verifica di esistenza, aggiornamento e rimozione.
+ * <p>
+ * Il DAO sottostante non persiste nulla, così che venga misurato solo il costo della cache. Per ogni
+ * dimensione riporta le operazioni al secondo di {@code getByIsbn}, {@code update} e della coppia
+ * {@code removeByIsbn}/{@code add} su ISBN casuali. Le scritture della cache copiano l'indice per pubblicare una
+ * nuova istantanea: il loro costo cresce con la collezione, ma resta trascurabile rispetto alla persistenza.
+ * Non viene eseguito dai test; si lancia con
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -cp target/classes:target/test-classes:$(cat cp.txt) com.bruno.bookmanager.dao.CachedLibroDAOBenchmark [libri...]
+ * </pre>
+ * Senza argomenti misura 1.000, 10.000 e 100.000 libri.
+ */
+public class CachedLibroDAOBenchmark {
+
+    private static final long MIN_NANOS = 500_000_000L;
+
+    /**
+     * Operazione misurata su un ISBN.
+     */
+    private interface Operation {
+        void run(String isbn) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkSupport.quietLogging();
+        int[] sizes = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1_000, 10_000, 100_000};
+
+        // Un giro a vuoto per compilare i percorsi misurati
+        measure(libri(1000), false);
+        for (int size : sizes) {
+            System.out.printf(Locale.ROOT, "%n%,d libri%n", size);
+            measure(libri(size), true);
+        }
+    }
+
+    private static void measure(List<Libro> libri, boolean report) throws Exception {
+        ListCache list = new ListCache(new ArrayList<>(libri));
+        CachedLibroDAO hash = new CachedLibroDAO(new NoOpLibroDAO(libri));
+        String[] isbns = libri.stream().map(Libro::getIsbn).toArray(String[]::new);
+
+        run("getByIsbn", isbns, report, list::getByIsbn, hash::getByIsbn);
+        run("update", isbns, report,
+                isbn -> list.update(libro(isbn)),
+                isbn -> hash.update(libro(isbn)));
+        run("remove+add", isbns, report,
+                isbn -> {
+                    list.removeByIsbn(isbn);
+                    list.add(libro(isbn));
+                },
+                isbn -> {
+                    hash.removeByIsbn(isbn);
+                    hash.add(libro(isbn));
+                });
+    }
+
+    private static void run(String label, String[] isbns, boolean report, Operation list, Operation hash)
+            throws Exception {
+        double before = opsPerSecond(isbns, list);
+        double after = opsPerSecond(isbns, hash);
+        if (report) {
+            System.out.printf(Locale.ROOT, "  %-11s lista %,14.0f op/s   indice %,14.0f op/s   x%.1f%n", label,
+                    before, after, after / before);
+        }
+    }
+
+    /**
+     * Ripete l'operazione su ISBN casuali per almeno {@link #MIN_NANOS}.
+     */
+    private static double opsPerSecond(String[] isbns, Operation operation) throws Exception {
+        Random random = new Random(42);
+        long ops = 0;
+        long start = System.nanoTime();
+        long now;
+        do {
+            for (int i = 0; i < 100; i++) {
+                operation.run(isbns[random.nextInt(isbns.length)]);
+            }
+            ops += 100;
+            now = System.nanoTime();
+        } while (now - start < MIN_NANOS);
+        return BenchmarkSupport.opsPerSecond(ops, start, now);
+    }
+
+    private static Libro libro(String isbn) {
+        return new Libro("Titolo " + isbn, "Autore", isbn, Genere.ROMANZO, 3, StatoLettura.DA_LEGGERE);
+    }
+
+    private static List<Libro> libri(int size) {
+        List<Libro> libri = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            libri.add(new Libro("Libro numero " + i, "Autore " + (i % 997), String.valueOf(9780000000000L + i),
+                    Genere.values()[i % Genere.values().length], i % 6,
+                    StatoLettura.values()[i % StatoLettura.values().length]));
+        }
+        return libri;
+    }
+
+    /**
+     * Operazioni della cache a lista che precedeva l'indice per ISBN.
+     */
+    private record ListCache(List<Libro> cache) {
+
+        Optional<Libro> getByIsbn(String isbn) {
+            return cache.stream().filter(l -> l.getIsbn().equals(isbn)).findFirst();
+        }
+
+        void add(Libro libro) {
+            if (cache.contains(libro)) {
+                throw new IllegalStateException(libro.getIsbn());
+            }
+            cache.add(libro);
+        }
+
+        void removeByIsbn(String isbn) {
+            if (cache.stream().noneMatch(l -> l.getIsbn().equals(isbn))) {
+                throw new IllegalStateException(isbn);
+            }
+            cache.removeIf(l -> l.getIsbn().equals(isbn));
+        }
+
+        void update(Libro libro) {
+            for (int i = 0; i < cache.size(); i++) {
+                if (cache.get(i).getIsbn().equals(libro.getIsbn())) {
+                    cache.set(i, libro);
+                    return;
+                }
+            }
+            throw new IllegalStateException(libro.getIsbn());
+        }
+    }
+
+    /**
+     * DAO che fornisce la collezione iniziale e ignora le scritture, per misurare solo la cache.
+     */
+    private record NoOpLibroDAO(List<Libro> libri) implements LibroDAO {
+
+        @Override
+        public List<Libro> getAll() {
+            return new ArrayList<>(libri);
+        }
+
+        @Override
+        public void saveAll(List<Libro> libri) {
+        }
+
+        @Override
+        public Optional<Libro> getByIsbn(String isbn) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void add(Libro libro) {
+        }
+
+        @Override
+        public void removeByIsbn(String isbn) {
+        }
+
+        @Override
+        public void update(Libro libro) {
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.exception.DAOException;
+import com.bruno.bookmanager.exception.LibroAlreadyExistsException;
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachedLibroDAOWriteBehindTest {
+
+    /**
+     * DAO in memoria che preferisce le operazioni batch e conta le riscritture, come un DAO su file.
+     */
+    private static class BatchDAO implements LibroDAO {
+        private List<Libro> saved = new ArrayList<>();
+        private int saves;
+        private boolean failing;
+        private boolean closed;
+
+        @Override
+        public synchronized List<Libro> getAll() {
+            return new ArrayList<>(saved);
+        }
+
+        @Override
+        public synchronized void saveAll(List<Libro> libri) throws DAOException {
+            if (failing) {
+                throw new DAOException("Disco pieno");
+            }
+            saved = new ArrayList<>(libri);
+            saves++;
+        }
+
+        @Override
+        public Optional<Libro> getByIsbn(String isbn) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void add(Libro libro) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void removeByIsbn(String isbn) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void update(Libro libro) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean prefersBatchOperations() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        synchronized int saves() {
+            return saves;
+        }
+    }
+
+    private static Libro libro(int i) {
+        return new Libro("Libro " + i, "Autore", String.format("%010d", i), Genere.ROMANZO, 3,
+                StatoLettura.DA_LEGGERE);
+    }
+
+    @Test
+    void burstOfEditsIsSavedOnceTest() throws Exception {
+        BatchDAO delegate = new BatchDAO();
+        try (CachedLibroDAO dao = new CachedLibroDAO(delegate, 100)) {
+            for (int i = 0; i < 10; i++) {
+                dao.add(libro(i));
+            }
+            dao.removeByIsbn(libro(0).getIsbn());
+
+            assertEquals(9, dao.getAll().size());
+            assertTrue(dao.hasPendingWrites());
+            assertEquals(0, delegate.saves());
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (dao.hasPendingWrites() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertFalse(dao.hasPendingWrites());
+            assertEquals(1, delegate.saves());
+            assertEquals(dao.getAll(), delegate.getAll());
+        }
+    }
+
+    @Test
+    void flushAndCloseSaveSynchronouslyTest() throws Exception {
+        BatchDAO delegate = new BatchDAO();
+        CachedLibroDAO dao = new CachedLibroDAO(delegate, 60_000);
+        dao.add(libro(1));
+        dao.flush();
+        assertEquals(List.of(libro(1)), delegate.getAll());
+
+        dao.add(libro(2));
+        dao.close();
+        assertEquals(List.of(libro(1), libro(2)), delegate.getAll());
+        assertEquals(2, delegate.saves());
+        assertTrue(delegate.closed);
+    }
+
+    @Test
+    void zeroWindowSavesEveryEditTest() throws Exception {
+        BatchDAO delegate = new BatchDAO();
+        try (CachedLibroDAO dao = new CachedLibroDAO(delegate, 0)) {
+            dao.add(libro(1));
+            dao.add(libro(2));
+            assertFalse(dao.hasPendingWrites());
+            assertEquals(2, delegate.saves());
+        }
+    }
+
+    @Test
+    void failedFlushIsSurfacedAndRetriedTest() throws Exception {
+        BatchDAO delegate = new BatchDAO();
+        try (CachedLibroDAO dao = new CachedLibroDAO(delegate, 60_000)) {
+            dao.add(libro(1));
+            delegate.failing = true;
+            assertThrows(DAOException.class, dao::flush);
+
+            // Le modifiche non salvate restano in cache e la modifica successiva ritenta il salvataggio
+            assertTrue(dao.hasPendingWrites());
+            assertEquals(List.of(libro(1)), dao.getAll());
+            assertThrows(DAOException.class, () -> dao.add(libro(2)));
+            assertThrows(LibroAlreadyExistsException.class, () -> {
+                delegate.failing = false;
+                dao.add(libro(1));
+            });
+            assertEquals(List.of(libro(1)), delegate.getAll());
+        }
+    }
+
+    @Test
+    void backgroundFailureIsNotifiedTest() throws Exception {
+        BatchDAO delegate = new BatchDAO();
+        delegate.failing = true;
+        CachedLibroDAO dao = new CachedLibroDAO(delegate, 10);
+        CompletableFuture<DAOException> notified = new CompletableFuture<>();
+        dao.setFlushFailureListener(notified::complete);
+
+        dao.add(libro(1));
+        DAOException failure = notified.get(5, TimeUnit.SECONDS);
+        assertEquals("Disco pieno", failure.getMessage());
+        assertSame(failure, dao.getFlushFailure());
+        assertTrue(dao.hasPendingWrites());
+
+        // La chiusura segnala l'errore, così le modifiche non vengono perse in silenzio
+        assertThrows(DAOException.class, dao::close);
+        assertEquals(List.of(), delegate.getAll());
+    }
+}
@@ -0,0 +1,121 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.BenchmarkSupport;
+import com.bruno.bookmanager.filters.AutoreFilter;
+import com.bruno.bookmanager.filters.Filter;
+import com.bruno.bookmanager.filters.FilterCompiler;
+import com.bruno.bookmanager.filters.GenereFilter;
+import com.bruno.bookmanager.filters.StatoLetturaFilter;
+import com.bruno.bookmanager.filters.TitoloFilter;
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ * Benchmark dell'applicazione di un filtro a una collezione in memoria, come nella ricerca di
+ * {@code LibroService} sopra una cache.
+ * <p>
+ * Confronta tre forme di una ricerca per titolo e del filtro
+ * {@code (G1 OR G2 OR G3) AND stato AND titolo AND autore}: l'albero precedente, che convertiva in minuscolo
+ * testo cercato e campo del libro a ogni confronto, l'albero attuale valutato con {@link Filter#test} e il
+ * predicato di {@link FilterCompiler}. Per ogni dimensione riporta i libri verificati al secondo. Non viene eseguito dai test; si lancia con
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -cp target/classes:target/test-classes:$(cat cp.txt) com.bruno.bookmanager.dao.FilterCompilerBenchmark [libri...]
+ * </pre>
+ * Senza argomenti misura 10.000 e 100.000 libri.
+ */
+public class FilterCompilerBenchmark {
+
+    private static final long MIN_NANOS = 1_000_000_000L;
+
+    public static void main(String[] args) {
+        BenchmarkSupport.quietLogging();
+        int[] sizes = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{10_000, 100_000};
+
+        // Un giro a vuoto per compilare i percorsi misurati
+        measure(libri(10_000), false);
+        for (int size : sizes) {
+            System.out.printf(Locale.ROOT, "%n%,d libri%n", size);
+            measure(libri(size), true);
+        }
+    }
+
+    private static void measure(List<Libro> libri, boolean report) {
+        run("titolo", libri, report, new TitoloFilter("NUMERO 1"), titolo("NUMERO 1"));
+
+        Filter<Libro> combined = new GenereFilter(Genere.FANTASCIENZA).or(new GenereFilter(Genere.DISTOPIA))
+                .or(new GenereFilter(Genere.ROMANZO))
+                .and(new StatoLetturaFilter(StatoLettura.DA_LEGGERE))
+                .and(new TitoloFilter("NUMERO 1"))
+                .and(new AutoreFilter("autore"));
+        Predicate<Libro> legacy = genere(Genere.FANTASCIENZA).or(genere(Genere.DISTOPIA)).or(genere(Genere.ROMANZO))
+                .and(libro -> libro.getStatoLettura().equals(StatoLettura.DA_LEGGERE))
+                .and(titolo("NUMERO 1"))
+                .and(libro -> libro.getAutore().toLowerCase().contains("autore".toLowerCase()));
+        run("combinato", libri, report, combined, legacy);
+    }
+
+    private static void run(String label, List<Libro> libri, boolean report, Filter<Libro> filter,
+                            Predicate<Libro> legacy) {
+        double before = libriPerSecond(libri, legacy);
+        double tree = libriPerSecond(libri, filter::test);
+        double compiled = libriPerSecond(libri, FilterCompiler.compile(filter));
+        if (report) {
+            System.out.printf(Locale.ROOT, "  %-10s precedente %,13.0f   albero %,13.0f (x%.1f)"
+                            + "   compilato %,13.0f (x%.1f) libri/s%n", label, before, tree, tree / before, compiled,
+                    compiled / before);
+        }
+    }
+
+    /**
+     * Confronto su titolo dell'albero precedente, con due conversioni in minuscolo per libro.
+     */
+    private static Predicate<Libro> titolo(String titolo) {
+        return libro -> libro.getTitolo().toLowerCase().contains(titolo.toLowerCase());
+    }
+
+    private static Predicate<Libro> genere(Genere genere) {
+        return libro -> libro.getGenere().equals(genere);
+    }
+
+    /**
+     * Applica il predicato all'intera collezione per almeno {@link #MIN_NANOS}.
+     */
+    private static double libriPerSecond(List<Libro> libri, Predicate<Libro> predicate) {
+        long ops = 0;
+        long matches = 0;
+        long start = System.nanoTime();
+        long now;
+        do {
+            for (Libro libro : libri) {
+                if (predicate.test(libro)) {
+                    matches++;
+                }
+            }
+            ops += libri.size();
+            now = System.nanoTime();
+        } while (now - start < MIN_NANOS);
+        if (matches < 0) {
+            throw new AssertionError();
+        }
+        return BenchmarkSupport.opsPerSecond(ops, start, now);
+    }
+
+    private static List<Libro> libri(int size) {
+        List<Libro> libri = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            libri.add(new Libro("Libro numero " + i, "Autore " + (i % 997), String.valueOf(9780000000000L + i),
+                    Genere.values()[i % Genere.values().length], i % 6,
+                    StatoLettura.values()[i % StatoLettura.values().length]));
+        }
+        return libri;
+    }
+}
@@ -0,0 +1,83 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.filters.*;
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+import com.bruno.bookmanager.utils.StringUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilterCompilerTest {
+    private List<Libro> libri;
+
+    @BeforeEach
+    void setUp() {
+        libri = List.of(
+                new Libro("1984", "George Orwell", "123", Genere.DISTOPIA, 5, StatoLettura.LETTO),
+                new Libro("Dune", "Frank Herbert", "456", Genere.FANTASCIENZA, 4, StatoLettura.IN_LETTURA),
+                new Libro("Il Nome della Rosa", "Umberto Eco", "789", Genere.ROMANZO_STORICO, 5, StatoLettura.LETTO),
+                new Libro("Neuromante", "William Gibson", "000", Genere.FANTASCIENZA, 3, StatoLettura.DA_LEGGERE),
+                new Libro("Foundation", "Isaac Asimov", "111", Genere.FANTASCIENZA, 0, StatoLettura.DA_LEGGERE),
+                new Libro("Perché ÈCCO", "Àutore", "222", Genere.ROMANZO, 2, StatoLettura.LETTO)
+        );
+    }
+
+    private void assertSameResult(Filter<Libro> filter) {
+        Predicate<Libro> compiled = FilterCompiler.compile(filter);
+        assertEquals(libri.stream().filter(filter::test).toList(), libri.stream().filter(compiled).toList());
+    }
+
+    @Test
+    void compiledFiltersMatchFilterTreeTest() {
+        assertSameResult(new TitoloFilter("DUNE"));
+        assertSameResult(new TitoloFilter("rosa"));
+        assertSameResult(new TitoloFilter(""));
+        assertSameResult(new AutoreFilter("gIbSoN"));
+        assertSameResult(new AutoreFilter("àut"));
+        assertSameResult(new TitoloFilter("ècco"));
+        assertSameResult(new ISBNFilter("1"));
+        assertSameResult(new GenereFilter(Genere.FANTASCIENZA));
+        assertSameResult(new StatoLetturaFilter(StatoLettura.LETTO));
+        assertSameResult(new ValutazioneFilter(5));
+    }
+
+    @Test
+    void compiledCompositeFiltersMatchFilterTreeTest() {
+        Filter<Libro> generi = new GenereFilter(Genere.FANTASCIENZA).or(new GenereFilter(Genere.DISTOPIA))
+                .or(new GenereFilter(Genere.ROMANZO));
+        assertSameResult(generi);
+        assertSameResult(generi.and(new StatoLetturaFilter(StatoLettura.DA_LEGGERE)));
+        assertSameResult(generi.and(new ValutazioneFilter(5).or(new TitoloFilter("un")))
+                .and(new AutoreFilter("e")));
+        assertSameResult(new OrFilter<>(new AndFilter<>(new TitoloFilter("o"), new ValutazioneFilter(0)),
+                new AndFilter<>(new AutoreFilter("eco"), new StatoLetturaFilter(StatoLettura.LETTO))));
+    }
+
+    @Test
+    void nullFilterAcceptsEverythingTest() {
+        assertEquals(libri, libri.stream().filter(FilterCompiler.compile(null)).toList());
+    }
+
+    @Test
+    void booksWithoutGenreAreRejectedTest() {
+        Libro senzaGenere = new Libro("Senza genere", "Anonimo", "333", null);
+        assertFalse(FilterCompiler.compile(new GenereFilter(Genere.ROMANZO)).test(senzaGenere));
+        assertTrue(FilterCompiler.compile(new TitoloFilter("GENERE")).test(senzaGenere));
+    }
+
+    @Test
+    void containsIgnoreCaseTest() {
+        assertTrue(StringUtils.containsIgnoreCase("Il Nome della Rosa", "della r"));
+        assertTrue(StringUtils.containsIgnoreCase("abc", ""));
+        assertTrue(StringUtils.containsIgnoreCase("ABC", "abc"));
+        assertFalse(StringUtils.containsIgnoreCase("ab", "abc"));
+        assertFalse(StringUtils.containsIgnoreCase("aab", "abb"));
+        assertTrue(StringUtils.containsIgnoreCase("PERCHÉ", StringUtils.lowerCase("ché")));
+    }
+}
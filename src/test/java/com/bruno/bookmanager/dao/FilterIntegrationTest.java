@@ -14,7 +14,9 @@ import org.junit.jupiter.params.provider.MethodSource;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -43,6 +45,9 @@ class FilterIntegrationTest {
         deleteFileQuietly(JSON_PATH);
         deleteFileQuietly(CACHED_PATH);
         deleteFileQuietly(SQLITE_PATH);
+        // File del journal WAL lasciati dalle connessioni non chiuse
+        deleteFileQuietly(SQLITE_PATH + "-wal");
+        deleteFileQuietly(SQLITE_PATH + "-shm");
     }
 
     private static void deleteFileQuietly(String filename) {
@@ -296,6 +301,45 @@ class FilterIntegrationTest {
         }
     }
 
+    @ParameterizedTest
+    @MethodSource("provideDAOs")
+    void quotesAndWildcardsInTextFilterTest(LibroDAO dao) throws DAOException {
+        List<Libro> libri = new ArrayList<>(testData);
+        libri.add(new Libro("L'isola del 100% tesoro", "Flann O'Brien", "606", Genere.AZIONE, 3, StatoLettura.LETTO));
+        dao.saveAll(libri);
+
+        Filter<Libro> filter = new AutoreFilter("o'brien").and(new TitoloFilter("100%"));
+
+        if (dao instanceof OptimizedSearch optimizedDAO) {
+            List<Libro> result = optimizedDAO.search(SearchCriteria.byFilter(filter));
+            assertEquals(1, result.size());
+            assertEquals("606", result.get(0).getIsbn());
+
+            // La percentuale è un carattere letterale, non un jolly
+            assertTrue(optimizedDAO.search(SearchCriteria.byFilter(new TitoloFilter("Titolo%"))).isEmpty());
+        } else {
+            List<Libro> result = dao.getAll().stream().filter(filter::test).toList();
+            assertEquals(1, result.size());
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideDAOs")
+    void repeatedSearchReusesStatementTest(LibroDAO dao) throws DAOException {
+        dao.saveAll(testData);
+
+        if (dao instanceof SqliteLibroDAO sqliteDAO) {
+            long missesBefore = sqliteDAO.getPoolStats().statementCacheMisses();
+            for (Genere genere : Genere.values()) {
+                sqliteDAO.search(SearchCriteria.byFilter(new GenereFilter(genere)));
+            }
+            long misses = sqliteDAO.getPoolStats().statementCacheMisses() - missesBefore;
+
+            // Una sola preparazione per connessione, indipendentemente dai valori cercati
+            assertTrue(misses <= sqliteDAO.getPoolStats().maxSize());
+        }
+    }
+
     @ParameterizedTest
     @MethodSource("provideDAOs")
     void nullSearchCriteriaTest(LibroDAO dao) throws DAOException {
@@ -306,4 +350,34 @@ class FilterIntegrationTest {
             assertEquals(testData.size(), result.size());
         }
     }
+
+    @ParameterizedTest
+    @MethodSource("provideDAOs")
+    void aggregatesMatchInMemoryTest(LibroDAO dao) throws DAOException {
+        List<Libro> libri = new ArrayList<>(testData);
+        libri.add(new Libro("Senza genere", null, "606", null, 0, StatoLettura.DA_LEGGERE));
+        dao.saveAll(libri);
+
+        SearchCriteria criteria = SearchCriteria.byFilter(
+                new StatoLetturaFilter(StatoLettura.IN_LETTURA).or(new StatoLetturaFilter(StatoLettura.DA_LEGGERE)));
+        Map<Genere, Long> expectedGeneri = InMemorySearch.countByGenere(libri.stream(), criteria);
+
+        assertEquals(Arrays.asList(Genere.FANTASCIENZA, Genere.FANTASY, Genere.HORROR, null),
+                new ArrayList<>(expectedGeneri.keySet()));
+        assertEquals(2L, expectedGeneri.get(Genere.FANTASCIENZA));
+        assertEquals(4.0, InMemorySearch.averageValutazione(libri.stream(), criteria).orElseThrow());
+
+        if (dao instanceof OptimizedSearch optimizedDAO) {
+            assertEquals(5, optimizedDAO.count(criteria));
+            assertEquals(libri.size(), optimizedDAO.count(null));
+            assertEquals(new ArrayList<>(expectedGeneri.entrySet()),
+                    new ArrayList<>(optimizedDAO.countByGenere(criteria).entrySet()));
+            assertEquals(InMemorySearch.countByStato(libri.stream(), null), optimizedDAO.countByStato(null));
+            assertEquals(InMemorySearch.countByValutazione(libri.stream(), criteria),
+                    optimizedDAO.countByValutazione(criteria));
+            assertEquals(4.0, optimizedDAO.averageValutazione(criteria).orElseThrow(), 1e-9);
+            assertTrue(optimizedDAO.averageValutazione(SearchCriteria.byFilter(new ValutazioneFilter(0)))
+                    .isEmpty());
+        }
+    }
 }
@@ -0,0 +1,82 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.filters.*;
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilterOptimizerTest {
+
+    private static List<Libro> libri() {
+        List<Libro> libri = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            libri.add(new Libro("Libro " + i, "Autore " + (i % 7), String.format("%010d", i),
+                    Genere.values()[i % Genere.values().length], i % 6,
+                    StatoLettura.values()[i % StatoLettura.values().length]));
+        }
+        return libri;
+    }
+
+    /**
+     * Filtro come lo costruisce il pannello dei filtri avanzati: catene di OR annidate a sinistra.
+     */
+    private static Filter<Libro> panelFilter() {
+        Filter<Libro> stati = new StatoLetturaFilter(StatoLettura.LETTO)
+                .or(new StatoLetturaFilter(StatoLettura.IN_LETTURA));
+        Filter<Libro> valutazioni = new ValutazioneFilter(4).or(new ValutazioneFilter(5));
+        Filter<Libro> generi = new GenereFilter(Genere.ROMANZO).or(new GenereFilter(Genere.GIALLO))
+                .or(new GenereFilter(Genere.HORROR));
+        return new TitoloFilter("libro").and(stati).and(valutazioni).and(generi);
+    }
+
+    @Test
+    void orChainsAreFoldedIntoMembershipFiltersTest() {
+        Filter<Libro> optimized = FilterOptimizer.optimize(panelFilter());
+
+        assertEquals(new GeneriFilter(List.of(Genere.ROMANZO, Genere.GIALLO, Genere.HORROR))
+                        .and(new ValutazioniFilter(List.of(4, 5)))
+                        .and(new StatiLetturaFilter(List.of(StatoLettura.LETTO, StatoLettura.IN_LETTURA)))
+                        .and(new TitoloFilter("libro")),
+                optimized);
+        assertEquals(libri().stream().filter(panelFilter()::test).toList(),
+                libri().stream().filter(optimized::test).toList());
+    }
+
+    @Test
+    void cheapEnumChecksPrecedeSubstringMatchesTest() {
+        Filter<Libro> optimized = FilterOptimizer.optimize(
+                new AutoreFilter("autore").and(new TitoloFilter("libro")).and(new GenereFilter(Genere.GIALLO)));
+
+        assertEquals(new GenereFilter(Genere.GIALLO).and(new AutoreFilter("autore")).and(new TitoloFilter("libro")),
+                optimized);
+        assertTrue(SqliteFilterCompiler.compile(optimized).sql().startsWith("(genere = ? AND "));
+    }
+
+    @Test
+    void duplicatesAreRemovedAndSingleValuesKeptTest() {
+        Filter<Libro> titolo = new TitoloFilter("libro");
+
+        assertEquals(titolo, FilterOptimizer.optimize(titolo.and(new TitoloFilter("libro"))));
+        assertEquals(new GenereFilter(Genere.GIALLO),
+                FilterOptimizer.optimize(new GenereFilter(Genere.GIALLO).or(new GenereFilter(Genere.GIALLO))));
+        assertNull(FilterOptimizer.optimize(null));
+    }
+
+    @Test
+    void flattenedSqlUsesInListsTest() {
+        Filter<Libro> filter = new SearchCriteria.Builder().filter(panelFilter()).build().getFilter();
+        SqlFragment sql = SqliteFilterCompiler.compile(filter);
+
+        assertTrue(sql.sql().startsWith("(genere IN (?, ?, ?) AND valutazione IN (?, ?) AND stato IN (?, ?) AND "),
+                sql.sql());
+        assertEquals(List.of("ROMANZO", "GIALLO", "HORROR", 4, 5, "IN_LETTURA", "LETTO"),
+                sql.parameters().subList(0, 7));
+        assertFalse(sql.sql().contains("(("), sql.sql());
+    }
+}
@@ -11,6 +11,8 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+// toSqlClause è deprecato ma resta verificato finché i filtri originali lo implementano
+@SuppressWarnings("deprecation")
 class FilterTest {
     private List<Libro> libri;
 
@@ -325,6 +327,34 @@ class FilterTest {
         assertEquals("autore LIKE '%o'brien%'", autoreFilter.toSqlClause());
     }
 
+    @Test
+    void sqlFragmentParametersTest() {
+        Filter<Libro> filter = new GenereFilter(Genere.FANTASCIENZA).and(new ValutazioneFilter(4))
+                .or(new TitoloFilter("test's book"));
+
+        SqlFragment fragment = filter.toSqlFragment();
+
+        assertEquals("((genere = ? AND valutazione = ?) OR titolo LIKE ? ESCAPE '\\')", fragment.sql());
+        assertEquals(List.of("FANTASCIENZA", 4, "%test's book%"), fragment.parameters());
+    }
+
+    @Test
+    void sqlFragmentSameShapeTest() {
+        SqlFragment first = new AutoreFilter("Orwell").and(new StatoLetturaFilter(StatoLettura.LETTO)).toSqlFragment();
+        SqlFragment second = new AutoreFilter("Eco").and(new StatoLetturaFilter(StatoLettura.DA_LEGGERE))
+                .toSqlFragment();
+
+        assertEquals(first.sql(), second.sql());
+        assertNotEquals(first.parameters(), second.parameters());
+    }
+
+    @Test
+    void sqlFragmentLikeWildcardEscapingTest() {
+        SqlFragment fragment = new ISBNFilter("12_%").toSqlFragment();
+
+        assertEquals(List.of("%12\\_\\%%"), fragment.parameters());
+    }
+
     // ============= PERFORMANCE TESTS =============
 
     @Test
@@ -366,4 +396,42 @@ class FilterTest {
         List<Libro> result = libri.stream().filter(baseFilter::test).toList();
         assertNotNull(result);
     }
+
+    // ============= EQUALITY TESTS =============
+
+    @Test
+    void filtersAreComparedStructurallyTest() {
+        assertEquals(new TitoloFilter(" Dune "), new TitoloFilter("Dune"));
+        assertEquals(new ValutazioneFilter(5).hashCode(), new ValutazioneFilter(5).hashCode());
+        assertNotEquals(new TitoloFilter("Dune"), new AutoreFilter("Dune"));
+        assertNotEquals(new GenereFilter(Genere.FANTASY), new GenereFilter(Genere.HORROR));
+    }
+
+    @Test
+    void compositeFiltersIgnoreOperandOrderAndNestingTest() {
+        Filter<Libro> a = new GenereFilter(Genere.FANTASCIENZA);
+        Filter<Libro> b = new ValutazioneFilter(5);
+        Filter<Libro> c = new StatoLetturaFilter(StatoLettura.LETTO);
+
+        assertEquals(a.and(b), b.and(a));
+        assertEquals(a.and(b).and(c), a.and(c.and(b)));
+        assertEquals(a.and(b).and(c).hashCode(), c.and(a.and(b)).hashCode());
+        assertEquals(a.or(b), b.or(a).or(a));
+        assertNotEquals(a.and(b), a.or(b));
+        assertNotEquals(a.and(b.or(c)), a.and(b).or(c));
+    }
+
+    @Test
+    void searchCriteriaWithEqualFiltersAreEqualTest() {
+        SearchCriteria first = new SearchCriteria.Builder().filter(new GenereFilter(Genere.FANTASY)
+                .and(new ValutazioneFilter(4))).sortByRating(false).build();
+        SearchCriteria second = new SearchCriteria.Builder().filter(new ValutazioneFilter(4)
+                .and(new GenereFilter(Genere.FANTASY))).sortByRating(false).build();
+
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertNotEquals(first, new SearchCriteria.Builder().filter(first.getFilter()).sortByRating(true).build());
+        assertNotEquals(first, new SearchCriteria.Builder().filter(first.getFilter()).sortByRating(false)
+                .pageSize(10).build());
+    }
 }
@@ -0,0 +1,144 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournaledJsonLibroDAOTest {
+
+    private static final String PATH = "journaled_test.json";
+    private static final Path SNAPSHOT = Path.of(PATH);
+    private static final Path JOURNAL = Path.of(PATH + ".journal");
+    private static final Path COMPACTING = Path.of(PATH + ".journal.compacting");
+
+    @AfterEach
+    void cleanup() throws Exception {
+        Files.deleteIfExists(SNAPSHOT);
+        Files.deleteIfExists(JOURNAL);
+        Files.deleteIfExists(COMPACTING);
+    }
+
+    private static Libro libro(String isbn, String titolo) {
+        return new Libro(titolo, "Autore", isbn, Genere.ROMANZO, 3, StatoLettura.DA_LEGGERE);
+    }
+
+    private static List<String> titoli(LibroDAO dao) throws Exception {
+        return dao.getAll().stream().map(Libro::getTitolo).toList();
+    }
+
+    @Test
+    void writesAppendToJournalWithoutRewritingSnapshotTest() throws Exception {
+        JournaledJsonLibroDAO dao = new JournaledJsonLibroDAO(PATH);
+        dao.saveAll(List.of(libro("1", "Uno"), libro("2", "Due")));
+        String snapshot = Files.readString(SNAPSHOT);
+
+        dao.add(libro("3", "Tre"));
+        dao.update(libro("1", "Uno bis"));
+        dao.removeByIsbn("2");
+        dao.close();
+
+        assertEquals(snapshot, Files.readString(SNAPSHOT));
+        assertEquals(3, Files.readAllLines(JOURNAL).size());
+        // Una nuova istanza riapplica il journal all'istantanea, mantenendo l'ordine di inserimento
+        assertEquals(List.of("Uno bis", "Tre"), titoli(new JournaledJsonLibroDAO(PATH)));
+    }
+
+    @Test
+    void incompleteLastLineIsDiscardedTest() throws Exception {
+        JournaledJsonLibroDAO dao = new JournaledJsonLibroDAO(PATH);
+        dao.add(libro("1", "Uno"));
+        dao.close();
+        Files.writeString(JOURNAL, "{\"op\":\"ADD\",\"libro\":{\"tit", StandardOpenOption.APPEND);
+
+        JournaledJsonLibroDAO reopened = new JournaledJsonLibroDAO(PATH);
+        assertEquals(List.of("Uno"), titoli(reopened));
+        reopened.add(libro("2", "Due"));
+        reopened.close();
+
+        assertEquals(List.of("Uno", "Due"), titoli(new JournaledJsonLibroDAO(PATH)));
+    }
+
+    @Test
+    void completeLastLineWithoutNewlineIsKeptTest() throws Exception {
+        JournaledJsonLibroDAO dao = new JournaledJsonLibroDAO(PATH);
+        dao.add(libro("1", "Uno"));
+        dao.add(libro("2", "Due"));
+        dao.close();
+        String journal = Files.readString(JOURNAL);
+        Files.writeString(JOURNAL, journal.substring(0, journal.length() - 1));
+
+        JournaledJsonLibroDAO reopened = new JournaledJsonLibroDAO(PATH);
+        assertEquals(List.of("Uno", "Due"), titoli(reopened));
+        reopened.add(libro("3", "Tre"));
+        reopened.close();
+
+        assertEquals(3, Files.readAllLines(JOURNAL).size());
+        assertEquals(List.of("Uno", "Due", "Tre"), titoli(new JournaledJsonLibroDAO(PATH)));
+    }
+
+    @Test
+    void lastLineWithTrailingRecordFragmentIsDiscardedTest() throws Exception {
+        JournaledJsonLibroDAO dao = new JournaledJsonLibroDAO(PATH);
+        dao.add(libro("1", "Uno"));
+        dao.close();
+        // Un record completo seguito dall'inizio di un altro non è una riga valida
+        Files.writeString(JOURNAL, "{\"op\":\"REMOVE\",\"isbn\":\"1\"}{\"op\":\"RE", StandardOpenOption.APPEND);
+
+        assertEquals(List.of("Uno"), titoli(new JournaledJsonLibroDAO(PATH)));
+    }
+
+    @Test
+    void journalIsCompactedInBackgroundPastThresholdTest() throws Exception {
+        JournaledJsonLibroDAO dao = new JournaledJsonLibroDAO(PATH, 1024, 0.5);
+        for (int i = 0; i < 50; i++) {
+            dao.add(libro(String.valueOf(i), "Libro " + i));
+        }
+        dao.close();
+
+        // Le modifiche arrivate durante l'ultima compattazione possono restare nel journal
+        assertFalse(Files.exists(COMPACTING));
+        assertFalse(new JsonLibroDAO(PATH).getAll().isEmpty());
+        assertEquals(50, new JournaledJsonLibroDAO(PATH).getAll().size());
+    }
+
+    @Test
+    void interruptedCompactionIsCompletedOnLoadTest() throws Exception {
+        JournaledJsonLibroDAO dao = new JournaledJsonLibroDAO(PATH);
+        dao.saveAll(List.of(libro("1", "Uno")));
+        dao.add(libro("2", "Due"));
+        dao.close();
+        // Compattazione interrotta dopo la rotazione: nuove modifiche su un journal vuoto
+        Files.move(JOURNAL, COMPACTING);
+        Files.writeString(JOURNAL, "{\"op\":\"REMOVE\",\"isbn\":\"1\"}\n");
+
+        JournaledJsonLibroDAO reopened = new JournaledJsonLibroDAO(PATH);
+        assertEquals(List.of("Due"), titoli(reopened));
+        reopened.close();
+
+        assertFalse(Files.exists(COMPACTING));
+        assertFalse(Files.exists(JOURNAL));
+        assertEquals(List.of("Due"), titoli(new JsonLibroDAO(PATH)));
+    }
+
+    @Test
+    void compactReplacesSnapshotAndClearsJournalTest() throws Exception {
+        JournaledJsonLibroDAO dao = new JournaledJsonLibroDAO(PATH);
+        dao.add(libro("1", "Uno"));
+        dao.upsertAll(List.of(libro("1", "Uno bis"), libro("2", "Due")));
+
+        dao.compact();
+        dao.close();
+
+        assertFalse(Files.exists(JOURNAL));
+        assertEquals(List.of("Uno bis", "Due"), titoli(new JsonLibroDAO(PATH)));
+    }
+}
@@ -0,0 +1,102 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonIsbnIndexTest {
+
+    private static final String PATH = "isbn_index_test.json";
+    private static final Path JSON = Path.of(PATH);
+    private static final Path SIDECAR = JsonIsbnIndex.sidecarOf(PATH);
+
+    @AfterEach
+    void cleanup() throws Exception {
+        Files.deleteIfExists(JSON);
+        Files.deleteIfExists(SIDECAR);
+    }
+
+    private static List<Libro> libri(int count) {
+        List<Libro> libri = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            libri.add(new Libro("Libro \"" + i + "\" è", "Autore " + i, String.valueOf(1000 + i), Genere.ROMANZO,
+                    i % 6, StatoLettura.LETTO));
+        }
+        return libri;
+    }
+
+    private static JsonLibroDAO indexed(boolean prettyPrint) {
+        return new JsonLibroDAO.Builder(PATH).isbnIndex(true).prettyPrint(prettyPrint).build();
+    }
+
+    @Test
+    void lookupsUsePositionsRecordedWhileWritingTest() throws Exception {
+        for (boolean prettyPrint : new boolean[]{false, true}) {
+            JsonLibroDAO dao = indexed(prettyPrint);
+            dao.saveAll(libri(50));
+
+            assertTrue(Files.exists(SIDECAR));
+            for (Libro libro : libri(50)) {
+                Libro found = dao.getByIsbn(libro.getIsbn()).orElseThrow();
+                assertEquals(libro.getTitolo(), found.getTitolo());
+            }
+            assertTrue(dao.getByIsbn("999").isEmpty());
+        }
+    }
+
+    @Test
+    void savedIndexIsReusedByNewInstancesTest() throws Exception {
+        indexed(false).saveAll(libri(10));
+        JsonIsbnIndex saved = JsonIsbnIndex.load(SIDECAR).orElseThrow();
+
+        assertTrue(saved.isFreshFor(JSON));
+        assertEquals("Autore 3", indexed(false).getByIsbn("1003").orElseThrow().getAutore());
+    }
+
+    @Test
+    void staleIndexIsRebuiltTest() throws Exception {
+        indexed(false).saveAll(libri(10));
+        // Riscrittura da un DAO senza indice: posizioni e dimensione cambiano
+        List<Libro> altri = libri(10).subList(5, 10);
+        new JsonLibroDAO(PATH, true).saveAll(altri);
+
+        JsonLibroDAO dao = indexed(false);
+        assertTrue(dao.getByIsbn("1001").isEmpty());
+        assertEquals("Autore 7", dao.getByIsbn("1007").orElseThrow().getAutore());
+        assertTrue(JsonIsbnIndex.load(SIDECAR).orElseThrow().isFreshFor(JSON));
+    }
+
+    @Test
+    void corruptedIndexIsRebuiltFromExistingFileTest() throws Exception {
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(JSON.toFile(), libri(5));
+        Files.writeString(SIDECAR, "non è un indice");
+
+        assertEquals("Autore 2", indexed(false).getByIsbn("1002").orElseThrow().getAutore());
+        assertTrue(JsonIsbnIndex.load(SIDECAR).isPresent());
+    }
+
+    @Test
+    void writesThroughDAOKeepIndexAlignedTest() throws Exception {
+        JsonLibroDAO dao = indexed(false);
+        dao.saveAll(libri(5));
+
+        dao.add(new Libro("Nuovo", "Autore", "2000", Genere.GIALLO, 3, StatoLettura.DA_LEGGERE));
+        dao.removeByIsbn("1000");
+        dao.update(new Libro("Cambiato", "Autore 4", "1004", Genere.ROMANZO, 1, StatoLettura.LETTO));
+
+        assertEquals("Nuovo", dao.getByIsbn("2000").orElseThrow().getTitolo());
+        assertEquals("Cambiato", dao.getByIsbn("1004").orElseThrow().getTitolo());
+        assertTrue(dao.getByIsbn("1000").isEmpty());
+        assertTrue(JsonIsbnIndex.load(SIDECAR).orElseThrow().isFreshFor(JSON));
+    }
+}
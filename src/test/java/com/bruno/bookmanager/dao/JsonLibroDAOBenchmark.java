@@ -0,0 +1,114 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.BenchmarkSupport;
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Benchmark di lettura e scrittura di {@link JsonLibroDAO} rispetto alla serializzazione precedente,
+ * che costruiva la lista intera con {@code readValue(file, TypeReference)} e scriveva sempre indentato.
+ * <p>
+ * Per ogni dimensione riporta il tempo medio di {@code saveAll} e {@code getAll}, la dimensione del file e
+ * i byte allocati dal thread durante l'operazione. Non viene eseguito dai test; si lancia con
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -Xmx2g -cp target/classes:target/test-classes:$(cat cp.txt) com.bruno.bookmanager.dao.JsonLibroDAOBenchmark [libri...]
+ * </pre>
+ * Senza argomenti misura 10.000, 100.000 e 1.000.000 di libri.
+ */
+public class JsonLibroDAOBenchmark {
+
+    private static final String PATH = "json_benchmark.json";
+    private static final int ROUNDS = 3;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+
+    /**
+     * Operazione misurata su una lista di libri.
+     */
+    private interface Operation {
+        void run(List<Libro> libri) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkSupport.quietLogging();
+        int[] sizes = args.length > 0 ? java.util.Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{10_000, 100_000, 1_000_000};
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonLibroDAO streaming = new JsonLibroDAO(PATH);
+        JsonLibroDAO streamingPretty = new JsonLibroDAO(PATH, true);
+
+        try {
+            // Un giro a vuoto per caricare le classi e risolvere i serializzatori prima delle misure
+            List<Libro> warmup = libri(1000);
+            for (int i = 0; i < 5; i++) {
+                mapper.writerWithDefaultPrettyPrinter().writeValue(new File(PATH), warmup);
+                mapper.readValue(new File(PATH), new TypeReference<List<Libro>>() {
+                });
+                streaming.saveAll(warmup);
+                streaming.getAll();
+            }
+
+            for (int size : sizes) {
+                List<Libro> libri = libri(size);
+                System.out.printf(Locale.ROOT, "%n%,d libri%n", size);
+                measure("albero, indentato", libri,
+                        l -> mapper.writerWithDefaultPrettyPrinter().writeValue(new File(PATH), l),
+                        l -> mapper.readValue(new File(PATH), new TypeReference<List<Libro>>() {
+                        }));
+                measure("streaming, indentato", libri, streamingPretty::saveAll, l -> streamingPretty.getAll());
+                measure("streaming, compatto", libri, streaming::saveAll, l -> streaming.getAll());
+            }
+        } finally {
+            new File(PATH).delete();
+        }
+    }
+
+    private static void measure(String label, List<Libro> libri, Operation write, Operation read)
+            throws Exception {
+        long[] writeStats = time(write, libri);
+        long fileSize = new File(PATH).length();
+        long[] readStats = time(read, libri);
+        System.out.printf(Locale.ROOT,
+                "  %-22s scrittura %8.1f ms %9.1f MB alloc   lettura %8.1f ms %9.1f MB alloc   file %8.1f MB%n",
+                label, writeStats[0] / 1e6, writeStats[1] / 1e6, readStats[0] / 1e6, readStats[1] / 1e6,
+                fileSize / 1e6);
+    }
+
+    /**
+     * @return tempo medio in nanosecondi e byte allocati in media per esecuzione
+     */
+    private static long[] time(Operation operation, List<Libro> libri) throws Exception {
+        long thread = Thread.currentThread().threadId();
+        long nanos = 0;
+        long bytes = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long allocatedBefore = THREADS.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            operation.run(libri);
+            nanos += System.nanoTime() - start;
+            bytes += THREADS.getThreadAllocatedBytes(thread) - allocatedBefore;
+        }
+        return new long[]{nanos / ROUNDS, bytes / ROUNDS};
+    }
+
+    private static List<Libro> libri(int size) {
+        List<Libro> libri = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            libri.add(new Libro("Libro numero " + i, "Autore " + (i % 997), String.format("%013d", i),
+                    Genere.values()[i % Genere.values().length], i % 6,
+                    StatoLettura.values()[i % StatoLettura.values().length]));
+        }
+        return libri;
+    }
+}
@@ -0,0 +1,132 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.exception.DAOException;
+import com.bruno.bookmanager.filters.*;
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeysetPaginationTest {
+
+    private static final String SQLITE_PATH = "pagination_test.db";
+
+    private final List<Libro> libri = List.of(new Libro("zeta", "b", "1", Genere.GIALLO, 1, StatoLettura.LETTO),
+            new Libro("Alfa", null, "2", null, 2, StatoLettura.LETTO),
+            new Libro("alfa", "B", "3", Genere.ROMANZO, 3, StatoLettura.DA_LEGGERE),
+            new Libro("Època", "a", "4", Genere.HORROR, 4, StatoLettura.IN_LETTURA),
+            new Libro("Beta", null, "5", Genere.GIALLO, 5, StatoLettura.LETTO),
+            new Libro("beta", "c", "6", null, 4, StatoLettura.LETTO),
+            new Libro("Gamma", "b", "7", Genere.GIALLO, 4, StatoLettura.DA_LEGGERE));
+
+    private SqliteLibroDAO dao;
+
+    @BeforeEach
+    void setUp() throws DAOException {
+        dao = new SqliteLibroDAO("jdbc:sqlite:" + SQLITE_PATH);
+        dao.saveAll(libri);
+    }
+
+    @AfterEach
+    void tearDown() throws DAOException {
+        dao.close();
+        new File(SQLITE_PATH).delete();
+    }
+
+    private static SearchCriteria.Builder sorted(SearchCriteria.SortField field, boolean asc, int pageSize) {
+        return new SearchCriteria.Builder().sortBy(field, asc).pageSize(pageSize);
+    }
+
+    private static List<String> isbns(List<Libro> libri) {
+        return libri.stream().map(Libro::getIsbn).toList();
+    }
+
+    @Test
+    void sqlitePagesMatchInMemoryPagesTest() throws DAOException {
+        for (SearchCriteria.SortField field : SearchCriteria.SortField.values()) {
+            for (boolean asc : new boolean[]{true, false}) {
+                List<String> full = isbns(InMemorySearch.search(libri, sorted(field, asc, 0).build()));
+                List<String> sqlitePages = new ArrayList<>();
+                List<String> memoryPages = new ArrayList<>();
+                PageToken sqliteToken = null;
+                PageToken memoryToken = null;
+                do {
+                    Page<Libro> sqlitePage = dao.searchPage(sorted(field, asc, 2).after(sqliteToken).build());
+                    Page<Libro> memoryPage = InMemorySearch.searchPage(libri,
+                            sorted(field, asc, 2).after(memoryToken).build());
+
+                    assertEquals(isbns(memoryPage.items()), isbns(sqlitePage.items()), field + " " + asc);
+                    assertEquals(memoryPage.nextToken(), sqlitePage.nextToken());
+                    sqlitePages.addAll(isbns(sqlitePage.items()));
+                    memoryPages.addAll(isbns(memoryPage.items()));
+                    sqliteToken = sqlitePage.nextToken();
+                    memoryToken = memoryPage.nextToken();
+                } while (sqliteToken != null);
+
+                assertEquals(full, sqlitePages, field + (asc ? " ASC" : " DESC"));
+                assertEquals(full, memoryPages, field + (asc ? " ASC" : " DESC"));
+            }
+        }
+    }
+
+    @Test
+    void paginationWithFilterAndWithoutSortingTest() throws DAOException {
+        SearchCriteria first = new SearchCriteria.Builder().filter(new GenereFilter(Genere.GIALLO)).sortBy(null)
+                .pageSize(2).build();
+        assertFalse(first.hasSorting());
+
+        // Senza ordinamento la paginazione segue l'ordine degli ISBN
+        Page<Libro> page = dao.searchPage(first);
+        assertEquals(List.of("1", "5"), isbns(page.items()));
+        assertTrue(page.hasNext());
+
+        SearchCriteria second = new SearchCriteria.Builder().filter(new GenereFilter(Genere.GIALLO)).sortBy(null)
+                .pageSize(2).after(page.nextToken()).build();
+        Page<Libro> last = dao.searchPage(second);
+        assertEquals(List.of("7"), isbns(last.items()));
+        assertFalse(last.hasNext());
+    }
+
+    @Test
+    void cursorSurvivesConcurrentInsertTest() throws Exception {
+        Page<Libro> first = dao.searchPage(sorted(SearchCriteria.SortField.ISBN, true, 3).build());
+        assertEquals(List.of("1", "2", "3"), isbns(first.items()));
+
+        // Un libro inserito prima del cursore non sposta la pagina successiva
+        dao.add(new Libro("Nuovo", "x", "0", Genere.ROMANZO, 1, StatoLettura.LETTO));
+
+        Page<Libro> second = dao.searchPage(sorted(SearchCriteria.SortField.ISBN, true, 3)
+                .after(first.nextToken()).build());
+        assertEquals(List.of("4", "5", "6"), isbns(second.items()));
+    }
+
+    @Test
+    void tokenRoundTripTest() {
+        PageToken token = PageToken.after(SearchCriteria.SortField.AUTORE, false, libri.get(1));
+        PageToken rating = PageToken.after(SearchCriteria.SortField.VALUTAZIONE, true, libri.get(3));
+
+        assertEquals(token, PageToken.decode(token.encode()));
+        assertEquals(rating, PageToken.decode(rating.encode()));
+        assertNull(PageToken.decode(token.encode()).getKey());
+        assertEquals(4, PageToken.decode(rating.encode()).getKey());
+        assertThrows(IllegalArgumentException.class, () -> PageToken.decode("non-valido"));
+    }
+
+    @Test
+    void tokenFromDifferentSortIsRejectedTest() {
+        PageToken token = PageToken.after(SearchCriteria.SortField.TITOLO, true, libri.get(0));
+        SearchCriteria criteria = sorted(SearchCriteria.SortField.AUTORE, true, 2).after(token).build();
+
+        assertThrows(IllegalArgumentException.class, () -> dao.searchPage(criteria));
+        assertThrows(IllegalArgumentException.class, () -> InMemorySearch.searchPage(libri, criteria));
+        assertThrows(IllegalArgumentException.class, () -> new SearchCriteria.Builder().pageSize(-1));
+    }
+}
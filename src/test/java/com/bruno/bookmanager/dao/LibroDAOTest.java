@@ -3,24 +3,38 @@ package com.bruno.bookmanager.dao;
 import com.bruno.bookmanager.exception.DAOException;
 import com.bruno.bookmanager.exception.LibroAlreadyExistsException;
 import com.bruno.bookmanager.exception.LibroNotFoundException;
+import com.bruno.bookmanager.exception.UncheckedDAOException;
+import com.bruno.bookmanager.filters.SearchCriteria;
 import com.bruno.bookmanager.model.Genere;
 import com.bruno.bookmanager.model.Libro;
 import com.bruno.bookmanager.model.StatoLettura;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 class LibroDAOTest {
@@ -28,13 +42,18 @@ class LibroDAOTest {
     private static final String JSON_PATH = "libri_test.json";
     private static final String CACHED_PATH = "libri_test_cache.json";
     private static final String SQLITE_PATH = "libri_test.db";
+    private static final String JOURNALED_PATH = "libri_test_journaled.json";
+    private static final String BINARY_PATH = "libri_test.bml";
+    private static final String CACHED_SQLITE_PATH = "libri_test_cache.db";
 
     private final Comparator<Libro> byIsbn = Comparator.comparing(Libro::getIsbn);
     private List<Libro> libri;
 
     static Stream<LibroDAO> provideDAOs() {
         return Stream.of(new JsonLibroDAO(JSON_PATH), new CachedLibroDAO(new JsonLibroDAO(CACHED_PATH)),
-                new SqliteLibroDAO("jdbc:sqlite:" + SQLITE_PATH));
+                new SqliteLibroDAO("jdbc:sqlite:" + SQLITE_PATH), new JournaledJsonLibroDAO(JOURNALED_PATH),
+                new BinaryLibroDAO(BINARY_PATH),
+                new CachedLibroDAO(new SqliteLibroDAO("jdbc:sqlite:" + CACHED_SQLITE_PATH)));
     }
 
     @BeforeEach
@@ -63,6 +82,15 @@ class LibroDAOTest {
         deleteFileQuietly(JSON_PATH);
         deleteFileQuietly(CACHED_PATH);
         deleteFileQuietly(SQLITE_PATH);
+        deleteFileQuietly(JOURNALED_PATH);
+        deleteFileQuietly(JOURNALED_PATH + ".journal");
+        deleteFileQuietly(BINARY_PATH);
+        // File del journal WAL lasciati dalle connessioni non chiuse
+        for (String path : new String[]{SQLITE_PATH, CACHED_SQLITE_PATH}) {
+            deleteFileQuietly(path);
+            deleteFileQuietly(path + "-wal");
+            deleteFileQuietly(path + "-shm");
+        }
     }
 
     private void deleteFileQuietly(String filename) {
@@ -146,6 +174,19 @@ class LibroDAOTest {
         assertThrows(LibroNotFoundException.class, () -> dao.update(nonEsistente));
     }
 
+    @ParameterizedTest
+    @MethodSource("provideDAOs")
+    void updateKeepsPositionTest(LibroDAO dao) throws DAOException, LibroNotFoundException {
+        Libro terzo = new Libro("Titolo 3", "Autore 3", "555555555", Genere.GIALLO, 3, StatoLettura.DA_LEGGERE);
+        dao.saveAll(List.of(libri.get(0), libri.get(1), terzo));
+
+        dao.update(new Libro("Titolo 2 Aggiornato", "Autore 2", libri.get(1).getIsbn(), Genere.FANTASCIENZA, 4,
+                StatoLettura.LETTO));
+
+        assertEquals(List.of("Titolo 1", "Titolo 2 Aggiornato", "Titolo 3"),
+                dao.getAll().stream().map(Libro::getTitolo).toList());
+    }
+
     @ParameterizedTest
     @MethodSource("provideDAOs")
     void complexOperationSequenceTest(LibroDAO dao) throws DAOException, LibroAlreadyExistsException, LibroNotFoundException {
@@ -271,4 +312,273 @@ class LibroDAOTest {
         assertTrue(found2.isPresent());
         assertEquals("", found2.get().getAutore());
     }
-}
\ No newline at end of file
+
+    @ParameterizedTest
+    @MethodSource("provideDAOs")
+    void streamAllMatchesGetAllTest(LibroDAO dao) throws DAOException {
+        dao.saveAll(libri);
+
+        try (Stream<Libro> stream = dao.streamAll()) {
+            assertEquals(libri, stream.sorted(byIsbn).toList());
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideDAOs")
+    void addAllReportsOutcomePerItemTest(LibroDAO dao) throws DAOException {
+        dao.saveAll(libri);
+        Libro nuovo = new Libro("Nuovo", "Autore 3", "555555555", Genere.GIALLO, 2, StatoLettura.DA_LEGGERE);
+        Libro modificato = new Libro("Modificato", "Autore 1", "123456789", Genere.ROMANZO, 1, StatoLettura.LETTO);
+
+        BulkResult result = dao.addAll(List.of(nuovo, modificato, nuovo));
+
+        assertEquals(List.of(BulkResult.Outcome.ADDED, BulkResult.Outcome.ALREADY_EXISTS,
+                BulkResult.Outcome.ALREADY_EXISTS), result.entries().stream().map(BulkResult.Entry::outcome).toList());
+        assertEquals(List.of("555555555", "123456789", "555555555"),
+                result.entries().stream().map(BulkResult.Entry::isbn).toList());
+        assertFalse(result.isComplete());
+        assertEquals(3, dao.getAll().size());
+        assertEquals("Titolo 1", dao.getByIsbn("123456789").orElseThrow().getTitolo());
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideDAOs")
+    void upsertAllAddsAndReplacesTest(LibroDAO dao) throws DAOException {
+        dao.saveAll(libri);
+        Libro nuovo = new Libro("Nuovo", "Autore 3", "555555555", Genere.GIALLO, 2, StatoLettura.DA_LEGGERE);
+        Libro ripetuto = new Libro("Nuovo bis", "Autore 3", "555555555", Genere.GIALLO, 3, StatoLettura.LETTO);
+        Libro modificato = new Libro("Modificato", "Autore 1", "123456789", Genere.ROMANZO, 1, StatoLettura.LETTO);
+
+        BulkResult result = dao.upsertAll(List.of(nuovo, modificato, ripetuto));
+
+        assertEquals(List.of(BulkResult.Outcome.ADDED, BulkResult.Outcome.UPDATED, BulkResult.Outcome.UPDATED),
+                result.entries().stream().map(BulkResult.Entry::outcome).toList());
+        assertTrue(result.isComplete());
+        assertEquals(3, dao.getAll().size());
+        assertEquals(modificato, dao.getByIsbn("123456789").orElseThrow());
+        // A parità di ISBN prevale l'ultima occorrenza
+        assertEquals(ripetuto, dao.getByIsbn("555555555").orElseThrow());
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideDAOs")
+    void bulkWithEmptyInputTest(LibroDAO dao) throws DAOException {
+        dao.saveAll(libri);
+
+        assertTrue(dao.addAll(List.of()).entries().isEmpty());
+        assertTrue(dao.upsertAll(List.of()).entries().isEmpty());
+        assertEquals(libri.size(), dao.getAll().size());
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideDAOs")
+    void streamAllEmptyTest(LibroDAO dao) throws DAOException {
+        dao.saveAll(new ArrayList<>());
+
+        try (Stream<Libro> stream = dao.streamAll()) {
+            assertEquals(0, stream.count());
+        }
+    }
+
+    @Test
+    void sqliteStreamHoldsConnectionUntilClosedTest() throws DAOException {
+        SqliteLibroDAO dao = new SqliteLibroDAO("jdbc:sqlite:" + SQLITE_PATH);
+        try {
+            dao.saveAll(libri);
+
+            try (Stream<Libro> stream = dao.searchStream(new SearchCriteria.Builder().sortBy(
+                    SearchCriteria.SortField.ISBN).build())) {
+                assertEquals(1, dao.getPoolStats().inUse());
+                // Consumo parziale: il cursore resta aperto fino alla chiusura
+                assertEquals(libri.get(0), stream.findFirst().orElseThrow());
+            }
+            assertEquals(0, dao.getPoolStats().inUse());
+        } finally {
+            dao.close();
+        }
+    }
+
+    @Test
+    void jsonStreamReportsCorruptedFileWhileReadingTest() throws Exception {
+        Files.writeString(Path.of(JSON_PATH), """
+                [{"titolo":"Titolo 1","autore":"Autore 1","isbn":"123456789","genere":"ROMANZO",
+                "valutazione":5,"statoLettura":"LETTO"}, {"titolo":""");
+        JsonLibroDAO dao = new JsonLibroDAO(JSON_PATH);
+
+        try (Stream<Libro> stream = dao.streamAll()) {
+            Iterator<Libro> iterator = stream.iterator();
+            assertEquals("123456789", iterator.next().getIsbn());
+            assertThrows(UncheckedDAOException.class, iterator::hasNext);
+        }
+    }
+
+    @Test
+    void jsonOutputIsCompactUnlessPrettyPrintRequestedTest() throws Exception {
+        new JsonLibroDAO(JSON_PATH).saveAll(libri);
+        String compact = Files.readString(Path.of(JSON_PATH));
+        new JsonLibroDAO(JSON_PATH, true).saveAll(libri);
+        String pretty = Files.readString(Path.of(JSON_PATH));
+
+        assertFalse(compact.contains("\n"));
+        assertTrue(pretty.contains("\n"));
+        List<Libro> letti = new JsonLibroDAO(JSON_PATH).getAll();
+        letti.sort(byIsbn);
+        assertEquals(libri, letti);
+    }
+
+    @Test
+    void jsonReadsFileWrittenAsSingleTreeTest() throws Exception {
+        new ObjectMapper().writerWithDefaultPrettyPrinter()
+                .writeValue(new File(JSON_PATH), libri);
+
+        assertEquals(libri, new JsonLibroDAO(JSON_PATH).getAll());
+    }
+
+    @Test
+    void jsonRejectsFileWithoutArrayTest() throws Exception {
+        Files.writeString(Path.of(JSON_PATH), "{\"isbn\":\"123456789\"}");
+
+        assertThrows(DAOException.class, () -> new JsonLibroDAO(JSON_PATH).getAll());
+    }
+
+    @Test
+    void jsonReusesParsedStateWhileFileIsUnchangedTest() throws Exception {
+        Path path = Path.of(JSON_PATH);
+        JsonLibroDAO dao = new JsonLibroDAO(JSON_PATH);
+        dao.saveAll(libri);
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() - 3_600_000);
+        Files.setLastModifiedTime(path, old);
+        assertEquals(libri, dao.getAll());
+
+        // Stessa dimensione, stessa data e stesso file: l'impronta non cambia e il file non viene riletto
+        String content = Files.readString(path);
+        Files.writeString(path, content.replace('[', ' '));
+        Files.setLastModifiedTime(path, old);
+
+        assertEquals(libri, dao.getAll());
+        assertTrue(dao.getByIsbn("123456789").isPresent());
+    }
+
+    @Test
+    void jsonDetectsExternalChangesTest() throws Exception {
+        JsonLibroDAO dao = new JsonLibroDAO(JSON_PATH);
+        dao.saveAll(libri);
+        assertEquals(2, dao.getAll().size());
+
+        new JsonLibroDAO(JSON_PATH).saveAll(libri.subList(0, 1));
+
+        assertEquals(1, dao.getAll().size());
+        assertTrue(dao.getByIsbn("987654321").isEmpty());
+    }
+
+    @Test
+    void jsonDetectsRecentChangeWithSameSizeAndDateTest() throws Exception {
+        Path path = Path.of(JSON_PATH);
+        JsonLibroDAO dao = new JsonLibroDAO(JSON_PATH);
+        dao.saveAll(libri);
+        FileTime written = Files.getLastModifiedTime(path);
+
+        // Modifica nello stesso istante: solo il checksum la distingue
+        Files.writeString(path, Files.readString(path).replace("Titolo 1", "Titolo X"));
+        Files.setLastModifiedTime(path, written);
+
+        assertEquals("Titolo X", dao.getByIsbn("123456789").orElseThrow().getTitolo());
+    }
+
+    @Test
+    void jsonCachedLibriAreNotSharedWithCallersTest() throws Exception {
+        JsonLibroDAO dao = new JsonLibroDAO(JSON_PATH);
+        dao.saveAll(libri);
+
+        // Né i libri salvati né quelli letti devono alterare la lista riusata dalle letture successive
+        libri.get(0).setTitolo("Modificato dopo il salvataggio");
+        dao.getAll().get(0).setTitolo("Modificato dopo getAll");
+        dao.getByIsbn("123456789").orElseThrow().setTitolo("Modificato dopo getByIsbn");
+
+        assertEquals("Titolo 1", dao.getByIsbn("123456789").orElseThrow().getTitolo());
+        assertEquals("Titolo 1", dao.getAll().get(0).getTitolo());
+        assertNotSame(dao.getAll().get(1), dao.getAll().get(1));
+    }
+
+    @Test
+    void cachedSnapshotIsNotAffectedByLaterWritesTest() throws Exception {
+        CachedLibroDAO dao = new CachedLibroDAO(new JsonLibroDAO(CACHED_PATH));
+        dao.saveAll(libri);
+        List<Libro> snapshot = dao.getSnapshot();
+
+        dao.removeByIsbn("123456789");
+
+        assertEquals(libri, snapshot);
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add(libri.get(0)));
+        assertEquals(List.of(libri.get(1)), dao.getSnapshot());
+    }
+
+    @Test
+    void cachedReadsFromOtherThreadsSeeConsistentStateTest() throws Exception {
+        CachedLibroDAO dao = new CachedLibroDAO(new JsonLibroDAO(CACHED_PATH));
+        dao.saveAll(new ArrayList<>());
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            try {
+                int previous = 0;
+                while (!done.get()) {
+                    List<Libro> snapshot = dao.getSnapshot();
+                    assertTrue(snapshot.size() >= previous);
+                    // Ogni libro visibile nell'istantanea è visibile anche alle ricerche successive
+                    for (Libro libro : snapshot) {
+                        assertTrue(dao.getByIsbn(libro.getIsbn()).isPresent());
+                    }
+                    previous = snapshot.size();
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 200; i++) {
+            dao.add(new Libro("Libro " + i, "Autore", String.format("%010d", i), Genere.ROMANZO, 3,
+                    StatoLettura.DA_LEGGERE));
+        }
+        done.set(true);
+        reader.join();
+
+        assertNull(failure.get());
+        assertEquals(200, dao.getAll().size());
+    }
+
+    @Test
+    void cachedSqliteSeesChangesFromOtherConnectionsTest() throws Exception {
+        try (CachedLibroDAO cached = new CachedLibroDAO(new SqliteLibroDAO("jdbc:sqlite:" + CACHED_SQLITE_PATH));
+             SqliteLibroDAO other = new SqliteLibroDAO("jdbc:sqlite:" + CACHED_SQLITE_PATH)) {
+            cached.saveAll(libri);
+            assertEquals(2, cached.getAll().size());
+
+            Libro esterno = new Libro("Esterno", "Autore", "555555555", Genere.GIALLO, 2, StatoLettura.DA_LEGGERE);
+            other.add(esterno);
+            assertEquals(Optional.of(esterno), cached.getByIsbn("555555555"));
+
+            other.removeByIsbn("123456789");
+            assertEquals(2, cached.getAll().size());
+            assertTrue(cached.getByIsbn("123456789").isEmpty());
+        }
+    }
+
+    @Test
+    void cachedSqliteOwnWritesDoNotReloadTest() throws Exception {
+        SqliteLibroDAO sqlite = spy(new SqliteLibroDAO("jdbc:sqlite:" + CACHED_SQLITE_PATH));
+        try (CachedLibroDAO cached = new CachedLibroDAO(sqlite)) {
+            cached.saveAll(libri);
+            cached.getAll();
+            cached.add(new Libro("Nuovo", "Autore", "555555555", Genere.GIALLO, 2, StatoLettura.DA_LEGGERE));
+            cached.removeByIsbn("123456789");
+
+            assertEquals(2, cached.getAll().size());
+            // Scritture riga per riga, mai caricamenti dell'intera tabella
+            verify(sqlite).add(any());
+            verify(sqlite).removeByIsbn("123456789");
+            verify(sqlite, never()).getAll();
+        }
+    }
+}
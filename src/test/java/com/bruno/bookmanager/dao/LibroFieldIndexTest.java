@@ -0,0 +1,156 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.filters.Filter;
+import com.bruno.bookmanager.filters.GenereFilter;
+import com.bruno.bookmanager.filters.GeneriFilter;
+import com.bruno.bookmanager.filters.StatiLetturaFilter;
+import com.bruno.bookmanager.filters.StatoLetturaFilter;
+import com.bruno.bookmanager.filters.TitoloFilter;
+import com.bruno.bookmanager.filters.ValutazioneFilter;
+import com.bruno.bookmanager.filters.ValutazioniFilter;
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LibroFieldIndexTest {
+
+    private static final String PATH = "field_index_test.json";
+
+    private final List<Libro> libri = libri();
+
+    @AfterEach
+    void cleanup() {
+        new File(PATH).delete();
+    }
+
+    private static List<Libro> libri() {
+        List<Libro> libri = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            libri.add(new Libro("Libro " + i, "Autore " + i, String.format("%010d", i),
+                    Genere.values()[i % Genere.values().length], i % 6,
+                    StatoLettura.values()[i % StatoLettura.values().length]));
+        }
+        libri.add(new Libro("Senza genere", "Autore", "9999999999", null, 0, null));
+        return libri;
+    }
+
+    private List<Libro> scan(Filter<Libro> filter) {
+        return libri.stream().filter(libro -> {
+            try {
+                return filter.test(libro);
+            } catch (NullPointerException e) {
+                // I filtri su genere e stato non ammettono libri senza valore
+                return false;
+            }
+        }).toList();
+    }
+
+    @Test
+    void enumAndRatingCombinationsMatchScanTest() {
+        LibroFieldIndex index = LibroFieldIndex.build(LibroSequence.build(libri));
+        List<Filter<Libro>> filters = List.of(
+                new GenereFilter(Genere.ROMANZO),
+                new StatoLetturaFilter(StatoLettura.LETTO),
+                new ValutazioneFilter(5),
+                new GenereFilter(Genere.ROMANZO).or(new GenereFilter(Genere.GIALLO)),
+                new StatoLetturaFilter(StatoLettura.LETTO).and(new ValutazioneFilter(3)),
+                new GenereFilter(Genere.FANTASY).or(new GenereFilter(Genere.HORROR))
+                        .and(new StatoLetturaFilter(StatoLettura.DA_LEGGERE).or(new ValutazioneFilter(4))),
+                new GeneriFilter(List.of(Genere.ROMANZO, Genere.GIALLO, Genere.HORROR)),
+                new StatiLetturaFilter(List.of(StatoLettura.LETTO, StatoLettura.IN_LETTURA))
+                        .and(new ValutazioniFilter(List.of(0, 5, 9))));
+
+        for (Filter<Libro> filter : filters) {
+            assertTrue(LibroFieldIndex.resolves(filter), filter.toSqlFragment().toString());
+            assertEquals(scan(filter), index.candidates(filter), filter.toSqlFragment().toString());
+        }
+    }
+
+    @Test
+    void missingValuesYieldNoCandidatesTest() {
+        LibroFieldIndex index = LibroFieldIndex.build(LibroSequence.build(libri));
+
+        assertEquals(List.of(), index.candidates(new ValutazioneFilter(9)));
+        assertEquals(List.of(), index.candidates(new GenereFilter(null)));
+    }
+
+    @Test
+    void otherFiltersNarrowOnlyInConjunctionTest() {
+        LibroFieldIndex index = LibroFieldIndex.build(LibroSequence.build(libri));
+        Filter<Libro> titolo = new TitoloFilter("Libro 1");
+
+        assertNull(index.candidates(titolo));
+        assertNull(index.candidates(titolo.or(new ValutazioneFilter(1))));
+        // La cache non costruisce l'indice per filtri che non può risolvere
+        assertFalse(LibroFieldIndex.resolves(titolo));
+        assertFalse(LibroFieldIndex.resolves(titolo.or(new ValutazioneFilter(1))));
+        assertTrue(LibroFieldIndex.resolves(titolo.and(new ValutazioneFilter(1))));
+        // Sovrainsieme da verificare: tutti i libri con valutazione 1, non solo quelli col titolo cercato
+        assertEquals(scan(new ValutazioneFilter(1)), index.candidates(titolo.and(new ValutazioneFilter(1))));
+    }
+
+    @Test
+    void incrementalUpdatesMatchRebuildTest() {
+        List<Libro> current = new ArrayList<>(libri);
+        LibroSequence sequence = LibroSequence.build(current);
+        LibroFieldIndex index = LibroFieldIndex.build(sequence);
+
+        for (int i = 0; i < 200; i++) {
+            Libro libro = new Libro("Nuovo " + i, "Autore", String.format("1%09d", i),
+                    Genere.values()[(i * 7) % Genere.values().length], (i * 5) % 6,
+                    i % 11 == 0 ? null : StatoLettura.values()[i % StatoLettura.values().length]);
+            sequence = sequence.replace(null, libro);
+            index = index.replace(sequence, null, libro);
+            current.add(libro);
+            if (i % 3 == 0) {
+                // Cambia genere, stato e valutazione di un libro esistente, conservandone la posizione
+                int position = (i * 13) % current.size();
+                Libro previous = current.get(position);
+                Libro aggiornato = new Libro(previous.getTitolo(), previous.getAutore(), previous.getIsbn(),
+                        Genere.ROMANZO, 5, StatoLettura.LETTO);
+                sequence = sequence.replace(previous, aggiornato);
+                index = index.replace(sequence, previous, aggiornato);
+                current.set(position, aggiornato);
+            }
+            if (i % 4 == 0) {
+                Libro rimosso = current.remove(current.size() / 2);
+                sequence = sequence.replace(rimosso, null);
+                index = index.replace(sequence, rimosso, null);
+            }
+        }
+
+        LibroFieldIndex rebuilt = LibroFieldIndex.build(LibroSequence.build(current));
+        for (Filter<Libro> filter : List.of(new GenereFilter(Genere.ROMANZO),
+                new StatoLetturaFilter(StatoLettura.LETTO), new ValutazioneFilter(5), new ValutazioneFilter(4),
+                new GeneriFilter(List.of(Genere.GIALLO, Genere.HORROR)).or(new ValutazioneFilter(2)),
+                new StatiLetturaFilter(List.of(StatoLettura.DA_LEGGERE)).and(new ValutazioniFilter(List.of(0, 3))))) {
+            assertEquals(rebuilt.candidates(filter), index.candidates(filter), filter.toSqlFragment().toString());
+        }
+    }
+
+    @Test
+    void cachedIndexesFollowWritesTest() throws Exception {
+        CachedLibroDAO dao = new CachedLibroDAO(new JsonLibroDAO(PATH));
+        dao.saveAll(libri);
+        Filter<Libro> letti5 = new StatoLetturaFilter(StatoLettura.LETTO).and(new ValutazioneFilter(5));
+        int before = dao.findCandidates(letti5).orElseThrow().size();
+
+        Libro nuovo = new Libro("Nuovo", "Autore", "1111111111", Genere.ROMANZO, 5, StatoLettura.LETTO);
+        dao.add(nuovo);
+        assertEquals(before + 1, dao.findCandidates(letti5).orElseThrow().size());
+
+        dao.update(new Libro("Nuovo", "Autore", "1111111111", Genere.ROMANZO, 2, StatoLettura.LETTO));
+        assertEquals(before, dao.findCandidates(letti5).orElseThrow().size());
+
+        dao.removeByIsbn("1111111111");
+        assertFalse(dao.findCandidates(new ValutazioneFilter(2)).orElseThrow().contains(nuovo));
+    }
+}
@@ -0,0 +1,67 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LibroSequenceTest {
+
+    private static Libro libro(int i, String titolo) {
+        return new Libro(titolo, "Autore", String.format("%010d", i), Genere.ROMANZO, 3, StatoLettura.LETTO);
+    }
+
+    private static List<Libro> libri(LibroSequence sequence) {
+        List<Libro> libri = new ArrayList<>();
+        sequence.forEach((libro, seq) -> libri.add(libro));
+        return libri;
+    }
+
+    @Test
+    void numbersAreStableAcrossChangesTest() {
+        LibroSequence sequence = LibroSequence.build(List.of(libro(0, "Zero"), libro(1, "Uno"), libro(2, "Due")));
+        assertEquals(1, sequence.seqOf(libro(1, null).getIsbn()));
+
+        LibroSequence updated = sequence.replace(libro(0, "Zero"), null)
+                .replace(libro(1, "Uno"), libro(1, "Uno bis"))
+                .replace(null, libro(3, "Tre"));
+
+        // Il libro aggiornato conserva il numero, quello aggiunto prende il successivo, quello rimosso lo libera
+        assertEquals(1, updated.seqOf(libro(1, null).getIsbn()));
+        assertEquals(3, updated.seqOf(libro(3, null).getIsbn()));
+        assertEquals(-1, updated.seqOf(libro(0, null).getIsbn()));
+        assertNull(updated.get(0));
+        assertEquals(3, updated.size());
+        assertEquals(1, updated.free());
+        assertEquals(List.of("Uno bis", "Due", "Tre"), libri(updated).stream().map(Libro::getTitolo).toList());
+        // La numerazione di partenza resta invariata
+        assertEquals(List.of("Zero", "Uno", "Due"), libri(sequence).stream().map(Libro::getTitolo).toList());
+    }
+
+    @Test
+    void mergedChangesMatchCacheOrderTest() {
+        List<Libro> current = new ArrayList<>();
+        LibroSequence sequence = LibroSequence.build(current);
+        // Abbastanza modifiche da fondere più volte le variazioni nelle tabelle condivise
+        for (int i = 0; i < 500; i++) {
+            Libro libro = libro(i, "Libro " + i);
+            sequence = sequence.replace(null, libro);
+            current.add(libro);
+            if (i % 4 == 0) {
+                Libro rimosso = current.remove(current.size() / 3);
+                sequence = sequence.replace(rimosso, null);
+            }
+        }
+
+        assertEquals(current, libri(sequence));
+        assertEquals(current.size(), sequence.size());
+        for (Libro libro : current) {
+            assertSame(libro, sequence.get(sequence.seqOf(libro.getIsbn())));
+        }
+    }
+}
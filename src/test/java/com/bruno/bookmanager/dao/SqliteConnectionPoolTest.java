@@ -0,0 +1,142 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.exception.DAOException;
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqliteConnectionPoolTest {
+
+    private static final String SQLITE_PATH = "pool_test.db";
+
+    @AfterEach
+    void cleanup() {
+        new File(SQLITE_PATH).delete();
+        new File(SQLITE_PATH + "-wal").delete();
+        new File(SQLITE_PATH + "-shm").delete();
+    }
+
+    @Test
+    void connectionsAreReusedTest() throws SQLException {
+        try (SqliteConnectionPool pool = new SqliteConnectionPool("jdbc:sqlite:" + SQLITE_PATH, 2)) {
+            for (int i = 0; i < 10; i++) {
+                try (PooledConnection conn = pool.acquire()) {
+                    conn.createStatement().close();
+                }
+            }
+
+            SqliteConnectionPool.PoolStats stats = pool.getStats();
+            assertEquals(10, stats.acquisitions());
+            assertEquals(1, stats.connectionsCreated());
+            assertEquals(1, stats.idleConnections());
+            assertEquals(0, stats.inUse());
+        }
+    }
+
+    @Test
+    void poolGrowsUpToMaxSizeTest() throws SQLException {
+        try (SqliteConnectionPool pool = new SqliteConnectionPool("jdbc:sqlite:" + SQLITE_PATH, 2)) {
+            PooledConnection first = pool.acquire();
+            PooledConnection second = pool.acquire();
+
+            assertEquals(2, pool.getStats().inUse());
+            assertEquals(2, pool.getStats().openConnections());
+
+            first.close();
+            second.close();
+            assertEquals(2, pool.getStats().idleConnections());
+        }
+    }
+
+    @Test
+    void inMemoryDatabaseUsesSingleConnectionTest() {
+        try (SqliteConnectionPool pool = new SqliteConnectionPool("jdbc:sqlite::memory:", 8)) {
+            assertEquals(1, pool.getStats().maxSize());
+        }
+    }
+
+    @Test
+    void acquireAfterCloseFailsTest() {
+        SqliteConnectionPool pool = new SqliteConnectionPool("jdbc:sqlite:" + SQLITE_PATH, 2);
+        pool.close();
+
+        assertTrue(pool.isClosed());
+        assertThrows(SQLException.class, pool::acquire);
+    }
+
+    @Test
+    void daoReusesPooledConnectionsTest() throws Exception {
+        SqliteLibroDAO dao = new SqliteLibroDAO("jdbc:sqlite:" + SQLITE_PATH, 2);
+        try {
+            dao.add(new Libro("Titolo", "Autore", "123456789", Genere.ROMANZO, 3, StatoLettura.LETTO));
+            for (int i = 0; i < 20; i++) {
+                assertTrue(dao.getByIsbn("123456789").isPresent());
+            }
+
+            SqliteConnectionPool.PoolStats stats = dao.getPoolStats();
+            assertEquals(1, stats.connectionsCreated());
+            assertTrue(stats.acquisitions() >= 22);
+        } finally {
+            dao.close();
+        }
+
+        assertEquals(0, dao.getPoolStats().openConnections());
+        assertThrows(DAOException.class, () -> dao.getAll());
+    }
+
+    @Test
+    void profileIsAppliedToEveryConnectionTest() throws SQLException {
+        try (SqliteConnectionPool pool = new SqliteConnectionPool("jdbc:sqlite:" + SQLITE_PATH, 2,
+                SqliteProfile.PERFORMANCE)) {
+            try (PooledConnection first = pool.acquire(); PooledConnection second = pool.acquire()) {
+                for (PooledConnection conn : new PooledConnection[]{first, second}) {
+                    try (Statement stmt = conn.createStatement()) {
+                        assertEquals("wal", pragma(stmt, "journal_mode"));
+                        assertEquals("1", pragma(stmt, "synchronous"));
+                        assertEquals("2", pragma(stmt, "temp_store"));
+                        assertEquals("5000", pragma(stmt, "busy_timeout"));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void daoReportsEffectiveProfileSettingsTest() throws DAOException {
+        SqliteLibroDAO dao = new SqliteLibroDAO("jdbc:sqlite:" + SQLITE_PATH, 2, SqliteProfile.COMPATIBLE);
+        try {
+            Map<String, String> settings = dao.getPragmaSettings();
+            assertEquals(SqliteProfile.COMPATIBLE.settings().keySet(), settings.keySet());
+            assertEquals("delete", settings.get("journal_mode"));
+            assertEquals("2", settings.get("synchronous"));
+        } finally {
+            dao.close();
+        }
+
+        dao = new SqliteLibroDAO("jdbc:sqlite:" + SQLITE_PATH, 2, SqliteProfile.PERFORMANCE);
+        try {
+            // Il journal WAL è persistente nel file: il passaggio di profilo lo converte
+            Map<String, String> settings = dao.getPragmaSettings();
+            assertEquals("wal", settings.get("journal_mode"));
+            assertEquals(String.valueOf(-16 * 1024), settings.get("cache_size"));
+        } finally {
+            dao.close();
+        }
+    }
+
+    private static String pragma(Statement stmt, String name) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA " + name)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+}
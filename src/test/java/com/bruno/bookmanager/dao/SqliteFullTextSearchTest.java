@@ -0,0 +1,124 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.exception.DAOException;
+import com.bruno.bookmanager.filters.*;
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqliteFullTextSearchTest {
+
+    private static final String SQLITE_PATH = "fts_test.db";
+    private static final String URL = "jdbc:sqlite:" + SQLITE_PATH;
+
+    private SqliteLibroDAO dao;
+
+    @BeforeEach
+    void setUp() throws DAOException {
+        dao = new SqliteLibroDAO(URL);
+        dao.saveAll(List.of(new Libro("Il Nome della Rosa", "Umberto Eco", "111", Genere.ROMANZO_STORICO, 5,
+                        StatoLettura.LETTO),
+                new Libro("Rosa rosa rosae", "Anonimo", "222", Genere.ROMANZO, 2, StatoLettura.DA_LEGGERE),
+                new Libro("Dune", "Frank Herbert", "333", Genere.FANTASCIENZA, 4, StatoLettura.IN_LETTURA),
+                new Libro("Il pendolo di Foucault", "Umberto Eco", "444", Genere.ROMANZO, 4, StatoLettura.LETTO),
+                new Libro("Rosaspina", "Eco Rossi", "555", Genere.FANTASY, 3, StatoLettura.LETTO)));
+    }
+
+    @AfterEach
+    void tearDown() throws DAOException {
+        dao.close();
+        new File(SQLITE_PATH).delete();
+    }
+
+    private List<String> isbns(SearchCriteria criteria) throws DAOException {
+        return dao.search(criteria).stream().map(Libro::getIsbn).toList();
+    }
+
+    @Test
+    void substringMatchIsCaseInsensitiveTest() throws DAOException {
+        assertEquals(List.of("111", "222", "555"), isbns(SearchCriteria.byTitle("ROSA")));
+        assertEquals(List.of("111", "444"), isbns(SearchCriteria.byAuthor("mberto")));
+    }
+
+    @Test
+    void prefixMatchTest() throws DAOException {
+        assertEquals(List.of("555"), isbns(SearchCriteria.byTitle("Rosas")));
+        assertEquals(List.of("444"), isbns(SearchCriteria.byTitle("il pen")));
+    }
+
+    @Test
+    void shortTextFallsBackToLikeTest() throws DAOException {
+        assertEquals(List.of("333"), isbns(SearchCriteria.byTitle("Du")));
+        assertEquals(List.of("333", "111", "444", "222", "555"), isbns(SearchCriteria.byTitle("")));
+    }
+
+    @Test
+    void combinedTitleOrAuthorTest() throws DAOException {
+        Filter<Libro> filter = new TitoloFilter("eco").or(new AutoreFilter("eco"));
+
+        assertEquals(List.of("111", "444", "555"), isbns(SearchCriteria.byFilter(filter)));
+    }
+
+    @Test
+    void textFilterCombinedWithAttributesTest() throws DAOException {
+        Filter<Libro> filter = new AutoreFilter("Umberto").and(new StatoLetturaFilter(StatoLettura.LETTO))
+                .and(new ValutazioneFilter(4));
+
+        assertEquals(List.of("444"), isbns(SearchCriteria.byFilter(filter)));
+    }
+
+    @Test
+    void indexFollowsWritesTest() throws Exception {
+        dao.update(new Libro("Dune Messia", "Frank Herbert", "333", Genere.FANTASCIENZA, 4, StatoLettura.LETTO));
+        dao.removeByIsbn("222");
+        dao.add(new Libro("La rosa bianca", "Autore", "666", Genere.ROMANZO, 1, StatoLettura.DA_LEGGERE));
+
+        assertEquals(List.of("333"), isbns(SearchCriteria.byTitle("messia")));
+        assertEquals(List.of("111", "666", "555"), isbns(SearchCriteria.byTitle("rosa")));
+    }
+
+    @Test
+    void relevanceOrderingTest() throws DAOException {
+        SearchCriteria criteria = new SearchCriteria.Builder().filter(new TitoloFilter("rosa"))
+                .sortBy(SearchCriteria.SortField.RILEVANZA, true).build();
+
+        // "Rosa rosa rosae" contiene il termine più volte in un titolo breve
+        assertEquals("222", isbns(criteria).get(0));
+        assertEquals(3, isbns(criteria).size());
+    }
+
+    @Test
+    void relevanceWithoutTextFilterSortsByTitleTest() throws DAOException {
+        SearchCriteria criteria = new SearchCriteria.Builder().sortBy(SearchCriteria.SortField.RILEVANZA, true)
+                .build();
+
+        assertEquals(List.of("333", "111", "444", "222", "555"), isbns(criteria));
+    }
+
+    @Test
+    void migrationIndexesExistingRowsTest() throws Exception {
+        dao.close();
+        try (Connection conn = DriverManager.getConnection(URL); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TRIGGER libri_fts_ai");
+            stmt.execute("DROP TRIGGER libri_fts_ad");
+            stmt.execute("DROP TRIGGER libri_fts_au");
+            stmt.execute("DROP TABLE libri_fts");
+            stmt.execute("PRAGMA user_version = 1");
+        }
+
+        dao = new SqliteLibroDAO(URL);
+
+        assertEquals(List.of("333"), isbns(SearchCriteria.byTitle("dune")));
+    }
+}
@@ -0,0 +1,129 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.exception.DAOException;
+import com.bruno.bookmanager.exception.LibroAlreadyExistsException;
+import com.bruno.bookmanager.exception.LibroNotFoundException;
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqliteGroupCommitTest {
+
+    private static final String SQLITE_PATH = "group_commit_test.db";
+    private static final String URL = "jdbc:sqlite:" + SQLITE_PATH;
+
+    @AfterEach
+    void cleanup() {
+        new File(SQLITE_PATH).delete();
+        new File(SQLITE_PATH + "-wal").delete();
+        new File(SQLITE_PATH + "-shm").delete();
+    }
+
+    private static Libro libro(int i) {
+        return new Libro("Libro " + i, "Autore", String.format("%010d", i), Genere.ROMANZO, 3,
+                StatoLettura.DA_LEGGERE);
+    }
+
+    @Test
+    void burstOfWritesSharesTransactionsTest() throws Exception {
+        try (SqliteLibroDAO dao = new SqliteLibroDAO.Builder(URL).groupCommit(50, 64).build()) {
+            List<CompletableFuture<Void>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                results.add(dao.addAsync(libro(i)));
+            }
+            CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get();
+
+            assertEquals(200, dao.getAll().size());
+            SqliteLibroDAO.GroupCommitStats stats = dao.getGroupCommitStats();
+            assertEquals(200, stats.mutations());
+            assertTrue(stats.commits() < 200 / 2, "commit: " + stats.commits());
+        }
+    }
+
+    @Test
+    void domainErrorsReachOnlyTheirCallerTest() throws Exception {
+        try (SqliteLibroDAO dao = new SqliteLibroDAO.Builder(URL).groupCommit(100, 64).build()) {
+            dao.add(libro(1));
+
+            CompletableFuture<Void> ok = dao.addAsync(libro(2));
+            CompletableFuture<Void> duplicate = dao.addAsync(libro(1));
+            CompletableFuture<Void> missing = dao.updateAsync(libro(99));
+            CompletableFuture<Void> removed = dao.removeByIsbnAsync(libro(1).getIsbn());
+
+            ok.get();
+            removed.get();
+            ExecutionException dup = assertThrows(ExecutionException.class, duplicate::get);
+            assertInstanceOf(LibroAlreadyExistsException.class, dup.getCause());
+            ExecutionException notFound = assertThrows(ExecutionException.class, missing::get);
+            assertInstanceOf(LibroNotFoundException.class, notFound.getCause());
+
+            assertEquals(List.of(libro(2)), dao.getAll());
+
+            // I metodi sincroni rilanciano le eccezioni di dominio come senza commit di gruppo
+            assertThrows(LibroAlreadyExistsException.class, () -> dao.add(libro(2)));
+            assertThrows(LibroNotFoundException.class, () -> dao.removeByIsbn("nessuno"));
+        }
+    }
+
+    @Test
+    void unexpectedErrorFailsOnlyItsWriteTest() throws Exception {
+        try (SqliteLibroDAO dao = new SqliteLibroDAO.Builder(URL).groupCommit(100, 64).build()) {
+            // Senza stato di lettura l'inserimento lancia una NullPointerException nel thread scrittore
+            Libro senzaStato = new Libro("Senza stato", "Autore", "5555555555", Genere.ROMANZO, 3, null);
+
+            CompletableFuture<Void> before = dao.addAsync(libro(1));
+            CompletableFuture<Void> broken = dao.addAsync(senzaStato);
+            CompletableFuture<Void> after = dao.addAsync(libro(2));
+
+            before.get(5, TimeUnit.SECONDS);
+            after.get(5, TimeUnit.SECONDS);
+            ExecutionException failure = assertThrows(ExecutionException.class,
+                    () -> broken.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(DAOException.class, failure.getCause());
+            assertInstanceOf(NullPointerException.class, failure.getCause().getCause());
+
+            // Lo scrittore è ancora attivo: le scritture sincrone successive vengono confermate
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> dao.add(libro(3)));
+            assertEquals(List.of(libro(1), libro(2), libro(3)), dao.getAll());
+        }
+    }
+
+    @Test
+    void closeCommitsQueuedWritesTest() throws DAOException {
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        SqliteLibroDAO dao = new SqliteLibroDAO.Builder(URL).groupCommit(1_000, 1_000).build();
+        for (int i = 0; i < 20; i++) {
+            results.add(dao.addAsync(libro(i)));
+        }
+        dao.close();
+
+        assertTrue(results.stream().allMatch(result -> result.isDone() && !result.isCompletedExceptionally()));
+        assertTrue(dao.addAsync(libro(100)).isCompletedExceptionally());
+
+        try (SqliteLibroDAO reopened = new SqliteLibroDAO(URL)) {
+            assertEquals(20, reopened.getAll().size());
+        }
+    }
+
+    @Test
+    void asyncWritesWithoutGroupCommitRunImmediatelyTest() throws DAOException {
+        try (SqliteLibroDAO dao = new SqliteLibroDAO(URL)) {
+            assertFalse(dao.isGroupCommitEnabled());
+            assertTrue(dao.addAsync(libro(1)).isDone());
+            assertTrue(dao.addAsync(libro(1)).isCompletedExceptionally());
+            assertEquals(1, dao.getAll().size());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.BenchmarkSupport;
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static com.bruno.bookmanager.BenchmarkSupport.opsPerSecond;
+
+/**
+ * Benchmark del throughput di scrittura di {@link SqliteLibroDAO} con ciascun {@link SqliteProfile}.
+ * <p>
+ * Misura operazioni singole ({@code add}, {@code update}, {@code removeByIsbn}), ciascuna in una propria
+ * transazione: è il caso in cui il costo della sincronizzazione su disco a ogni commit pesa di più.
+ * Non viene eseguito dai test; si lancia con
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -cp target/classes:target/test-classes:$(cat cp.txt) com.bruno.bookmanager.dao.SqliteProfileBenchmark [righe]
+ * </pre>
+ * I risultati dipendono fortemente dal disco: su SSD con cache di scrittura le differenze si riducono.
+ */
+public class SqliteProfileBenchmark {
+
+    private static final String PATH = "sqlite_profile_benchmark.db";
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkSupport.quietLogging();
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        List<Libro> libri = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            libri.add(new Libro("Libro " + i, "Autore " + (i % 97), String.format("%013d", i),
+                    Genere.values()[i % Genere.values().length], i % 6,
+                    StatoLettura.values()[i % StatoLettura.values().length]));
+        }
+
+        // Un giro a vuoto per caricare classi e driver nativo prima delle misure
+        run(SqliteProfile.PERFORMANCE, libri.subList(0, Math.min(rows, 100)), false);
+        for (SqliteProfile profile : SqliteProfile.values()) {
+            run(profile, libri, true);
+        }
+    }
+
+    private static void run(SqliteProfile profile, List<Libro> libri, boolean report) throws Exception {
+        delete();
+        try (SqliteLibroDAO dao = new SqliteLibroDAO("jdbc:sqlite:" + PATH, SqliteConnectionPool.DEFAULT_POOL_SIZE,
+                profile)) {
+            long start = System.nanoTime();
+            for (Libro libro : libri) {
+                dao.add(libro);
+            }
+            long added = System.nanoTime();
+            for (Libro libro : libri) {
+                dao.update(new Libro(libro.getTitolo() + " (riv.)", libro.getAutore(), libro.getIsbn(),
+                        libro.getGenere(), 5, StatoLettura.LETTO));
+            }
+            long updated = System.nanoTime();
+            for (Libro libro : libri) {
+                dao.removeByIsbn(libro.getIsbn());
+            }
+            long removed = System.nanoTime();
+
+            if (report) {
+                System.out.printf(Locale.ROOT, "%-12s add %9.0f op/s   update %9.0f op/s   remove %9.0f op/s%n",
+                        profile, opsPerSecond(libri.size(), start, added),
+                        opsPerSecond(libri.size(), added, updated), opsPerSecond(libri.size(), updated, removed));
+            }
+        } finally {
+            delete();
+        }
+    }
+
+    private static void delete() {
+        new File(PATH).delete();
+        new File(PATH + "-wal").delete();
+        new File(PATH + "-shm").delete();
+        new File(PATH + "-journal").delete();
+    }
+}
@@ -0,0 +1,133 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.exception.DAOException;
+import com.bruno.bookmanager.filters.GenereFilter;
+import com.bruno.bookmanager.filters.SearchCriteria;
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqliteSchemaTest {
+
+    private static final String SQLITE_PATH = "schema_test.db";
+    private static final String URL = "jdbc:sqlite:" + SQLITE_PATH;
+
+    @AfterEach
+    void cleanup() {
+        new File(SQLITE_PATH).delete();
+    }
+
+    private static int userVersion() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(URL); Statement stmt = conn.createStatement()) {
+            return SqliteSchema.readVersion(stmt);
+        }
+    }
+
+    private static List<String> indexNames() throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (Connection conn = DriverManager.getConnection(URL);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT name FROM sqlite_master WHERE type = 'index'")) {
+            while (rs.next()) {
+                names.add(rs.getString(1));
+            }
+        }
+        return names;
+    }
+
+    private static String queryPlan(String sql) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (Connection conn = DriverManager.getConnection(URL);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            while (rs.next()) {
+                plan.append(rs.getString("detail")).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+
+    @Test
+    void legacyDatabaseIsMigratedOnOpenTest() throws Exception {
+        try (Connection conn = DriverManager.getConnection(URL); Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                    CREATE TABLE libri (isbn TEXT PRIMARY KEY, titolo TEXT NOT NULL, autore TEXT, genere TEXT,
+                    valutazione INTEGER CHECK(valutazione >= 0 AND valutazione <= 5), stato TEXT NOT NULL)
+                    """);
+            stmt.execute("INSERT INTO libri VALUES ('123', 'Dune', 'Herbert', 'FANTASCIENZA', 4, 'LETTO')");
+        }
+        assertEquals(0, userVersion());
+
+        SqliteLibroDAO dao = new SqliteLibroDAO(URL);
+        try {
+            assertEquals(SqliteSchema.CURRENT_VERSION, userVersion());
+            assertTrue(indexNames().containsAll(List.of("idx_libri_genere", "idx_libri_stato",
+                    "idx_libri_valutazione", "idx_libri_titolo", "idx_libri_autore")));
+            assertEquals(1, dao.search(SearchCriteria.byFilter(new GenereFilter(Genere.FANTASCIENZA))).size());
+        } finally {
+            dao.close();
+        }
+    }
+
+    @Test
+    void reopeningDoesNotReapplyMigrationsTest() throws Exception {
+        new SqliteLibroDAO(URL).close();
+        int indexes = indexNames().size();
+
+        new SqliteLibroDAO(URL).close();
+
+        assertEquals(SqliteSchema.CURRENT_VERSION, userVersion());
+        assertEquals(indexes, indexNames().size());
+    }
+
+    @Test
+    void filtersAndSortsUseIndexesTest() throws Exception {
+        new SqliteLibroDAO(URL).close();
+
+        assertTrue(queryPlan("SELECT * FROM libri WHERE genere = 'GIALLO'").contains("idx_libri_genere"));
+        assertTrue(queryPlan("SELECT * FROM libri WHERE stato = 'LETTO'").contains("idx_libri_stato"));
+        assertFalse(queryPlan("SELECT * FROM libri ORDER BY titolo COLLATE NOCASE, isbn").contains("TEMP B-TREE"));
+        assertFalse(queryPlan("SELECT * FROM libri ORDER BY autore COLLATE NOCASE DESC, isbn DESC")
+                .contains("TEMP B-TREE"));
+    }
+
+    @Test
+    void sqliteOrderMatchesInMemoryComparatorTest() throws DAOException {
+        List<Libro> libri = List.of(new Libro("zeta", "b", "1", Genere.GIALLO, 1, StatoLettura.LETTO),
+                new Libro("Alfa", null, "2", null, 2, StatoLettura.LETTO),
+                new Libro("alfa", "B", "3", Genere.ROMANZO, 3, StatoLettura.DA_LEGGERE),
+                new Libro("Època", "a", "4", Genere.HORROR, 4, StatoLettura.IN_LETTURA),
+                new Libro("Beta", "", "5", Genere.GIALLO, 5, StatoLettura.LETTO));
+
+        SqliteLibroDAO dao = new SqliteLibroDAO(URL);
+        try {
+            dao.saveAll(libri);
+            for (SearchCriteria.SortField field : SearchCriteria.SortField.values()) {
+                for (boolean asc : new boolean[]{true, false}) {
+                    SearchCriteria criteria = new SearchCriteria.Builder().sortBy(field, asc).build();
+                    List<Libro> expected = new ArrayList<>(libri);
+                    expected.sort(asc ? field.comparator() : field.comparator().reversed());
+
+                    List<String> expectedIsbn = expected.stream().map(Libro::getIsbn).toList();
+                    List<String> actualIsbn = dao.search(criteria).stream().map(Libro::getIsbn).toList();
+                    assertEquals(expectedIsbn, actualIsbn, field + (asc ? " ASC" : " DESC"));
+                }
+            }
+        } finally {
+            dao.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.BenchmarkSupport;
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Benchmark di caricamento e dimensione su disco dei tre formati di persistenza: {@link JsonLibroDAO},
+ * {@link SqliteLibroDAO} e {@link BinaryLibroDAO}.
+ * <p>
+ * Per ogni dimensione salva la stessa collezione in ciascun formato e misura il tempo medio di
+ * {@code getAll} con un DAO appena creato, come all'apertura di una libreria. Non viene eseguito dai test;
+ * si lancia con
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -cp target/classes:target/test-classes:$(cat cp.txt) com.bruno.bookmanager.dao.StorageFormatBenchmark [libri...]
+ * </pre>
+ * Senza argomenti misura 1.000, 10.000 e 100.000 libri.
+ */
+public class StorageFormatBenchmark {
+
+    private static final String JSON_PATH = "storage_benchmark.json";
+    private static final String SQLITE_PATH = "storage_benchmark.db";
+    private static final String BINARY_PATH = "storage_benchmark.bml";
+    private static final int ROUNDS = 5;
+
+    /**
+     * Crea un nuovo DAO sul file del formato misurato.
+     */
+    private interface DAOSupplier {
+        LibroDAO create();
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkSupport.quietLogging();
+        int[] sizes = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1_000, 10_000, 100_000};
+
+        try {
+            // Un giro a vuoto per caricare classi e driver nativo prima delle misure
+            measure(libri(1000), false);
+            for (int size : sizes) {
+                System.out.printf(Locale.ROOT, "%n%,d libri%n", size);
+                measure(libri(size), true);
+            }
+        } finally {
+            delete();
+        }
+    }
+
+    private static void measure(List<Libro> libri, boolean report) throws Exception {
+        delete();
+        run("JSON", JSON_PATH, () -> new JsonLibroDAO(JSON_PATH), libri, report);
+        run("SQLite", SQLITE_PATH, () -> new SqliteLibroDAO("jdbc:sqlite:" + SQLITE_PATH), libri, report);
+        run("binario", BINARY_PATH, () -> new BinaryLibroDAO(BINARY_PATH), libri, report);
+    }
+
+    private static void run(String label, String path, DAOSupplier supplier, List<Libro> libri, boolean report)
+            throws Exception {
+        try (LibroDAO writer = supplier.create()) {
+            writer.saveAll(libri);
+        }
+
+        long nanos = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            try (LibroDAO dao = supplier.create()) {
+                long start = System.nanoTime();
+                int loaded = dao.getAll().size();
+                nanos += System.nanoTime() - start;
+                if (loaded != libri.size()) {
+                    throw new IllegalStateException(label + ": caricati " + loaded + " libri su " + libri.size());
+                }
+            }
+        }
+
+        if (report) {
+            System.out.printf(Locale.ROOT, "  %-8s caricamento %9.2f ms   file %10.1f KB%n", label,
+                    nanos / (double) ROUNDS / 1e6, new File(path).length() / 1024.0);
+        }
+    }
+
+    private static List<Libro> libri(int size) {
+        List<Libro> libri = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            libri.add(new Libro("Libro numero " + i, "Autore " + (i % 997), String.valueOf(9780000000000L + i),
+                    Genere.values()[i % Genere.values().length], i % 6,
+                    StatoLettura.values()[i % StatoLettura.values().length]));
+        }
+        return libri;
+    }
+
+    private static void delete() {
+        for (String path : new String[]{JSON_PATH, SQLITE_PATH, SQLITE_PATH + "-wal", SQLITE_PATH + "-shm",
+                BINARY_PATH}) {
+            new File(path).delete();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.bruno.bookmanager.dao;
+
+import com.bruno.bookmanager.filters.AutoreFilter;
+import com.bruno.bookmanager.filters.Filter;
+import com.bruno.bookmanager.filters.TitoloFilter;
+import com.bruno.bookmanager.filters.ValutazioneFilter;
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrigramIndexTest {
+
+    private static final String PATH = "trigram_index_test.json";
+
+    private static final String[] TITOLI = {"Il nome della rosa", "La coscienza di Zeno", "Il Gattopardo",
+            "Città invisibili", "CITTÀ DI CARTA", "Se questo è un uomo", "I promessi sposi", "Uno, nessuno"};
+    private static final String[] AUTORI = {"Umberto Eco", "Italo Svevo", "Giuseppe Tomasi di Lampedusa",
+            "Italo Calvino", "John Green", "Primo Levi", "Alessandro Manzoni", "Luigi Pirandello"};
+
+    private final List<Libro> libri = libri();
+
+    @AfterEach
+    void cleanup() {
+        new File(PATH).delete();
+    }
+
+    private static List<Libro> libri() {
+        List<Libro> libri = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            libri.add(new Libro(TITOLI[i % TITOLI.length] + " " + i, AUTORI[(i / 3) % AUTORI.length],
+                    String.format("%010d", i), Genere.ROMANZO, i % 6, StatoLettura.DA_LEGGERE));
+        }
+        libri.add(new Libro(null, null, "9999999999", null, 0, null));
+        return libri;
+    }
+
+    private static List<Libro> scan(List<Libro> libri, Filter<Libro> filter) {
+        return libri.stream().filter(libro -> libro.getTitolo() != null && filter.test(libro)).toList();
+    }
+
+    private static List<Filter<Libro>> filters() {
+        return List.of(
+                new TitoloFilter("rosa"),
+                new TitoloFilter("ROSA"),
+                new TitoloFilter("città"),
+                new TitoloFilter("CITTÀ"),
+                new TitoloFilter("nessuno 3"),
+                new TitoloFilter("inesistente"),
+                new AutoreFilter("italo"),
+                new TitoloFilter("nome").and(new AutoreFilter("eco")),
+                new TitoloFilter("zeno").or(new AutoreFilter("levi")));
+    }
+
+    @Test
+    void candidatesMatchScanTest() {
+        TrigramIndex index = TrigramIndex.build(LibroSequence.build(libri));
+        for (Filter<Libro> filter : filters()) {
+            assertTrue(TrigramIndex.resolves(filter), filter.toSqlFragment().toString());
+            assertEquals(scan(libri, filter), index.candidates(filter), filter.toSqlFragment().toString());
+        }
+    }
+
+    @Test
+    void shortOrUnindexedFiltersDoNotNarrowTest() {
+        TrigramIndex index = TrigramIndex.build(LibroSequence.build(libri));
+
+        for (Filter<Libro> filter : List.of(new TitoloFilter("il"), new ValutazioneFilter(3),
+                new TitoloFilter("rosa").or(new ValutazioneFilter(3)))) {
+            assertNull(index.candidates(filter), filter.toSqlFragment().toString());
+            // La cache non costruisce l'indice per filtri che non può risolvere
+            assertFalse(TrigramIndex.resolves(filter), filter.toSqlFragment().toString());
+        }
+        assertTrue(TrigramIndex.resolves(new TitoloFilter("rosa").and(new ValutazioneFilter(3))));
+        // Sovrainsieme da verificare: tutti i titoli con "rosa", senza guardare la valutazione
+        assertEquals(scan(libri, new TitoloFilter("rosa")),
+                index.candidates(new TitoloFilter("rosa").and(new ValutazioneFilter(3))));
+    }
+
+    @Test
+    void incrementalUpdatesMatchRebuildTest() {
+        List<Libro> current = new ArrayList<>(libri);
+        LibroSequence sequence = LibroSequence.build(current);
+        TrigramIndex index = TrigramIndex.build(sequence);
+
+        Libro nuovo = new Libro("La rosa di Calvino", "Italo Calvino", "1111111111", Genere.ROMANZO, 5,
+                StatoLettura.LETTO);
+        sequence = sequence.replace(null, nuovo);
+        index = index.replace(sequence, null, nuovo);
+        current.add(nuovo);
+
+        Libro aggiornato = new Libro("Il barone rampante", "Italo Calvino", current.get(0).getIsbn(),
+                Genere.ROMANZO, 4, StatoLettura.LETTO);
+        sequence = sequence.replace(current.get(0), aggiornato);
+        index = index.replace(sequence, current.get(0), aggiornato);
+        current.set(0, aggiornato);
+
+        sequence = sequence.replace(current.get(5), null);
+        index = index.replace(sequence, current.get(5), null);
+        current.remove(5);
+
+        // Abbastanza modifiche da fondere più volte le variazioni nelle liste condivise
+        for (int i = 0; i < 400; i++) {
+            Libro libro = new Libro("Rosa dei venti " + Integer.toString(i * 104729, 36), "Autore " + (i % 9),
+                    String.format("2%09d", i), Genere.ROMANZO, i % 6, StatoLettura.LETTO);
+            sequence = sequence.replace(null, libro);
+            index = index.replace(sequence, null, libro);
+            current.add(libro);
+            if (i % 3 == 0) {
+                Libro rimosso = current.get(current.size() / 2);
+                sequence = sequence.replace(rimosso, null);
+                index = index.replace(sequence, rimosso, null);
+                current.remove(rimosso);
+            }
+        }
+
+        TrigramIndex rebuilt = TrigramIndex.build(LibroSequence.build(current));
+        List<Filter<Libro>> filters = new ArrayList<>(filters());
+        filters.add(new TitoloFilter("venti 1"));
+        filters.add(new TitoloFilter("venti " + Integer.toString(390 * 104729, 36)));
+        filters.add(new AutoreFilter("autore 3"));
+        for (Filter<Libro> filter : filters) {
+            assertEquals(rebuilt.candidates(filter), index.candidates(filter), filter.toSqlFragment().toString());
+            assertEquals(scan(current, filter), index.candidates(filter), filter.toSqlFragment().toString());
+        }
+    }
+
+    @Test
+    void cachedIndexFollowsWritesTest() throws Exception {
+        CachedLibroDAO dao = new CachedLibroDAO(new JsonLibroDAO(PATH));
+        dao.saveAll(libri);
+        Filter<Libro> barone = new TitoloFilter("barone");
+        assertEquals(List.of(), dao.findCandidates(barone).orElseThrow());
+
+        Libro nuovo = new Libro("Il barone rampante", "Italo Calvino", "1111111111", Genere.ROMANZO, 5,
+                StatoLettura.LETTO);
+        dao.add(nuovo);
+        assertEquals(List.of(nuovo), dao.findCandidates(barone).orElseThrow());
+
+        Libro aggiornato = new Libro("Il visconte dimezzato", "Italo Calvino", "1111111111", Genere.ROMANZO, 5,
+                StatoLettura.LETTO);
+        dao.update(aggiornato);
+        assertEquals(List.of(), dao.findCandidates(barone).orElseThrow());
+        assertEquals(List.of(aggiornato), dao.findCandidates(new TitoloFilter("visconte")).orElseThrow());
+
+        dao.removeByIsbn("1111111111");
+        assertEquals(List.of(), dao.findCandidates(new TitoloFilter("visconte")).orElseThrow());
+    }
+}
@@ -0,0 +1,157 @@
+package com.bruno.bookmanager.service;
+
+import com.bruno.bookmanager.BenchmarkSupport;
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Benchmark dei suggerimenti di completamento di {@link AutocompleteIndex} rispetto alla ricerca che servirebbe
+ * senza indice: scorrere tutti i libri, raccogliere i titoli che iniziano con il prefisso e ordinarli.
+ * <p>
+ * I titoli sono composti da parole estratte con una distribuzione sbilanciata, così che i prefissi corti
+ * corrispondano a gran parte della collezione e quelli lunghi a pochi libri. Per ogni dimensione riporta il
+ * tempo di costruzione dell'indice, i microsecondi per richiesta di dieci suggerimenti con prefissi di uno,
+ * due, quattro e otto caratteri, e le operazioni al secondo dell'aggiornamento incrementale (aggiunta e
+ * rimozione di un libro). Non viene eseguito dai test; si lancia con
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -Xmx2g -cp target/classes:target/test-classes:$(cat cp.txt) com.bruno.bookmanager.service.AutocompleteBenchmark [libri...]
+ * </pre>
+ * Senza argomenti misura 100.000 e 1.000.000 libri.
+ */
+public class AutocompleteBenchmark {
+
+    private static final long MIN_NANOS = 1_000_000_000L;
+    private static final int SUGGERIMENTI = 10;
+    private static final int AUTORI = 50_000;
+    private static final String[] PAROLE = {"il", "la", "le", "un", "una", "del", "della", "nome", "rosa", "notte",
+            "giorno", "mare", "citta", "barone", "viaggio", "storia", "segreto", "ultimo", "primo", "tempo",
+            "amore", "guerra", "pace", "libro", "isola", "montagna", "fiume", "stella", "ombra", "luce", "sogno",
+            "casa", "strada", "vento", "fuoco", "terra", "cielo", "lupo", "gatto", "cavaliere", "inesistente"};
+
+    public static void main(String[] args) {
+        BenchmarkSupport.quietLogging();
+        int[] sizes = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{100_000, 1_000_000};
+
+        // Un giro a vuoto per compilare i percorsi misurati
+        measure(libri(50_000), false);
+        for (int size : sizes) {
+            System.out.printf(Locale.ROOT, "%n%,d libri%n", size);
+            measure(libri(size), true);
+        }
+    }
+
+    private static void measure(List<Libro> libri, boolean report) {
+        AutocompleteIndex index = new AutocompleteIndex();
+        long start = System.nanoTime();
+        index.ricostruisci(libri, 0);
+        long built = System.nanoTime();
+        if (report) {
+            System.out.printf(Locale.ROOT, "  costruzione %,.0f ms%n", (built - start) / 1e6);
+        }
+
+        Random random = new Random(7);
+        for (int length : new int[]{1, 2, 4, 8}) {
+            String[] prefissi = new String[256];
+            for (int i = 0; i < prefissi.length; i++) {
+                String titolo = libri.get(random.nextInt(libri.size())).getTitolo();
+                prefissi[i] = titolo.substring(0, Math.min(length, titolo.length()));
+            }
+            double indice = microsPerQuery(prefissi, prefisso -> index.completaTitolo(prefisso, SUGGERIMENTI));
+            double scansione = microsPerQuery(prefissi, prefisso -> scan(libri, prefisso));
+            if (report) {
+                System.out.printf(Locale.ROOT, "  prefisso di %d   scansione %,12.1f us   indice %,8.2f us   x%,.0f%n",
+                        length, scansione, indice, scansione / indice);
+            }
+        }
+
+        long ops = 0;
+        int next = libri.size();
+        start = System.nanoTime();
+        long now;
+        do {
+            Libro nuovo = libro(next++, random);
+            index.aggiorna(nuovo, 0, 0);
+            index.rimuovi(libri.get(random.nextInt(libri.size())).getIsbn(), 0, 0);
+            ops += 2;
+            now = System.nanoTime();
+        } while (now - start < MIN_NANOS);
+        if (report) {
+            System.out.printf(Locale.ROOT, "  aggiornamento incrementale %,12.0f op/s%n",
+                    BenchmarkSupport.opsPerSecond(ops, start, now));
+        }
+    }
+
+    /**
+     * Suggerimenti senza indice: ogni richiesta scorre la collezione e conta i titoli corrispondenti.
+     */
+    private static List<String> scan(List<Libro> libri, String prefisso) {
+        String key = AutocompleteIndex.normalize(prefisso);
+        Map<String, int[]> conteggi = new HashMap<>();
+        for (Libro libro : libri) {
+            if (libro.getTitolo().regionMatches(true, 0, key, 0, key.length())) {
+                int[] conteggio = conteggi.computeIfAbsent(libro.getTitolo(), titolo -> new int[2]);
+                conteggio[0]++;
+                conteggio[1] += libro.getValutazione();
+            }
+        }
+        return conteggi.entrySet().stream()
+                .sorted(Comparator.<Map.Entry<String, int[]>>comparingInt(entry -> entry.getValue()[0])
+                        .thenComparingInt(entry -> entry.getValue()[1]).reversed()
+                        .thenComparing(Map.Entry::getKey))
+                .limit(SUGGERIMENTI).map(Map.Entry::getKey).toList();
+    }
+
+    /**
+     * Esegue le richieste a rotazione per almeno {@link #MIN_NANOS}.
+     */
+    private static double microsPerQuery(String[] prefissi, Function<String, List<String>> query) {
+        long ops = 0;
+        long found = 0;
+        long start = System.nanoTime();
+        long now;
+        do {
+            found += query.apply(prefissi[(int) (ops % prefissi.length)]).size();
+            ops++;
+            now = System.nanoTime();
+        } while (now - start < MIN_NANOS);
+        if (found < 0) {
+            throw new AssertionError();
+        }
+        return 1e6 / BenchmarkSupport.opsPerSecond(ops, start, now);
+    }
+
+    private static List<Libro> libri(int size) {
+        Random random = new Random(42);
+        List<Libro> libri = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            libri.add(libro(i, random));
+        }
+        return libri;
+    }
+
+    private static Libro libro(int i, Random random) {
+        StringBuilder titolo = new StringBuilder();
+        int parole = 2 + random.nextInt(4);
+        for (int j = 0; j < parole; j++) {
+            // Le prime parole dell'elenco sono le più frequenti
+            String parola = PAROLE[(int) (PAROLE.length * Math.pow(random.nextDouble(), 2))];
+            titolo.append(j == 0 ? Character.toUpperCase(parola.charAt(0)) + parola.substring(1) : " " + parola);
+        }
+        return new Libro(titolo.toString(), "Autore " + random.nextInt(AUTORI), String.valueOf(9780000000000L + i),
+                Genere.values()[i % Genere.values().length], i % 6,
+                StatoLettura.values()[i % StatoLettura.values().length]);
+    }
+}
@@ -0,0 +1,103 @@
+package com.bruno.bookmanager.service;
+
+import com.bruno.bookmanager.model.Genere;
+import com.bruno.bookmanager.model.Libro;
+import com.bruno.bookmanager.model.StatoLettura;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AutocompleteIndexTest {
+
+    private static Libro libro(String isbn, String titolo, String autore, int valutazione) {
+        return new Libro(titolo, autore, isbn, Genere.ROMANZO, valutazione, StatoLettura.LETTO);
+    }
+
+    private static List<Libro> libri() {
+        return List.of(
+                libro("0000000001", "Il barone rampante", "Italo Calvino", 4),
+                libro("0000000002", "Il visconte dimezzato", "Italo Calvino", 3),
+                libro("0000000003", "Le città invisibili", "Italo Calvino", 5),
+                libro("0000000004", "La coscienza di Zeno", "Italo Svevo", 5),
+                libro("0000000005", "Il nome della rosa", "Umberto Eco", 5),
+                libro("0000000006", "Il Gattopardo", "Giuseppe Tomasi di Lampedusa", 2));
+    }
+
+    @Test
+    void completionsAreRankedByFrequencyThenRatingTest() {
+        AutocompleteIndex index = new AutocompleteIndex();
+        index.ricostruisci(libri(), 0);
+
+        // Calvino ha tre libri, Svevo uno
+        assertEquals(List.of("Italo Calvino", "Italo Svevo"), index.completaAutore("ital", 10));
+        // A parità di libri conta la valutazione, poi l'ordine alfabetico
+        assertEquals(List.of("Il nome della rosa", "Il barone rampante", "Il visconte dimezzato", "Il Gattopardo"),
+                index.completaTitolo("il ", 10));
+        assertEquals(List.of("Il nome della rosa", "Il barone rampante"), index.completaTitolo("il", 2));
+        // Uno spazio finale chiude la parola digitata
+        assertEquals(List.of("Italo Calvino", "Italo Svevo"), index.completaAutore("italo ", 10));
+        assertEquals(List.of(), index.completaAutore("ital ", 10));
+    }
+
+    @Test
+    void prefixesAreNormalizedTest() {
+        AutocompleteIndex index = new AutocompleteIndex();
+        index.ricostruisci(libri(), 0);
+
+        assertEquals(List.of("Le città invisibili"), index.completaTitolo("  LE   CITTA", 10));
+        assertEquals(List.of("Umberto Eco"), index.completaAutore("umbérto", 10));
+        assertEquals(List.of(), index.completaTitolo("   ", 10));
+        assertEquals(List.of(), index.completaTitolo("zzz", 10));
+        assertEquals(List.of(), index.completaTitolo(null, 10));
+    }
+
+    @Test
+    void incrementalUpdatesMatchRebuildTest() {
+        AutocompleteIndex index = new AutocompleteIndex();
+        List<Libro> current = new ArrayList<>(libri());
+        index.ricostruisci(current, 1);
+
+        // Abbastanza voci nuove da fondere più volte quelle in attesa nell'array ordinato
+        for (int i = 0; i < 300; i++) {
+            Libro libro = libro(String.format("1%09d", i), "Titolo " + i, "Autore " + (i % 7), i % 6);
+            index.aggiorna(libro, 1, 1);
+            current.add(libro);
+        }
+        Libro aggiornato = libro("0000000004", "Senilità", "Italo Svevo", 4);
+        index.aggiorna(aggiornato, 1, 1);
+        current.set(3, aggiornato);
+        for (int i = 0; i < 300; i += 2) {
+            index.rimuovi(String.format("1%09d", i), 1, 1);
+            current.remove(libro(String.format("1%09d", i), null, null, 0));
+        }
+
+        AutocompleteIndex rebuilt = new AutocompleteIndex();
+        rebuilt.ricostruisci(current, 1);
+        for (String prefix : List.of("i", "il", "la", "s", "titolo", "titolo 1", "titolo 29", "autore", "italo")) {
+            assertEquals(rebuilt.completaTitolo(prefix, 8), index.completaTitolo(prefix, 8), prefix);
+            assertEquals(rebuilt.completaAutore(prefix, 8), index.completaAutore(prefix, 8), prefix);
+        }
+        assertEquals(List.of(), index.completaTitolo("la coscienza", 5));
+        // Tra i titoli rimasti che iniziano con "titolo 1" il primo con valutazione 5
+        assertEquals(List.of("Titolo 101"), index.completaTitolo("titolo 1", 1));
+    }
+
+    @Test
+    void staleIndexIsInvalidatedTest() {
+        AutocompleteIndex index = new AutocompleteIndex();
+        index.ricostruisci(libri(), 1);
+        assertTrue(index.isAggiornato(1));
+
+        index.aggiorna(libro("0000000007", "Il sentiero dei nidi di ragno", "Italo Calvino", 4), 1, 2);
+        assertTrue(index.isAggiornato(2));
+        assertEquals(List.of("Il sentiero dei nidi di ragno"), index.completaTitolo("il sent", 5));
+
+        // La persistenza è cambiata prima della scrittura: l'indice non è più affidabile
+        index.rimuovi("0000000001", 5, 6);
+        assertFalse(index.isAggiornato(6));
+        assertEquals(List.of(), index.completaAutore("italo", 5));
+    }
+}
@@ -1,10 +1,13 @@
 package com.bruno.bookmanager.service;
 
+import com.bruno.bookmanager.dao.BulkResult;
+import com.bruno.bookmanager.dao.CachedLibroDAO;
 import com.bruno.bookmanager.dao.DAOType;
 import com.bruno.bookmanager.dao.LibroDAO;
 import com.bruno.bookmanager.dao.OptimizedSearch;
 import com.bruno.bookmanager.filters.GenereFilter;
 import com.bruno.bookmanager.exception.*;
+import com.bruno.bookmanager.filters.Page;
 import com.bruno.bookmanager.filters.SearchCriteria;
 import com.bruno.bookmanager.model.Genere;
 import com.bruno.bookmanager.model.Libro;
@@ -18,7 +21,9 @@ import org.mockito.MockitoAnnotations;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -400,6 +405,90 @@ public class LibroServiceTest {
         assertFalse(service.supportsOptimizedSearch());
     }
 
+    @Test
+    void repeatedSearchIsServedFromCacheUntilMutationTest() throws Exception {
+        when(mockDAO.getAll()).thenReturn(testBooks);
+        SearchResultCache.Stats before = service.getSearchCacheStats();
+
+        List<Libro> first = service.search(SearchCriteria.byFilter(new GenereFilter(Genere.FANTASCIENZA)));
+        // Criteri costruiti di nuovo, ma strutturalmente uguali
+        List<Libro> second = service.search(SearchCriteria.byFilter(new GenereFilter(Genere.FANTASCIENZA)));
+
+        assertSame(first, second);
+        verify(mockDAO, times(1)).getAll();
+        SearchResultCache.Stats after = service.getSearchCacheStats();
+        assertEquals(before.hits() + 1, after.hits());
+        assertEquals(before.misses() + 1, after.misses());
+
+        service.rimuoviLibro("1234567890");
+        service.search(SearchCriteria.byFilter(new GenereFilter(Genere.FANTASCIENZA)));
+        verify(mockDAO, times(2)).getAll();
+    }
+
+    @Test
+    void failedMutationAlsoInvalidatesSearchCacheTest() throws Exception {
+        when(mockDAO.getAll()).thenReturn(testBooks);
+        doThrow(new DAOException("Errore")).when(mockDAO).update(any());
+
+        service.search(SearchCriteria.all());
+        assertThrows(BookManagerException.class, () -> service.aggiornaLibro(testBooks.get(0)));
+        service.search(SearchCriteria.all());
+
+        verify(mockDAO, times(2)).getAll();
+    }
+
+    @Test
+    void searchPageWithRegularDAOTest() throws Exception {
+        when(mockDAO.getAll()).thenReturn(testBooks);
+        SearchCriteria.Builder builder = new SearchCriteria.Builder().filter(new GenereFilter(Genere.FANTASCIENZA))
+                .sortBy(SearchCriteria.SortField.VALUTAZIONE, false).pageSize(2);
+
+        Page<Libro> first = service.searchPage(builder.build());
+        Page<Libro> second = service.searchPage(builder.after(first.nextToken()).build());
+
+        assertEquals(List.of("Dune", "Neuromante"), first.items().stream().map(Libro::getTitolo).toList());
+        assertTrue(first.hasNext());
+        assertEquals(List.of("Foundation"), second.items().stream().map(Libro::getTitolo).toList());
+        assertFalse(second.hasNext());
+    }
+
+    @Test
+    void streamLibriFiltersWithoutLoadingListTest() throws Exception {
+        when(mockDAO.streamAll()).thenReturn(testBooks.stream());
+        SearchCriteria criteria = new SearchCriteria.Builder().filter(new GenereFilter(Genere.FANTASCIENZA))
+                .sortBy(null).build();
+
+        try (Stream<Libro> stream = service.streamLibri(criteria)) {
+            assertEquals(3, stream.count());
+        }
+        verify(mockDAO).streamAll();
+        verify(mockDAO, never()).getAll();
+    }
+
+    @Test
+    void statisticheWithRegularDAOTest() throws Exception {
+        when(mockDAO.streamAll()).thenAnswer(invocation -> testBooks.stream());
+        SearchCriteria fantascienza = SearchCriteria.byFilter(new GenereFilter(Genere.FANTASCIENZA));
+
+        assertEquals(3, service.contaLibri(fantascienza));
+        assertEquals(Map.of(StatoLettura.IN_LETTURA, 1L, StatoLettura.DA_LEGGERE, 2L),
+                service.contaPerStato(fantascienza));
+        // Il libro non valutato (0) non concorre alla media
+        assertEquals(3.5, service.valutazioneMedia(fantascienza).orElseThrow());
+        assertEquals(2L, service.contaPerValutazione(null).get(5));
+        verify(mockDAO, never()).getAll();
+    }
+
+    @Test
+    void statisticheWithOptimizedDAOTest() throws Exception {
+        LibroDAO optimizedDAO = mock(LibroDAO.class, withSettings().extraInterfaces(OptimizedSearch.class));
+        service.setLibroDAO(optimizedDAO);
+        when(((OptimizedSearch) optimizedDAO).count(null)).thenReturn(42L);
+
+        assertEquals(42, service.contaLibri(null));
+        verify(optimizedDAO, never()).streamAll();
+    }
+
     @Test
     void cercaPerTitoloPartialMatchTest() throws Exception {
         when(mockDAO.getAll()).thenReturn(testBooks);
@@ -577,6 +666,31 @@ public class LibroServiceTest {
                 () -> service.setDAO(DAOType.JSON, "   "));
     }
 
+    @Test
+    void chiudiReportsFailedSaveAndKeepsChangesTest() throws Exception {
+        when(mockDAO.getAll()).thenReturn(new ArrayList<>());
+        when(mockDAO.prefersBatchOperations()).thenReturn(true);
+        CachedLibroDAO cached = new CachedLibroDAO(mockDAO, 60_000);
+        service.setLibroDAO(cached);
+        service.aggiungiLibro(testBooks.get(0));
+        assertTrue(service.hasModificheNonSalvate());
+
+        doThrow(new DAOException("Disco pieno")).when(mockDAO).saveAll(any());
+        BookManagerException exception = assertThrows(BookManagerException.class, () -> service.chiudi());
+        assertInstanceOf(DAOException.class, exception.getCause());
+        // Il DAO resta aperto con le modifiche in attesa, così il salvataggio si può ritentare
+        assertTrue(service.hasModificheNonSalvate());
+        assertThrows(BookManagerException.class,
+                () -> service.setDAO(DAOType.JSON, new File("test_libri.json").getAbsolutePath()));
+        verify(mockDAO, never()).close();
+
+        doNothing().when(mockDAO).saveAll(any());
+        service.chiudi();
+        verify(mockDAO, atLeastOnce()).saveAll(List.of(testBooks.get(0)));
+        verify(mockDAO).close();
+        assertFalse(service.hasModificheNonSalvate());
+    }
+
 
     @Test
     void multipleOperationsSequenceTest() throws Exception {
@@ -649,4 +763,63 @@ public class LibroServiceTest {
         assertEquals(service2.getAllLibri(), service3.getAllLibri());
     }
 
-}
\ No newline at end of file
+    @Test
+    void importaLibriValidatesBeforeWritingTest() throws Exception {
+        Libro nonValido = new Libro("", "Autore", "4444444444", Genere.ROMANZO, 3, StatoLettura.LETTO);
+        List<Libro> validi = List.of(testBooks.get(0), testBooks.get(1));
+        when(mockDAO.addAll(validi)).thenReturn(new BulkResult(List.of(
+                new BulkResult.Entry("1234567890", BulkResult.Outcome.ADDED, null),
+                new BulkResult.Entry("0987654321", BulkResult.Outcome.ALREADY_EXISTS, "già presente"))));
+
+        BulkResult result = service.importaLibri(List.of(testBooks.get(0), nonValido, testBooks.get(1)), false);
+
+        assertEquals(List.of("1234567890", "4444444444", "0987654321"),
+                result.entries().stream().map(BulkResult.Entry::isbn).toList());
+        assertEquals(BulkResult.Outcome.INVALID, result.entries().get(1).outcome());
+        assertNotNull(result.entries().get(1).message());
+        assertEquals(1, result.count(BulkResult.Outcome.ADDED));
+        verify(mockDAO).addAll(validi);
+        verify(mockDAO, never()).upsertAll(any());
+    }
+
+    @Test
+    void importaLibriWrapsDAOExceptionTest() throws Exception {
+        when(mockDAO.upsertAll(any())).thenThrow(new DAOException("errore"));
+
+        assertThrows(BookManagerException.class, () -> service.importaLibri(testBooks, true));
+    }
+
+    @Test
+    void suggerimentiFollowServiceWritesTest() throws Exception {
+        when(mockDAO.streamAll()).thenReturn(testBooks.stream());
+
+        assertEquals(List.of("Il Signore degli Anelli"), service.suggerisciTitoli("il s", 5));
+        assertEquals(List.of("Isaac Asimov"), service.suggerisciAutori("isa", 5));
+
+        Libro nuovo = new Libro("Io, robot", "Isaac Asimov", "4444444444", Genere.FANTASCIENZA, 4,
+                StatoLettura.LETTO);
+        service.aggiungiLibro(nuovo);
+        service.aggiornaLibro(new Libro("Il Signore degli Anelli", "John Ronald Reuel Tolkien", "2222222222",
+                Genere.FANTASY, 5, StatoLettura.LETTO));
+        service.rimuoviLibro("3333333333");
+
+        assertEquals(List.of("Il Signore degli Anelli", "Io, robot"), service.suggerisciTitoli("i", 5));
+        assertEquals(List.of("John Ronald Reuel Tolkien"), service.suggerisciAutori("j", 5));
+        assertEquals(List.of("Isaac Asimov"), service.suggerisciAutori("isaac", 5));
+        assertEquals(List.of(), service.suggerisciTitoli("foundation", 5));
+        // Le modifiche fatte tramite il service non richiedono di rileggere la libreria
+        verify(mockDAO, times(1)).streamAll();
+    }
+
+    @Test
+    void suggerimentiAreRebuiltAfterImportTest() throws Exception {
+        when(mockDAO.streamAll()).thenAnswer(invocation -> testBooks.stream());
+        when(mockDAO.addAll(any())).thenReturn(new BulkResult(List.of()));
+
+        assertEquals(List.of("Dune"), service.suggerisciTitoli("du", 5));
+        service.importaLibri(List.of(), false);
+        assertEquals(List.of("Dune"), service.suggerisciTitoli("du", 5));
+        verify(mockDAO, times(2)).streamAll();
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.bruno.bookmanager.service;
+
+import com.bruno.bookmanager.filters.SearchCriteria;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchResultCacheTest {
+
+    private static final SearchResultCache.LibraryVersion V1 = new SearchResultCache.LibraryVersion(1, 0);
+    private static final SearchResultCache.LibraryVersion V2 = new SearchResultCache.LibraryVersion(2, 0);
+
+    @Test
+    void leastRecentlyUsedResultIsEvictedTest() {
+        SearchResultCache cache = new SearchResultCache(2);
+        SearchCriteria a = SearchCriteria.byTitle("a");
+        SearchCriteria b = SearchCriteria.byTitle("b");
+        SearchCriteria c = SearchCriteria.byTitle("c");
+
+        cache.put(SearchResultCache.Kind.LIST, a, V1, List.of());
+        cache.put(SearchResultCache.Kind.LIST, b, V1, List.of());
+        cache.get(SearchResultCache.Kind.LIST, a, V1);
+        cache.put(SearchResultCache.Kind.LIST, c, V1, List.of());
+
+        assertTrue(cache.get(SearchResultCache.Kind.LIST, a, V1).isPresent());
+        assertTrue(cache.get(SearchResultCache.Kind.LIST, b, V1).isEmpty());
+        assertEquals(new SearchResultCache.Stats(2, 1, 1, 2, 2), cache.getStats());
+    }
+
+    @Test
+    void resultFromOtherVersionIsMissAndDroppedTest() {
+        SearchResultCache cache = new SearchResultCache(4);
+        SearchCriteria criteria = SearchCriteria.all();
+        cache.put(SearchResultCache.Kind.LIST, criteria, V1, List.of());
+
+        assertEquals(Optional.empty(), cache.get(SearchResultCache.Kind.LIST, criteria, V2));
+        assertEquals(Optional.empty(), cache.get(SearchResultCache.Kind.LIST, criteria, V1));
+        assertEquals(0, cache.getStats().size());
+    }
+
+    @Test
+    void listAndPageResultsAreKeptApartTest() {
+        SearchResultCache cache = new SearchResultCache(4);
+        SearchCriteria criteria = SearchCriteria.all();
+        cache.put(SearchResultCache.Kind.LIST, criteria, V1, List.of());
+
+        assertTrue(cache.get(SearchResultCache.Kind.PAGE, criteria, V1).isEmpty());
+        assertEquals(0.0, cache.getStats().hitRate());
+    }
+}